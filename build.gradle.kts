@@ -29,7 +29,9 @@ dependencies {
 	implementation("org.springframework.integration:spring-integration-mqtt:7.0.1")
 	implementation("org.eclipse.paho:org.eclipse.paho.client.mqttv3:1.2.5")
 	annotationProcessor("org.mapstruct:mapstruct-processor:1.5.5.Final")
-	runtimeOnly("org.postgresql:postgresql") 
+	implementation("org.postgresql:postgresql")
+	runtimeOnly("org.hibernate.orm:hibernate-jcache")
+	runtimeOnly("org.ehcache:ehcache::jakarta")
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
@@ -63,11 +63,15 @@ CREATE TABLE network (
 	active_alert_id int8 NULL,
 	configuration varchar NOT NULL,
 	reporting_interval_ema int4 NOT NULL,
+	reporting_interval_jitter int4 DEFAULT 0 NOT NULL,
 	back_online_time timestamp,
 	CONSTRAINT pk_network PRIMARY KEY (id),
 	CONSTRAINT uk_network_name UNIQUE (name)
 );
 
+-- Upgrade from earlier versions:
+-- ALTER TABLE network ADD COLUMN reporting_interval_jitter int4 DEFAULT 0 NOT NULL;
+
 
 -- device definition
 
@@ -87,6 +91,7 @@ CREATE TABLE device (
 	device_operation_mode_id int4 NOT NULL,
 	active_alert_id int8 NULL,
 	vendor varchar NULL,
+	last_status_change timestamp NULL,
 	CONSTRAINT pk_device PRIMARY KEY (id),
 	CONSTRAINT fk_device_device_operation_mode FOREIGN KEY (device_operation_mode_id) REFERENCES device_operation_mode(id),
 	CONSTRAINT fk_device_network FOREIGN KEY (network_id) REFERENCES network(id)
@@ -96,6 +101,11 @@ CREATE TABLE device (
 -- DROP INDEX idx_device_network;
 -- DROP INDEX idx_device_mac_address;
 CREATE UNIQUE INDEX uk_device_network_mac_address ON device USING btree (network_id, mac_address);
+-- keyset pagination by name (devices without a name sort first), for all devices and per network
+CREATE INDEX idx_device_name ON device USING btree ((COALESCE("name", '')), id);
+CREATE INDEX idx_device_network_name ON device USING btree (network_id, (COALESCE("name", '')), id);
+-- Upgrade from earlier versions (the application backfills the values from history on startup):
+-- ALTER TABLE device ADD COLUMN last_status_change timestamp NULL;
 
 
 -- account definition
@@ -126,6 +136,11 @@ CREATE TABLE account (
 
 -- DROP TABLE device_status_history;
 
+-- Partitioned by month ("timestamp"), each month sub-partitioned by network_id. The monthly and
+-- per-network partitions are created ahead of time by HistoryPartitionService, which also applies
+-- retention by dropping whole partitions. Rows outside the created months (e.g. legacy data or
+-- scanners with a broken clock) end up in device_status_history_default.
+-- Partition keys have to be part of the primary key.
 CREATE TABLE device_status_history (
 	id bigserial NOT NULL,
 	ip_address varchar(45) NOT NULL,
@@ -133,13 +148,45 @@ CREATE TABLE device_status_history (
 	"timestamp" timestamp NOT NULL,
 	network_id int8 NOT NULL,
 	device_id int8 NULL,
-	CONSTRAINT pk_device_status_history PRIMARY KEY (id),
+	CONSTRAINT pk_device_status_history PRIMARY KEY (id, "timestamp", network_id),
 	CONSTRAINT fk_device_status_history_network FOREIGN KEY (network_id) REFERENCES network(id),
 	CONSTRAINT fk_device_status_history_device FOREIGN KEY (device_id) REFERENCES device(id)
-);
+) PARTITION BY RANGE ("timestamp");
 CREATE INDEX idx_device_status_history_network ON device_status_history USING btree (network_id);
-CREATE INDEX idx_device_status_history_device ON device_status_history USING btree (device_id);
+-- (device_id, "timestamp" DESC, id DESC) serves "latest row per device" lookups, keyset pagination
+-- of a device's history, and plain device filters
+CREATE INDEX idx_device_status_history_device ON device_status_history USING btree (device_id, "timestamp" DESC, id DESC);
 CREATE INDEX idx_device_status_history_timestamp ON device_status_history USING btree ("timestamp");
+CREATE TABLE device_status_history_default PARTITION OF device_status_history DEFAULT;
+-- Upgrade from the unpartitioned table (the partitions of the old months are created before the
+-- rows are copied, so they don't end up in device_status_history_default):
+-- ALTER TABLE device_status_history RENAME TO device_status_history_old;
+-- ALTER TABLE device_status_history_old RENAME CONSTRAINT pk_device_status_history TO pk_device_status_history_old;
+-- ALTER INDEX idx_device_status_history_network RENAME TO idx_device_status_history_old_network;
+-- ALTER INDEX idx_device_status_history_device RENAME TO idx_device_status_history_old_device;
+-- ALTER INDEX idx_device_status_history_timestamp RENAME TO idx_device_status_history_old_timestamp;
+-- (run the CREATE statements above)
+-- DO $$
+-- DECLARE
+-- 	m date;
+-- 	n int8;
+-- 	p text;
+-- BEGIN
+-- 	FOR m IN SELECT DISTINCT date_trunc('month', "timestamp")::date FROM device_status_history_old LOOP
+-- 		p := 'device_status_history_' || to_char(m, '"y"YYYY"m"MM');
+-- 		EXECUTE format('CREATE TABLE %I PARTITION OF device_status_history FOR VALUES FROM (%L) TO (%L) PARTITION BY LIST (network_id)', p, m, (m + interval '1 month')::date);
+-- 		EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', p || '_default', p);
+-- 		FOR n IN SELECT DISTINCT network_id FROM device_status_history_old WHERE "timestamp" >= m AND "timestamp" < m + interval '1 month' LOOP
+-- 			EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES IN (%s)', p || '_n' || n, p, n);
+-- 		END LOOP;
+-- 	END LOOP;
+-- END $$;
+-- INSERT INTO device_status_history SELECT * FROM device_status_history_old;
+-- SELECT setval(pg_get_serial_sequence('device_status_history', 'id'), (SELECT max(id) FROM device_status_history));
+-- DROP TABLE device_status_history_old;
+-- Upgrade of the device index to the composite one:
+-- DROP INDEX idx_device_status_history_device;
+-- CREATE INDEX idx_device_status_history_device ON device_status_history USING btree (device_id, "timestamp" DESC, id DESC);
 
 
 
@@ -188,6 +235,186 @@ CREATE INDEX idx_alert_network ON alert USING btree (network_id);
 CREATE INDEX idx_alert_timestamp ON alert USING btree ("timestamp");
 
 
+-- device_presence_interval definition
+
+-- Drop table
+
+-- DROP TABLE device_presence_interval;
+
+-- Online periods of devices, maintained from the same transitions as device_status_history.
+-- valid_to is NULL while the device is online; period is the same interval as a range, so overlap
+-- questions ("who was online between 02:00 and 03:00") are GiST index lookups.
+CREATE TABLE device_presence_interval (
+	id bigserial NOT NULL,
+	device_id int8 NOT NULL,
+	network_id int8 NOT NULL,
+	valid_from timestamp NOT NULL,
+	valid_to timestamp NULL,
+	period tsrange GENERATED ALWAYS AS (tsrange(valid_from, valid_to, '[)')) STORED,
+	CONSTRAINT pk_device_presence_interval PRIMARY KEY (id),
+	CONSTRAINT fk_device_presence_interval_device FOREIGN KEY (device_id) REFERENCES device(id),
+	CONSTRAINT fk_device_presence_interval_network FOREIGN KEY (network_id) REFERENCES network(id)
+);
+CREATE INDEX idx_device_presence_interval_period ON device_presence_interval USING gist (period);
+CREATE INDEX idx_device_presence_interval_device ON device_presence_interval USING btree (device_id, valid_from);
+CREATE UNIQUE INDEX uk_device_presence_interval_open ON device_presence_interval USING btree (device_id) WHERE valid_to IS NULL;
+-- Initial fill from existing history (run once after creating the table):
+-- INSERT INTO device_presence_interval (device_id, network_id, valid_from, valid_to)
+-- SELECT device_id, network_id, "timestamp", next_timestamp FROM (
+--   SELECT device_id, network_id, online, "timestamp",
+--     LAG(online) OVER w AS previous_online,
+--     (SELECT min(h2."timestamp") FROM device_status_history h2
+--      WHERE h2.device_id = h.device_id AND h2."timestamp" > h."timestamp" AND NOT h2.online) AS next_timestamp
+--   FROM device_status_history h WHERE device_id IS NOT NULL
+--   WINDOW w AS (PARTITION BY device_id ORDER BY "timestamp")
+-- ) t WHERE online AND previous_online IS DISTINCT FROM true;
+
+
+-- device_current_status definition
+
+-- Drop table
+
+-- DROP TABLE device_current_status;
+
+-- The latest device_status_history row of every device, kept up to date by StatusHistoryRecorder,
+-- so "current state" queries don't have to search the history for each device's newest row.
+CREATE TABLE device_current_status (
+	device_id int8 NOT NULL,
+	network_id int8 NOT NULL,
+	history_id int8 NOT NULL,
+	online bool NOT NULL,
+	"timestamp" timestamp NOT NULL,
+	CONSTRAINT pk_device_current_status PRIMARY KEY (device_id),
+	CONSTRAINT fk_device_current_status_device FOREIGN KEY (device_id) REFERENCES device(id),
+	CONSTRAINT fk_device_current_status_network FOREIGN KEY (network_id) REFERENCES network(id)
+);
+CREATE INDEX idx_device_current_status_network ON device_current_status USING btree (network_id, online);
+-- Initial fill from existing history (run once after creating the table):
+-- INSERT INTO device_current_status (device_id, network_id, history_id, online, "timestamp")
+-- SELECT DISTINCT ON (device_id) device_id, network_id, id, online, "timestamp"
+-- FROM device_status_history WHERE device_id IS NOT NULL
+-- ORDER BY device_id, "timestamp" DESC, id DESC;
+
+
+-- network_status_checkpoint definition
+
+-- Drop table
+
+-- DROP TABLE network_status_checkpoint;
+
+-- Periodic snapshots of the online devices of a network, maintained by NetworkSnapshotService.
+-- online_devices holds the sorted device IDs, delta and varint encoded (see DeltaVarintCodec). A
+-- checkpoint reflects all history rows with "timestamp" <= the checkpoint timestamp.
+CREATE TABLE network_status_checkpoint (
+	id bigserial NOT NULL,
+	network_id int8 NOT NULL,
+	"timestamp" timestamp NOT NULL,
+	device_count int4 NOT NULL,
+	online_devices bytea NOT NULL,
+	CONSTRAINT pk_network_status_checkpoint PRIMARY KEY (id),
+	CONSTRAINT fk_network_status_checkpoint_network FOREIGN KEY (network_id) REFERENCES network(id)
+);
+CREATE UNIQUE INDEX uk_network_status_checkpoint ON network_status_checkpoint USING btree (network_id, "timestamp");
+
+
+-- device_availability_rollup definition
+
+-- Drop table
+
+-- DROP TABLE device_availability_rollup;
+
+-- Per device online time per hour ('H') and per day ('D'), maintained by AvailabilityRollupService.
+-- first_seen/last_seen are the first and last moment within the bucket the device was online.
+CREATE TABLE device_availability_rollup (
+	device_id int8 NOT NULL,
+	network_id int8 NOT NULL,
+	granularity char(1) NOT NULL,
+	bucket_start timestamp NOT NULL,
+	online_seconds int8 DEFAULT 0 NOT NULL,
+	transitions int4 DEFAULT 0 NOT NULL,
+	first_seen timestamp NULL,
+	last_seen timestamp NULL,
+	CONSTRAINT pk_device_availability_rollup PRIMARY KEY (device_id, granularity, bucket_start),
+	CONSTRAINT fk_device_availability_rollup_device FOREIGN KEY (device_id) REFERENCES device(id),
+	CONSTRAINT fk_device_availability_rollup_network FOREIGN KEY (network_id) REFERENCES network(id)
+);
+CREATE INDEX idx_device_availability_rollup_network ON device_availability_rollup USING btree (network_id, granularity, bucket_start);
+
+
+-- network_availability_rollup definition
+
+-- Drop table
+
+-- DROP TABLE network_availability_rollup;
+
+-- Per network sums of the device rollups (online_seconds are device-seconds).
+CREATE TABLE network_availability_rollup (
+	network_id int8 NOT NULL,
+	granularity char(1) NOT NULL,
+	bucket_start timestamp NOT NULL,
+	online_seconds int8 DEFAULT 0 NOT NULL,
+	transitions int4 DEFAULT 0 NOT NULL,
+	first_seen timestamp NULL,
+	last_seen timestamp NULL,
+	CONSTRAINT pk_network_availability_rollup PRIMARY KEY (network_id, granularity, bucket_start),
+	CONSTRAINT fk_network_availability_rollup_network FOREIGN KEY (network_id) REFERENCES network(id)
+);
+
+
+-- network_scan_bitmap definition
+
+-- Drop table
+
+-- DROP TABLE network_scan_bitmap;
+
+-- Scans a network sent per day (UTC): one bit per slot of slot_seconds, run-length encoded (see
+-- RunLengthBitmap), maintained by PresenceBitmapService. Writers of a network's day lock its row.
+CREATE TABLE network_scan_bitmap (
+	network_id int8 NOT NULL,
+	"day" date NOT NULL,
+	slot_seconds int4 NOT NULL,
+	slots bytea NOT NULL,
+	CONSTRAINT pk_network_scan_bitmap PRIMARY KEY (network_id, "day"),
+	CONSTRAINT fk_network_scan_bitmap_network FOREIGN KEY (network_id) REFERENCES network(id)
+);
+CREATE INDEX idx_network_scan_bitmap_day ON network_scan_bitmap USING btree ("day");
+
+
+-- device_presence_bitmap definition
+
+-- Drop table
+
+-- DROP TABLE device_presence_bitmap;
+
+-- Scans a device was in per day, in the same format as network_scan_bitmap.
+CREATE TABLE device_presence_bitmap (
+	device_id int8 NOT NULL,
+	network_id int8 NOT NULL,
+	"day" date NOT NULL,
+	slot_seconds int4 NOT NULL,
+	slots bytea NOT NULL,
+	CONSTRAINT pk_device_presence_bitmap PRIMARY KEY (device_id, "day"),
+	CONSTRAINT fk_device_presence_bitmap_device FOREIGN KEY (device_id) REFERENCES device(id),
+	CONSTRAINT fk_device_presence_bitmap_network FOREIGN KEY (network_id) REFERENCES network(id)
+);
+CREATE INDEX idx_device_presence_bitmap_network ON device_presence_bitmap USING btree (network_id, "day");
+CREATE INDEX idx_device_presence_bitmap_day ON device_presence_bitmap USING btree ("day");
+
+
+-- cluster_node definition (only used when cluster coordination is enabled)
+
+-- Drop table
+
+-- DROP TABLE cluster_node;
+
+CREATE TABLE cluster_node (
+	node_id varchar(200) NOT NULL,
+	started_at timestamp NOT NULL,
+	heartbeat timestamp NOT NULL,
+	CONSTRAINT pk_cluster_node PRIMARY KEY (node_id)
+);
+
+
 INSERT INTO alert_type (id, name, description) VALUES
     (0, 'NETWORK_DOWN', 'Network connectivity lost or network went offline'),
     (1, 'DEVICE_DOWN', 'Device that should always be online is not responding'),
@@ -23,7 +23,14 @@ import org.springframework.stereotype.Component;
  *   from-name: Network Monitor
  *   interval-seconds: 120
  *   initial-delay-seconds: 10
+ *   reminder-interval-minutes: 1440
+ *   reminder-check-interval-seconds: 60
+ *   escalation-after-minutes: 120
+ *   escalation-email-address: oncall@example.com
  * </pre>
+ *
+ * <p>Reminders are disabled when {@code reminder-interval-minutes} is 0, escalation is disabled
+ * when {@code escalation-email-address} is empty.
  */
 @Component
 @ConfigurationProperties(prefix = "alerter")
@@ -41,6 +48,11 @@ public class AlerterProperties {
     private long intervalSeconds = 20;
     private long initialDelaySeconds = 30;
 
+    private long reminderIntervalMinutes = 1440;
+    private long reminderCheckIntervalSeconds = 60;
+    private long escalationAfterMinutes = 120;
+    private String escalationEmailAddress;
+
     // Getters and setters
 
     public String getSmtpHost() {
@@ -122,4 +134,36 @@ public class AlerterProperties {
     public void setInitialDelaySeconds(long initialDelaySeconds) {
         this.initialDelaySeconds = initialDelaySeconds;
     }
+
+    public long getReminderIntervalMinutes() {
+        return reminderIntervalMinutes;
+    }
+
+    public void setReminderIntervalMinutes(long reminderIntervalMinutes) {
+        this.reminderIntervalMinutes = reminderIntervalMinutes;
+    }
+
+    public long getReminderCheckIntervalSeconds() {
+        return reminderCheckIntervalSeconds;
+    }
+
+    public void setReminderCheckIntervalSeconds(long reminderCheckIntervalSeconds) {
+        this.reminderCheckIntervalSeconds = reminderCheckIntervalSeconds;
+    }
+
+    public long getEscalationAfterMinutes() {
+        return escalationAfterMinutes;
+    }
+
+    public void setEscalationAfterMinutes(long escalationAfterMinutes) {
+        this.escalationAfterMinutes = escalationAfterMinutes;
+    }
+
+    public String getEscalationEmailAddress() {
+        return escalationEmailAddress;
+    }
+
+    public void setEscalationEmailAddress(String escalationEmailAddress) {
+        this.escalationEmailAddress = escalationEmailAddress;
+    }
 }
@@ -0,0 +1,77 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for running multiple netmon2 instances against the same database.
+ *
+ * <p>Binds to properties prefixed with "cluster" in application.yaml. When enabled, every node
+ * keeps a lease in the {@code cluster_node} table, and networks are distributed among live nodes
+ * by consistent hashing, so each network's alerts are evaluated by exactly one node.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * cluster:
+ *   enabled: true
+ *   node-id: netmon2-a
+ *   heartbeat-interval-seconds: 10
+ *   lease-timeout-seconds: 30
+ *   virtual-nodes: 64
+ * </pre>
+ *
+ * <p>If {@code node-id} is empty, it is derived from the host name and process ID.
+ */
+@Component
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterProperties {
+
+    private boolean enabled = false;
+    private String nodeId;
+    private long heartbeatIntervalSeconds = 10;
+    private long leaseTimeoutSeconds = 30;
+    private int virtualNodes = 64;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public long getHeartbeatIntervalSeconds() {
+        return heartbeatIntervalSeconds;
+    }
+
+    public void setHeartbeatIntervalSeconds(long heartbeatIntervalSeconds) {
+        this.heartbeatIntervalSeconds = heartbeatIntervalSeconds;
+    }
+
+    public long getLeaseTimeoutSeconds() {
+        return leaseTimeoutSeconds;
+    }
+
+    public void setLeaseTimeoutSeconds(long leaseTimeoutSeconds) {
+        this.leaseTimeoutSeconds = leaseTimeoutSeconds;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+}
@@ -0,0 +1,110 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the per-workload connection pools.
+ *
+ * <p>Binds to properties prefixed with "connection-pools" in application.yaml. See {@link
+ * DataSourceConfig}.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * connection-pools:
+ *   max-total-connections: 0
+ *   ingestion:
+ *     maximum-pool-size: 4
+ *     minimum-idle: 1
+ *     connection-timeout-millis: 5000
+ *   alerting:
+ *     maximum-pool-size: 3
+ *     minimum-idle: 1
+ *     connection-timeout-millis: 10000
+ * </pre>
+ *
+ * <p>MQTT ingestion and the alert sweep get their own pools, so a burst of REST queries can't take
+ * their connections. Everything else (REST API, maintenance jobs) uses the pool configured by
+ * {@code spring.datasource.hikari}. A pool with {@code maximum-pool-size: 0} isn't created and its
+ * workload shares the API pool.
+ *
+ * <p>{@code max-total-connections} caps the connections in use across all pools (0 = no cap,
+ * i.e. the sum of the pool sizes). When the database itself is the bottleneck, a lower cap keeps
+ * it from being overloaded, and waiting workloads get connections in the order they asked for
+ * them, so none of them starves.
+ */
+@Component
+@ConfigurationProperties(prefix = "connection-pools")
+public class ConnectionPoolProperties {
+
+    private int maxTotalConnections = 0;
+    private Pool ingestion = new Pool(4, 1, 5000);
+    private Pool alerting = new Pool(3, 1, 10000);
+
+    // Getters and setters
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public void setMaxTotalConnections(int maxTotalConnections) {
+        this.maxTotalConnections = maxTotalConnections;
+    }
+
+    public Pool getIngestion() {
+        return ingestion;
+    }
+
+    public void setIngestion(Pool ingestion) {
+        this.ingestion = ingestion;
+    }
+
+    public Pool getAlerting() {
+        return alerting;
+    }
+
+    public void setAlerting(Pool alerting) {
+        this.alerting = alerting;
+    }
+
+    /** Sizing and timeout of a single workload pool. */
+    public static class Pool {
+
+        private int maximumPoolSize;
+        private int minimumIdle;
+        private long connectionTimeoutMillis;
+
+        public Pool() {}
+
+        Pool(int maximumPoolSize, int minimumIdle, long connectionTimeoutMillis) {
+            this.maximumPoolSize = maximumPoolSize;
+            this.minimumIdle = minimumIdle;
+            this.connectionTimeoutMillis = connectionTimeoutMillis;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public int getMinimumIdle() {
+            return minimumIdle;
+        }
+
+        public void setMinimumIdle(int minimumIdle) {
+            this.minimumIdle = minimumIdle;
+        }
+
+        public long getConnectionTimeoutMillis() {
+            return connectionTimeoutMillis;
+        }
+
+        public void setConnectionTimeoutMillis(long connectionTimeoutMillis) {
+            this.connectionTimeoutMillis = connectionTimeoutMillis;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.matjazt.netmon2.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * Database connection pools, one per {@link Workload}.
+ *
+ * <p>MQTT ingestion, the alert sweep and the REST API each get their own Hikari pool, so a burst of
+ * dashboard queries can't take the connections scan processing needs (which would make the broker
+ * back up). All pools connect to {@code spring.datasource}; the API pool is configured by {@code
+ * spring.datasource.hikari}, the others by {@link ConnectionPoolProperties}. The data source used
+ * by JPA and {@code JdbcTemplate} is a {@link WorkloadRoutingDataSource} that picks the pool of
+ * the current thread's workload.
+ *
+ * <p>With a read replica ({@link ReplicaDataSourceConfig}), the routing data source is wrapped in a
+ * {@link LazyConnectionDataSourceProxy}, which sends read-only transactions to the replica.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    /** API pool, configured by {@code spring.datasource} and its {@code hikari} section. */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource apiDataSource(DataSourceProperties dataSourceProperties) {
+        var dataSource =
+                dataSourceProperties
+                        .initializeDataSourceBuilder()
+                        .type(HikariDataSource.class)
+                        .build();
+        dataSource.setPoolName(Workload.API.tag());
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource ingestionDataSource(
+            ConnectionPoolProperties properties,
+            DataSourceProperties dataSourceProperties,
+            @Qualifier("apiDataSource") HikariDataSource apiDataSource) {
+        return workloadPool(
+                Workload.INGESTION,
+                properties.getIngestion(),
+                dataSourceProperties,
+                apiDataSource);
+    }
+
+    @Bean
+    public HikariDataSource alertingDataSource(
+            ConnectionPoolProperties properties,
+            DataSourceProperties dataSourceProperties,
+            @Qualifier("apiDataSource") HikariDataSource apiDataSource) {
+        return workloadPool(
+                Workload.ALERTING, properties.getAlerting(), dataSourceProperties, apiDataSource);
+    }
+
+    @Bean
+    public WorkloadRoutingDataSource workloadDataSource(
+            ConnectionPoolProperties properties,
+            @Qualifier("apiDataSource") HikariDataSource apiDataSource,
+            @Qualifier("ingestionDataSource") HikariDataSource ingestionDataSource,
+            @Qualifier("alertingDataSource") HikariDataSource alertingDataSource,
+            MeterRegistry meterRegistry) {
+        return new WorkloadRoutingDataSource(
+                Map.of(
+                        Workload.API, apiDataSource,
+                        Workload.INGESTION, ingestionDataSource,
+                        Workload.ALERTING, alertingDataSource),
+                properties.getMaxTotalConnections(),
+                meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("workloadDataSource") WorkloadRoutingDataSource workloadDataSource,
+            ObjectProvider<ReplicaDataSource> replicaDataSource) {
+        var replica = replicaDataSource.getIfAvailable();
+        if (replica == null) {
+            return workloadDataSource;
+        }
+        var dataSource = new LazyConnectionDataSourceProxy(workloadDataSource);
+        dataSource.setReadOnlyDataSource(replica);
+        return dataSource;
+    }
+
+    private static HikariDataSource workloadPool(
+            Workload workload,
+            ConnectionPoolProperties.Pool pool,
+            DataSourceProperties dataSourceProperties,
+            HikariDataSource apiDataSource) {
+        if (pool.getMaximumPoolSize() < 1) {
+            throw new IllegalArgumentException(
+                    "connection-pools." + workload.tag() + ".maximum-pool-size must be at least 1");
+        }
+        var dataSource = new HikariDataSource();
+        dataSource.setPoolName(workload.tag());
+        dataSource.setJdbcUrl(dataSourceProperties.determineUrl());
+        dataSource.setUsername(dataSourceProperties.determineUsername());
+        dataSource.setPassword(dataSourceProperties.determinePassword());
+        dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        dataSource.setMaximumPoolSize(pool.getMaximumPoolSize());
+        dataSource.setMinimumIdle(Math.min(pool.getMinimumIdle(), pool.getMaximumPoolSize()));
+        dataSource.setConnectionTimeout(pool.getConnectionTimeoutMillis());
+        // all pools must behave the same, the transaction manager doesn't know which one it got
+        dataSource.setAutoCommit(apiDataSource.isAutoCommit());
+        return dataSource;
+    }
+}
@@ -0,0 +1,35 @@
+package com.matjazt.netmon2.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration of Hibernate's second-level cache.
+ *
+ * <p>The cache itself is configured in {@code application.yaml} ({@code spring.jpa.properties}) and
+ * the regions with their sizes and expiry in {@code ehcache.xml}. Only read-only lookup tables are
+ * cached; entities that are written while scans are processed (networks, devices) are not, since
+ * every write would invalidate them. The cache is local to the process, so an eviction after a
+ * database edit would have to reach every instance of a cluster; it is switched off when {@code
+ * cluster.enabled} is set.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCacheConfig.class);
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            ClusterProperties clusterProperties) {
+        return properties -> {
+            if (clusterProperties.isEnabled()) {
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                logger.info("Running as a cluster, second-level cache is disabled");
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for device flap detection.
+ *
+ * <p>Binds to properties prefixed with "flap-detection" in application.yaml. A device is considered
+ * flapping when it changes state at least {@code flappingThreshold} times within the last {@code
+ * windowSize} scans, and stops flapping only once the number of changes drops to {@code
+ * recoveryThreshold} (hysteresis, so devices don't bounce in and out of the flapping state).
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * flap-detection:
+ *   enabled: true
+ *   window-size: 32
+ *   flapping-threshold: 8
+ *   recovery-threshold: 2
+ *   history-stable-scans: 3
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "flap-detection")
+public class FlapDetectionProperties {
+
+    /** Maximum window size, limited by the number of bits in a long. */
+    public static final int MAX_WINDOW_SIZE = Long.SIZE;
+
+    private boolean enabled = true;
+    private int windowSize = 32;
+    private int flappingThreshold = 8;
+    private int recoveryThreshold = 2;
+    private int historyStableScans = 0;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public int getFlappingThreshold() {
+        return flappingThreshold;
+    }
+
+    public void setFlappingThreshold(int flappingThreshold) {
+        this.flappingThreshold = flappingThreshold;
+    }
+
+    public int getRecoveryThreshold() {
+        return recoveryThreshold;
+    }
+
+    public void setRecoveryThreshold(int recoveryThreshold) {
+        this.recoveryThreshold = recoveryThreshold;
+    }
+
+    public int getHistoryStableScans() {
+        return historyStableScans;
+    }
+
+    public void setHistoryStableScans(int historyStableScans) {
+        this.historyStableScans = historyStableScans;
+    }
+}
@@ -0,0 +1,131 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for device status history storage.
+ *
+ * <p>Binds to properties prefixed with "history" in application.yaml. The {@code
+ * device_status_history} table is partitioned by month and network; see {@link
+ * com.matjazt.netmon2.service.HistoryPartitionService}.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * history:
+ *   retention-months: 24
+ *   partition-months-ahead: 2
+ *   maintenance-cron: "0 15 3 * * *"
+ *   rollup-repair-hours: 6
+ *   rollup-repair-interval-minutes: 15
+ *   checkpoint-interval-minutes: 60
+ *   checkpoint-delay-minutes: 30
+ *   archive-after-months: 12
+ *   archive-directory: history-archive
+ * </pre>
+ *
+ * <p>{@code retention-months} is the default for networks that don't set {@code
+ * historyRetentionMonths} in their configuration; 0 keeps history forever.
+ *
+ * <p>Availability rollups are recomputed from history for the last {@code rollup-repair-hours}
+ * every {@code rollup-repair-interval-minutes}, which picks up history rows that were written late
+ * (debounced or flapping devices). The repair window must be longer than the repair interval.
+ *
+ * <p>Every {@code checkpoint-interval-minutes}, the set of online devices of every network is
+ * stored as a checkpoint (see {@link com.matjazt.netmon2.service.NetworkSnapshotService}).
+ * Checkpoints are written {@code checkpoint-delay-minutes} after their time, so history rows that
+ * are written late are already in place.
+ *
+ * <p>With {@code archive-after-months} set, history older than that many full months is moved out
+ * of the database into compressed files in {@code archive-directory} (see {@link
+ * com.matjazt.netmon2.service.HistoryArchiveService}); 0 keeps all history in the database.
+ */
+@Component
+@ConfigurationProperties(prefix = "history")
+public class HistoryProperties {
+
+    private int retentionMonths = 0;
+    private int partitionMonthsAhead = 2;
+    private String maintenanceCron = "0 15 3 * * *";
+    private int rollupRepairHours = 6;
+    private long rollupRepairIntervalMinutes = 15;
+    private int checkpointIntervalMinutes = 60;
+    private int checkpointDelayMinutes = 30;
+    private int archiveAfterMonths = 0;
+    private String archiveDirectory = "history-archive";
+
+    // Getters and setters
+
+    public int getRetentionMonths() {
+        return retentionMonths;
+    }
+
+    public void setRetentionMonths(int retentionMonths) {
+        this.retentionMonths = retentionMonths;
+    }
+
+    public int getPartitionMonthsAhead() {
+        return partitionMonthsAhead;
+    }
+
+    public void setPartitionMonthsAhead(int partitionMonthsAhead) {
+        this.partitionMonthsAhead = partitionMonthsAhead;
+    }
+
+    public String getMaintenanceCron() {
+        return maintenanceCron;
+    }
+
+    public void setMaintenanceCron(String maintenanceCron) {
+        this.maintenanceCron = maintenanceCron;
+    }
+
+    public int getRollupRepairHours() {
+        return rollupRepairHours;
+    }
+
+    public void setRollupRepairHours(int rollupRepairHours) {
+        this.rollupRepairHours = rollupRepairHours;
+    }
+
+    public long getRollupRepairIntervalMinutes() {
+        return rollupRepairIntervalMinutes;
+    }
+
+    public void setRollupRepairIntervalMinutes(long rollupRepairIntervalMinutes) {
+        this.rollupRepairIntervalMinutes = rollupRepairIntervalMinutes;
+    }
+
+    public int getCheckpointIntervalMinutes() {
+        return checkpointIntervalMinutes;
+    }
+
+    public void setCheckpointIntervalMinutes(int checkpointIntervalMinutes) {
+        this.checkpointIntervalMinutes = checkpointIntervalMinutes;
+    }
+
+    public int getCheckpointDelayMinutes() {
+        return checkpointDelayMinutes;
+    }
+
+    public void setCheckpointDelayMinutes(int checkpointDelayMinutes) {
+        this.checkpointDelayMinutes = checkpointDelayMinutes;
+    }
+
+    public int getArchiveAfterMonths() {
+        return archiveAfterMonths;
+    }
+
+    public void setArchiveAfterMonths(int archiveAfterMonths) {
+        this.archiveAfterMonths = archiveAfterMonths;
+    }
+
+    public String getArchiveDirectory() {
+        return archiveDirectory;
+    }
+
+    public void setArchiveDirectory(String archiveDirectory) {
+        this.archiveDirectory = archiveDirectory;
+    }
+}
@@ -10,7 +10,8 @@ import java.util.Properties;
 /**
  * Configuration for JavaMailSender using AlerterProperties.
  *
- * <p>This creates the JavaMailSender bean that AlerterService uses to send emails.
+ * <p>This creates the JavaMailSender bean that {@link
+ * com.matjazt.netmon2.service.notification.EmailNotifier} uses to send alert emails.
  */
 @Configuration
 public class MailConfig {
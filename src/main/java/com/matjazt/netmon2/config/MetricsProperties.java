@@ -0,0 +1,65 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the local scan and node metrics.
+ *
+ * <p>Binds to properties prefixed with "metrics" in application.yaml. Every network and every
+ * pinged node gets a fixed-size file under {@code directory} that keeps its last {@code capacity}
+ * samples (one per scan). Reads are downsampled to at most {@code maxPoints} points.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * metrics:
+ *   enabled: true
+ *   directory: metrics
+ *   capacity: 100000
+ *   max-points: 2000
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "metrics")
+public class MetricsProperties {
+
+    private boolean enabled = true;
+    private String directory = "metrics";
+    private int capacity = 100000;
+    private int maxPoints = 2000;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    public void setMaxPoints(int maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+}
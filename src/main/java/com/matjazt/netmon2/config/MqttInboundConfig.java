@@ -1,6 +1,6 @@
 package com.matjazt.netmon2.config;
 
-import com.matjazt.netmon2.repository.NetworkRepository;
+import com.matjazt.netmon2.service.NetworkRegistry;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,10 +37,10 @@ public class MqttInboundConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttInboundConfig.class);
 
-    private final NetworkRepository networkRepository;
+    private final NetworkRegistry networkRegistry;
 
-    public MqttInboundConfig(NetworkRepository networkRepository) {
-        this.networkRepository = networkRepository;
+    public MqttInboundConfig(NetworkRegistry networkRegistry) {
+        this.networkRegistry = networkRegistry;
     }
 
     /**
@@ -59,8 +59,8 @@ public class MqttInboundConfig {
     /**
      * Creates MQTT inbound message adapter that subscribes to topics.
      *
-     * <p>Queries all networks from database and generates topic subscriptions using the topic
-     * template pattern. Subscribes to all topics and delivers messages to {@code mqttInputChannel}.
+     * <p>Subscribes to the topics of all known networks (see {@link NetworkRegistry#topicFor}) and
+     * delivers messages to {@code mqttInputChannel}.
      *
      * @param props MQTT configuration properties
      * @param factory MQTT client factory
@@ -68,13 +68,12 @@ public class MqttInboundConfig {
      */
     @Bean
     public MessageProducer mqttInbound(MqttProperties props, MqttPahoClientFactory factory) {
-        // Obtain list of networks from database and create topics based on template
-        var networks = networkRepository.findAll();
-        String topicTemplate = props.getTopicTemplate();
+        // the registry resolves received topics to networks, so subscribe with the same topics
+        var networks = networkRegistry.getAll();
         var topicList = new String[networks.size()];
         int index = 0;
         for (var network : networks) {
-            String topic = topicTemplate.replace("{networkName}", network.getName());
+            String topic = network.topic();
             topicList[index++] = topic;
             logger.info("Subscribing to topic: {}", topic);
         }
@@ -83,7 +82,10 @@ public class MqttInboundConfig {
                 new MqttPahoMessageDrivenChannelAdapter(props.getClientId(), factory, topicList);
 
         adapter.setCompletionTimeout(props.getCompletionTimeout());
-        adapter.setConverter(new DefaultPahoMessageConverter());
+        // raw payloads, so their size is known without encoding them again
+        var converter = new DefaultPahoMessageConverter();
+        converter.setPayloadAsBytes(true);
+        adapter.setConverter(converter);
         adapter.setQos(props.getQos());
         adapter.setOutputChannel(mqttInputChannel());
 
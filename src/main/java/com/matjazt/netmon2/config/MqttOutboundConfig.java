@@ -0,0 +1,44 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
+import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
+
+/**
+ * Configuration for MQTT outbound messages (alert notifications).
+ *
+ * <p>Creates the handler used by {@link com.matjazt.netmon2.service.notification.MqttNotifier}. It
+ * shares the broker connection options of {@link MqttConfig}, but uses its own client ID ({@code
+ * <client-id>-alerts}) so it doesn't clash with the inbound subscriber.
+ *
+ * <p>The handler publishes asynchronously, i.e. it doesn't wait for the broker to acknowledge the
+ * message.
+ *
+ * <p>Only active when {@code notifier.mqtt.enabled} is true.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "notifier.mqtt", name = "enabled", havingValue = "true")
+public class MqttOutboundConfig {
+
+    /**
+     * Creates the MQTT handler that publishes alert notifications.
+     *
+     * @param mqttProperties MQTT connection properties
+     * @param notifierProperties notifier properties
+     * @param factory MQTT client factory
+     * @return outbound MQTT handler
+     */
+    @Bean
+    public MqttPahoMessageHandler mqttAlertOutbound(
+            MqttProperties mqttProperties,
+            NotifierProperties notifierProperties,
+            MqttPahoClientFactory factory) {
+        var handler = new MqttPahoMessageHandler(mqttProperties.getClientId() + "-alerts", factory);
+        handler.setAsync(true);
+        handler.setDefaultQos(notifierProperties.getMqtt().getQos());
+        handler.setDefaultRetained(notifierProperties.getMqtt().isRetained());
+        return handler;
+    }
+}
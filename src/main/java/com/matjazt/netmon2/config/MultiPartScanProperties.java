@@ -0,0 +1,57 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for scans that a scanner splits into several MQTT messages.
+ *
+ * <p>Binds to properties prefixed with "multi-part-scan" in application.yaml. The devices of every
+ * part are processed as soon as it arrives; devices are only declared offline once all parts of the
+ * scan have arrived, or {@code timeout-seconds} after its first part (see {@link
+ * com.matjazt.netmon2.service.MqttService}). Scans with more than {@code max-parts} parts are
+ * rejected.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * multi-part-scan:
+ *   timeout-seconds: 60
+ *   max-parts: 100
+ *   check-interval-seconds: 10
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "multi-part-scan")
+public class MultiPartScanProperties {
+
+    private int timeoutSeconds = 60;
+    private int maxParts = 100;
+    private int checkIntervalSeconds = 10;
+
+    // Getters and setters
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public int getMaxParts() {
+        return maxParts;
+    }
+
+    public void setMaxParts(int maxParts) {
+        this.maxParts = maxParts;
+    }
+
+    public int getCheckIntervalSeconds() {
+        return checkIntervalSeconds;
+    }
+
+    public void setCheckIntervalSeconds(int checkIntervalSeconds) {
+        this.checkIntervalSeconds = checkIntervalSeconds;
+    }
+}
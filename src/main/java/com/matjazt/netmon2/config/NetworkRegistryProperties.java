@@ -0,0 +1,37 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the in-memory network registry.
+ *
+ * <p>Binds to properties prefixed with "network-registry" in application.yaml. See {@link
+ * com.matjazt.netmon2.service.NetworkRegistry}.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * network-registry:
+ *   refresh-interval-seconds: 60
+ * </pre>
+ *
+ * <p>Networks created by this instance are picked up immediately; the periodic refresh picks up
+ * networks that were edited directly in the database or created by another instance.
+ */
+@Component
+@ConfigurationProperties(prefix = "network-registry")
+public class NetworkRegistryProperties {
+
+    private int refreshIntervalSeconds = 60;
+
+    // Getters and setters
+
+    public int getRefreshIntervalSeconds() {
+        return refreshIntervalSeconds;
+    }
+
+    public void setRefreshIntervalSeconds(int refreshIntervalSeconds) {
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+    }
+}
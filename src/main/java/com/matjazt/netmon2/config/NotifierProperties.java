@@ -0,0 +1,188 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for additional alert notification channels.
+ *
+ * <p>Binds to properties prefixed with "notifier" in application.yaml. Email is configured in
+ * {@link AlerterProperties}; the channels configured here are delivered asynchronously, after the
+ * alert has been committed, so a slow webhook or broker never holds up alert processing.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * notifier:
+ *   webhook:
+ *     request-timeout-seconds: 10
+ *     endpoints:
+ *       - url: https://chat.example.com/hooks/abc123
+ *         max-in-flight: 2
+ *         batch-size: 20
+ *         linger-millis: 500
+ *         queue-capacity: 1000
+ *   mqtt:
+ *     enabled: true
+ *     topic-template: netmon2/alerts/{networkName}
+ *     qos: 1
+ *     retained: false
+ *     queue-capacity: 1000
+ * </pre>
+ *
+ * <p>Each webhook endpoint gets its own queue. Notifications are posted in batches of up to {@code
+ * batch-size}, waiting at most {@code linger-millis} for a batch to fill up, and never more than
+ * {@code max-in-flight} requests are outstanding per endpoint. When the queue is full, new
+ * notifications for that endpoint are dropped (and counted).
+ */
+@Component
+@ConfigurationProperties(prefix = "notifier")
+public class NotifierProperties {
+
+    private Webhook webhook = new Webhook();
+    private Mqtt mqtt = new Mqtt();
+
+    // Getters and setters
+
+    public Webhook getWebhook() {
+        return webhook;
+    }
+
+    public void setWebhook(Webhook webhook) {
+        this.webhook = webhook;
+    }
+
+    public Mqtt getMqtt() {
+        return mqtt;
+    }
+
+    public void setMqtt(Mqtt mqtt) {
+        this.mqtt = mqtt;
+    }
+
+    /** Webhook channel settings. */
+    public static class Webhook {
+
+        private int requestTimeoutSeconds = 10;
+        private List<Endpoint> endpoints = new ArrayList<>();
+
+        public int getRequestTimeoutSeconds() {
+            return requestTimeoutSeconds;
+        }
+
+        public void setRequestTimeoutSeconds(int requestTimeoutSeconds) {
+            this.requestTimeoutSeconds = requestTimeoutSeconds;
+        }
+
+        public List<Endpoint> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<Endpoint> endpoints) {
+            this.endpoints = endpoints;
+        }
+    }
+
+    /** A single webhook endpoint. */
+    public static class Endpoint {
+
+        private String url;
+        private int maxInFlight = 2;
+        private int batchSize = 20;
+        private long lingerMillis = 500;
+        private int queueCapacity = 1000;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getLingerMillis() {
+            return lingerMillis;
+        }
+
+        public void setLingerMillis(long lingerMillis) {
+            this.lingerMillis = lingerMillis;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    /** MQTT channel settings. Uses the broker connection configured in {@link MqttProperties}. */
+    public static class Mqtt {
+
+        private boolean enabled = false;
+        private String topicTemplate = "netmon2/alerts/{networkName}";
+        private int qos = 1;
+        private boolean retained = false;
+        private int queueCapacity = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTopicTemplate() {
+            return topicTemplate;
+        }
+
+        public void setTopicTemplate(String topicTemplate) {
+            this.topicTemplate = topicTemplate;
+        }
+
+        public int getQos() {
+            return qos;
+        }
+
+        public void setQos(int qos) {
+            this.qos = qos;
+        }
+
+        public boolean isRetained() {
+            return retained;
+        }
+
+        public void setRetained(boolean retained) {
+            this.retained = retained;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
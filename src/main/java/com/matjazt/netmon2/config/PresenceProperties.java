@@ -0,0 +1,67 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the per-scan presence bitmaps.
+ *
+ * <p>Binds to properties prefixed with "presence" in application.yaml. Every day is divided into
+ * slots of {@code slotSeconds}; a device gets one bit per slot, set when it was in a scan that
+ * arrived during the slot. Bits are collected in memory and written every {@code
+ * flushIntervalSeconds}; bitmaps older than {@code retentionDays} are deleted by the nightly
+ * maintenance (0 keeps them forever).
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * presence:
+ *   enabled: true
+ *   slot-seconds: 60
+ *   flush-interval-seconds: 60
+ *   retention-days: 400
+ * </pre>
+ */
+@Component
+@ConfigurationProperties(prefix = "presence")
+public class PresenceProperties {
+
+    private boolean enabled = true;
+    private int slotSeconds = 60;
+    private int flushIntervalSeconds = 60;
+    private int retentionDays = 400;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getSlotSeconds() {
+        return slotSeconds;
+    }
+
+    public void setSlotSeconds(int slotSeconds) {
+        this.slotSeconds = slotSeconds;
+    }
+
+    public int getFlushIntervalSeconds() {
+        return flushIntervalSeconds;
+    }
+
+    public void setFlushIntervalSeconds(int flushIntervalSeconds) {
+        this.flushIntervalSeconds = flushIntervalSeconds;
+    }
+
+    public int getRetentionDays() {
+        return retentionDays;
+    }
+
+    public void setRetentionDays(int retentionDays) {
+        this.retentionDays = retentionDays;
+    }
+}
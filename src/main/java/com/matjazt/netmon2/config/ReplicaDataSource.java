@@ -0,0 +1,105 @@
+package com.matjazt.netmon2.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * Read replica that falls back to the primary database while it lags behind or can't be reached.
+ *
+ * <p>{@link #checkLag()} is called periodically (see {@code TimingProxy#checkReplicaLag()}) and
+ * asks the replica how far behind the primary it is. Replay lag is the time since the last replayed
+ * transaction, but only while the replica has received WAL it hasn't replayed yet; a replica that
+ * is caught up with an idle primary has no lag. If the lag exceeds {@code replica.max-lag-seconds}
+ * or the replica fails to hand out a connection, connections come from the primary until the next
+ * check finds the replica healthy again.
+ */
+public class ReplicaDataSource extends DelegatingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+    private static final String LAG_QUERY =
+            "SELECT CASE WHEN NOT pg_is_in_recovery()"
+                    + " OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+                    + " ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    private final DataSource primary;
+    private final int maxLagSeconds;
+
+    private volatile boolean available;
+    private volatile Double lagSeconds;
+
+    public ReplicaDataSource(DataSource replica, DataSource primary, int maxLagSeconds) {
+        super(replica);
+        this.primary = primary;
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (available) {
+            try {
+                return super.getConnection();
+            } catch (SQLException e) {
+                setAvailable(false, "failed to get a connection: " + e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /** Measures the replication lag and decides whether reads may use the replica. */
+    public void checkLag() {
+        Double lag;
+        try (var connection = obtainTargetDataSource().getConnection();
+                var statement = connection.createStatement();
+                var resultSet = statement.executeQuery(LAG_QUERY)) {
+            resultSet.next();
+            double value = resultSet.getDouble(1);
+            // null: the replica received WAL but hasn't replayed any transaction since it started
+            lag = resultSet.wasNull() ? null : value;
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            lagSeconds = null;
+            setAvailable(false, "unreachable: " + e.getMessage());
+            return;
+        }
+
+        lagSeconds = lag;
+        if (lag == null) {
+            setAvailable(false, "replication lag unknown");
+        } else if (lag > maxLagSeconds) {
+            setAvailable(false, String.format("lagging %.1f s behind", lag));
+        } else {
+            setAvailable(true, String.format("lagging %.1f s behind", lag));
+        }
+    }
+
+    /** Returns true if read-only transactions currently use the replica. */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /** Returns the lag measured by the last check, or null if it couldn't be measured. */
+    public Double getLagSeconds() {
+        return lagSeconds;
+    }
+
+    private synchronized void setAvailable(boolean available, String reason) {
+        if (this.available == available) {
+            return;
+        }
+        this.available = available;
+        if (available) {
+            logger.info("Read replica is in use ({})", reason);
+        } else {
+            logger.warn("Read replica is not used, reads go to the primary ({})", reason);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.matjazt.netmon2.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Read replica for read-only transactions.
+ *
+ * <p>Active only with {@code replica.enabled}. The data source used by JPA and {@code JdbcTemplate}
+ * then becomes a {@link LazyConnectionDataSourceProxy} (see {@link DataSourceConfig}): it fetches
+ * the physical connection only when the first statement runs, and by then the transaction manager
+ * has marked the connection read-only for {@code Transactional(readOnly = true)} methods, so those
+ * get their connection from the replica pool.
+ * Everything else, including the MQTT ingestion and alerting, uses the pools of the primary
+ * database, so dashboard queries no longer compete with ingestion for its connections.
+ *
+ * <p>The replica pool is wrapped in a {@link ReplicaDataSource}, which sends reads back to the
+ * primary while the replica lags more than {@code replica.max-lag-seconds} behind.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "replica", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaDataSourceConfig.class);
+
+    /** Replica pool, configured by {@code replica}. */
+    @Bean
+    public HikariDataSource replicaPoolDataSource(
+            ReplicaProperties properties,
+            DataSourceProperties dataSourceProperties,
+            @Qualifier("apiDataSource") HikariDataSource apiDataSource) {
+        if (properties.getUrl() == null || properties.getUrl().isBlank()) {
+            throw new IllegalArgumentException("replica.url must be set when replica is enabled");
+        }
+
+        var pool = new HikariDataSource();
+        pool.setPoolName("replica");
+        pool.setJdbcUrl(properties.getUrl());
+        pool.setUsername(
+                properties.getUsername() != null
+                        ? properties.getUsername()
+                        : dataSourceProperties.determineUsername());
+        pool.setPassword(
+                properties.getPassword() != null
+                        ? properties.getPassword()
+                        : dataSourceProperties.determinePassword());
+        pool.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+        pool.setMinimumIdle(properties.getMinimumIdle());
+        // same defaults as the primary, otherwise the proxy would have to reset them every time
+        pool.setAutoCommit(apiDataSource.isAutoCommit());
+        pool.setReadOnly(true);
+        return pool;
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(
+            ReplicaProperties properties,
+            @Qualifier("replicaPoolDataSource") HikariDataSource replicaPoolDataSource,
+            @Qualifier("workloadDataSource") WorkloadRoutingDataSource workloadDataSource) {
+        var replica =
+                new ReplicaDataSource(
+                        replicaPoolDataSource, workloadDataSource, properties.getMaxLagSeconds());
+        replica.checkLag();
+        if (!replica.isAvailable()) {
+            logger.warn("Read replica is not usable yet, reads go to the primary for now");
+        }
+        return replica;
+    }
+}
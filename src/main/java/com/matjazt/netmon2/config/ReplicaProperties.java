@@ -0,0 +1,108 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the read replica.
+ *
+ * <p>Binds to properties prefixed with "replica" in application.yaml. See {@link
+ * ReplicaDataSourceConfig}.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * replica:
+ *   enabled: true
+ *   url: jdbc:postgresql://replica-host:5432/netmon2
+ *   username: netmon2_ro
+ *   password: secret
+ *   maximum-pool-size: 10
+ *   minimum-idle: 2
+ *   max-lag-seconds: 30
+ *   lag-check-interval-seconds: 10
+ * </pre>
+ *
+ * <p>When enabled, read-only transactions ({@code @Transactional(readOnly = true)}) use the
+ * replica, everything else uses the primary database ({@code spring.datasource}). Username and
+ * password default to the ones of the primary database.
+ */
+@Component
+@ConfigurationProperties(prefix = "replica")
+public class ReplicaProperties {
+
+    private boolean enabled = false;
+    private String url;
+    private String username;
+    private String password;
+    private int maximumPoolSize = 10;
+    private int minimumIdle = 2;
+    private int maxLagSeconds = 30;
+    private int lagCheckIntervalSeconds = 10;
+
+    // Getters and setters
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public void setMaximumPoolSize(int maximumPoolSize) {
+        this.maximumPoolSize = maximumPoolSize;
+    }
+
+    public int getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    public void setMinimumIdle(int minimumIdle) {
+        this.minimumIdle = minimumIdle;
+    }
+
+    public int getMaxLagSeconds() {
+        return maxLagSeconds;
+    }
+
+    public void setMaxLagSeconds(int maxLagSeconds) {
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    public int getLagCheckIntervalSeconds() {
+        return lagCheckIntervalSeconds;
+    }
+
+    public void setLagCheckIntervalSeconds(int lagCheckIntervalSeconds) {
+        this.lagCheckIntervalSeconds = lagCheckIntervalSeconds;
+    }
+}
@@ -0,0 +1,92 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for tracking the interval between scans of a network.
+ *
+ * <p>Binds to properties prefixed with "scan-interval" in application.yaml. For every network, the
+ * exponential moving average and variance of the gaps between scans are maintained (see {@link
+ * com.matjazt.netmon2.service.ScanIntervalTracker}); {@code smoothing} is the weight of the newest
+ * gap.
+ *
+ * <p>Example configuration:
+ *
+ * <pre>
+ * scan-interval:
+ *   adaptive-alerting: true
+ *   smoothing: 0.125
+ *   min-samples: 5
+ *   missed-scans-before-down: 2
+ *   jitter-factor: 4
+ *   min-margin-seconds: 10
+ * </pre>
+ *
+ * <p>With {@code adaptive-alerting}, a network is considered down once its scanner has been silent
+ * for {@code missed-scans-before-down} average intervals plus {@code jitter-factor} standard
+ * deviations (at least {@code min-margin-seconds}), e.g. after about two minutes for a scanner that
+ * reports every minute. The network's {@code alerting_delay} remains the upper limit, and is used
+ * as is until {@code min-samples} gaps have been seen.
+ */
+@Component
+@ConfigurationProperties(prefix = "scan-interval")
+public class ScanIntervalProperties {
+
+    private boolean adaptiveAlerting = true;
+    private double smoothing = 0.125;
+    private int minSamples = 5;
+    private int missedScansBeforeDown = 2;
+    private double jitterFactor = 4;
+    private int minMarginSeconds = 10;
+
+    // Getters and setters
+
+    public boolean isAdaptiveAlerting() {
+        return adaptiveAlerting;
+    }
+
+    public void setAdaptiveAlerting(boolean adaptiveAlerting) {
+        this.adaptiveAlerting = adaptiveAlerting;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public int getMissedScansBeforeDown() {
+        return missedScansBeforeDown;
+    }
+
+    public void setMissedScansBeforeDown(int missedScansBeforeDown) {
+        this.missedScansBeforeDown = missedScansBeforeDown;
+    }
+
+    public double getJitterFactor() {
+        return jitterFactor;
+    }
+
+    public void setJitterFactor(double jitterFactor) {
+        this.jitterFactor = jitterFactor;
+    }
+
+    public int getMinMarginSeconds() {
+        return minMarginSeconds;
+    }
+
+    public void setMinMarginSeconds(int minMarginSeconds) {
+        this.minMarginSeconds = minMarginSeconds;
+    }
+}
@@ -0,0 +1,43 @@
+package com.matjazt.netmon2.config;
+
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Configuration of the schedulers that run background tasks.
+ *
+ * <p>All {@code @Scheduled} tasks and the scan deadlines of {@code ScanIntervalTracker} share
+ * {@code taskScheduler}, sized with {@code spring.task.scheduling.pool.size}. The cluster heartbeat
+ * runs on a thread of its own ({@link #CLUSTER_HEARTBEAT_SCHEDULER}): if it shared the pool, a long
+ * maintenance job (archiving, partition DDL, rollup repair) could delay it past {@code
+ * cluster.lease-timeout-seconds}, and the other nodes would drop a healthy node.
+ */
+@Configuration
+public class SchedulingConfig {
+
+    /** Name of the scheduler bean that runs only the cluster heartbeat. */
+    public static final String CLUSTER_HEARTBEAT_SCHEDULER = "clusterHeartbeatScheduler";
+
+    /**
+     * Shared scheduler, configured from {@code spring.task.scheduling}. Defining it here (instead
+     * of relying on Spring Boot's default) keeps it the one that {@code @Scheduled} tasks use, next
+     * to the heartbeat scheduler.
+     */
+    @Bean
+    @Primary
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(name = CLUSTER_HEARTBEAT_SCHEDULER)
+    public ThreadPoolTaskScheduler clusterHeartbeatScheduler() {
+        var scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("cluster-heartbeat-");
+        scheduler.setDaemon(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,58 @@
+package com.matjazt.netmon2.config;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Kinds of work that get their own database connection pool (see {@link DataSourceConfig}).
+ *
+ * <p>The workload of the current thread decides which pool a new connection comes from. Entry
+ * points set it with {@link #run(Workload, Runnable)}; code that doesn't set it (REST requests,
+ * maintenance jobs) runs as {@link #API}.
+ */
+public enum Workload {
+    /** MQTT scan processing. */
+    INGESTION,
+    /** Alert sweeps, reminders and cluster coordination. */
+    ALERTING,
+    /** REST API and everything else. */
+    API;
+
+    private static final ThreadLocal<Workload> CURRENT = new ThreadLocal<>();
+
+    /** Returns the workload of the current thread. */
+    public static Workload current() {
+        var workload = CURRENT.get();
+        return workload != null ? workload : API;
+    }
+
+    /** Runs a task as the given workload, restoring the previous workload afterwards. */
+    public static void run(Workload workload, Runnable task) {
+        call(
+                workload,
+                () -> {
+                    task.run();
+                    return null;
+                });
+    }
+
+    /** Same as {@link #run}, for a task with a result. */
+    public static <T> T call(Workload workload, Supplier<T> task) {
+        var previous = CURRENT.get();
+        CURRENT.set(workload);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /** Name used for pool names and metric tags. */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
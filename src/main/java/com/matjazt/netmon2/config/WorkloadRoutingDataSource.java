@@ -0,0 +1,197 @@
+package com.matjazt.netmon2.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Hands out connections from the pool of the current {@link Workload}.
+ *
+ * <p>With a {@code connection-pools.max-total-connections} cap, every connection also needs a
+ * permit from a fair semaphore shared by all pools; the permit is returned when the connection is
+ * closed. Waiting workloads get permits in arrival order, so while the database is the bottleneck
+ * each of them keeps making progress. A workload waits for a permit at most as long as its pool's
+ * connection timeout.
+ *
+ * <p>Meters, all tagged with {@code workload}:
+ *
+ * <ul>
+ *   <li>{@code netmon2.db.connections.active} - connections in use
+ *   <li>{@code netmon2.db.connections.pending} - threads waiting for a connection of the pool
+ *   <li>{@code netmon2.db.connections.max} - pool size
+ *   <li>{@code netmon2.db.connections.permit.wait} - time spent waiting for a permit (only with a
+ *       cap)
+ * </ul>
+ *
+ * <p>Hikari's own {@code hikaricp.*} meters are available as well, tagged with the workload as
+ * {@code pool}.
+ */
+public class WorkloadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final Map<Workload, HikariDataSource> pools;
+    private final Semaphore permits;
+    private final Map<Workload, Timer> permitWait = new EnumMap<>(Workload.class);
+
+    public WorkloadRoutingDataSource(
+            Map<Workload, HikariDataSource> pools,
+            int maxTotalConnections,
+            MeterRegistry meterRegistry) {
+        this.pools = new EnumMap<>(pools);
+        this.permits = maxTotalConnections > 0 ? new Semaphore(maxTotalConnections, true) : null;
+
+        setTargetDataSources(new HashMap<>(pools));
+        setDefaultTargetDataSource(pools.get(Workload.API));
+        afterPropertiesSet();
+
+        for (var entry : pools.entrySet()) {
+            var tag = entry.getKey().tag();
+            var pool = entry.getValue();
+            gauge(
+                    meterRegistry,
+                    "netmon2.db.connections.active",
+                    "Connections in use",
+                    tag,
+                    pool,
+                    p ->
+                            p.getHikariPoolMXBean() != null
+                                    ? p.getHikariPoolMXBean().getActiveConnections()
+                                    : 0);
+            gauge(
+                    meterRegistry,
+                    "netmon2.db.connections.pending",
+                    "Threads waiting for a connection",
+                    tag,
+                    pool,
+                    p ->
+                            p.getHikariPoolMXBean() != null
+                                    ? p.getHikariPoolMXBean().getThreadsAwaitingConnection()
+                                    : 0);
+            gauge(
+                    meterRegistry,
+                    "netmon2.db.connections.max",
+                    "Connection pool size",
+                    tag,
+                    pool,
+                    HikariDataSource::getMaximumPoolSize);
+            if (permits != null) {
+                permitWait.put(
+                        entry.getKey(),
+                        Timer.builder("netmon2.db.connections.permit.wait")
+                                .description("Time spent waiting for a database connection permit")
+                                .tag("workload", tag)
+                                .register(meterRegistry));
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return Workload.current();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (permits == null) {
+            return super.getConnection();
+        }
+        acquirePermit(Workload.current());
+        try {
+            return releasingPermitOnClose(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (permits == null) {
+            return super.getConnection(username, password);
+        }
+        acquirePermit(Workload.current());
+        try {
+            return releasingPermitOnClose(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquirePermit(Workload workload) throws SQLException {
+        var pool = pools.get(workload);
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(pool.getConnectionTimeout(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException(
+                    "Interrupted while waiting for a database connection", e);
+        }
+        permitWait.get(workload).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            throw new SQLTransientConnectionException(
+                    "Timed out waiting for a database connection ("
+                            + workload.tag()
+                            + "), connection-pools.max-total-connections reached");
+        }
+    }
+
+    private Connection releasingPermitOnClose(Connection connection) {
+        var released = new AtomicBoolean();
+        return (Connection)
+                Proxy.newProxyInstance(
+                        Connection.class.getClassLoader(),
+                        new Class<?>[] {Connection.class},
+                        (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "equals":
+                                    return proxy == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                case "close":
+                                    if (released.compareAndSet(false, true)) {
+                                        permits.release();
+                                    }
+                                    break;
+                                default:
+                                    break;
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                        });
+    }
+
+    private static void gauge(
+            MeterRegistry registry,
+            String name,
+            String description,
+            String workload,
+            HikariDataSource pool,
+            ToDoubleFunction<HikariDataSource> value) {
+        Gauge.builder(name, pool, value)
+                .description(description)
+                .tag("workload", workload)
+                .register(registry);
+    }
+}
@@ -0,0 +1,54 @@
+package com.matjazt.netmon2.controller;
+
+import com.matjazt.netmon2.dto.response.CacheStatisticsResponseDto;
+import com.matjazt.netmon2.service.EntityCacheService;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** REST Controller for inspecting and evicting the second-level entity cache. */
+@RestController
+@RequestMapping("/api/cache")
+@PreAuthorize("hasRole('admin')")
+public class CacheController {
+
+    private final EntityCacheService entityCacheService;
+
+    public CacheController(EntityCacheService entityCacheService) {
+        this.entityCacheService = entityCacheService;
+    }
+
+    /**
+     * EXAMPLE: GET /api/cache
+     *
+     * <p>Hits, misses, puts and current size of every cache region.
+     */
+    @GetMapping
+    public CacheStatisticsResponseDto getStatistics() {
+        return entityCacheService.getStatistics();
+    }
+
+    /**
+     * EXAMPLE: DELETE /api/cache?region=reference
+     *
+     * <p>Evict a cache region (all regions without {@code region}), e.g. after editing lookup
+     * tables directly in the database. Returns 204 No Content.
+     */
+    @DeleteMapping
+    public ResponseEntity<Void> evict(@RequestParam(required = false) String region) {
+        entityCacheService.evict(region);
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Unknown regions are reported as 400 Bad Request instead of 500. */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+}
@@ -1,18 +1,30 @@
 package com.matjazt.netmon2.controller;
 
 import com.matjazt.netmon2.dto.DeviceDto;
+import com.matjazt.netmon2.dto.response.AvailabilityRollupResponseDto;
+import com.matjazt.netmon2.dto.response.CursorPageResponseDto;
+import com.matjazt.netmon2.dto.response.DeviceImportResponseDto;
+import com.matjazt.netmon2.dto.response.DevicePresenceResponseDto;
 import com.matjazt.netmon2.dto.response.DeviceResponseDto;
+import com.matjazt.netmon2.dto.response.FlappingDeviceResponseDto;
+import com.matjazt.netmon2.dto.response.NetworkSnapshotResponseDto;
+import com.matjazt.netmon2.dto.response.PresenceOccupancyResponseDto;
+import com.matjazt.netmon2.dto.response.PresenceOverlapResponseDto;
+import com.matjazt.netmon2.dto.response.UptimeResponseDto;
 import com.matjazt.netmon2.entity.DeviceEntity;
 import com.matjazt.netmon2.entity.DeviceOperationMode;
 import com.matjazt.netmon2.entity.DeviceStatusHistoryEntity;
 import com.matjazt.netmon2.mapper.DeviceApiMapper;
+import com.matjazt.netmon2.service.AvailabilityRollupService;
+import com.matjazt.netmon2.service.DeviceImportService;
 import com.matjazt.netmon2.service.DeviceService;
 
-import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -22,6 +34,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -68,15 +82,20 @@ public class DeviceController {
 
     private final DeviceService deviceService;
     private final DeviceApiMapper deviceApiMapper;
+    private final DeviceImportService deviceImportService;
 
     /**
      * Constructor injection of service layer.
      *
      * <p>Service contains business logic and uses repositories.
      */
-    public DeviceController(DeviceService deviceService, DeviceApiMapper deviceApiMapper) {
+    public DeviceController(
+            DeviceService deviceService,
+            DeviceApiMapper deviceApiMapper,
+            DeviceImportService deviceImportService) {
         this.deviceService = deviceService;
         this.deviceApiMapper = deviceApiMapper;
+        this.deviceImportService = deviceImportService;
     }
 
     // ========== GET ENDPOINTS (retrieve data) ==========
@@ -93,20 +112,24 @@ public class DeviceController {
     }
 
     /**
-     * EXAMPLE: GET /api/devices/paginated?page=0&size=20
+     * EXAMPLE: GET /api/devices/paginated?size=20&cursor=NDI6cm91dGVy&includeTotal=false
      *
-     * <p>Get devices with pagination
+     * <p>Get devices ordered by name, one page at a time
      *
      * <p>@RequestParam extracts query parameters from URL
      *
-     * <p>defaultValue provides fallback if parameter is missing
+     * <p>defaultValue provides fallback if parameter is missing; without a cursor, the first page
+     * is returned, and the response's nextCursor leads to the next one
      */
     @GetMapping("/paginated")
-    public Page<DeviceResponseDto> getDevicesPaginated(
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
-        Page<DeviceDto> dtoPage = deviceService.getDeviceSummariesPaginated(null, page, size);
-        return deviceApiMapper.toResponsePage(dtoPage);
+    public CursorPageResponseDto<DeviceResponseDto> getDevicesPaginated(
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long networkId,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        return deviceService
+                .getDeviceSummariesPage(networkId, size, cursor, includeTotal)
+                .map(deviceApiMapper::toResponse);
     }
 
     /**
@@ -181,16 +204,183 @@ public class DeviceController {
     }
 
     /**
-     * EXAMPLE: GET /api/devices/5/history?limit=50
+     * EXAMPLE: GET /api/devices/5/history?limit=50&cursor=...
      *
-     * <p>Get device status history
+     * <p>Get device status history, newest first, one page at a time
      *
-     * <p>Combines path variable and query parameter
+     * <p>Combines path variable and query parameters
      */
     @GetMapping("/{id}/history")
-    public List<DeviceStatusHistoryEntity> getDeviceHistory(
-            @PathVariable Long id, @RequestParam(defaultValue = "50") int limit) {
-        return deviceService.getDeviceHistory(id, limit);
+    public CursorPageResponseDto<DeviceStatusHistoryEntity> getDeviceHistory(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        return deviceService.getDeviceHistory(id, limit, cursor, includeTotal);
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/5/availability?granularity=DAY&from=2025-01-01T00:00:00
+     *
+     * <p>Get hourly (default) or daily availability of a device: online seconds, number of status
+     * changes and first/last seen per bucket. Times are UTC; {@code from} defaults to 24 hours
+     * (hourly) or 30 days (daily) before {@code to}, which defaults to now.
+     */
+    @GetMapping("/{id}/availability")
+    public List<AvailabilityRollupResponseDto> getDeviceAvailability(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "HOUR") AvailabilityRollupService.Granularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to) {
+        return deviceService.getDeviceAvailability(id, granularity, from, to);
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/5/uptime?from=2025-01-01T00:00:00&to=2025-02-01T00:00:00
+     *
+     * <p>Get availability, MTBF and MTTR of a device, computed from its exact online and offline
+     * intervals within the window. Times are UTC; {@code to} defaults to now and {@code from} to 7
+     * days before it. Returns 404 if the device has no history.
+     */
+    @GetMapping("/{id}/uptime")
+    public ResponseEntity<UptimeResponseDto> getDeviceUptime(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to) {
+        return deviceService
+                .getDeviceUptime(id, from, to)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/network/5/uptime?from=2025-01-01T00:00:00
+     *
+     * <p>Get the uptime of every device on a network (same parameters as the device uptime).
+     */
+    @GetMapping("/network/{networkId}/uptime")
+    public List<UptimeResponseDto> getNetworkUptime(
+            @PathVariable Long networkId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to) {
+        return deviceService.getNetworkUptime(networkId, from, to);
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/network/5/online-during?from=2025-01-01T02:00&to=2025-01-01T03:00
+     *
+     * <p>Get devices that were online at any time within the window (UTC)
+     */
+    @GetMapping("/network/{networkId}/online-during")
+    public List<DeviceResponseDto> getDevicesOnlineDuring(
+            @PathVariable Long networkId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return deviceApiMapper.toResponses(
+                deviceService.findDevicesOnlineDuring(networkId, from, to));
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/network/5/snapshot?at=2025-01-01T02:30:00
+     *
+     * <p>Get the IDs of the devices that were online on a network at the given time (UTC, defaults
+     * to now)
+     */
+    @GetMapping("/network/{networkId}/snapshot")
+    public NetworkSnapshotResponseDto getNetworkSnapshot(
+            @PathVariable Long networkId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime at) {
+        return deviceService.getNetworkSnapshot(networkId, at);
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/5/overlap/7?from=2025-01-01T00:00:00&to=2025-01-02T00:00:00
+     *
+     * <p>Get the periods within the window (UTC) during which both devices were online
+     */
+    @GetMapping("/{id}/overlap/{otherId}")
+    public PresenceOverlapResponseDto getPresenceOverlap(
+            @PathVariable Long id,
+            @PathVariable Long otherId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return deviceService.getPresenceOverlap(id, otherId, from, to);
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/5/presence?from=2025-01-01T00:00:00&to=2025-01-02T00:00:00
+     *
+     * <p>Get the share of its network's scans a device was in, and the first and last time it was
+     * seen, at scan slot resolution. Times are UTC; {@code to} defaults to now and {@code from} to
+     * 24 hours before it. Returns 404 if the device doesn't exist.
+     */
+    @GetMapping("/{id}/presence")
+    public ResponseEntity<DevicePresenceResponseDto> getDevicePresence(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to) {
+        return deviceService
+                .getDevicePresence(id, from, to)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/network/5/presence?from=2025-01-01T00:00:00
+     *
+     * <p>Get the presence of every device that was in at least one scan of the network within the
+     * window (same parameters as the device presence).
+     */
+    @GetMapping("/network/{networkId}/presence")
+    public List<DevicePresenceResponseDto> getNetworkPresence(
+            @PathVariable Long networkId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to) {
+        return deviceService.getNetworkPresence(networkId, from, to);
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/network/5/occupancy?from=2025-01-01T00:00:00
+     *
+     * <p>Get the number of devices in the network's scans per hour: different devices seen, and the
+     * average and highest number per scan (same parameters as the device presence).
+     */
+    @GetMapping("/network/{networkId}/occupancy")
+    public List<PresenceOccupancyResponseDto> getNetworkOccupancy(
+            @PathVariable Long networkId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to) {
+        return deviceService.getNetworkOccupancy(networkId, from, to);
+    }
+
+    /**
+     * EXAMPLE: GET /api/devices/network/5/availability?granularity=HOUR
+     *
+     * <p>Get availability of a whole network; online seconds are summed over all devices. Same
+     * parameters as the device availability.
+     */
+    @GetMapping("/network/{networkId}/availability")
+    public List<AvailabilityRollupResponseDto> getNetworkAvailability(
+            @PathVariable Long networkId,
+            @RequestParam(defaultValue = "HOUR") AvailabilityRollupService.Granularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to) {
+        return deviceService.getNetworkAvailability(networkId, granularity, from, to);
     }
 
     /**
@@ -203,6 +393,17 @@ public class DeviceController {
         return deviceService.findDevicesNeedingAlerts();
     }
 
+    /**
+     * EXAMPLE: GET /api/devices/flapping
+     *
+     * <p>Get devices that keep toggling between online and offline. Alerts for these devices are
+     * suppressed while they flap.
+     */
+    @GetMapping("/flapping")
+    public List<FlappingDeviceResponseDto> getFlappingDevices() {
+        return deviceService.findFlappingDevices();
+    }
+
     /**
      * EXAMPLE: GET /api/devices/exists?networkId=5&macAddress=AA:BB:CC:DD:EE:FF
      *
@@ -265,6 +466,26 @@ public class DeviceController {
                 request.networkId, request.macAddress, request.ipAddress, request.online);
     }
 
+    /**
+     * EXAMPLE: POST /api/devices/import?networkId=5 (Content-Type: text/csv)
+     *
+     * <p>Bulk import of device names and operation modes. Request body:
+     *
+     * <pre>{@code
+     * mac_address,name,operation_mode
+     * AA:BB:CC:DD:EE:FF,Printer,ALWAYS_ON
+     * aa-bb-cc-dd-ee-01,Laptop,
+     * }</pre>
+     *
+     * <p>Unknown devices are created, existing ones updated; empty values keep the current value.
+     * Invalid rows are skipped and listed in the response. Returns 400 Bad Request if the network
+     * doesn't exist or the file can't be parsed at all.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "text/plain"})
+    public DeviceImportResponseDto importDevices(@RequestParam Long networkId, InputStream body) {
+        return deviceImportService.importDevices(networkId, body);
+    }
+
     // ========== PUT ENDPOINTS (update existing resources) ==========
 
     /**
@@ -328,6 +549,15 @@ public class DeviceController {
 
     // ========== INNER CLASS (DTO) ==========
 
+    /**
+     * Invalid input (malformed cursor, empty time window, unparsable import, ...) is reported as 400
+     * Bad Request instead of 500.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
     /**
      * Data Transfer Object for MQTT update request.
      *
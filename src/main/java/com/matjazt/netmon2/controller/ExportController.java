@@ -0,0 +1,116 @@
+package com.matjazt.netmon2.controller;
+
+import com.matjazt.netmon2.service.ExportService;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * REST Controller for bulk exports of devices and status history.
+ *
+ * <p>Responses are written with {@link StreamingResponseBody}: the rows are streamed from the
+ * database to the client while the query runs, on a separate thread, so neither the result nor
+ * the response is ever held in memory as a whole. With {@code gzip=true} the output is compressed
+ * on the fly and served as a {@code .gz} file.
+ */
+@RestController
+@RequestMapping("/api/export")
+@PreAuthorize("hasAnyRole('admin', 'user')")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * EXAMPLE: GET /api/export/history?networkId=5&from=2024-01-01T00:00&format=CSV&gzip=true
+     *
+     * <p>Export status history, oldest first. All filters are optional; {@code from} defaults to
+     * the beginning of history and {@code to} to now (UTC).
+     */
+    @GetMapping("/history")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @RequestParam(required = false) Long networkId,
+            @RequestParam(required = false) Long deviceId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to,
+            @RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        var start = from != null ? from : LocalDateTime.of(1970, 1, 1, 0, 0);
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        return stream(
+                "history",
+                format,
+                gzip,
+                out -> exportService.exportHistory(networkId, deviceId, start, end, format, out));
+    }
+
+    /**
+     * EXAMPLE: GET /api/export/devices?networkId=5&format=NDJSON
+     *
+     * <p>Export devices, ordered by ID. Without {@code networkId}, all devices are exported.
+     */
+    @GetMapping("/devices")
+    public ResponseEntity<StreamingResponseBody> exportDevices(
+            @RequestParam(required = false) Long networkId,
+            @RequestParam(defaultValue = "NDJSON") ExportService.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return stream(
+                "devices",
+                format,
+                gzip,
+                out -> exportService.exportDevices(networkId, format, out));
+    }
+
+    /** Invalid filters are reported as 400 Bad Request instead of 500. */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    private static ResponseEntity<StreamingResponseBody> stream(
+            String name, ExportService.Format format, boolean gzip, Consumer<OutputStream> export) {
+        var fileName = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody body =
+                out -> {
+                    if (gzip) {
+                        var compressed = new GZIPOutputStream(out, 64 * 1024);
+                        export.accept(compressed);
+                        compressed.finish();
+                    } else {
+                        export.accept(out);
+                    }
+                };
+        return ResponseEntity.ok()
+                .contentType(
+                        MediaType.parseMediaType(
+                                gzip ? "application/gzip" : format.getContentType()))
+                .header(
+                        HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+}
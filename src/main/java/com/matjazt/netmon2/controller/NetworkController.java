@@ -0,0 +1,165 @@
+package com.matjazt.netmon2.controller;
+
+import com.matjazt.netmon2.dto.response.MetricNodeResponseDto;
+import com.matjazt.netmon2.dto.response.MetricSeriesResponseDto;
+import com.matjazt.netmon2.dto.response.NetworkResponseDto;
+import com.matjazt.netmon2.dto.response.ScanIntervalResponseDto;
+import com.matjazt.netmon2.service.MetricsStore;
+import com.matjazt.netmon2.service.NetworkRegistry;
+import com.matjazt.netmon2.service.ScanIntervalTracker;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * REST Controller for networks.
+ *
+ * <p>Served from {@link NetworkRegistry}, {@link ScanIntervalTracker} and {@link MetricsStore}, so
+ * these endpoints don't touch the database.
+ */
+@RestController
+@RequestMapping("/api/networks")
+@PreAuthorize("hasAnyRole('admin', 'user')")
+public class NetworkController {
+
+    private final NetworkRegistry networkRegistry;
+    private final ScanIntervalTracker scanIntervalTracker;
+    private final MetricsStore metricsStore;
+
+    public NetworkController(
+            NetworkRegistry networkRegistry,
+            ScanIntervalTracker scanIntervalTracker,
+            MetricsStore metricsStore) {
+        this.networkRegistry = networkRegistry;
+        this.scanIntervalTracker = scanIntervalTracker;
+        this.metricsStore = metricsStore;
+    }
+
+    /**
+     * EXAMPLE: GET /api/networks
+     *
+     * <p>Get all networks, ordered by ID.
+     */
+    @GetMapping
+    public List<NetworkResponseDto> getAllNetworks() {
+        return networkRegistry.getAll().stream().map(NetworkController::toDto).toList();
+    }
+
+    /**
+     * EXAMPLE: GET /api/networks/5
+     *
+     * <p>Get a single network. Returns 404 Not Found if it doesn't exist.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<NetworkResponseDto> getNetwork(@PathVariable Long id) {
+        return networkRegistry
+                .get(id)
+                .map(NetworkController::toDto)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * EXAMPLE: GET /api/networks/scan-intervals
+     *
+     * <p>Expected scan interval, jitter and next-scan deadline of every network.
+     */
+    @GetMapping("/scan-intervals")
+    public List<ScanIntervalResponseDto> getScanIntervals() {
+        return networkRegistry.getAll().stream()
+                .map(
+                        network ->
+                                scanIntervalTracker.getStatistics(
+                                        network.id(), network.alertingDelay()))
+                .toList();
+    }
+
+    /**
+     * EXAMPLE: GET /api/networks/5/scan-interval
+     *
+     * <p>Expected scan interval, jitter and next-scan deadline of a network. Returns 404 Not Found
+     * if the network doesn't exist.
+     */
+    @GetMapping("/{id}/scan-interval")
+    public ResponseEntity<ScanIntervalResponseDto> getScanInterval(@PathVariable Long id) {
+        return networkRegistry
+                .get(id)
+                .map(
+                        network ->
+                                scanIntervalTracker.getStatistics(
+                                        network.id(), network.alertingDelay()))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * EXAMPLE: GET /api/networks/5/metrics?from=2025-01-01T00:00:00&points=500
+     *
+     * <p>Devices per scan, payload size and processing time of a network, downsampled to at most
+     * {@code points} points. Times are UTC; {@code to} defaults to now and {@code from} to 24 hours
+     * before it. Returns 404 Not Found if the network has no metrics.
+     */
+    @GetMapping("/{id}/metrics")
+    public ResponseEntity<MetricSeriesResponseDto> getScanMetrics(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to,
+            @RequestParam(defaultValue = "500") int points) {
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        var start = from != null ? from : end.minusHours(24);
+        return metricsStore
+                .getScanMetrics(id, start, end, points)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * EXAMPLE: GET /api/networks/5/nodes
+     *
+     * <p>Pinged nodes of a network that have metrics.
+     */
+    @GetMapping("/{id}/nodes")
+    public List<MetricNodeResponseDto> getNodes(@PathVariable Long id) {
+        return metricsStore.getNodes(id);
+    }
+
+    /**
+     * EXAMPLE: GET /api/networks/5/nodes/192.168.1.1/metrics?from=2025-01-01T00:00:00
+     *
+     * <p>Round-trip time (ms) and packet loss (0-1) of a pinged node, with the same parameters as
+     * the network metrics. Returns 404 Not Found if the node has no metrics.
+     */
+    @GetMapping("/{id}/nodes/{ip}/metrics")
+    public ResponseEntity<MetricSeriesResponseDto> getNodeMetrics(
+            @PathVariable Long id,
+            @PathVariable String ip,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                    LocalDateTime to,
+            @RequestParam(defaultValue = "500") int points) {
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        var start = from != null ? from : end.minusHours(24);
+        return metricsStore
+                .getNodeMetrics(id, ip, start, end, points)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    private static NetworkResponseDto toDto(NetworkRegistry.NetworkInfo network) {
+        return new NetworkResponseDto(
+                network.id(), network.name(), network.topic(), network.alertingDelay());
+    }
+}
@@ -0,0 +1,18 @@
+package com.matjazt.netmon2.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * One device status history row as exported, with the device's MAC address resolved.
+ *
+ * <p>Filled directly by a JPQL constructor expression, so exporting doesn't create (and keep)
+ * entities.
+ */
+public record HistoryExportDto(
+        Long id,
+        Long networkId,
+        Long deviceId,
+        String macAddress,
+        String ipAddress,
+        Boolean online,
+        LocalDateTime timestamp) {}
@@ -0,0 +1,123 @@
+package com.matjazt.netmon2.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Data Transfer Object (DTO) representing the JSON stored in {@code network.configuration}.
+ *
+ * <p>All settings are optional; missing values fall back to the defaults below. Unknown properties
+ * are ignored so that the JSON can carry settings for features this version doesn't know about.
+ * The JSON is bound to this DTO, validated and turned into an immutable {@link
+ * com.matjazt.netmon2.service.NetworkConfiguration}, which is what the rest of the application
+ * reads.
+ *
+ * <p>Example:
+ *
+ * <pre>
+ * {
+ *   "missedScansBeforeOffline": 3,
+ *   "historyRetentionMonths": 12,
+ *   "closureDelaySeconds": 60,
+ *   "devices": {
+ *     "AA:BB:CC:DD:EE:FF": { "missedScansBeforeOffline": 10, "alertingDelaySeconds": 3600 }
+ *   }
+ * }
+ * </pre>
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class NetworkConfigurationDto {
+
+    /**
+     * Number of consecutive scans a device must be missing from before it is declared offline.
+     *
+     * <p>1 means the first missed scan marks it offline. Higher values hide short gaps in the
+     * scanner's view of the network (e.g. an ARP entry that wasn't refreshed in time).
+     */
+    private int missedScansBeforeOffline = 1;
+
+    /**
+     * How many full months of status history to keep for this network.
+     *
+     * <p>0 uses the application-wide {@code history.retention-months}. History is removed a whole
+     * month at a time, by dropping the network's monthly partition.
+     */
+    private int historyRetentionMonths = 0;
+
+    /**
+     * How long a device has to be back online before its alert is closed, in seconds.
+     *
+     * <p>Null uses the alerting delay minus a tenth of it (at most 30 seconds).
+     */
+    private Integer closureDelaySeconds;
+
+    /** Per-device overrides, keyed by MAC address (any case, ':' or '-' separated). */
+    private Map<String, DeviceConfigurationDto> devices = new LinkedHashMap<>();
+
+    public NetworkConfigurationDto() {
+        // No-arg constructor required for JSON deserialization
+    }
+
+    // Getters and setters
+
+    public int getMissedScansBeforeOffline() {
+        return missedScansBeforeOffline;
+    }
+
+    public void setMissedScansBeforeOffline(int missedScansBeforeOffline) {
+        this.missedScansBeforeOffline = missedScansBeforeOffline;
+    }
+
+    public int getHistoryRetentionMonths() {
+        return historyRetentionMonths;
+    }
+
+    public void setHistoryRetentionMonths(int historyRetentionMonths) {
+        this.historyRetentionMonths = historyRetentionMonths;
+    }
+
+    public Integer getClosureDelaySeconds() {
+        return closureDelaySeconds;
+    }
+
+    public void setClosureDelaySeconds(Integer closureDelaySeconds) {
+        this.closureDelaySeconds = closureDelaySeconds;
+    }
+
+    public Map<String, DeviceConfigurationDto> getDevices() {
+        return devices;
+    }
+
+    public void setDevices(Map<String, DeviceConfigurationDto> devices) {
+        this.devices = devices;
+    }
+
+    /** Settings of a single device; missing values use the network's settings. */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class DeviceConfigurationDto {
+
+        /** Overrides the network's {@code missedScansBeforeOffline}. */
+        private Integer missedScansBeforeOffline;
+
+        /** Overrides the network's alerting delay (seconds offline before an alert is opened). */
+        private Integer alertingDelaySeconds;
+
+        public Integer getMissedScansBeforeOffline() {
+            return missedScansBeforeOffline;
+        }
+
+        public void setMissedScansBeforeOffline(Integer missedScansBeforeOffline) {
+            this.missedScansBeforeOffline = missedScansBeforeOffline;
+        }
+
+        public Integer getAlertingDelaySeconds() {
+            return alertingDelaySeconds;
+        }
+
+        public void setAlertingDelaySeconds(Integer alertingDelaySeconds) {
+            this.alertingDelaySeconds = alertingDelaySeconds;
+        }
+    }
+}
@@ -23,6 +23,18 @@ public class NetworkStatusMessageDto {
     /** List of currently online devices. */
     private List<DeviceInfo> devices;
 
+    /** Ping results of the monitored nodes (optional). */
+    private List<NodeInfo> nodes;
+
+    /** ID of a scan split into several messages (absent if the scan is a single message). */
+    private String scanId;
+
+    /** Index of this part within the scan, starting at 0 (multi-part scans only). */
+    private Integer part;
+
+    /** Number of parts of the scan (multi-part scans only). */
+    private Integer parts;
+
     public NetworkStatusMessageDto() {
         // No-arg constructor required for JSON-B deserialization
     }
@@ -53,6 +65,38 @@ public class NetworkStatusMessageDto {
         this.devices = devices;
     }
 
+    public List<NodeInfo> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<NodeInfo> nodes) {
+        this.nodes = nodes;
+    }
+
+    public String getScanId() {
+        return scanId;
+    }
+
+    public void setScanId(String scanId) {
+        this.scanId = scanId;
+    }
+
+    public Integer getPart() {
+        return part;
+    }
+
+    public void setPart(Integer part) {
+        this.part = part;
+    }
+
+    public Integer getParts() {
+        return parts;
+    }
+
+    public void setParts(Integer parts) {
+        this.parts = parts;
+    }
+
     /** Nested class for device information in the JSON. */
     public static class DeviceInfo {
         private String ip;
@@ -78,4 +122,60 @@ public class NetworkStatusMessageDto {
             this.mac = mac;
         }
     }
+
+    /**
+     * Nested class for the ping result of a monitored node: packets sent and received, and the
+     * average round-trip time of the replies in microseconds (absent if there were none).
+     */
+    public static class NodeInfo {
+        private String ip;
+        private String name;
+        private int sent;
+        private int received;
+        private Long rttUs;
+
+        public NodeInfo() {
+            // No-arg constructor required for JSON-B deserialization
+        }
+
+        public String getIp() {
+            return ip;
+        }
+
+        public void setIp(String ip) {
+            this.ip = ip;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+
+        public void setSent(int sent) {
+            this.sent = sent;
+        }
+
+        public int getReceived() {
+            return received;
+        }
+
+        public void setReceived(int received) {
+            this.received = received;
+        }
+
+        public Long getRttUs() {
+            return rttUs;
+        }
+
+        public void setRttUs(Long rttUs) {
+            this.rttUs = rttUs;
+        }
+    }
 }
@@ -0,0 +1,19 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for one availability rollup bucket (an hour or a day).
+ *
+ * <p>For devices, {@code onlineSeconds / bucketSeconds} is the availability within the bucket. For
+ * networks, {@code onlineSeconds} is summed over all devices, so the same ratio is the average
+ * number of devices online. {@code firstSeen} and {@code lastSeen} are the first and last moment
+ * within the bucket a device was online (null if none was).
+ */
+public record AvailabilityRollupResponseDto(
+        LocalDateTime bucketStart,
+        long bucketSeconds,
+        long onlineSeconds,
+        int transitions,
+        LocalDateTime firstSeen,
+        LocalDateTime lastSeen) {}
@@ -0,0 +1,25 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.util.List;
+
+/**
+ * DTO with second-level cache statistics, counted since startup (or the last eviction).
+ *
+ * @param enabled false if the second-level cache is switched off (e.g. in a cluster)
+ * @param regions statistics per cache region
+ */
+public record CacheStatisticsResponseDto(boolean enabled, List<Region> regions) {
+
+    /**
+     * Statistics of a single cache region.
+     *
+     * @param name region name, as configured in {@code ehcache.xml}
+     * @param hits lookups served from the cache
+     * @param misses lookups that had to go to the database
+     * @param puts entries stored in the cache
+     * @param entries entries currently in the cache
+     * @param hitRatio hits / (hits + misses), 0 if the region was never read
+     */
+    public record Region(
+            String name, long hits, long misses, long puts, long entries, double hitRatio) {}
+}
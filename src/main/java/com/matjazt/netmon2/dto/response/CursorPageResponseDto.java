@@ -0,0 +1,21 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * DTO for one page of a cursor (keyset) paginated list.
+ *
+ * <p>Pass {@code nextCursor} back as the {@code cursor} parameter to get the next page; it is null
+ * on the last page. The cursor is opaque to clients. {@code totalElements} is only filled when it
+ * was explicitly requested, since counting costs as much as reading the whole list.
+ */
+public record CursorPageResponseDto<T>(
+        List<T> content, int size, boolean hasNext, String nextCursor, Long totalElements) {
+
+    /** Converts the content, keeping the paging information. */
+    public <R> CursorPageResponseDto<R> map(Function<? super T, ? extends R> mapper) {
+        return new CursorPageResponseDto<>(
+                content.stream().<R>map(mapper).toList(), size, hasNext, nextCursor, totalElements);
+    }
+}
@@ -0,0 +1,22 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.util.List;
+
+/**
+ * DTO with the outcome of a bulk device import.
+ *
+ * <p>Rows listed in {@code errors} were skipped, all other rows were imported. Only the first
+ * errors are listed; {@code errorCount} is the total.
+ */
+public record DeviceImportResponseDto(
+        long rows, long inserted, long updated, long errorCount, List<RowError> errors) {
+
+    /**
+     * A rejected row.
+     *
+     * @param line line number in the uploaded file (the header is line 1)
+     * @param macAddress MAC address as given in the file
+     * @param message why the row was rejected
+     */
+    public record RowError(long line, String macAddress, String message) {}
+}
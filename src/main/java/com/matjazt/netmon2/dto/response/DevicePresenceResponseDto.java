@@ -0,0 +1,22 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO with the presence of a device within a time window, from the per-scan presence bitmaps.
+ *
+ * <p>{@code scans} is the number of scan slots of the device's network within the window, {@code
+ * scansPresent} the number of those the device was in, and {@code availability} their ratio (null
+ * without scans). Unlike the uptime, this counts every missed scan, even if the device wasn't
+ * declared offline because of it. {@code firstSeen} and {@code lastSeen} are the start of the first
+ * and last slot the device was in (null if it wasn't in any).
+ */
+public record DevicePresenceResponseDto(
+        Long deviceId,
+        LocalDateTime from,
+        LocalDateTime to,
+        int scans,
+        int scansPresent,
+        Double availability,
+        LocalDateTime firstSeen,
+        LocalDateTime lastSeen) {}
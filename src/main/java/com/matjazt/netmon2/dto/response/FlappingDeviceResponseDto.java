@@ -0,0 +1,19 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO describing a device that is currently flapping (toggling between online and offline).
+ *
+ * <p>{@code transitions} is the number of state changes within the last {@code samples} scans.
+ */
+public record FlappingDeviceResponseDto(
+        Long id,
+        Long networkId,
+        String name,
+        String macAddress,
+        String ipAddress,
+        Boolean online,
+        int transitions,
+        int samples,
+        LocalDateTime flappingSince) {}
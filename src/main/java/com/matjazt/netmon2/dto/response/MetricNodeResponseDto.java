@@ -0,0 +1,4 @@
+package com.matjazt.netmon2.dto.response;
+
+/** DTO for a pinged node of a network that has a metric series, with its number of samples. */
+public record MetricNodeResponseDto(String ip, String name, int samples) {}
@@ -0,0 +1,31 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO with a downsampled scan or node metric series of a network.
+ *
+ * <p>{@code fields} names the values of every point. Each point covers {@code bucketSeconds}
+ * starting at its {@code timestamp} and holds the number of samples in it and the average, minimum
+ * and maximum of every field (null where a field had no values, e.g. the round-trip time of a node
+ * that didn't reply).
+ */
+public record MetricSeriesResponseDto(
+        Long networkId,
+        String node,
+        String name,
+        LocalDateTime from,
+        LocalDateTime to,
+        long bucketSeconds,
+        List<String> fields,
+        List<Point> points) {
+
+    /** One downsampled point. */
+    public record Point(
+            LocalDateTime timestamp,
+            int samples,
+            List<Double> average,
+            List<Double> min,
+            List<Double> max) {}
+}
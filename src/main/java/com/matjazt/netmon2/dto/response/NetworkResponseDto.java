@@ -0,0 +1,11 @@
+package com.matjazt.netmon2.dto.response;
+
+/**
+ * DTO for network responses.
+ *
+ * @param id network ID
+ * @param name network name
+ * @param topic MQTT topic the network's scans are received on
+ * @param alertingDelay seconds without a scan (or a device) before an alert is opened
+ */
+public record NetworkResponseDto(long id, String name, String topic, int alertingDelay) {}
@@ -0,0 +1,18 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO with the devices of a network that were online at a point in time.
+ *
+ * <p>{@code checkpointTimestamp} is the checkpoint the snapshot was reconstructed from (null if
+ * there was none and the state was looked up per device), {@code replayedTransitions} the number
+ * of history rows applied on top of it.
+ */
+public record NetworkSnapshotResponseDto(
+        Long networkId,
+        LocalDateTime at,
+        LocalDateTime checkpointTimestamp,
+        int replayedTransitions,
+        List<Long> onlineDeviceIds) {}
@@ -0,0 +1,17 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO with the occupancy of a network during one hour, from the per-scan presence bitmaps.
+ *
+ * <p>{@code scans} is the number of scan slots within the hour, {@code devicesSeen} the number of
+ * different devices in any of them, and {@code averageDevices} and {@code maxDevices} the average
+ * and highest number of devices per scan slot.
+ */
+public record PresenceOccupancyResponseDto(
+        LocalDateTime hourStart,
+        int scans,
+        int devicesSeen,
+        double averageDevices,
+        int maxDevices) {}
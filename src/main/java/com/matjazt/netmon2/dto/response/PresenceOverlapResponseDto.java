@@ -0,0 +1,20 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO with the periods during which two devices were online at the same time, within the window
+ * [from, to).
+ */
+public record PresenceOverlapResponseDto(
+        Long deviceId,
+        Long otherDeviceId,
+        LocalDateTime from,
+        LocalDateTime to,
+        long overlapSeconds,
+        List<Period> periods) {
+
+    /** A period [start, end) during which both devices were online. */
+    public record Period(LocalDateTime start, LocalDateTime end) {}
+}
@@ -0,0 +1,29 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO describing how regularly a network's scanner reports. Times are UTC.
+ *
+ * @param networkId network ID
+ * @param samples number of gaps between scans seen since startup (or taken over from the
+ *     database)
+ * @param expectedIntervalSeconds moving average of the gap between scans, null if unknown
+ * @param jitterSeconds standard deviation of the gap between scans, null if unknown
+ * @param lastScan timestamp of the last scan received since startup, null if none
+ * @param nextScanExpected when the next scan is expected, null if unknown
+ * @param downAfter when the network is considered down if no scan arrives, null if unknown
+ * @param late true if the next scan is overdue
+ * @param adaptive true if the network-down deadline is derived from the measured interval rather
+ *     than the static alerting delay
+ */
+public record ScanIntervalResponseDto(
+        long networkId,
+        long samples,
+        Double expectedIntervalSeconds,
+        Double jitterSeconds,
+        LocalDateTime lastScan,
+        LocalDateTime nextScanExpected,
+        LocalDateTime downAfter,
+        boolean late,
+        boolean adaptive) {}
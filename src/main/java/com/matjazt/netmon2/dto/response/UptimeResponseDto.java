@@ -0,0 +1,23 @@
+package com.matjazt.netmon2.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO with the uptime of a device within a time window, computed from its status intervals.
+ *
+ * <p>Time before the first known state of the device (e.g. before it was discovered) is not
+ * observed and doesn't count against it, so {@code availability} is {@code onlineSeconds /
+ * observedSeconds}. {@code failures} is the number of online to offline transitions within the
+ * window. MTBF is the online time per failure, MTTR the offline time per outage (including outages
+ * that started before the window); both are null when undefined.
+ */
+public record UptimeResponseDto(
+        Long deviceId,
+        LocalDateTime from,
+        LocalDateTime to,
+        long observedSeconds,
+        long onlineSeconds,
+        Double availability,
+        int failures,
+        Long mtbfSeconds,
+        Long mttrSeconds) {}
@@ -1,10 +1,14 @@
 package com.matjazt.netmon2.entity;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * JPA entity for alert_type reference table.
  *
@@ -12,6 +16,8 @@ import jakarta.persistence.Table;
  *
  * <p>Runtime code uses AlertType enum directly - this entity is never queried.
  */
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "reference")
 @Entity
 @Table(name = "alert_type")
 public class AlertTypeEntity {
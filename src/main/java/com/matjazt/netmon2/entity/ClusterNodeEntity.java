@@ -0,0 +1,46 @@
+package com.matjazt.netmon2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA entity representing a live netmon2 instance (cluster node).
+ *
+ * <p>Each node refreshes its {@code heartbeat} periodically; a node whose heartbeat is older than
+ * the lease timeout is considered dead. Rows are written with native upserts in {@link
+ * com.matjazt.netmon2.repository.ClusterNodeRepository}, using the database clock, so clock skew
+ * between nodes doesn't matter.
+ */
+@Entity
+@Table(name = "cluster_node")
+public class ClusterNodeEntity {
+
+    @Id
+    @Column(name = "node_id", length = 200)
+    private String nodeId;
+
+    @Column(name = "started_at", nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime startedAt;
+
+    @Column(name = "heartbeat", nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime heartbeat;
+
+    // JPA requires a no-argument constructor
+    public ClusterNodeEntity() {}
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getHeartbeat() {
+        return heartbeat;
+    }
+}
@@ -0,0 +1,83 @@
+package com.matjazt.netmon2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA Entity pointing at the latest status history row of a device.
+ *
+ * <p>One row per device, written with a native upsert by {@link
+ * com.matjazt.netmon2.repository.DeviceCurrentStatusRepository#upsert} whenever a status change is
+ * recorded. The online flag and timestamp are copied from the history row, so most queries don't
+ * need to touch the history at all.
+ */
+@Entity
+@Table(name = "device_current_status")
+public class DeviceCurrentStatusEntity {
+
+    @Id
+    @Column(name = "device_id")
+    private Long deviceId;
+
+    @Column(name = "network_id", nullable = false)
+    private Long networkId;
+
+    /** ID of the latest {@link DeviceStatusHistoryEntity} of the device. */
+    @Column(name = "history_id", nullable = false)
+    private Long historyId;
+
+    @Column(nullable = false)
+    private Boolean online;
+
+    @Column(nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime timestamp;
+
+    // JPA requires no-arg constructor
+    public DeviceCurrentStatusEntity() {}
+
+    // Getters and setters
+
+    public Long getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(Long deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public Long getNetworkId() {
+        return networkId;
+    }
+
+    public void setNetworkId(Long networkId) {
+        this.networkId = networkId;
+    }
+
+    public Long getHistoryId() {
+        return historyId;
+    }
+
+    public void setHistoryId(Long historyId) {
+        this.historyId = historyId;
+    }
+
+    public Boolean getOnline() {
+        return online;
+    }
+
+    public void setOnline(Boolean online) {
+        this.online = online;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+}
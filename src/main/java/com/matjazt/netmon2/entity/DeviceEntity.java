@@ -85,6 +85,16 @@ public class DeviceEntity {
     @Column(name = "vendor", nullable = true)
     private String vendor;
 
+    /**
+     * When the device last changed its online status (i.e. when the latest history row was
+     * written).
+     *
+     * <p>Kept in sync with DeviceStatusHistory by ingestion, so "online since" / "offline since"
+     * can be answered without touching the history table.
+     */
+    @Column(name = "last_status_change", nullable = true, columnDefinition = "TIMESTAMP")
+    private LocalDateTime lastStatusChange;
+
     // JPA requires no-arg constructor
     public DeviceEntity() {}
 
@@ -96,6 +106,7 @@ public class DeviceEntity {
         this.online = online;
         this.firstSeen = LocalDateTime.now(ZoneOffset.UTC);
         this.lastSeen = LocalDateTime.now(ZoneOffset.UTC);
+        this.lastStatusChange = this.firstSeen;
     }
 
     // Getters and setters
@@ -209,4 +220,12 @@ public class DeviceEntity {
     public void setVendor(String vendor) {
         this.vendor = vendor;
     }
+
+    public LocalDateTime getLastStatusChange() {
+        return lastStatusChange;
+    }
+
+    public void setLastStatusChange(LocalDateTime lastStatusChange) {
+        this.lastStatusChange = lastStatusChange;
+    }
 }
@@ -0,0 +1,99 @@
+package com.matjazt.netmon2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA Entity representing a period during which a device was online.
+ *
+ * <p>While {@link DeviceStatusHistoryEntity} records the transitions, this table records what lies
+ * between them: an online transition opens an interval, the following offline transition closes
+ * it. The table also has a generated {@code period} range column with a GiST index, used by the
+ * native overlap queries in {@link
+ * com.matjazt.netmon2.repository.DevicePresenceIntervalRepository}; it is not mapped here.
+ */
+@Entity
+@Table(name = "device_presence_interval")
+public class DevicePresenceIntervalEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "device_id", nullable = false)
+    private DeviceEntity device;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "network_id", nullable = false)
+    private NetworkEntity network;
+
+    /** When the device came online. */
+    @Column(name = "valid_from", nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime validFrom;
+
+    /** When the device went offline (exclusive), null while it is still online. */
+    @Column(name = "valid_to", columnDefinition = "TIMESTAMP")
+    private LocalDateTime validTo;
+
+    // JPA requires no-arg constructor
+    public DevicePresenceIntervalEntity() {}
+
+    public DevicePresenceIntervalEntity(
+            DeviceEntity device, NetworkEntity network, LocalDateTime validFrom) {
+        this.device = device;
+        this.network = network;
+        this.validFrom = validFrom;
+    }
+
+    // Getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public DeviceEntity getDevice() {
+        return device;
+    }
+
+    public void setDevice(DeviceEntity device) {
+        this.device = device;
+    }
+
+    public NetworkEntity getNetwork() {
+        return network;
+    }
+
+    public void setNetwork(NetworkEntity network) {
+        this.network = network;
+    }
+
+    public LocalDateTime getValidFrom() {
+        return validFrom;
+    }
+
+    public void setValidFrom(LocalDateTime validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    public LocalDateTime getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(LocalDateTime validTo) {
+        this.validTo = validTo;
+    }
+}
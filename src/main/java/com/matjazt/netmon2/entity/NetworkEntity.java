@@ -7,6 +7,8 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
+import org.hibernate.annotations.NaturalId;
+
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 
@@ -18,6 +20,10 @@ import java.time.ZoneOffset;
  *
  * <p>This entity stores basic information about each monitored network. The network name is
  * extracted from the MQTT topic.
+ *
+ * <p>Networks are written on every scan (last seen, scan interval statistics), so they are not
+ * kept in the second-level cache: every write would invalidate the cached copy anyway. Scans find
+ * their network through the {@link com.matjazt.netmon2.service.NetworkRegistry} and load it by ID.
  */
 @Entity // Marks this class as a database entity
 @Table(name = "network") // Maps to "network" table in database
@@ -33,6 +39,7 @@ public class NetworkEntity {
      * <p>For topic "network/MaliGrdi", this would be "MaliGrdi". Unique constraint ensures we don't
      * duplicate networks.
      */
+    @NaturalId
     @Column(nullable = false, unique = true, length = 100)
     private String name;
 
@@ -66,6 +73,10 @@ public class NetworkEntity {
     @Column(name = "reporting_interval_ema", nullable = false)
     private Integer reportingIntervalEma = 0;
 
+    /** Standard deviation of the reporting interval in seconds (see reportingIntervalEma). */
+    @Column(name = "reporting_interval_jitter", nullable = false)
+    private Integer reportingIntervalJitter = 0;
+
     /** Timestamp when the network came back online after being down. */
     @Column(name = "back_online_time", nullable = true, columnDefinition = "TIMESTAMP")
     private LocalDateTime backOnlineTime;
@@ -155,6 +166,14 @@ public class NetworkEntity {
         this.reportingIntervalEma = reportingIntervalEma;
     }
 
+    public Integer getReportingIntervalJitter() {
+        return reportingIntervalJitter;
+    }
+
+    public void setReportingIntervalJitter(Integer reportingIntervalJitter) {
+        this.reportingIntervalJitter = reportingIntervalJitter;
+    }
+
     public LocalDateTime getBackOnlineTime() {
         return backOnlineTime;
     }
@@ -0,0 +1,100 @@
+package com.matjazt.netmon2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA Entity representing the set of online devices of a network at a point in time.
+ *
+ * <p>The device IDs are stored packed (see {@link com.matjazt.tools.DeltaVarintCodec}), so a
+ * checkpoint of a network with a few hundred devices takes a few hundred bytes. A checkpoint
+ * reflects all history rows up to and including its timestamp.
+ */
+@Entity
+@Table(name = "network_status_checkpoint")
+public class NetworkStatusCheckpointEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "network_id", nullable = false)
+    private NetworkEntity network;
+
+    @Column(nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime timestamp;
+
+    /** Number of online devices, so it can be read without decoding. */
+    @Column(name = "device_count", nullable = false)
+    private Integer deviceCount;
+
+    /** Packed IDs of the online devices. */
+    @Column(name = "online_devices", nullable = false)
+    private byte[] onlineDevices;
+
+    // JPA requires no-arg constructor
+    public NetworkStatusCheckpointEntity() {}
+
+    public NetworkStatusCheckpointEntity(
+            NetworkEntity network,
+            LocalDateTime timestamp,
+            Integer deviceCount,
+            byte[] onlineDevices) {
+        this.network = network;
+        this.timestamp = timestamp;
+        this.deviceCount = deviceCount;
+        this.onlineDevices = onlineDevices;
+    }
+
+    // Getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public NetworkEntity getNetwork() {
+        return network;
+    }
+
+    public void setNetwork(NetworkEntity network) {
+        this.network = network;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public Integer getDeviceCount() {
+        return deviceCount;
+    }
+
+    public void setDeviceCount(Integer deviceCount) {
+        this.deviceCount = deviceCount;
+    }
+
+    public byte[] getOnlineDevices() {
+        return onlineDevices;
+    }
+
+    public void setOnlineDevices(byte[] onlineDevices) {
+        this.onlineDevices = onlineDevices;
+    }
+}
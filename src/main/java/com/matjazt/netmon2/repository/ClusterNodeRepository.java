@@ -0,0 +1,77 @@
+package com.matjazt.netmon2.repository;
+
+import com.matjazt.netmon2.entity.ClusterNodeEntity;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Spring Data JPA repository for {@link ClusterNodeEntity}.
+ *
+ * <p>All timestamps are taken from the database clock ({@code now()} in UTC), so nodes with skewed
+ * clocks still agree on who is alive.
+ */
+@Repository
+public interface ClusterNodeRepository extends JpaRepository<ClusterNodeEntity, String> {
+
+    /**
+     * Registers the node or refreshes its heartbeat (native upsert).
+     *
+     * @param nodeId ID of this node
+     * @return number of rows written (always 1)
+     */
+    @Modifying
+    @Query(
+            value =
+                    "INSERT INTO cluster_node (node_id, started_at, heartbeat)"
+                            + " VALUES (:nodeId, now() AT TIME ZONE 'UTC', now() AT TIME ZONE 'UTC')"
+                            + " ON CONFLICT (node_id) DO UPDATE SET heartbeat = EXCLUDED.heartbeat",
+            nativeQuery = true)
+    int heartbeat(@Param("nodeId") String nodeId);
+
+    /**
+     * Returns IDs of all nodes whose lease hasn't expired yet.
+     *
+     * @param leaseTimeoutSeconds how old a heartbeat may be for the node to count as alive
+     * @return live node IDs, sorted
+     */
+    @Query(
+            value =
+                    "SELECT node_id FROM cluster_node"
+                            + " WHERE heartbeat >= now() AT TIME ZONE 'UTC'"
+                            + " - make_interval(secs => :leaseTimeoutSeconds)"
+                            + " ORDER BY node_id",
+            nativeQuery = true)
+    List<String> findLiveNodeIds(@Param("leaseTimeoutSeconds") long leaseTimeoutSeconds);
+
+    /**
+     * Removes nodes that have been dead for a while, so the table doesn't grow with every restart.
+     *
+     * @param retentionSeconds how long dead nodes are kept
+     * @return number of removed nodes
+     */
+    @Modifying
+    @Query(
+            value =
+                    "DELETE FROM cluster_node"
+                            + " WHERE heartbeat < now() AT TIME ZONE 'UTC'"
+                            + " - make_interval(secs => :retentionSeconds)",
+            nativeQuery = true)
+    int deleteExpired(@Param("retentionSeconds") long retentionSeconds);
+
+    /**
+     * Tries to take a transaction-level advisory lock. The lock is released automatically at the
+     * end of the current transaction.
+     *
+     * @param namespace lock namespace (first key)
+     * @param key lock key within the namespace
+     * @return true if the lock was acquired, false if another session holds it
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:namespace, :key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("namespace") int namespace, @Param("key") int key);
+}
@@ -0,0 +1,45 @@
+package com.matjazt.netmon2.repository;
+
+import com.matjazt.netmon2.entity.DeviceCurrentStatusEntity;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/** Repository for DeviceCurrentStatusEntity. */
+@Repository
+public interface DeviceCurrentStatusRepository
+        extends JpaRepository<DeviceCurrentStatusEntity, Long> {
+
+    /**
+     * Points the device at a new history row (native upsert).
+     *
+     * <p>A row that is older than the one already stored (e.g. a late, backdated transition) is
+     * ignored, so the table always reflects the newest history row.
+     *
+     * @return number of rows written (0 if the stored row is newer)
+     */
+    @Modifying
+    @Query(
+            value =
+                    "INSERT INTO device_current_status AS c"
+                            + " (device_id, network_id, history_id, online, \"timestamp\")"
+                            + " VALUES (:deviceId, :networkId, :historyId, :online, :timestamp)"
+                            + " ON CONFLICT (device_id) DO UPDATE SET"
+                            + " network_id = EXCLUDED.network_id,"
+                            + " history_id = EXCLUDED.history_id,"
+                            + " online = EXCLUDED.online,"
+                            + " \"timestamp\" = EXCLUDED.\"timestamp\""
+                            + " WHERE c.\"timestamp\" <= EXCLUDED.\"timestamp\"",
+            nativeQuery = true)
+    int upsert(
+            @Param("deviceId") Long deviceId,
+            @Param("networkId") Long networkId,
+            @Param("historyId") Long historyId,
+            @Param("online") boolean online,
+            @Param("timestamp") LocalDateTime timestamp);
+}
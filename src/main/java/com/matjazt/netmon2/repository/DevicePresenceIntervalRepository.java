@@ -0,0 +1,68 @@
+package com.matjazt.netmon2.repository;
+
+import com.matjazt.netmon2.entity.DevicePresenceIntervalEntity;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for DevicePresenceIntervalEntity.
+ *
+ * <p>The range queries use the generated {@code period} column and its GiST index, so they are
+ * index lookups no matter how much history there is. Windows are half-open: [start, end).
+ */
+@Repository
+public interface DevicePresenceIntervalRepository
+        extends JpaRepository<DevicePresenceIntervalEntity, Long> {
+
+    /** Find the interval of a device that is still open (the device is online). */
+    Optional<DevicePresenceIntervalEntity> findByDevice_IdAndValidToIsNull(Long deviceId);
+
+    /** Find the online periods of a device, oldest first. */
+    List<DevicePresenceIntervalEntity> findByDevice_IdOrderByValidFromAsc(Long deviceId);
+
+    /**
+     * CUSTOM QUERY: Find devices of a network that were online at any time within the window
+     *
+     * <p>{@code &&} is the PostgreSQL range overlap operator.
+     */
+    @Query(
+            value =
+                    "SELECT DISTINCT i.device_id FROM device_presence_interval i"
+                            + " WHERE i.network_id = :networkId"
+                            + " AND i.period && tsrange(:start, :end, '[)')",
+            nativeQuery = true)
+    List<Long> findDeviceIdsOnlineDuring(
+            @Param("networkId") Long networkId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * CUSTOM QUERY: Find the periods within the window during which both devices were online
+     *
+     * <p>{@code *} is the PostgreSQL range intersection operator; the result is clipped to the
+     * window and ordered by start.
+     */
+    @Query(
+            value =
+                    "SELECT lower(o.period) AS \"start\", upper(o.period) AS \"end\" FROM ("
+                            + "  SELECT a.period * b.period * tsrange(:start, :end, '[)') AS period"
+                            + "  FROM device_presence_interval a"
+                            + "  JOIN device_presence_interval b ON a.period && b.period"
+                            + "  WHERE a.device_id = :deviceId AND b.device_id = :otherDeviceId"
+                            + "  AND a.period && tsrange(:start, :end, '[)')"
+                            + "  AND b.period && tsrange(:start, :end, '[)')"
+                            + ") o WHERE NOT isempty(o.period) ORDER BY 1",
+            nativeQuery = true)
+    List<PresencePeriod> findOverlap(
+            @Param("deviceId") Long deviceId,
+            @Param("otherDeviceId") Long otherDeviceId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+}
@@ -1,19 +1,27 @@
 package com.matjazt.netmon2.repository;
 
+import com.matjazt.netmon2.dto.DeviceDto;
 import com.matjazt.netmon2.entity.DeviceEntity;
 import com.matjazt.netmon2.entity.DeviceOperationMode;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Spring Data JPA repository for {@link DeviceEntity}.
@@ -115,6 +123,14 @@ public interface DeviceRepository extends JpaRepository<DeviceEntity, Long> {
      */
     Optional<DeviceEntity> findByNetwork_IdAndMacAddress(Long networkId, String macAddress);
 
+    /**
+     * Find the devices of a network with the given MAC addresses
+     *
+     * <p>Used for the parts of a multi-part scan, so each part loads only its own devices.
+     */
+    List<DeviceEntity> findByNetwork_IdAndMacAddressIn(
+            Long networkId, Collection<String> macAddresses);
+
     /** Check if a device exists on a network */
     boolean existsByNetwork_IdAndMacAddress(Long networkId, String macAddress);
 
@@ -172,6 +188,66 @@ public interface DeviceRepository extends JpaRepository<DeviceEntity, Long> {
     Page<DeviceEntity> findByNetworkIdWithNetwork(
             @Param("networkId") Long networkId, Pageable pageable);
 
+    /**
+     * KEYSET PAGINATION: First page of devices ordered by name, then ID
+     *
+     * <p>Returning a {@link Slice} fetches one row more than requested to tell whether there is a
+     * next page, and never runs a count query. The pageable should be {@code PageRequest.of(0,
+     * size)}: the query sets the order, and later pages are selected by key, not by offset. Devices
+     * without a name sort first. Served by the {@code idx_device_name} index.
+     */
+    @Query(
+            "SELECT d FROM DeviceEntity d JOIN FETCH d.network "
+                    + "ORDER BY COALESCE(d.name, ''), d.id")
+    Slice<DeviceEntity> findSliceWithNetwork(Pageable pageable);
+
+    /** KEYSET PAGINATION: Devices after the given (name, id) key */
+    @Query(
+            "SELECT d FROM DeviceEntity d JOIN FETCH d.network "
+                    + "WHERE (COALESCE(d.name, ''), d.id) > (:name, :id) "
+                    + "ORDER BY COALESCE(d.name, ''), d.id")
+    Slice<DeviceEntity> findSliceWithNetworkAfter(
+            @Param("name") String name, @Param("id") Long id, Pageable pageable);
+
+    /** KEYSET PAGINATION: First page of a network's devices, see {@link #findSliceWithNetwork} */
+    @Query(
+            "SELECT d FROM DeviceEntity d JOIN FETCH d.network "
+                    + "WHERE d.network.id = :networkId "
+                    + "ORDER BY COALESCE(d.name, ''), d.id")
+    Slice<DeviceEntity> findSliceByNetworkIdWithNetwork(
+            @Param("networkId") Long networkId, Pageable pageable);
+
+    /** KEYSET PAGINATION: A network's devices after the given (name, id) key */
+    @Query(
+            "SELECT d FROM DeviceEntity d JOIN FETCH d.network "
+                    + "WHERE d.network.id = :networkId "
+                    + "AND (COALESCE(d.name, ''), d.id) > (:name, :id) "
+                    + "ORDER BY COALESCE(d.name, ''), d.id")
+    Slice<DeviceEntity> findSliceByNetworkIdWithNetworkAfter(
+            @Param("networkId") Long networkId,
+            @Param("name") String name,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    /**
+     * STREAMING QUERY: All devices (or the devices of one network) as DTOs, ordered by ID
+     *
+     * <p>Rows are read from a database cursor, 1000 at a time, without creating entities. Must be
+     * consumed within a transaction and closed afterwards.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(
+            "SELECT new com.matjazt.netmon2.dto.DeviceDto(d.id, d.network.id, d.name,"
+                    + " d.macAddress, d.ipAddress, d.online, d.lastSeen, d.deviceOperationMode,"
+                    + " d.activeAlertId) "
+                    + "FROM DeviceEntity d "
+                    + "WHERE (:networkId IS NULL OR d.network.id = :networkId) "
+                    + "ORDER BY d.id")
+    Stream<DeviceDto> streamDtos(@Param("networkId") Long networkId);
+
     /**
      * MODIFYING QUERY: Bulk update last seen time
      *
@@ -198,4 +274,20 @@ public interface DeviceRepository extends JpaRepository<DeviceEntity, Long> {
             @Param("macAddresses") List<String> macAddresses,
             @Param("online") Boolean online,
             @Param("timestamp") LocalDateTime timestamp);
+
+    /**
+     * MODIFYING QUERY: Backfill last status change timestamps from history
+     *
+     * <p>Only touches devices that don't have the value yet, so repeated calls are cheap no-ops.
+     * Devices without any history fall back to their first-seen time.
+     */
+    @Modifying
+    @Query(
+            value =
+                    "UPDATE device d SET last_status_change = COALESCE("
+                            + "(SELECT MAX(h.\"timestamp\") FROM device_status_history h"
+                            + " WHERE h.device_id = d.id), d.first_seen) "
+                            + "WHERE d.last_status_change IS NULL",
+            nativeQuery = true)
+    int backfillLastStatusChange();
 }
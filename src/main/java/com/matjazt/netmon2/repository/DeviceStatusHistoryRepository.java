@@ -1,16 +1,23 @@
 package com.matjazt.netmon2.repository;
 
+import com.matjazt.netmon2.dto.HistoryExportDto;
 import com.matjazt.netmon2.entity.DeviceStatusHistoryEntity;
 
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository for DeviceStatusHistoryEntity.
@@ -22,6 +29,18 @@ import java.util.List;
 public interface DeviceStatusHistoryRepository
         extends JpaRepository<DeviceStatusHistoryEntity, Long> {
 
+    /** Rows fetched from the database cursor at a time when streaming history. */
+    String STREAM_FETCH_SIZE = "1000";
+
+    /** Select list and joins of the export queries. */
+    String EXPORT_SELECT =
+            "SELECT new com.matjazt.netmon2.dto.HistoryExportDto("
+                    + "h.id, h.network.id, d.id, d.macAddress, h.ipAddress, h.online, h.timestamp) "
+                    + "FROM DeviceStatusHistoryEntity h LEFT JOIN h.device d ";
+
+    /** Order of the export queries. */
+    String EXPORT_ORDER = "ORDER BY h.timestamp, h.id";
+
     /**
      * Find status history for a specific device
      *
@@ -38,6 +57,32 @@ public interface DeviceStatusHistoryRepository
      */
     Page<DeviceStatusHistoryEntity> findByDevice_Id(Long deviceId, Pageable pageable);
 
+    /**
+     * KEYSET PAGINATION: Newest status history of a device
+     *
+     * <p>Ordered by timestamp, then ID, both descending; served by the {@code (device_id,
+     * "timestamp" DESC, id DESC)} index. Use {@code PageRequest.of(0, size)}: later pages are
+     * selected by key with {@link #findSliceByDeviceBefore}, never by offset.
+     */
+    @Query(
+            "SELECT h FROM DeviceStatusHistoryEntity h "
+                    + "WHERE h.device.id = :deviceId "
+                    + "ORDER BY h.timestamp DESC, h.id DESC")
+    Slice<DeviceStatusHistoryEntity> findSliceByDevice(
+            @Param("deviceId") Long deviceId, Pageable pageable);
+
+    /** KEYSET PAGINATION: Status history of a device older than the given (timestamp, id) key */
+    @Query(
+            "SELECT h FROM DeviceStatusHistoryEntity h "
+                    + "WHERE h.device.id = :deviceId "
+                    + "AND (h.timestamp, h.id) < (:timestamp, :id) "
+                    + "ORDER BY h.timestamp DESC, h.id DESC")
+    Slice<DeviceStatusHistoryEntity> findSliceByDeviceBefore(
+            @Param("deviceId") Long deviceId,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("id") Long id,
+            Pageable pageable);
+
     /**
      * Find status history for a network
      *
@@ -74,17 +119,17 @@ public interface DeviceStatusHistoryRepository
     /**
      * CUSTOM QUERY: Get latest status change for each device on a network
      *
-     * <p>Uses DISTINCT ON pattern (PostgreSQL) or subquery approach. This finds the most recent
-     * status change per device.
+     * <p>The latest row of every device is tracked in {@code device_current_status} (see {@link
+     * com.matjazt.netmon2.entity.DeviceCurrentStatusEntity}), so this is a join on primary keys
+     * instead of a search for each device's newest row. The timestamp and network are part of the
+     * history's primary key (partitioning), hence the extra conditions.
      */
     @Query(
-            "SELECT h FROM DeviceStatusHistoryEntity h "
-                    + "WHERE h.network.id = :networkId "
-                    + "AND h.timestamp = ("
-                    + "  SELECT MAX(h2.timestamp) "
-                    + "  FROM DeviceStatusHistoryEntity h2 "
-                    + "  WHERE h2.device.id = h.device.id"
-                    + ") "
+            "SELECT h FROM DeviceStatusHistoryEntity h, DeviceCurrentStatusEntity c "
+                    + "WHERE c.networkId = :networkId "
+                    + "AND h.id = c.historyId "
+                    + "AND h.timestamp = c.timestamp "
+                    + "AND h.network.id = c.networkId "
                     + "ORDER BY h.timestamp DESC")
     List<DeviceStatusHistoryEntity> findLatestStatusPerDevice(@Param("networkId") Long networkId);
 
@@ -99,40 +144,191 @@ public interface DeviceStatusHistoryRepository
             @Param("networkId") Long networkId, @Param("deviceId") Long deviceId);
 
     /**
-     * CUSTOM QUERY: Get currently online devices on a network NOTE: index or query optimization
-     * needed, but since this method is currentlynot used, we skip it for now.
+     * CUSTOM QUERY: Get currently online devices on a network
+     *
+     * <p>Same as {@link #findLatestStatusPerDevice}, limited to devices whose latest status change
+     * was going online.
      */
     @Query(
-            "SELECT h FROM DeviceStatusHistoryEntity h "
-                    + "WHERE h.network.id = :networkId "
-                    + "AND h.online = true "
-                    + "AND h.timestamp = ("
-                    + "  SELECT MAX(h2.timestamp) "
-                    + "  FROM DeviceStatusHistoryEntity h2 "
-                    + "  WHERE h2.device.id = h.device.id"
-                    + ") "
+            "SELECT h FROM DeviceStatusHistoryEntity h, DeviceCurrentStatusEntity c "
+                    + "WHERE c.networkId = :networkId "
+                    + "AND c.online = true "
+                    + "AND h.id = c.historyId "
+                    + "AND h.timestamp = c.timestamp "
+                    + "AND h.network.id = c.networkId "
                     + "ORDER BY h.timestamp DESC")
     List<DeviceStatusHistoryEntity> findCurrentlyOnlineDevices(@Param("networkId") Long networkId);
 
     /**
-     * CUSTOM QUERY: Calculate uptime percentage for a device
+     * CUSTOM QUERY: Stream the status transitions of a device that are relevant for the window
+     * [start, end)
+     *
+     * <p>Besides the rows inside the window, the last row before {@code start} is included, since
+     * it tells the state the device was in when the window started. Rows are streamed from a
+     * database cursor in timestamp order, so the caller must consume the stream within a
+     * transaction and close it.
      *
-     * <p>Returns aggregated data: total time online vs total time in period. Result is Object[]
-     * with [deviceId, totalOnlineMinutes, totalMinutes]
+     * @see com.matjazt.netmon2.service.UptimeCalculator
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
     @Query(
-            "SELECT h.device.id, "
-                    + "SUM(CASE WHEN h.online = true THEN 1 ELSE 0 END), "
-                    + "COUNT(h) "
-                    + "FROM DeviceStatusHistoryEntity h "
+            value =
+                    "SELECT t.device_id AS \"deviceId\", t.online AS \"online\","
+                            + " t.\"timestamp\" AS \"timestamp\" FROM ("
+                            + "  (SELECT h.device_id, h.online, h.\"timestamp\""
+                            + "   FROM device_status_history h"
+                            + "   WHERE h.device_id = :deviceId AND h.\"timestamp\" < :start"
+                            + "   ORDER BY h.\"timestamp\" DESC LIMIT 1)"
+                            + "  UNION ALL"
+                            + "  SELECT h.device_id, h.online, h.\"timestamp\""
+                            + "  FROM device_status_history h"
+                            + "  WHERE h.device_id = :deviceId"
+                            + "  AND h.\"timestamp\" >= :start AND h.\"timestamp\" < :end"
+                            + ") t ORDER BY t.\"timestamp\"",
+            nativeQuery = true)
+    Stream<StatusTransition> streamDeviceTransitions(
+            @Param("deviceId") Long deviceId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * CUSTOM QUERY: Stream the status transitions of all devices on a network that are relevant
+     * for the window [start, end)
+     *
+     * <p>Same as {@link #streamDeviceTransitions}, for every device of the network at once. Rows
+     * are ordered by device, then timestamp.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(
+            value =
+                    "SELECT t.device_id AS \"deviceId\", t.online AS \"online\","
+                            + " t.\"timestamp\" AS \"timestamp\" FROM ("
+                            + "  SELECT p.device_id, p.online, p.\"timestamp\""
+                            + "  FROM device d CROSS JOIN LATERAL ("
+                            + "   SELECT h.device_id, h.online, h.\"timestamp\""
+                            + "   FROM device_status_history h"
+                            + "   WHERE h.device_id = d.id AND h.\"timestamp\" < :start"
+                            + "   ORDER BY h.\"timestamp\" DESC LIMIT 1) p"
+                            + "  WHERE d.network_id = :networkId"
+                            + "  UNION ALL"
+                            + "  SELECT h.device_id, h.online, h.\"timestamp\""
+                            + "  FROM device_status_history h"
+                            + "  WHERE h.network_id = :networkId AND h.device_id IS NOT NULL"
+                            + "  AND h.\"timestamp\" >= :start AND h.\"timestamp\" < :end"
+                            + ") t ORDER BY t.device_id, t.\"timestamp\"",
+            nativeQuery = true)
+    Stream<StatusTransition> streamNetworkTransitions(
+            @Param("networkId") Long networkId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * CUSTOM QUERY: Stream the status transitions of a network in (after, upTo], in timestamp
+     * order
+     *
+     * <p>Used to replay history on top of a checkpoint. Must be consumed within a transaction.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query(
+            value =
+                    "SELECT h.device_id AS \"deviceId\", h.online AS \"online\","
+                            + " h.\"timestamp\" AS \"timestamp\""
+                            + " FROM device_status_history h"
+                            + " WHERE h.network_id = :networkId AND h.device_id IS NOT NULL"
+                            + " AND h.\"timestamp\" > :after AND h.\"timestamp\" <= :upTo"
+                            + " ORDER BY h.\"timestamp\", h.id",
+            nativeQuery = true)
+    Stream<StatusTransition> streamNetworkTransitionsBetween(
+            @Param("networkId") Long networkId,
+            @Param("after") LocalDateTime after,
+            @Param("upTo") LocalDateTime upTo);
+
+    /**
+     * CUSTOM QUERY: Stream history rows of all networks for export, oldest first
+     *
+     * <p>Rows are read from a database cursor as DTOs, so the export's memory use doesn't depend
+     * on the number of rows. Must be consumed within a transaction.
+     *
+     * <p>There is one query per combination of filters rather than optional parameters, since a
+     * condition like {@code :networkId IS NULL OR ...} keeps PostgreSQL from pruning partitions.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(
+            EXPORT_SELECT
+                    + "WHERE h.timestamp >= :start AND h.timestamp < :end "
+                    + EXPORT_ORDER)
+    Stream<HistoryExportDto> streamForExport(
+            @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /** CUSTOM QUERY: Stream history rows of a network for export, see {@link #streamForExport} */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(
+            EXPORT_SELECT
+                    + "WHERE h.network.id = :networkId "
+                    + "AND h.timestamp >= :start AND h.timestamp < :end "
+                    + EXPORT_ORDER)
+    Stream<HistoryExportDto> streamNetworkForExport(
+            @Param("networkId") Long networkId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /** CUSTOM QUERY: Stream history rows of a device for export, see {@link #streamForExport} */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(
+            EXPORT_SELECT
                     + "WHERE h.device.id = :deviceId "
-                    + "AND h.timestamp BETWEEN :start AND :end "
-                    + "GROUP BY h.device.id")
-    Object[] calculateUptime(
+                    + "AND h.timestamp >= :start AND h.timestamp < :end "
+                    + EXPORT_ORDER)
+    Stream<HistoryExportDto> streamDeviceForExport(
             @Param("deviceId") Long deviceId,
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 
+    /**
+     * CUSTOM QUERY: Stream history rows of a device of a network for export, see {@link
+     * #streamForExport}
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(
+            EXPORT_SELECT
+                    + "WHERE h.network.id = :networkId AND h.device.id = :deviceId "
+                    + "AND h.timestamp >= :start AND h.timestamp < :end "
+                    + EXPORT_ORDER)
+    Stream<HistoryExportDto> streamNetworkDeviceForExport(
+            @Param("networkId") Long networkId,
+            @Param("deviceId") Long deviceId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * CUSTOM QUERY: Find the devices of a network that were online at the given time
+     *
+     * <p>Looks up the last history row at or before {@code at} for every device of the network,
+     * so the cost grows with the number of devices rather than the amount of history.
+     */
+    @Query(
+            value =
+                    "SELECT d.id FROM device d CROSS JOIN LATERAL ("
+                            + "  SELECT h.online FROM device_status_history h"
+                            + "  WHERE h.device_id = d.id AND h.\"timestamp\" <= :at"
+                            + "  ORDER BY h.\"timestamp\" DESC, h.id DESC LIMIT 1) p"
+                            + " WHERE d.network_id = :networkId AND p.online",
+            nativeQuery = true)
+    List<Long> findOnlineDeviceIdsAt(
+            @Param("networkId") Long networkId, @Param("at") LocalDateTime at);
+
     /**
      * CUSTOM QUERY: Find devices with frequent status changes
      *
@@ -15,10 +15,11 @@ import java.util.Optional;
  *
  * <p>Extends {@link JpaRepository} which provides standard methods: save(), findById(), findAll(),
  * delete(), etc. Custom query methods are derived from method names - no implementation code
- * needed.
+ * needed. Lookups that need Hibernate's own API are in {@link NetworkRepositoryCustom}.
  */
 @Repository
-public interface NetworkRepository extends JpaRepository<NetworkEntity, Long> {
+public interface NetworkRepository
+        extends JpaRepository<NetworkEntity, Long>, NetworkRepositoryCustom {
 
     /**
      * Finds network by exact name match.
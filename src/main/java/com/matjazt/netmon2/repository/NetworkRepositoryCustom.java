@@ -0,0 +1,21 @@
+package com.matjazt.netmon2.repository;
+
+import com.matjazt.netmon2.entity.NetworkEntity;
+
+import java.util.Optional;
+
+/** Custom {@link NetworkRepository} methods that can't be derived by Spring Data. */
+public interface NetworkRepositoryCustom {
+
+    /**
+     * Finds a network by name through Hibernate's natural ID API.
+     *
+     * <p>Unlike {@link NetworkRepository#findByName(String)}, which always runs a query, this
+     * resolves a name whose network is already loaded in the current session without touching the
+     * database.
+     *
+     * @param name the network name
+     * @return Optional containing the network if found, empty otherwise
+     */
+    Optional<NetworkEntity> findByNaturalId(String name);
+}
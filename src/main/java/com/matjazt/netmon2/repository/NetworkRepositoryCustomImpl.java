@@ -0,0 +1,27 @@
+package com.matjazt.netmon2.repository;
+
+import com.matjazt.netmon2.entity.NetworkEntity;
+
+import jakarta.persistence.EntityManager;
+
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+/** Implementation of {@link NetworkRepositoryCustom}, picked up by Spring Data by its name. */
+public class NetworkRepositoryCustomImpl implements NetworkRepositoryCustom {
+
+    private final EntityManager entityManager;
+
+    public NetworkRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<NetworkEntity> findByNaturalId(String name) {
+        return entityManager
+                .unwrap(Session.class)
+                .bySimpleNaturalId(NetworkEntity.class)
+                .loadOptional(name);
+    }
+}
@@ -0,0 +1,24 @@
+package com.matjazt.netmon2.repository;
+
+import com.matjazt.netmon2.entity.NetworkStatusCheckpointEntity;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/** Repository for NetworkStatusCheckpointEntity. */
+@Repository
+public interface NetworkStatusCheckpointRepository
+        extends JpaRepository<NetworkStatusCheckpointEntity, Long> {
+
+    /** Find the newest checkpoint of a network. */
+    Optional<NetworkStatusCheckpointEntity> findFirstByNetwork_IdOrderByTimestampDesc(
+            Long networkId);
+
+    /** Find the newest checkpoint of a network at or before the given time. */
+    Optional<NetworkStatusCheckpointEntity>
+            findFirstByNetwork_IdAndTimestampLessThanEqualOrderByTimestampDesc(
+                    Long networkId, LocalDateTime timestamp);
+}
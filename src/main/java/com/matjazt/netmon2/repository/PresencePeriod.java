@@ -0,0 +1,11 @@
+package com.matjazt.netmon2.repository;
+
+import java.time.LocalDateTime;
+
+/** A time period [start, end), as returned by the presence overlap queries. */
+public interface PresencePeriod {
+
+    LocalDateTime getStart();
+
+    LocalDateTime getEnd();
+}
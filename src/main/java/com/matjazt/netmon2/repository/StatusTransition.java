@@ -0,0 +1,18 @@
+package com.matjazt.netmon2.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Minimal view of a device status history row: which device changed to which state, and when.
+ *
+ * <p>Used as a projection when streaming large amounts of history, so no entities (and no lazy
+ * associations) are created per row.
+ */
+public interface StatusTransition {
+
+    Long getDeviceId();
+
+    Boolean getOnline();
+
+    LocalDateTime getTimestamp();
+}
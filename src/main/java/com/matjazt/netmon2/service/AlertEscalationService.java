@@ -0,0 +1,254 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.AlerterProperties;
+import com.matjazt.netmon2.entity.AlertEntity;
+import com.matjazt.netmon2.repository.AlertRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps track of when open alerts need their next reminder or escalation.
+ *
+ * <p>Open alerts are held in a priority queue ordered by the time of their next notification, so
+ * the periodic check in {@link TimingProxy#processAlertReminders()} only has to peek at the head of
+ * the queue instead of scanning the alert table. The queue is loaded once at startup and then kept
+ * up to date by {@link AlerterService} whenever an alert is opened or closed.
+ *
+ * <p>Closed alerts are removed lazily: their queue entry is marked as cancelled and discarded when it
+ * reaches the head of the queue.
+ *
+ * <p>Notification policy (see {@link AlerterProperties}):
+ *
+ * <ul>
+ *   <li>a reminder is sent every {@code reminderIntervalMinutes} after the last notification
+ *   <li>once an alert has been open for {@code escalationAfterMinutes}, the next notification is an
+ *       escalation, which also goes to {@code escalationEmailAddress}; this happens only once per
+ *       alert
+ * </ul>
+ */
+@Service
+public class AlertEscalationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertEscalationService.class);
+
+    private final AlerterProperties properties;
+    private final AlertRepository alertRepository;
+
+    private final PriorityQueue<ScheduledNotification> queue =
+            new PriorityQueue<>(Comparator.comparing(ScheduledNotification::getNextNotification));
+    private final Map<Long, ScheduledNotification> byAlertId = new HashMap<>();
+
+    public AlertEscalationService(AlerterProperties properties, AlertRepository alertRepository) {
+        this.properties = properties;
+        this.alertRepository = alertRepository;
+    }
+
+    /** Loads all open alerts into the queue. This is the only time the alert table is scanned. */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadOpenAlerts() {
+        var openAlerts = alertRepository.findByClosureTimestampIsNull();
+        for (var alert : openAlerts) {
+            alertOpened(alert);
+        }
+        logger.info("Scheduled reminders for {} open alerts", openAlerts.size());
+    }
+
+    /**
+     * Reloads all open alerts when networks moved between cluster nodes, since this node doesn't
+     * hear about alerts opened or closed by other nodes otherwise.
+     *
+     * <p>Not read-only, so the alerts are read from the primary database: a read replica could
+     * still miss alerts the other nodes opened just before.
+     */
+    @EventListener
+    @Transactional
+    public void onClusterMembershipChanged(ClusterMembershipChangedEvent event) {
+        synchronized (this) {
+            queue.clear();
+            byAlertId.clear();
+        }
+        loadOpenAlerts();
+    }
+
+    /** Starts tracking a newly opened (or, at startup, already open) alert. */
+    public synchronized void alertOpened(AlertEntity alert) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        var entry =
+                new ScheduledNotification(
+                        alert.getId(),
+                        alert.getNetwork().getId(),
+                        alert.getTimestamp(),
+                        isEscalationSent(alert));
+        entry.nextNotification =
+                computeNextNotification(entry, alert.getLastNotificationTimestamp());
+        schedule(entry);
+    }
+
+    /** Stops tracking an alert that has been closed. */
+    public synchronized void alertClosed(long alertId) {
+        var entry = byAlertId.remove(alertId);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+
+    /**
+     * Removes all notifications that are due and schedules their follow-ups.
+     *
+     * <p>The follow-up is scheduled right away, assuming the caller sends the notification. If
+     * sending fails, the alert is simply retried with its next reminder; a notification that was
+     * skipped on purpose is handed back with {@link #notificationSkipped}.
+     *
+     * @param now current UTC time
+     * @return due notifications, oldest first
+     */
+    public synchronized List<DueNotification> pollDue(LocalDateTime now) {
+        var due = new ArrayList<DueNotification>();
+        while (!queue.isEmpty() && !queue.peek().nextNotification.isAfter(now)) {
+            var entry = queue.poll();
+            if (entry.cancelled) {
+                continue;
+            }
+
+            boolean escalation = !entry.escalated && isEscalationDue(entry, now);
+            if (escalation) {
+                entry.escalated = true;
+            }
+            due.add(
+                    new DueNotification(
+                            entry.alertId, entry.networkId, escalation, entry.nextNotification));
+
+            entry.nextNotification = computeNextNotification(entry, now);
+            queue.add(entry);
+        }
+        return due;
+    }
+
+    /**
+     * Puts back a notification returned by {@link #pollDue} that wasn't sent because another node
+     * was processing the alert's network, so it is due again on the next check. If it was the
+     * escalation, the alert is marked as not escalated again.
+     */
+    public synchronized void notificationSkipped(DueNotification due) {
+        var entry = byAlertId.get(due.alertId());
+        if (entry == null) {
+            // closed in the meantime
+            return;
+        }
+        var retry =
+                new ScheduledNotification(
+                        entry.alertId,
+                        entry.networkId,
+                        entry.openedAt,
+                        entry.escalated && !due.escalation());
+        retry.nextNotification = due.scheduledFor();
+        schedule(retry);
+    }
+
+    /** Returns the number of open alerts currently being tracked. */
+    public synchronized int size() {
+        return byAlertId.size();
+    }
+
+    /**
+     * Returns true if the escalation of an alert was actually sent. The first notification at or
+     * after the escalation time is always the escalation, so an alert whose last notification is
+     * that late was escalated; one that was closed before (or whose escalation was skipped or
+     * failed) was not.
+     */
+    public boolean isEscalationSent(AlertEntity alert) {
+        return isEscalationEnabled()
+                && alert.getLastNotificationTimestamp() != null
+                && !alert.getLastNotificationTimestamp()
+                        .isBefore(escalationTime(alert.getTimestamp()));
+    }
+
+    private boolean isEscalationDue(ScheduledNotification entry, LocalDateTime now) {
+        return isEscalationEnabled() && !escalationTime(entry.openedAt).isAfter(now);
+    }
+
+    private LocalDateTime escalationTime(LocalDateTime openedAt) {
+        return openedAt.plusMinutes(properties.getEscalationAfterMinutes());
+    }
+
+    private boolean isEnabled() {
+        return properties.getReminderIntervalMinutes() > 0 || isEscalationEnabled();
+    }
+
+    private boolean isEscalationEnabled() {
+        return properties.getEscalationEmailAddress() != null
+                && !properties.getEscalationEmailAddress().isBlank();
+    }
+
+    private void schedule(ScheduledNotification entry) {
+        var previous = byAlertId.put(entry.alertId, entry);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        queue.add(entry);
+    }
+
+    private LocalDateTime computeNextNotification(
+            ScheduledNotification entry, LocalDateTime lastNotification) {
+        LocalDateTime next = LocalDateTime.MAX;
+        if (properties.getReminderIntervalMinutes() > 0) {
+            next = lastNotification.plusMinutes(properties.getReminderIntervalMinutes());
+        }
+        if (!entry.escalated && isEscalationEnabled()) {
+            var escalationTime = escalationTime(entry.openedAt);
+            if (escalationTime.isBefore(next)) {
+                next = escalationTime;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * A notification that is due now.
+     *
+     * @param alertId the alert to notify about
+     * @param networkId the network the alert belongs to
+     * @param escalation true if this is the (one-time) escalation, false for a plain reminder
+     * @param scheduledFor when the notification was due
+     */
+    public record DueNotification(
+            long alertId, long networkId, boolean escalation, LocalDateTime scheduledFor) {}
+
+    private static final class ScheduledNotification {
+        private final long alertId;
+        private final long networkId;
+        private final LocalDateTime openedAt;
+        private boolean escalated;
+        private boolean cancelled;
+        private LocalDateTime nextNotification;
+
+        private ScheduledNotification(
+                long alertId, long networkId, LocalDateTime openedAt, boolean escalated) {
+            this.alertId = alertId;
+            this.networkId = networkId;
+            this.openedAt = openedAt;
+            this.escalated = escalated;
+        }
+
+        private LocalDateTime getNextNotification() {
+            return nextNotification;
+        }
+    }
+}
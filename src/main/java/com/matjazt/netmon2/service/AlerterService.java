@@ -8,16 +8,18 @@ import com.matjazt.netmon2.entity.DeviceOperationMode;
 import com.matjazt.netmon2.entity.NetworkEntity;
 import com.matjazt.netmon2.repository.AlertRepository;
 import com.matjazt.netmon2.repository.DeviceRepository;
-import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
 import com.matjazt.netmon2.repository.NetworkRepository;
+import com.matjazt.netmon2.service.notification.AlertNotification;
+import com.matjazt.netmon2.service.notification.AlertNotificationDispatcher;
+import com.matjazt.netmon2.service.notification.AlertNotificationKind;
 import com.matjazt.tools.SimpleTools;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -25,14 +27,15 @@ import java.util.ArrayList;
 import java.util.Map;
 
 /**
- * Background service for processing alerts and sending email notifications.
+ * Background service for processing alerts and sending notifications.
  *
  * <p>This service handles the core business logic for alert management. The actual scheduled
  * execution and performance timing is managed by {@link TimingProxy}, which wraps calls to {@link
  * #processNetworkAlerts(NetworkEntity)} to measure execution time outside the transactional
  * boundary.
  *
- * <p>Uses Spring's {@link JavaMailSender} for email delivery.
+ * <p>Notifications are rendered once and handed to {@link AlertNotificationDispatcher}, which
+ * delivers them through all configured channels (email, webhooks, MQTT).
  *
  * @see TimingProxy#processAlerts()
  */
@@ -42,12 +45,16 @@ public class AlerterService {
     private static final Logger logger = LoggerFactory.getLogger(AlerterService.class);
 
     private final AlerterProperties properties;
-    private final JavaMailSender mailSender;
+    private final AlertNotificationDispatcher notificationDispatcher;
 
     private final NetworkRepository networkRepository;
     private final DeviceRepository deviceRepository;
-    private final DeviceStatusHistoryRepository deviceStatusHistoryRepository;
     private final AlertRepository alertRepository;
+    private final FlapDetector flapDetector;
+    private final AlertEscalationService alertEscalationService;
+    private final ClusterCoordinator clusterCoordinator;
+    private final NetworkRegistry networkRegistry;
+    private final ScanIntervalTracker scanIntervalTracker;
 
     // private static final DateTimeFormatter TIME_FORMATTER =
     //        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -60,22 +67,30 @@ public class AlerterService {
 
     public AlerterService(
             AlerterProperties properties,
-            JavaMailSender mailSender,
+            AlertNotificationDispatcher notificationDispatcher,
             NetworkRepository networkRepository,
             DeviceRepository deviceRepository,
-            DeviceStatusHistoryRepository deviceStatusHistoryRepository,
-            AlertRepository alertRepository) {
+            AlertRepository alertRepository,
+            FlapDetector flapDetector,
+            AlertEscalationService alertEscalationService,
+            ClusterCoordinator clusterCoordinator,
+            NetworkRegistry networkRegistry,
+            ScanIntervalTracker scanIntervalTracker) {
         this.properties = properties;
-        this.mailSender = mailSender;
+        this.notificationDispatcher = notificationDispatcher;
         this.networkRepository = networkRepository;
         this.deviceRepository = deviceRepository;
-        this.deviceStatusHistoryRepository = deviceStatusHistoryRepository;
         this.alertRepository = alertRepository;
+        this.flapDetector = flapDetector;
+        this.alertEscalationService = alertEscalationService;
+        this.clusterCoordinator = clusterCoordinator;
+        this.networkRegistry = networkRegistry;
+        this.scanIntervalTracker = scanIntervalTracker;
     }
 
     private void sendAlert(
             AlertEntity alert,
-            boolean closure,
+            AlertNotificationKind kind,
             NetworkEntity network,
             DeviceEntity device,
             String message) {
@@ -95,12 +110,23 @@ public class AlerterService {
             subject += "device";
         }
 
-        if (closure) {
-            fullMessageEntries.add("ALERT CLOSED");
-            subject += " alert closure";
-        } else {
-            fullMessageEntries.add("ALERT TRIGGERED");
-            subject += " alert";
+        switch (kind) {
+            case TRIGGERED -> {
+                fullMessageEntries.add("ALERT TRIGGERED");
+                subject += " alert";
+            }
+            case REMINDER -> {
+                fullMessageEntries.add("ALERT STILL OPEN");
+                subject += " alert reminder";
+            }
+            case ESCALATION -> {
+                fullMessageEntries.add("ALERT ESCALATED");
+                subject += " alert escalation";
+            }
+            case CLOSED -> {
+                fullMessageEntries.add("ALERT CLOSED");
+                subject += " alert closure";
+            }
         }
         fullMessageEntries.add(""); // empty line
 
@@ -111,14 +137,14 @@ public class AlerterService {
         if (device != null) {
             fullMessageEntries.add("Device: " + device.getBasicInfo());
         }
-        fullMessageEntries.add(
-                "UTC time: " + SimpleTools.formatDefault(LocalDateTime.now(ZoneOffset.UTC)));
+        var now = LocalDateTime.now(ZoneOffset.UTC);
+        fullMessageEntries.add("UTC time: " + SimpleTools.formatDefault(now));
         fullMessageEntries.add("Alert Type: " + alert.getAlertType());
         fullMessageEntries.add("Alert Id: " + alert.getId());
 
         fullMessageEntries.add(""); // empty line
 
-        if (!closure) {
+        if (kind != AlertNotificationKind.CLOSED) {
             fullMessageEntries.add(baseMessage + ".");
         }
 
@@ -131,25 +157,43 @@ public class AlerterService {
         var fullMessage = String.join(System.lineSeparator(), fullMessageEntries);
         logger.warn("fullMessage:\n{}", fullMessage);
 
+        if (device != null) {
+            subject += " for " + device.getNameOrMac();
+        }
+
+        var emailRecipients = new ArrayList<String>();
+
         // Send email if network has an email address configured
         if (network != null
                 && network.getEmailAddress() != null
                 && !network.getEmailAddress().isEmpty()) {
-            // figure out email subject
-
-            if (device != null) {
-                subject += " for " + device.getNameOrMac();
-            }
+            emailRecipients.add(network.getEmailAddress());
+        }
 
-            try {
-                sendEmail(network.getEmailAddress(), subject, fullMessage);
-                logger.info("Alert email sent to: {}", network.getEmailAddress());
-            } catch (Exception e) {
-                logger.error("Failed to send alert email", e);
-                throw new RuntimeException(
-                        "Failed to send alert email to " + network.getEmailAddress(), e);
-            }
+        // escalation recipients get the escalation itself and the closure of alerts that were
+        // actually escalated
+        var escalationEmailAddress = properties.getEscalationEmailAddress();
+        if (escalationEmailAddress != null
+                && !escalationEmailAddress.isBlank()
+                && (kind == AlertNotificationKind.ESCALATION
+                        || (kind == AlertNotificationKind.CLOSED
+                                && alertEscalationService.isEscalationSent(alert)))) {
+            emailRecipients.add(escalationEmailAddress);
         }
+
+        // email is sent right away (failures roll back the alert), other channels are notified
+        // after commit
+        notificationDispatcher.dispatch(
+                new AlertNotification(
+                        alert.getId(),
+                        alert.getAlertType(),
+                        kind,
+                        network.getName(),
+                        device != null ? device.getBasicInfo() : null,
+                        now,
+                        subject,
+                        fullMessage,
+                        emailRecipients));
     }
 
     public AlertEntity openAlert(
@@ -191,8 +235,9 @@ public class AlerterService {
             // Hibernate will auto-UPDATE at commit: deviceRepository.save(device);
         }
 
-        // send alert notification
-        sendAlert(alert, false, network, device, message);
+        // send alert notification and schedule reminders
+        sendAlert(alert, AlertNotificationKind.TRIGGERED, network, device, message);
+        afterCommit(() -> alertEscalationService.alertOpened(alert));
 
         // return created alert (including its ID)
         return alert;
@@ -229,30 +274,85 @@ public class AlerterService {
 
         // append the information about the alert we are closing to the message: alert
         // timestamp and duration
-        var duration =
-                java.time.Duration.between(alert.getTimestamp(), alert.getClosureTimestamp());
-        String durationInfo =
-                "Alert opened at: "
-                        + SimpleTools.formatDefault(alert.getTimestamp())
-                        + " UTC\nDuration: "
-                        + String.format(
-                                "%d days, %d hours, %d minutes, %d seconds",
-                                duration.toDaysPart(),
-                                duration.toHoursPart(),
-                                duration.toMinutesPart(),
-                                duration.toSecondsPart());
+        String durationInfo = formatDurationInfo(alert, alert.getClosureTimestamp());
         message = (message != null ? message.trim() : "") + "\n" + durationInfo;
 
-        // send alert notification
-        sendAlert(alert, true, network, device, message);
+        // send alert notification, no more reminders needed
+        afterCommit(() -> alertEscalationService.alertClosed(alert.getId()));
+        sendAlert(alert, AlertNotificationKind.CLOSED, network, device, message);
 
         // return closed alert
         return alert;
     }
 
+    /**
+     * Runs an update of the in-memory reminder queue once the current transaction has committed, so
+     * a rollback never leaves reminders for an alert that wasn't saved, or drops the reminders of
+     * an alert that is still open. Runs right away outside a transaction.
+     */
+    private static void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            task.run();
+                        }
+                    });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Sends a reminder (or the one-time escalation) for an alert that is still open.
+     *
+     * <p>Called by {@link TimingProxy#processAlertReminders()} for notifications that {@link
+     * AlertEscalationService} reports as due. Alerts that were closed or deleted in the meantime
+     * are ignored. If another node is processing the alert's network, the notification is handed
+     * back to {@link AlertEscalationService} to be retried on the next check.
+     *
+     * @param due the due reminder or escalation
+     */
+    @Transactional
+    public void sendReminder(AlertEscalationService.DueNotification due) {
+        long alertId = due.alertId();
+        var alertOpt = alertRepository.findById(alertId);
+        if (alertOpt.isEmpty() || alertOpt.get().getClosureTimestamp() != null) {
+            alertEscalationService.alertClosed(alertId);
+            return;
+        }
+
+        var alert = alertOpt.get();
+        if (!clusterCoordinator.tryLockNetwork(alert.getNetwork().getId())) {
+            // another node is processing this network right now
+            alertEscalationService.notificationSkipped(due);
+            return;
+        }
+
+        var now = LocalDateTime.now(ZoneOffset.UTC);
+        alert.setLastNotificationTimestamp(now);
+        // Hibernate will auto-UPDATE at commit: alertRepository.save(alert);
+
+        sendAlert(
+                alert,
+                due.escalation()
+                        ? AlertNotificationKind.ESCALATION
+                        : AlertNotificationKind.REMINDER,
+                alert.getNetwork(),
+                alert.getDevice(),
+                formatDurationInfo(alert, now));
+    }
+
     @Transactional
     public void processNetworkAlerts(long networkId) {
 
+        // in a cluster, make sure no other node is evaluating this network at the same time
+        if (!clusterCoordinator.tryLockNetwork(networkId)) {
+            logger.info("Network {} is being processed by another node, skipping", networkId);
+            return;
+        }
+
         // see if the entire network is down or up
 
         var network =
@@ -263,12 +363,22 @@ public class AlerterService {
                                         new IllegalArgumentException(
                                                 "Network with ID " + networkId + " not found"));
 
+        // per-device thresholds come from the network configuration, parsed by the registry
+        var configuration =
+                networkRegistry
+                        .get(networkId)
+                        .map(NetworkRegistry.NetworkInfo::configuration)
+                        .orElse(NetworkConfiguration.DEFAULT);
+
         var now = LocalDateTime.now(ZoneOffset.UTC);
-        var alertingThreshold = now.minusSeconds(network.getAlertingDelay());
-        var closureThreshold =
-                alertingThreshold.plusSeconds(Math.min(30, network.getAlertingDelay() / 10));
 
-        if (network.getLastSeen().isBefore(alertingThreshold)) {
+        // a scanner that reports regularly is declared down after a few missed scans rather than
+        // after the full alerting delay
+        var networkDownThreshold =
+                now.minusSeconds(
+                        scanIntervalTracker.getAlertingDelay(networkId, network.getAlertingDelay()));
+
+        if (network.getLastSeen().isBefore(networkDownThreshold)) {
             // network is down
             if (network.getActiveAlertId() == null) {
                 // network is down, alert hasn't been sent yet
@@ -287,12 +397,17 @@ public class AlerterService {
         // now check individual devices
         for (DeviceEntity device : deviceRepository.findByNetwork_Id(network.getId())) {
 
+            int deviceAlertingDelay =
+                    configuration.getAlertingDelaySeconds(
+                            device.getMacAddress(), network.getAlertingDelay());
+            var deviceAlertingThreshold = now.minusSeconds(deviceAlertingDelay);
+
             if (device.getDeviceOperationMode() == DeviceOperationMode.UNAUTHORIZED) {
                 // the device is not allowed on the network
                 // alerts for such cases are sent when the device first appears, so here we can
                 // just check if it's gone
                 if (device.getActiveAlertId() != null
-                        && device.getLastSeen().isBefore(alertingThreshold)) {
+                        && device.getLastSeen().isBefore(deviceAlertingThreshold)) {
                     // device is gone, clear alert
                     closeAlert(network, device, null);
                 }
@@ -304,19 +419,29 @@ public class AlerterService {
                     closeAlert(network, device, "device is now authorized");
                 }
             } else if (device.getDeviceOperationMode() == DeviceOperationMode.ALWAYS_ON) {
+                if (flapDetector.isFlapping(device.getId())) {
+                    // flapping devices would open/close an alert on every toggle; leave the
+                    // alert state alone until the device calms down
+                    continue;
+                }
                 // the device should always be online, check its status
-                if (device.getLastSeen().isBefore(alertingThreshold)) {
+                if (device.getLastSeen().isBefore(deviceAlertingThreshold)) {
                     // device is down, alert hasn't been sent yet
                     if (device.getActiveAlertId() == null) {
                         openAlert(AlertType.DEVICE_DOWN, network, device, null);
                     }
                 } else {
-                    // device is up
+                    // device is up; lastStatusChange tells us since when, so there's no need
+                    // to look at the history table
+                    var onlineSince =
+                            device.getLastStatusChange() != null
+                                    ? device.getLastStatusChange()
+                                    : device.getFirstSeen();
+                    var closureThreshold =
+                            now.minusSeconds(
+                                    configuration.getClosureDelaySeconds(deviceAlertingDelay));
                     if (device.getActiveAlertId() != null
-                            && deviceStatusHistoryRepository
-                                    .findLatestHistoryEntryByDevice(network.getId(), device.getId())
-                                    .getTimestamp()
-                                    .isBefore(closureThreshold)) {
+                            && onlineSince.isBefore(closureThreshold)) {
                         // device was down, now it's back up and has been up for long enough - send
                         // recovery alert
                         closeAlert(network, device, null);
@@ -326,22 +451,17 @@ public class AlerterService {
         }
     }
 
-    /**
-     * Send an email to a specific recipient (overrides configured default).
-     *
-     * @param to Recipient email address
-     * @param subject Email subject
-     * @param body Email body
-     */
-    public void sendEmail(String to, String subject, String body) {
-
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(
-                String.format("\"%s\" <%s>", properties.getFromName(), properties.getFromEmail()));
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(body);
-
-        mailSender.send(message);
+    /** Describes when the alert was opened and how long it has been (or was) open. */
+    private static String formatDurationInfo(AlertEntity alert, LocalDateTime until) {
+        var duration = java.time.Duration.between(alert.getTimestamp(), until);
+        return "Alert opened at: "
+                + SimpleTools.formatDefault(alert.getTimestamp())
+                + " UTC\nDuration: "
+                + String.format(
+                        "%d days, %d hours, %d minutes, %d seconds",
+                        duration.toDaysPart(),
+                        duration.toHoursPart(),
+                        duration.toMinutesPart(),
+                        duration.toSecondsPart());
     }
 }
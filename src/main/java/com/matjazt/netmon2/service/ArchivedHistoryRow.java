@@ -0,0 +1,34 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.repository.StatusTransition;
+
+import java.time.LocalDateTime;
+
+/**
+ * A device status history row that was moved to the history archive (see {@link HistoryArchive}).
+ *
+ * @param id ID the row had in {@code device_status_history}
+ * @param deviceId device ID, 0 if the row had no device
+ * @param timestamp when the status changed
+ * @param online new state of the device
+ * @param ipAddress device IP address at the time
+ */
+public record ArchivedHistoryRow(
+        long id, long deviceId, LocalDateTime timestamp, boolean online, String ipAddress)
+        implements StatusTransition {
+
+    @Override
+    public Long getDeviceId() {
+        return deviceId;
+    }
+
+    @Override
+    public Boolean getOnline() {
+        return online;
+    }
+
+    @Override
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+}
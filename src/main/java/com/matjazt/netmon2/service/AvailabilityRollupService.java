@@ -0,0 +1,417 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.HistoryProperties;
+import com.matjazt.netmon2.dto.response.AvailabilityRollupResponseDto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains hourly and daily availability rollups per device and per network.
+ *
+ * <p>Each rollup row holds, for one bucket (hour or day), the number of seconds the device was
+ * online, the number of status transitions, and the first and last moment it was online. Network
+ * rows are the sums over the network's devices (so their {@code online_seconds} are
+ * device-seconds). Reports read one row per bucket instead of walking the raw history.
+ *
+ * <p>Rollups are maintained in two ways:
+ *
+ * <ul>
+ *   <li><b>Incrementally</b>, by {@link #recordTransition}: whenever a device goes offline, the
+ *       online interval that just ended is added to the buckets it covers, and every transition is
+ *       counted in its bucket. Only the part after the <i>watermark</i> is added.
+ *   <li><b>By repair</b>, {@link #repair()}: periodically, all buckets from a few hours before the
+ *       current hour up to the current hour are recomputed from {@code device_status_history}.
+ *       This includes devices that are still online, and history rows that were written late
+ *       (e.g. offline transitions timestamped with the first missed scan, or settled flapping
+ *       devices). Afterwards the watermark moves to the start of the current hour.
+ * </ul>
+ *
+ * <p>Buckets before the watermark are therefore owned by the repair job, buckets after it by
+ * ingestion, and nothing is counted twice. Rare races between the two (e.g. a scan that commits
+ * while a repair runs) are fixed by the next repair, since consecutive repair windows overlap.
+ *
+ * <p>Until the first repair has run, ingestion doesn't touch the rollups.
+ */
+@Service
+public class AvailabilityRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityRollupService.class);
+
+    /** Rollup bucket size. */
+    public enum Granularity {
+        HOUR("H", ChronoUnit.HOURS),
+        DAY("D", ChronoUnit.DAYS);
+
+        private final String code;
+        private final ChronoUnit unit;
+
+        Granularity(String code, ChronoUnit unit) {
+            this.code = code;
+            this.unit = unit;
+        }
+
+        /** Returns the start of the bucket that contains the timestamp. */
+        public LocalDateTime bucketStart(LocalDateTime timestamp) {
+            return timestamp.truncatedTo(unit);
+        }
+
+        /** Returns the bucket length in seconds. */
+        public long bucketSeconds() {
+            return unit.getDuration().toSeconds();
+        }
+    }
+
+    private static final String UPSERT_DEVICE =
+            "INSERT INTO device_availability_rollup AS r (device_id, network_id, granularity,"
+                    + " bucket_start, online_seconds, transitions, first_seen, last_seen)"
+                    + " VALUES (:deviceId, :networkId, :granularity, :bucketStart,"
+                    + " :onlineSeconds, :transitions, :firstSeen, :lastSeen)"
+                    + " ON CONFLICT (device_id, granularity, bucket_start) DO UPDATE SET"
+                    + " online_seconds = r.online_seconds + EXCLUDED.online_seconds,"
+                    + " transitions = r.transitions + EXCLUDED.transitions,"
+                    + " first_seen = LEAST(r.first_seen, EXCLUDED.first_seen),"
+                    + " last_seen = GREATEST(r.last_seen, EXCLUDED.last_seen)";
+
+    private static final String UPSERT_NETWORK =
+            "INSERT INTO network_availability_rollup AS r (network_id, granularity,"
+                    + " bucket_start, online_seconds, transitions, first_seen, last_seen)"
+                    + " VALUES (:networkId, :granularity, :bucketStart,"
+                    + " :onlineSeconds, :transitions, :firstSeen, :lastSeen)"
+                    + " ON CONFLICT (network_id, granularity, bucket_start) DO UPDATE SET"
+                    + " online_seconds = r.online_seconds + EXCLUDED.online_seconds,"
+                    + " transitions = r.transitions + EXCLUDED.transitions,"
+                    + " first_seen = LEAST(r.first_seen, EXCLUDED.first_seen),"
+                    + " last_seen = GREATEST(r.last_seen, EXCLUDED.last_seen)";
+
+    /**
+     * Recomputes hourly device rollups in [:from, :to) from history. The state at :from comes from
+     * the last history row before it; every online interval is then split into hours.
+     */
+    private static final String REPAIR_DEVICE_HOURS =
+            "INSERT INTO device_availability_rollup AS r (device_id, network_id, granularity,"
+                    + " bucket_start, online_seconds, transitions, first_seen, last_seen)"
+                    + " WITH events AS ("
+                    + "   SELECT h.device_id, h.network_id, h.online, h.\"timestamp\""
+                    + "   FROM device_status_history h"
+                    + "   WHERE h.\"timestamp\" >= :from AND h.\"timestamp\" < :to"
+                    + "   AND h.device_id IS NOT NULL"
+                    + "   UNION ALL"
+                    + "   SELECT d.id, d.network_id, p.online, p.\"timestamp\""
+                    + "   FROM device d CROSS JOIN LATERAL ("
+                    + "     SELECT h.online, h.\"timestamp\" FROM device_status_history h"
+                    + "     WHERE h.device_id = d.id AND h.\"timestamp\" < :from"
+                    + "     ORDER BY h.\"timestamp\" DESC LIMIT 1) p"
+                    + " ), intervals AS ("
+                    + "   SELECT device_id, network_id, online, \"timestamp\","
+                    + "   GREATEST(\"timestamp\", :from) AS interval_start,"
+                    + "   COALESCE(LEAD(\"timestamp\") OVER ("
+                    + "     PARTITION BY device_id ORDER BY \"timestamp\"), :to) AS interval_end"
+                    + "   FROM events"
+                    + " ), contributions AS ("
+                    + "   SELECT i.device_id, i.network_id, b.bucket_start,"
+                    + "   EXTRACT(EPOCH FROM LEAST(i.interval_end, b.bucket_start + INTERVAL '1 hour')"
+                    + "     - GREATEST(i.interval_start, b.bucket_start)) AS online_seconds,"
+                    + "   0 AS transitions,"
+                    + "   GREATEST(i.interval_start, b.bucket_start) AS first_seen,"
+                    + "   LEAST(i.interval_end, b.bucket_start + INTERVAL '1 hour') AS last_seen"
+                    + "   FROM intervals i CROSS JOIN LATERAL generate_series("
+                    + "     date_trunc('hour', i.interval_start),"
+                    + "     i.interval_end - INTERVAL '1 microsecond',"
+                    + "     INTERVAL '1 hour') AS b(bucket_start)"
+                    + "   WHERE i.online AND i.interval_end > i.interval_start"
+                    + "   UNION ALL"
+                    + "   SELECT device_id, network_id, date_trunc('hour', \"timestamp\"), 0, 1,"
+                    + "   NULL, NULL"
+                    + "   FROM intervals WHERE \"timestamp\" >= :from"
+                    + " )"
+                    + " SELECT device_id, network_id, 'H', bucket_start,"
+                    + " CAST(ROUND(SUM(online_seconds)) AS bigint), CAST(SUM(transitions) AS int),"
+                    + " MIN(first_seen), MAX(last_seen)"
+                    + " FROM contributions GROUP BY device_id, network_id, bucket_start"
+                    + " ON CONFLICT (device_id, granularity, bucket_start) DO UPDATE SET"
+                    + " online_seconds = EXCLUDED.online_seconds,"
+                    + " transitions = EXCLUDED.transitions,"
+                    + " first_seen = EXCLUDED.first_seen, last_seen = EXCLUDED.last_seen";
+
+    /** Rebuilds daily device rollups from the hourly ones, starting at :from (a day boundary). */
+    private static final String REPAIR_DEVICE_DAYS =
+            "INSERT INTO device_availability_rollup AS r (device_id, network_id, granularity,"
+                    + " bucket_start, online_seconds, transitions, first_seen, last_seen)"
+                    + " SELECT device_id, network_id, 'D', date_trunc('day', bucket_start),"
+                    + " SUM(online_seconds), SUM(transitions), MIN(first_seen), MAX(last_seen)"
+                    + " FROM device_availability_rollup"
+                    + " WHERE granularity = 'H' AND bucket_start >= :from"
+                    + " GROUP BY device_id, network_id, date_trunc('day', bucket_start)"
+                    + " ON CONFLICT (device_id, granularity, bucket_start) DO UPDATE SET"
+                    + " online_seconds = EXCLUDED.online_seconds,"
+                    + " transitions = EXCLUDED.transitions,"
+                    + " first_seen = EXCLUDED.first_seen, last_seen = EXCLUDED.last_seen";
+
+    /** Rebuilds network rollups (both granularities) from the device rollups, from :from on. */
+    private static final String REPAIR_NETWORKS =
+            "INSERT INTO network_availability_rollup AS r (network_id, granularity,"
+                    + " bucket_start, online_seconds, transitions, first_seen, last_seen)"
+                    + " SELECT network_id, granularity, bucket_start, SUM(online_seconds),"
+                    + " SUM(transitions), MIN(first_seen), MAX(last_seen)"
+                    + " FROM device_availability_rollup WHERE bucket_start >= :from"
+                    + " GROUP BY network_id, granularity, bucket_start"
+                    + " ON CONFLICT (network_id, granularity, bucket_start) DO UPDATE SET"
+                    + " online_seconds = EXCLUDED.online_seconds,"
+                    + " transitions = EXCLUDED.transitions,"
+                    + " first_seen = EXCLUDED.first_seen, last_seen = EXCLUDED.last_seen";
+
+    private final HistoryProperties properties;
+    private final ClusterCoordinator clusterCoordinator;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /** Start of the first bucket maintained by ingestion; null until the first repair. */
+    private volatile LocalDateTime watermark;
+
+    public AvailabilityRollupService(
+            HistoryProperties properties,
+            ClusterCoordinator clusterCoordinator,
+            NamedParameterJdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.clusterCoordinator = clusterCoordinator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (properties.getRollupRepairHours() * 60L <= properties.getRollupRepairIntervalMinutes()) {
+            throw new IllegalArgumentException(
+                    "history.rollup-repair-hours must cover more than"
+                            + " rollup-repair-interval-minutes");
+        }
+    }
+
+    /**
+     * Adds a status transition to the rollups. Must be called within the transaction that writes
+     * the corresponding history row.
+     *
+     * @param networkId network of the device
+     * @param deviceId device ID
+     * @param online the new state
+     * @param previousChange when the device entered its previous state (null if unknown)
+     * @param timestamp when the transition happened
+     */
+    public void recordTransition(
+            long networkId,
+            long deviceId,
+            boolean online,
+            LocalDateTime previousChange,
+            LocalDateTime timestamp) {
+        var from = watermark;
+        if (from == null) {
+            return;
+        }
+
+        var rows = new ArrayList<MapSqlParameterSource>();
+        for (var granularity : Granularity.values()) {
+            if (!online && previousChange != null) {
+                // the device was online from previousChange until now
+                var start = previousChange.isAfter(from) ? previousChange : from;
+                addInterval(rows, networkId, deviceId, granularity, start, timestamp);
+            }
+            if (!timestamp.isBefore(from)) {
+                rows.add(
+                        row(
+                                networkId,
+                                deviceId,
+                                granularity,
+                                granularity.bucketStart(timestamp),
+                                0,
+                                1,
+                                null,
+                                null));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        var batch = rows.toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPSERT_DEVICE, batch);
+        jdbcTemplate.batchUpdate(UPSERT_NETWORK, batch);
+    }
+
+    /** Runs the first repair at startup, which also enables incremental maintenance. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        repair();
+    }
+
+    /**
+     * Recomputes recent rollups from history and advances the watermark.
+     *
+     * @see TimingProxy#repairAvailabilityRollups()
+     */
+    public void repair() {
+        var to = LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+        var from = to.minusHours(properties.getRollupRepairHours()).truncatedTo(ChronoUnit.DAYS);
+
+        // from now on, ingestion leaves everything before 'to' to us
+        watermark = to;
+
+        try {
+            transactionTemplate.executeWithoutResult(
+                    status -> {
+                        if (!clusterCoordinator.tryLockTask("availability-rollups")) {
+                            return;
+                        }
+                        var params =
+                                new MapSqlParameterSource().addValue("from", from).addValue("to", to);
+                        // rows without any activity left (e.g. after a late history row) must
+                        // disappear, so clear the window before recomputing it
+                        jdbcTemplate.update(
+                                "DELETE FROM device_availability_rollup WHERE granularity = 'H'"
+                                        + " AND bucket_start >= :from AND bucket_start < :to",
+                                params);
+                        jdbcTemplate.update(
+                                "DELETE FROM device_availability_rollup WHERE granularity = 'D'"
+                                        + " AND bucket_start >= :from",
+                                params);
+                        jdbcTemplate.update(
+                                "DELETE FROM network_availability_rollup"
+                                        + " WHERE bucket_start >= :from",
+                                params);
+                        int hours = jdbcTemplate.update(REPAIR_DEVICE_HOURS, params);
+                        jdbcTemplate.update(REPAIR_DEVICE_DAYS, params);
+                        jdbcTemplate.update(REPAIR_NETWORKS, params);
+                        logger.info(
+                                "Repaired availability rollups from {} to {} ({} device hours)",
+                                from,
+                                to,
+                                hours);
+                    });
+        } catch (Exception e) {
+            logger.error("Failed to repair availability rollups", e);
+        }
+    }
+
+    /**
+     * Returns the rollups of a device.
+     *
+     * @param deviceId device ID
+     * @param granularity bucket size
+     * @param from first bucket (inclusive)
+     * @param to end of the range (exclusive)
+     * @return rollups ordered by bucket; buckets without any activity are omitted
+     */
+    public List<AvailabilityRollupResponseDto> findDeviceRollups(
+            long deviceId, Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        return findRollups(
+                "SELECT bucket_start, online_seconds, transitions, first_seen, last_seen"
+                        + " FROM device_availability_rollup WHERE device_id = :id",
+                deviceId,
+                granularity,
+                from,
+                to);
+    }
+
+    /**
+     * Returns the rollups of a network. Online seconds are summed over all devices.
+     *
+     * @param networkId network ID
+     * @param granularity bucket size
+     * @param from first bucket (inclusive)
+     * @param to end of the range (exclusive)
+     * @return rollups ordered by bucket; buckets without any activity are omitted
+     */
+    public List<AvailabilityRollupResponseDto> findNetworkRollups(
+            long networkId, Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        return findRollups(
+                "SELECT bucket_start, online_seconds, transitions, first_seen, last_seen"
+                        + " FROM network_availability_rollup WHERE network_id = :id",
+                networkId,
+                granularity,
+                from,
+                to);
+    }
+
+    private List<AvailabilityRollupResponseDto> findRollups(
+            String select,
+            long id,
+            Granularity granularity,
+            LocalDateTime from,
+            LocalDateTime to) {
+        return transactionTemplate.execute(
+                status ->
+                        jdbcTemplate.query(
+                                select
+                                        + " AND granularity = :granularity"
+                                        + " AND bucket_start >= :from AND bucket_start < :to"
+                                        + " ORDER BY bucket_start",
+                                new MapSqlParameterSource()
+                                        .addValue("id", id)
+                                        .addValue("granularity", granularity.code)
+                                        .addValue("from", granularity.bucketStart(from))
+                                        .addValue("to", to),
+                                (rs, rowNum) ->
+                                        new AvailabilityRollupResponseDto(
+                                                rs.getTimestamp("bucket_start").toLocalDateTime(),
+                                                granularity.bucketSeconds(),
+                                                rs.getLong("online_seconds"),
+                                                rs.getInt("transitions"),
+                                                toLocalDateTime(rs.getTimestamp("first_seen")),
+                                                toLocalDateTime(rs.getTimestamp("last_seen")))));
+    }
+
+    private static void addInterval(
+            List<MapSqlParameterSource> rows,
+            long networkId,
+            long deviceId,
+            Granularity granularity,
+            LocalDateTime start,
+            LocalDateTime end) {
+        var bucket = granularity.bucketStart(start);
+        while (bucket.isBefore(end)) {
+            var bucketEnd = bucket.plus(1, granularity.unit);
+            var first = start.isAfter(bucket) ? start : bucket;
+            var last = end.isBefore(bucketEnd) ? end : bucketEnd;
+            long seconds = Duration.between(first, last).toSeconds();
+            if (last.isAfter(first)) {
+                rows.add(row(networkId, deviceId, granularity, bucket, seconds, 0, first, last));
+            }
+            bucket = bucketEnd;
+        }
+    }
+
+    private static MapSqlParameterSource row(
+            long networkId,
+            long deviceId,
+            Granularity granularity,
+            LocalDateTime bucketStart,
+            long onlineSeconds,
+            int transitions,
+            LocalDateTime firstSeen,
+            LocalDateTime lastSeen) {
+        return new MapSqlParameterSource()
+                .addValue("networkId", networkId)
+                .addValue("deviceId", deviceId)
+                .addValue("granularity", granularity.code)
+                .addValue("bucketStart", bucketStart)
+                .addValue("onlineSeconds", onlineSeconds)
+                .addValue("transitions", transitions)
+                .addValue("firstSeen", firstSeen, java.sql.Types.TIMESTAMP)
+                .addValue("lastSeen", lastSeen, java.sql.Types.TIMESTAMP);
+    }
+
+    private static LocalDateTime toLocalDateTime(java.sql.Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
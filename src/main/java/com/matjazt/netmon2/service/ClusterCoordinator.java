@@ -0,0 +1,237 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.ClusterProperties;
+import com.matjazt.netmon2.repository.ClusterNodeRepository;
+import com.matjazt.tools.ConsistentHashRing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates ingestion and alert processing when several netmon2 instances share the same
+ * database.
+ *
+ * <p>Every node holds a lease in the {@code cluster_node} table, renewed by {@link
+ * TimingProxy#clusterHeartbeat()}. Networks are assigned to live nodes with a {@link
+ * ConsistentHashRing}; when a node joins, leaves or its lease expires, only the networks of that
+ * node move, and a {@link ClusterMembershipChangedEvent} is published.
+ *
+ * <p>Ring membership is eventually consistent: for a heartbeat interval or so, two nodes may
+ * disagree about who owns a network. To make sure a network is never processed twice at the same
+ * time, {@link AlerterService} additionally takes a Postgres advisory lock for the network (see
+ * {@link #tryLockNetwork(long)}) inside its transaction, and {@link MqttService} an ingestion lock
+ * (see {@link #tryLockIngestion(long)}).
+ *
+ * <p>A node that can't renew its own lease (e.g. it lost the database connection, or the heartbeat
+ * stalled) stops owning networks once the lease would have expired, because the other nodes have
+ * taken over by then. The lease age is counted from the start of the last successful renewal, which
+ * is never later than the time the other nodes see in the table.
+ *
+ * <p>When {@code cluster.enabled} is false, this node owns everything and no locks are taken.
+ */
+@Service
+public class ClusterCoordinator implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    /** Advisory lock namespace for per-network alert locks ("nm2" + 1). */
+    private static final int NETWORK_LOCK_NAMESPACE = 0x6e6d3201;
+
+    /** Advisory lock namespace for maintenance tasks ("nm2" + 2). */
+    private static final int TASK_LOCK_NAMESPACE = 0x6e6d3202;
+
+    /** Advisory lock namespace for per-network ingestion locks ("nm2" + 3). */
+    private static final int INGESTION_LOCK_NAMESPACE = 0x6e6d3203;
+
+    /** Dead nodes are removed from the table after this long. */
+    private static final long DEAD_NODE_RETENTION_SECONDS = 24 * 3600;
+
+    private final ClusterProperties properties;
+    private final ClusterNodeRepository clusterNodeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String nodeId;
+
+    private volatile ConsistentHashRing ring;
+    private volatile long lastRenewalNanos;
+    private volatile boolean renewed;
+
+    public ClusterCoordinator(
+            ClusterProperties properties,
+            ClusterNodeRepository clusterNodeRepository,
+            ApplicationEventPublisher eventPublisher) {
+        this.properties = properties;
+        this.clusterNodeRepository = clusterNodeRepository;
+        this.eventPublisher = eventPublisher;
+        this.nodeId =
+                properties.getNodeId() != null && !properties.getNodeId().isBlank()
+                        ? properties.getNodeId()
+                        : defaultNodeId();
+        this.ring = new ConsistentHashRing(List.of(), properties.getVirtualNodes());
+
+        if (properties.isEnabled()) {
+            if (properties.getLeaseTimeoutSeconds() <= properties.getHeartbeatIntervalSeconds()) {
+                throw new IllegalArgumentException(
+                        "cluster.lease-timeout-seconds must be greater than"
+                                + " heartbeat-interval-seconds");
+            }
+            logger.info("Cluster coordination enabled, node ID: {}", nodeId);
+        }
+    }
+
+    /** Returns the ID of this node. */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** Returns true if cluster coordination is enabled. */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Renews this node's lease and refreshes the ring from the set of live nodes.
+     *
+     * <p>Publishes a {@link ClusterMembershipChangedEvent} when the set of live nodes changed.
+     */
+    @Transactional
+    public void heartbeat() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        clusterNodeRepository.heartbeat(nodeId);
+        var liveNodes = clusterNodeRepository.findLiveNodeIds(properties.getLeaseTimeoutSeconds());
+        clusterNodeRepository.deleteExpired(DEAD_NODE_RETENTION_SECONDS);
+        lastRenewalNanos = startNanos;
+        renewed = true;
+
+        if (!liveNodes.equals(ring.getNodes())) {
+            logger.info("Cluster membership changed: {} -> {}", ring.getNodes(), liveNodes);
+            ring = new ConsistentHashRing(liveNodes, properties.getVirtualNodes());
+            eventPublisher.publishEvent(new ClusterMembershipChangedEvent(ring.getNodes()));
+        }
+    }
+
+    /**
+     * Returns true if this node is responsible for the given network.
+     *
+     * @param networkId network ID
+     * @return true if cluster coordination is disabled, or the network maps to this node and our
+     *     lease is still valid
+     */
+    public boolean isOwner(long networkId) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        if (ring.isEmpty() || !hasValidLease()) {
+            // we're not (or no longer) part of the cluster as far as the others can tell
+            return false;
+        }
+        return nodeId.equals(ring.getOwner("network:" + networkId));
+    }
+
+    /**
+     * Returns true if this node's lease was renewed less than {@code cluster.lease-timeout-seconds}
+     * ago (always true when cluster coordination is disabled).
+     */
+    public boolean hasValidLease() {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        return renewed
+                && isLeaseValid(
+                        lastRenewalNanos, System.nanoTime(), properties.getLeaseTimeoutSeconds());
+    }
+
+    /** Returns true if a lease renewed at {@code renewalNanos} is valid at {@code nowNanos}. */
+    static boolean isLeaseValid(long renewalNanos, long nowNanos, long leaseTimeoutSeconds) {
+        return nowNanos - renewalNanos < TimeUnit.SECONDS.toNanos(leaseTimeoutSeconds);
+    }
+
+    /**
+     * Takes the per-network advisory lock for the rest of the current transaction.
+     *
+     * <p>Must be called within a transaction. Doesn't wait: if another node holds the lock, it
+     * returns false immediately.
+     *
+     * @param networkId network ID
+     * @return true if the lock was acquired (or cluster coordination is disabled)
+     */
+    public boolean tryLockNetwork(long networkId) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        return clusterNodeRepository.tryAdvisoryXactLock(
+                NETWORK_LOCK_NAMESPACE, Long.hashCode(networkId));
+    }
+
+    /**
+     * Takes the per-network ingestion lock for the rest of the current transaction, so that two
+     * nodes never process scans of the same network at the same time, even while they disagree
+     * about membership. Separate from {@link #tryLockNetwork}, so ingestion and alert evaluation on
+     * the owner don't exclude each other.
+     *
+     * <p>Must be called within a transaction. Doesn't wait: if another node holds the lock, it
+     * returns false immediately.
+     *
+     * @param networkId network ID
+     * @return true if the lock was acquired (or cluster coordination is disabled)
+     */
+    public boolean tryLockIngestion(long networkId) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        return clusterNodeRepository.tryAdvisoryXactLock(
+                INGESTION_LOCK_NAMESPACE, Long.hashCode(networkId));
+    }
+
+    /**
+     * Takes the advisory lock for a maintenance task for the rest of the current transaction, so
+     * that a task that all nodes schedule runs on one node at a time.
+     *
+     * <p>Must be called within a transaction. Doesn't wait: if another node holds the lock, it
+     * returns false immediately.
+     *
+     * @param taskName name of the task
+     * @return true if the lock was acquired (or cluster coordination is disabled)
+     */
+    public boolean tryLockTask(String taskName) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        return clusterNodeRepository.tryAdvisoryXactLock(TASK_LOCK_NAMESPACE, taskName.hashCode());
+    }
+
+    /** Gives up the lease on shutdown, so the other nodes take over right away. */
+    @Override
+    public void destroy() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            clusterNodeRepository.deleteById(nodeId);
+            logger.info("Left cluster, node ID: {}", nodeId);
+        } catch (Exception e) {
+            logger.warn("Failed to remove cluster node {}, its lease will expire", nodeId, e);
+        }
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,11 @@
+package com.matjazt.netmon2.service;
+
+import java.util.List;
+
+/**
+ * Published by {@link ClusterCoordinator} when the set of live cluster nodes changes, i.e. when
+ * networks may have moved to a different node.
+ *
+ * @param liveNodes IDs of all live nodes, sorted
+ */
+public record ClusterMembershipChangedEvent(List<String> liveNodes) {}
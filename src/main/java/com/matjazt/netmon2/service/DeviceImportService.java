@@ -0,0 +1,198 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.dto.response.DeviceImportResponseDto;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bulk import of the device inventory (names and operation modes) from CSV.
+ *
+ * <p>The CSV has a header line and the columns {@code mac_address,name,operation_mode}. The file
+ * is streamed into a temporary staging table with PostgreSQL {@code COPY}, validated there, and
+ * merged into {@code device} with a single upsert on {@code uk_device_network_mac_address}, all in
+ * one transaction. The file is never held in memory, so importing thousands of devices takes
+ * seconds.
+ *
+ * <ul>
+ *   <li>MAC addresses are normalized to upper case with colons ({@code AA:BB:CC:DD:EE:FF})
+ *   <li>an empty name or operation mode leaves the device's current value unchanged
+ *   <li>devices that don't exist yet are created offline, as {@code UNAUTHORIZED} unless the file
+ *       says otherwise, and show up as online with the next scan
+ *   <li>invalid rows (bad MAC address or operation mode, name too long, MAC address repeated in
+ *       the file) are skipped and reported with their line number
+ * </ul>
+ *
+ * <p>Rows with the wrong number of columns make {@code COPY} itself fail; the whole import is
+ * then rejected with the line number reported by PostgreSQL.
+ */
+@Service
+public class DeviceImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceImportService.class);
+
+    /** Number of row errors included in the response. */
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String COPY =
+            "COPY device_import (mac_address, name, operation_mode) FROM STDIN"
+                    + " WITH (FORMAT csv, HEADER true)";
+
+    private static final String NORMALIZE =
+            "UPDATE device_import SET"
+                    + " mac = upper(replace(trim(mac_address), '-', ':')),"
+                    + " mode_id = (SELECT m.id FROM device_operation_mode m"
+                    + "  WHERE m.name = upper(nullif(trim(operation_mode), '')))";
+
+    private static final String VALIDATE =
+            "UPDATE device_import SET error = CASE"
+                    + " WHEN mac IS NULL OR mac !~ '^([0-9A-F]{2}:){5}[0-9A-F]{2}$'"
+                    + "  THEN 'invalid MAC address'"
+                    + " WHEN mode_id IS NULL AND nullif(trim(operation_mode), '') IS NOT NULL"
+                    + "  THEN 'unknown operation mode'"
+                    + " WHEN length(trim(name)) > 200 THEN 'name longer than 200 characters'"
+                    + " END";
+
+    private static final String MARK_DUPLICATES =
+            "UPDATE device_import i"
+                    + " SET error = 'MAC address repeated from line ' || (f.first_line + 1)"
+                    + " FROM (SELECT mac, min(line_no) AS first_line FROM device_import"
+                    + "  WHERE error IS NULL GROUP BY mac) f"
+                    + " WHERE i.error IS NULL AND i.mac = f.mac AND i.line_no > f.first_line";
+
+    /**
+     * Upsert of all valid rows. An empty mode keeps the current mode of existing devices, which is
+     * why the update looks it up in the staging table (EXCLUDED already has the default applied).
+     * {@code xmax = 0} tells inserted rows from updated ones.
+     */
+    private static final String MERGE =
+            "WITH merged AS ("
+                    + " INSERT INTO device AS d (network_id, mac_address, name,"
+                    + "  device_operation_mode_id, online, first_seen, last_seen)"
+                    + " SELECT ?, mac, nullif(trim(name), ''), COALESCE(mode_id, 0), false,"
+                    + "  now() AT TIME ZONE 'UTC', now() AT TIME ZONE 'UTC'"
+                    + " FROM device_import WHERE error IS NULL"
+                    + " ON CONFLICT (network_id, mac_address) DO UPDATE SET"
+                    + "  name = COALESCE(EXCLUDED.name, d.name),"
+                    + "  device_operation_mode_id = COALESCE((SELECT i.mode_id FROM device_import i"
+                    + "   WHERE i.mac = EXCLUDED.mac_address AND i.error IS NULL),"
+                    + "   d.device_operation_mode_id)"
+                    + " RETURNING (xmax = 0) AS inserted"
+                    + ") SELECT count(*) FILTER (WHERE inserted),"
+                    + " count(*) FILTER (WHERE NOT inserted) FROM merged";
+
+    private final NetworkRegistry networkRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public DeviceImportService(
+            NetworkRegistry networkRegistry,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.networkRegistry = networkRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Imports devices into a network.
+     *
+     * @param networkId network the devices belong to
+     * @param csv CSV content (UTF-8); not closed
+     * @return import statistics and rejected rows
+     * @throws IllegalArgumentException if the file can't be parsed as a whole
+     */
+    public DeviceImportResponseDto importDevices(long networkId, InputStream csv) {
+        long start = System.currentTimeMillis();
+        var result = transactionTemplate.execute(status -> doImport(networkId, csv));
+        logger.info(
+                "Imported {} devices into network {} ({} inserted, {} updated, {} rejected) in {}"
+                        + " ms",
+                result.rows(),
+                networkId,
+                result.inserted(),
+                result.updated(),
+                result.errorCount(),
+                System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private DeviceImportResponseDto doImport(long networkId, InputStream csv) {
+        if (networkRegistry.get(networkId).isEmpty()) {
+            throw new IllegalArgumentException("Network not found: " + networkId);
+        }
+
+        // rows keep the file order, so line_no + 1 is the line in the file (after the header)
+        jdbcTemplate.execute(
+                "CREATE TEMP TABLE device_import ("
+                        + " line_no bigserial, mac_address text, name text, operation_mode text,"
+                        + " mac text, mode_id int4, error text) ON COMMIT DROP");
+        long rows = copy(csv);
+
+        jdbcTemplate.update(NORMALIZE);
+        jdbcTemplate.update(VALIDATE);
+        jdbcTemplate.execute("CREATE INDEX ON device_import (mac)");
+        jdbcTemplate.execute("ANALYZE device_import");
+        jdbcTemplate.update(MARK_DUPLICATES);
+
+        var counts =
+                jdbcTemplate.queryForObject(
+                        MERGE,
+                        (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)},
+                        networkId);
+
+        Long errorCount =
+                jdbcTemplate.queryForObject(
+                        "SELECT count(*) FROM device_import WHERE error IS NOT NULL", Long.class);
+        var errors =
+                jdbcTemplate.query(
+                        "SELECT line_no + 1, mac_address, error FROM device_import"
+                                + " WHERE error IS NOT NULL ORDER BY line_no LIMIT ?",
+                        (rs, rowNum) ->
+                                new DeviceImportResponseDto.RowError(
+                                        rs.getLong(1), rs.getString(2), rs.getString(3)),
+                        MAX_REPORTED_ERRORS);
+
+        return new DeviceImportResponseDto(rows, counts[0], counts[1], errorCount, errors);
+    }
+
+    /** Streams the CSV into the staging table, returning the number of rows. */
+    private long copy(InputStream csv) {
+        try {
+            Long rows =
+                    jdbcTemplate.execute(
+                            (ConnectionCallback<Long>)
+                                    connection -> {
+                                        try {
+                                            return connection
+                                                    .unwrap(PGConnection.class)
+                                                    .getCopyAPI()
+                                                    .copyIn(
+                                                            COPY,
+                                                            new InputStreamReader(
+                                                                    csv, StandardCharsets.UTF_8));
+                                        } catch (IOException e) {
+                                            throw new UncheckedIOException(e);
+                                        }
+                                    });
+            return rows != null ? rows : 0;
+        } catch (DataAccessException e) {
+            // e.g. a row with the wrong number of columns; the message includes the line
+            throw new IllegalArgumentException(
+                    "Invalid CSV: " + e.getMostSpecificCause().getMessage(), e);
+        }
+    }
+}
@@ -1,21 +1,38 @@
 package com.matjazt.netmon2.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import org.springframework.data.domain.Page;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.matjazt.netmon2.dto.DeviceDto;
+import com.matjazt.netmon2.dto.response.AvailabilityRollupResponseDto;
+import com.matjazt.netmon2.dto.response.CursorPageResponseDto;
+import com.matjazt.netmon2.dto.response.DevicePresenceResponseDto;
+import com.matjazt.netmon2.dto.response.FlappingDeviceResponseDto;
+import com.matjazt.netmon2.dto.response.NetworkSnapshotResponseDto;
+import com.matjazt.netmon2.dto.response.PresenceOccupancyResponseDto;
+import com.matjazt.netmon2.dto.response.PresenceOverlapResponseDto;
+import com.matjazt.netmon2.dto.response.UptimeResponseDto;
 import com.matjazt.netmon2.entity.DeviceEntity;
 import com.matjazt.netmon2.entity.DeviceOperationMode;
 import com.matjazt.netmon2.entity.DeviceStatusHistoryEntity;
 import com.matjazt.netmon2.entity.NetworkEntity;
 import com.matjazt.netmon2.mapper.DeviceMapper;
+import com.matjazt.netmon2.repository.DevicePresenceIntervalRepository;
 import com.matjazt.netmon2.repository.DeviceRepository;
 import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
 import com.matjazt.netmon2.repository.NetworkRepository;
@@ -36,6 +53,8 @@ import com.matjazt.netmon2.repository.NetworkRepository;
  *         <li>Automatically commits on success
  *         <li>Automatically rolls back on exception
  *         <li>Required for @Modifying queries
+ *         <li>readOnly = true skips dirty checking and, with a read replica configured ({@code
+ *             replica.enabled}), runs the method on the replica
  *       </ul>
  *   <li>Optional&lt;T&gt; - Java way to handle "not found" without nulls
  *       <ul>
@@ -49,11 +68,20 @@ import com.matjazt.netmon2.repository.NetworkRepository;
 @Service
 public class DeviceService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DeviceService.class);
+
     // Dependencies injected via constructor
     private final DeviceRepository deviceRepository;
     private final NetworkRepository networkRepository;
     private final DeviceStatusHistoryRepository deviceStatusHistoryRepository;
+    private final DevicePresenceIntervalRepository devicePresenceIntervalRepository;
     private final DeviceMapper deviceMapper;
+    private final FlapDetector flapDetector;
+    private final StatusHistoryRecorder statusHistoryRecorder;
+    private final AvailabilityRollupService availabilityRollupService;
+    private final NetworkSnapshotService networkSnapshotService;
+    private final HistoryArchiveService historyArchiveService;
+    private final PresenceBitmapService presenceBitmapService;
 
     /**
      * Constructor injection - Spring automatically provides the implementations.
@@ -70,11 +98,25 @@ public class DeviceService {
             DeviceRepository deviceRepository,
             NetworkRepository networkRepository,
             DeviceStatusHistoryRepository statusHistoryRepository,
-            DeviceMapper deviceMapper) {
+            DevicePresenceIntervalRepository devicePresenceIntervalRepository,
+            DeviceMapper deviceMapper,
+            FlapDetector flapDetector,
+            StatusHistoryRecorder statusHistoryRecorder,
+            AvailabilityRollupService availabilityRollupService,
+            NetworkSnapshotService networkSnapshotService,
+            HistoryArchiveService historyArchiveService,
+            PresenceBitmapService presenceBitmapService) {
         this.deviceRepository = deviceRepository;
         this.networkRepository = networkRepository;
         this.deviceStatusHistoryRepository = statusHistoryRepository;
+        this.devicePresenceIntervalRepository = devicePresenceIntervalRepository;
         this.deviceMapper = deviceMapper;
+        this.flapDetector = flapDetector;
+        this.statusHistoryRecorder = statusHistoryRecorder;
+        this.availabilityRollupService = availabilityRollupService;
+        this.networkSnapshotService = networkSnapshotService;
+        this.historyArchiveService = historyArchiveService;
+        this.presenceBitmapService = presenceBitmapService;
     }
 
     // ========== BASIC CRUD OPERATIONS ==========
@@ -83,6 +125,9 @@ public class DeviceService {
      * EXAMPLE: Find device by ID
      *
      * <p>Optional avoids NullPointerException - you must check if value exists.
+     *
+     * <p>Not read-only on purpose: it's used to look up devices right before they are updated, so
+     * it has to see the primary database rather than a lagging replica.
      */
     public Optional<DeviceEntity> findDeviceById(Long id) {
         // Use fetch-join to avoid lazy loading issues when serializing
@@ -90,6 +135,7 @@ public class DeviceService {
     }
 
     /** EXAMPLE: Get all devices (be careful with large datasets!) */
+    @Transactional(readOnly = true)
     public List<DeviceEntity> findAllDevices() {
         return deviceRepository.findAll();
     }
@@ -108,16 +154,19 @@ public class DeviceService {
     @Transactional
     public void deleteDevice(Long id) {
         deviceRepository.deleteById(id);
+        flapDetector.forget(id);
     }
 
     // ========== CUSTOM QUERY EXAMPLES ==========
 
     /** EXAMPLE: Find devices on a specific network */
+    @Transactional(readOnly = true)
     public List<DeviceEntity> findDevicesByNetwork(Long networkId) {
         return deviceRepository.findByNetwork_Id(networkId);
     }
 
     /** EXAMPLE: Find online devices on a network */
+    @Transactional(readOnly = true)
     public List<DeviceEntity> findOnlineDevices(Long networkId) {
         return deviceRepository.findByNetwork_IdAndOnline(networkId, true);
     }
@@ -130,18 +179,21 @@ public class DeviceService {
     // ========== DTO SUMMARY METHODS ==========
 
     /** Get all devices as DTOs */
+    @Transactional(readOnly = true)
     public List<DeviceDto> findAllDeviceSummaries() {
         List<DeviceEntity> entities = deviceRepository.findAllWithNetwork();
         return deviceMapper.toDtos(entities);
     }
 
     /** Get devices by network as DTOs */
+    @Transactional(readOnly = true)
     public List<DeviceDto> findDeviceSummariesByNetwork(Long networkId) {
         List<DeviceEntity> entities = deviceRepository.findByNetwork_Id(networkId);
         return deviceMapper.toDtos(entities);
     }
 
     /** Get online devices by network as DTOs */
+    @Transactional(readOnly = true)
     public List<DeviceDto> findOnlineDeviceSummaries(Long networkId) {
         List<DeviceEntity> entities = deviceRepository.findByNetwork_IdAndOnline(networkId, true);
         return deviceMapper.toDtos(entities);
@@ -194,18 +246,15 @@ public class DeviceService {
         boolean statusChanged = device.getOnline() != null && !device.getOnline().equals(online);
 
         // Update device
+        var now = LocalDateTime.now(ZoneOffset.UTC);
         device.setIpAddress(ipAddress);
         device.setOnline(online);
-        device.updateLastSeen();
+        device.setLastSeen(now);
         device = deviceRepository.save(device);
 
-        // If status changed, record history
+        // If status changed, record history (also updates the device's last status change)
         if (statusChanged) {
-            NetworkEntity network = device.getNetwork();
-            DeviceStatusHistoryEntity history =
-                    new DeviceStatusHistoryEntity(
-                            network, device, ipAddress, online, LocalDateTime.now(ZoneOffset.UTC));
-            deviceStatusHistoryRepository.save(history);
+            statusHistoryRecorder.recordStatusChange(device.getNetwork(), device, online, now);
         }
 
         return device;
@@ -234,6 +283,7 @@ public class DeviceService {
      *
      * <p>Shows how to use multiple repository methods to build a response.
      */
+    @Transactional(readOnly = true)
     public DeviceStats getDeviceStats(Long networkId) {
         long totalDevices = deviceRepository.countByNetwork_Id(networkId);
         long onlineDevices = deviceRepository.countByNetwork_IdAndOnline(networkId, true);
@@ -243,31 +293,366 @@ public class DeviceService {
     }
 
     /**
-     * EXAMPLE: Pagination - get devices page by page
+     * Get device summaries ordered by name, one page at a time (keyset pagination).
      *
-     * <p>Pageable defines page number, size, and sorting. Page contains results + metadata (total
-     * pages, total elements, etc.)
+     * <p>Unlike offset pagination, each page continues right after the last device of the
+     * previous one, so deep pages are as fast as the first one, and no count query runs unless
+     * {@code includeTotal} is set.
+     *
+     * @param networkId network to list, or null for all devices
+     * @param size page size
+     * @param cursor {@code nextCursor} of the previous page, null for the first page
+     * @param includeTotal whether to count all devices as well
+     * @throws IllegalArgumentException if the cursor is malformed
      */
-    public Page<DeviceDto> getDeviceSummariesPaginated(Long networkId, int page, int size) {
-        // Create Pageable: page 0 is first page, sort by name ascending
-        Pageable pageable = PageRequest.of(page, size, Sort.by("name").ascending());
-        Page<DeviceEntity> entityPage;
+    @Transactional(readOnly = true)
+    public CursorPageResponseDto<DeviceDto> getDeviceSummariesPage(
+            Long networkId, int size, String cursor, boolean includeTotal) {
+        Pageable pageable = PageRequest.of(0, size);
+        Slice<DeviceEntity> slice;
+        if (cursor == null) {
+            slice =
+                    networkId != null
+                            ? deviceRepository.findSliceByNetworkIdWithNetwork(networkId, pageable)
+                            : deviceRepository.findSliceWithNetwork(pageable);
+        } else {
+            var after = KeysetCursor.decode(cursor);
+            slice =
+                    networkId != null
+                            ? deviceRepository.findSliceByNetworkIdWithNetworkAfter(
+                                    networkId, after.key(), after.id(), pageable)
+                            : deviceRepository.findSliceWithNetworkAfter(
+                                    after.key(), after.id(), pageable);
+        }
 
-        if (networkId != null) {
-            entityPage = deviceRepository.findByNetworkIdWithNetwork(networkId, pageable);
+        Long total = null;
+        if (includeTotal) {
+            total =
+                    networkId != null
+                            ? deviceRepository.countByNetwork_Id(networkId)
+                            : deviceRepository.count();
+        }
+        return toCursorPage(
+                        slice,
+                        device ->
+                                new KeysetCursor(
+                                        device.getId(),
+                                        device.getName() != null ? device.getName() : ""),
+                        total)
+                .map(deviceMapper::toDto);
+    }
+
+    /**
+     * Get device history, newest first, one page at a time (keyset pagination on timestamp and
+     * ID). Once the history in the database is exhausted, pages continue with archived history.
+     *
+     * @param deviceId device ID
+     * @param limit page size
+     * @param cursor {@code nextCursor} of the previous page, null for the newest entries
+     * @param includeTotal whether to count all history entries of the device as well
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponseDto<DeviceStatusHistoryEntity> getDeviceHistory(
+            Long deviceId, int limit, String cursor, boolean includeTotal) {
+        Pageable pageable = PageRequest.of(0, limit);
+        Slice<DeviceStatusHistoryEntity> slice;
+        LocalDateTime beforeTimestamp = null;
+        long beforeId = 0;
+        if (cursor == null) {
+            slice = deviceStatusHistoryRepository.findSliceByDevice(deviceId, pageable);
         } else {
-            entityPage = deviceRepository.findAllWithNetwork(pageable);
+            var before = KeysetCursor.decode(cursor);
+            LocalDateTime timestamp;
+            try {
+                timestamp = LocalDateTime.parse(before.key());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+            slice =
+                    deviceStatusHistoryRepository.findSliceByDeviceBefore(
+                            deviceId, timestamp, before.id(), pageable);
+            beforeTimestamp = timestamp;
+            beforeId = before.id();
+        }
+
+        Long total = includeTotal ? deviceStatusHistoryRepository.countByDevice_Id(deviceId) : null;
+
+        // archived history is older than anything in the database, so it continues where the
+        // database runs out
+        var networkId = includeTotal || !slice.hasNext() ? archivedNetworkId(deviceId) : null;
+        if (networkId != null) {
+            if (!slice.hasNext()) {
+                slice =
+                        appendArchivedHistory(
+                                networkId, deviceId, slice, beforeTimestamp, beforeId, limit);
+            }
+            if (total != null) {
+                total += historyArchiveService.countDeviceHistory(networkId, deviceId);
+            }
+        }
+        return toCursorPage(
+                slice, h -> new KeysetCursor(h.getId(), h.getTimestamp().toString()), total);
+    }
+
+    /** Returns the device's network if some of its history is archived, null otherwise. */
+    private Long archivedNetworkId(Long deviceId) {
+        return deviceRepository
+                .findById(deviceId)
+                .map(device -> device.getNetwork().getId())
+                .filter(historyArchiveService::hasArchive)
+                .orElse(null);
+    }
+
+    /** Fills up a page of live history with archived history older than its last entry. */
+    private Slice<DeviceStatusHistoryEntity> appendArchivedHistory(
+            Long networkId,
+            Long deviceId,
+            Slice<DeviceStatusHistoryEntity> slice,
+            LocalDateTime beforeTimestamp,
+            long beforeId,
+            int limit) {
+        var content = new ArrayList<>(slice.getContent());
+        if (!content.isEmpty()) {
+            beforeTimestamp = content.getLast().getTimestamp();
+            beforeId = content.getLast().getId();
+        }
+        int missing = limit - content.size();
+        // one more than needed tells whether there is a next page
+        var archived =
+                historyArchiveService.findDeviceHistory(
+                        networkId, deviceId, beforeTimestamp, beforeId, missing + 1);
+
+        var network = networkRepository.getReferenceById(networkId);
+        var device = deviceRepository.getReferenceById(deviceId);
+        for (var row : archived.subList(0, Math.min(missing, archived.size()))) {
+            var entry =
+                    new DeviceStatusHistoryEntity(
+                            network, device, row.ipAddress(), row.online(), row.timestamp());
+            entry.setId(row.id());
+            content.add(entry);
         }
+        return new SliceImpl<>(content, slice.getPageable(), archived.size() > missing);
+    }
 
-        return deviceMapper.toDtoPage(entityPage);
+    private static <T> CursorPageResponseDto<T> toCursorPage(
+            Slice<T> slice, Function<T, KeysetCursor> keyOf, Long total) {
+        var content = slice.getContent();
+        String nextCursor =
+                slice.hasNext() && !content.isEmpty()
+                        ? keyOf.apply(content.get(content.size() - 1)).encode()
+                        : null;
+        return new CursorPageResponseDto<>(
+                content, content.size(), slice.hasNext(), nextCursor, total);
     }
 
-    /** EXAMPLE: Get device history */
-    public List<DeviceStatusHistoryEntity> getDeviceHistory(Long deviceId, int limit) {
-        Pageable pageable = PageRequest.of(0, limit, Sort.by("timestamp").descending());
-        Page<DeviceStatusHistoryEntity> page =
-                deviceStatusHistoryRepository.findByDevice_Id(deviceId, pageable);
-        return page.getContent();
+    /**
+     * Get availability rollups of a device.
+     *
+     * <p>Without an explicit range, the last 24 hours (hourly) or 30 days (daily) are returned.
+     */
+    @Transactional(readOnly = true)
+    public List<AvailabilityRollupResponseDto> getDeviceAvailability(
+            Long deviceId,
+            AvailabilityRollupService.Granularity granularity,
+            LocalDateTime from,
+            LocalDateTime to) {
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        var start = from != null ? from : defaultAvailabilityStart(granularity, end);
+        return availabilityRollupService.findDeviceRollups(deviceId, granularity, start, end);
+    }
+
+    /** Get availability rollups of a network, summed over all its devices. */
+    @Transactional(readOnly = true)
+    public List<AvailabilityRollupResponseDto> getNetworkAvailability(
+            Long networkId,
+            AvailabilityRollupService.Granularity granularity,
+            LocalDateTime from,
+            LocalDateTime to) {
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        var start = from != null ? from : defaultAvailabilityStart(granularity, end);
+        return availabilityRollupService.findNetworkRollups(networkId, granularity, start, end);
+    }
+
+    /**
+     * Get the uptime of a device within [from, to), computed from its status intervals.
+     *
+     * <p>History is streamed from a database cursor and folded in a single pass, so long windows
+     * don't load the whole history into memory. Archived history (see {@link
+     * HistoryArchiveService}) is merged into the stream. {@code to} defaults to (and is capped at)
+     * now, {@code from} defaults to 7 days before {@code to}.
+     *
+     * @return uptime, or empty if the device has no history up to {@code to}
+     */
+    @Transactional(readOnly = true)
+    public Optional<UptimeResponseDto> getDeviceUptime(
+            Long deviceId, LocalDateTime from, LocalDateTime to) {
+        var end = uptimeEnd(to);
+        var start = from != null ? from : end.minusDays(7);
+        var archived =
+                deviceRepository
+                        .findById(deviceId)
+                        .map(
+                                device ->
+                                        historyArchiveService.findTransitions(
+                                                device.getNetwork().getId(), deviceId, start, end))
+                        .orElse(List.of());
+        var result = new ArrayList<UptimeResponseDto>(1);
+        try (var transitions =
+                deviceStatusHistoryRepository.streamDeviceTransitions(deviceId, start, end)) {
+            UptimeCalculator.calculate(
+                    HistoryArchiveService.merge(archived.iterator(), transitions.iterator()),
+                    start,
+                    end,
+                    result::add);
+        }
+        return result.stream().findFirst();
+    }
+
+    /**
+     * Get the uptime of every device on a network within [from, to), in one pass over the
+     * network's history. Same defaults as {@link #getDeviceUptime}.
+     */
+    @Transactional(readOnly = true)
+    public List<UptimeResponseDto> getNetworkUptime(
+            Long networkId, LocalDateTime from, LocalDateTime to) {
+        var end = uptimeEnd(to);
+        var start = from != null ? from : end.minusDays(7);
+        var archived = historyArchiveService.findTransitions(networkId, null, start, end);
+        var result = new ArrayList<UptimeResponseDto>();
+        try (var transitions =
+                deviceStatusHistoryRepository.streamNetworkTransitions(networkId, start, end)) {
+            UptimeCalculator.calculate(
+                    HistoryArchiveService.merge(archived.iterator(), transitions.iterator()),
+                    start,
+                    end,
+                    result::add);
+        }
+        return result;
+    }
+
+    /** Get devices of a network that were online at any time within [from, to). */
+    @Transactional(readOnly = true)
+    public List<DeviceDto> findDevicesOnlineDuring(
+            Long networkId, LocalDateTime from, LocalDateTime to) {
+        var deviceIds =
+                devicePresenceIntervalRepository.findDeviceIdsOnlineDuring(networkId, from, to);
+        return deviceMapper.toDtos(deviceRepository.findAllById(deviceIds));
+    }
+
+    /** Get the periods within [from, to) during which both devices were online. */
+    @Transactional(readOnly = true)
+    public PresenceOverlapResponseDto getPresenceOverlap(
+            Long deviceId, Long otherDeviceId, LocalDateTime from, LocalDateTime to) {
+        var periods =
+                devicePresenceIntervalRepository
+                        .findOverlap(deviceId, otherDeviceId, from, to)
+                        .stream()
+                        .map(p -> new PresenceOverlapResponseDto.Period(p.getStart(), p.getEnd()))
+                        .toList();
+        long seconds =
+                periods.stream()
+                        .mapToLong(p -> Duration.between(p.start(), p.end()).toSeconds())
+                        .sum();
+        return new PresenceOverlapResponseDto(deviceId, otherDeviceId, from, to, seconds, periods);
+    }
+
+    /**
+     * Get the share of scans a device was in within [from, to), and when it was first and last
+     * seen, from the presence bitmaps (see {@link PresenceBitmapService}). {@code to} defaults to
+     * now, {@code from} to 24 hours before it.
+     *
+     * @return presence, or empty if the device doesn't exist
+     */
+    @Transactional(readOnly = true)
+    public Optional<DevicePresenceResponseDto> getDevicePresence(
+            Long deviceId, LocalDateTime from, LocalDateTime to) {
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        var start = from != null ? from : end.minusHours(24);
+        return deviceRepository
+                .findById(deviceId)
+                .flatMap(
+                        device ->
+                                presenceBitmapService
+                                        .getPresence(
+                                                device.getNetwork().getId(), deviceId, start, end)
+                                        .stream()
+                                        .findFirst());
+    }
+
+    /**
+     * Get the presence of every device of a network that was in at least one scan within [from,
+     * to). Same defaults as {@link #getDevicePresence}.
+     */
+    @Transactional(readOnly = true)
+    public List<DevicePresenceResponseDto> getNetworkPresence(
+            Long networkId, LocalDateTime from, LocalDateTime to) {
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        var start = from != null ? from : end.minusHours(24);
+        return presenceBitmapService.getPresence(networkId, null, start, end);
+    }
+
+    /**
+     * Get the hourly occupancy of a network within [from, to) from the presence bitmaps. Same
+     * defaults as {@link #getDevicePresence}.
+     */
+    @Transactional(readOnly = true)
+    public List<PresenceOccupancyResponseDto> getNetworkOccupancy(
+            Long networkId, LocalDateTime from, LocalDateTime to) {
+        var end = to != null ? to : LocalDateTime.now(ZoneOffset.UTC);
+        var start = from != null ? from : end.minusHours(24);
+        return presenceBitmapService.getOccupancy(networkId, start, end);
+    }
+
+    /**
+     * Get the devices of a network that were online at the given time, reconstructed from the
+     * nearest earlier checkpoint (see {@link NetworkSnapshotService}).
+     */
+    @Transactional(readOnly = true)
+    public NetworkSnapshotResponseDto getNetworkSnapshot(Long networkId, LocalDateTime at) {
+        return networkSnapshotService.getSnapshot(
+                networkId, at != null ? at : LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    private static LocalDateTime uptimeEnd(LocalDateTime to) {
+        var now = LocalDateTime.now(ZoneOffset.UTC);
+        return to == null || to.isAfter(now) ? now : to;
+    }
+
+    private static LocalDateTime defaultAvailabilityStart(
+            AvailabilityRollupService.Granularity granularity, LocalDateTime end) {
+        return granularity == AvailabilityRollupService.Granularity.HOUR
+                ? end.minusHours(24)
+                : end.minusDays(30);
+    }
+
+    /**
+     * Get devices that are currently flapping, according to the in-memory {@link FlapDetector}.
+     *
+     * <p>Devices that no longer exist in the database are skipped.
+     */
+    public List<FlappingDeviceResponseDto> findFlappingDevices() {
+        var flapping = flapDetector.getFlappingDevices();
+        if (flapping.isEmpty()) {
+            return List.of();
+        }
+
+        return deviceRepository.findAllById(flapping.keySet()).stream()
+                .map(
+                        device -> {
+                            var info = flapping.get(device.getId());
+                            return new FlappingDeviceResponseDto(
+                                    device.getId(),
+                                    device.getNetwork().getId(),
+                                    device.getName(),
+                                    device.getMacAddress(),
+                                    device.getIpAddress(),
+                                    device.getOnline(),
+                                    info.transitions(),
+                                    info.samples(),
+                                    info.flappingSince());
+                        })
+                .toList();
     }
 
     /** EXAMPLE: Check if device exists */
@@ -275,6 +660,21 @@ public class DeviceService {
         return deviceRepository.existsByNetwork_IdAndMacAddress(networkId, macAddress);
     }
 
+    /**
+     * Backfill {@code lastStatusChange} for devices created before the column existed.
+     *
+     * <p>Runs once the application is up. Only devices with a missing value are touched, so after
+     * the first run this is a single cheap UPDATE that matches nothing.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillLastStatusChange() {
+        int updated = deviceRepository.backfillLastStatusChange();
+        if (updated > 0) {
+            logger.info("Backfilled last status change for {} devices from history", updated);
+        }
+    }
+
     /** EXAMPLE: Update device operation mode */
     @Transactional
     public DeviceEntity updateDeviceMode(Long deviceId, DeviceOperationMode mode) {
@@ -0,0 +1,83 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.dto.response.CacheStatisticsResponseDto;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/**
+ * Statistics and eviction of Hibernate's second-level cache.
+ *
+ * <p>Which entities are cached is declared on the entities ({@code @Cache}), the regions are
+ * configured in {@code ehcache.xml}, see {@link com.matjazt.netmon2.config.EntityCacheConfig}.
+ */
+@Service
+public class EntityCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityCacheService.class);
+
+    private final SessionFactory sessionFactory;
+    private final NetworkRegistry networkRegistry;
+
+    public EntityCacheService(
+            EntityManagerFactory entityManagerFactory, NetworkRegistry networkRegistry) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.networkRegistry = networkRegistry;
+    }
+
+    /** Returns hit/miss statistics for every cache region. */
+    public CacheStatisticsResponseDto getStatistics() {
+        var statistics = sessionFactory.getStatistics();
+        var regions =
+                Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                        .sorted()
+                        .map(statistics::getCacheRegionStatistics)
+                        .map(
+                                region -> {
+                                    long lookups = region.getHitCount() + region.getMissCount();
+                                    return new CacheStatisticsResponseDto.Region(
+                                            region.getRegionName(),
+                                            region.getHitCount(),
+                                            region.getMissCount(),
+                                            region.getPutCount(),
+                                            region.getElementCountInMemory(),
+                                            lookups > 0
+                                                    ? (double) region.getHitCount() / lookups
+                                                    : 0);
+                                })
+                        .toList();
+        // without the second-level cache, Hibernate doesn't build any regions
+        return new CacheStatisticsResponseDto(!regions.isEmpty(), regions);
+    }
+
+    /**
+     * Evicts one cache region, or all of them. Needed after changes made directly in the database
+     * (e.g. editing a lookup table), which Hibernate doesn't know about. The {@link
+     * NetworkRegistry} is reloaded as well, so it also picks up networks edited in the database.
+     *
+     * @param region region name, or null for all regions
+     * @throws IllegalArgumentException if the region doesn't exist
+     */
+    public void evict(String region) {
+        var cache = sessionFactory.getCache();
+        if (region == null) {
+            cache.evictAllRegions();
+            logger.info("Evicted all second-level cache regions");
+            networkRegistry.refresh();
+            return;
+        }
+        if (!Arrays.asList(sessionFactory.getStatistics().getSecondLevelCacheRegionNames())
+                .contains(region)) {
+            throw new IllegalArgumentException("Unknown cache region: " + region);
+        }
+        cache.evictRegion(region);
+        logger.info("Evicted second-level cache region {}", region);
+        networkRegistry.refresh();
+    }
+}
@@ -0,0 +1,250 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.dto.HistoryExportDto;
+import com.matjazt.netmon2.repository.DeviceRepository;
+import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Streams devices and status history to an output stream as NDJSON or CSV.
+ *
+ * <p>Rows are read from a database cursor and written out one by one, so exporting a year of
+ * history needs as little memory as exporting a day. Each export runs in its own read-only
+ * transaction, since it is called from the thread that writes the HTTP response.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    /** ObjectMapper is thread-safe and expensive to create, so share a single instance. */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** Export file format. */
+    public enum Format {
+        /** One JSON object per line. */
+        NDJSON("application/x-ndjson", "ndjson"),
+        /** Comma separated values with a header line. */
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final List<String> HISTORY_COLUMNS =
+            List.of("id", "networkId", "deviceId", "macAddress", "ipAddress", "online", "timestamp");
+    private static final List<String> DEVICE_COLUMNS =
+            List.of(
+                    "id",
+                    "networkId",
+                    "name",
+                    "macAddress",
+                    "ipAddress",
+                    "online",
+                    "lastSeen",
+                    "deviceOperationMode",
+                    "activeAlertId");
+
+    private final DeviceRepository deviceRepository;
+    private final DeviceStatusHistoryRepository deviceStatusHistoryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExportService(
+            DeviceRepository deviceRepository,
+            DeviceStatusHistoryRepository deviceStatusHistoryRepository,
+            PlatformTransactionManager transactionManager) {
+        this.deviceRepository = deviceRepository;
+        this.deviceStatusHistoryRepository = deviceStatusHistoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Writes status history rows in [from, to), oldest first.
+     *
+     * @param networkId network filter, null for all networks
+     * @param deviceId device filter, null for all devices
+     * @param from start of the time range (inclusive)
+     * @param to end of the time range (exclusive)
+     * @param format output format
+     * @param out destination; not closed
+     * @return number of rows written
+     */
+    public long exportHistory(
+            Long networkId,
+            Long deviceId,
+            LocalDateTime from,
+            LocalDateTime to,
+            Format format,
+            OutputStream out) {
+        return export(
+                () -> streamHistory(networkId, deviceId, from, to),
+                HISTORY_COLUMNS,
+                row ->
+                        Arrays.asList(
+                                row.id(),
+                                row.networkId(),
+                                row.deviceId(),
+                                row.macAddress(),
+                                row.ipAddress(),
+                                row.online(),
+                                row.timestamp()),
+                format,
+                out);
+    }
+
+    /**
+     * Writes devices ordered by ID.
+     *
+     * @param networkId network filter, null for all networks
+     * @param format output format
+     * @param out destination; not closed
+     * @return number of rows written
+     */
+    public long exportDevices(Long networkId, Format format, OutputStream out) {
+        return export(
+                () -> deviceRepository.streamDtos(networkId),
+                DEVICE_COLUMNS,
+                row ->
+                        Arrays.asList(
+                                row.id(),
+                                row.networkId(),
+                                row.name(),
+                                row.macAddress(),
+                                row.ipAddress(),
+                                row.online(),
+                                row.lastSeen(),
+                                row.deviceOperationMode(),
+                                row.activeAlertId()),
+                format,
+                out);
+    }
+
+    /** Picks the export query that has exactly the given filters, so partitions can be pruned. */
+    private Stream<HistoryExportDto> streamHistory(
+            Long networkId, Long deviceId, LocalDateTime from, LocalDateTime to) {
+        if (networkId != null && deviceId != null) {
+            return deviceStatusHistoryRepository.streamNetworkDeviceForExport(
+                    networkId, deviceId, from, to);
+        }
+        if (networkId != null) {
+            return deviceStatusHistoryRepository.streamNetworkForExport(networkId, from, to);
+        }
+        if (deviceId != null) {
+            return deviceStatusHistoryRepository.streamDeviceForExport(deviceId, from, to);
+        }
+        return deviceStatusHistoryRepository.streamForExport(from, to);
+    }
+
+    private <T> long export(
+            Supplier<Stream<T>> query,
+            List<String> columns,
+            Function<T, List<?>> values,
+            Format format,
+            OutputStream out) {
+        long start = System.currentTimeMillis();
+        Long count =
+                transactionTemplate.execute(
+                        status -> {
+                            try (var rows = query.get()) {
+                                return write(rows.iterator(), columns, values, format, out);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+        logger.info(
+                "Exported {} rows as {} in {} ms",
+                count,
+                format,
+                System.currentTimeMillis() - start);
+        return count;
+    }
+
+    private static <T> long write(
+            Iterator<T> rows,
+            List<String> columns,
+            Function<T, List<?>> values,
+            Format format,
+            OutputStream out)
+            throws IOException {
+        // not closed, the caller owns the stream
+        Writer writer =
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            writeCsvLine(writer, columns);
+        }
+
+        long count = 0;
+        while (rows.hasNext()) {
+            var row = rows.next();
+            if (format == Format.CSV) {
+                writeCsvLine(writer, values.apply(row));
+            } else {
+                writer.write(OBJECT_MAPPER.writeValueAsString(row));
+                writer.write('\n');
+            }
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static void writeCsvLine(Writer writer, List<?> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            var value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            var text = value.toString();
+            if (text.indexOf(',') >= 0
+                    || text.indexOf('"') >= 0
+                    || text.indexOf('\n') >= 0
+                    || text.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+        writer.write("\r\n");
+    }
+}
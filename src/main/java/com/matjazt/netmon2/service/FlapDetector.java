@@ -0,0 +1,234 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.FlapDetectionProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory flap detector for devices that keep toggling between present and absent.
+ *
+ * <p>For every device we keep the presence samples of the last {@code windowSize} scans packed into
+ * a single {@code long} (bit 0 is the newest sample). The number of state changes inside the window
+ * is simply the number of set bits in {@code samples ^ (samples >>> 1)}, so recording a sample and
+ * evaluating the window are both O(1) and allocation free.
+ *
+ * <p>Flapping uses hysteresis: a device starts flapping when the number of changes reaches {@link
+ * FlapDetectionProperties#getFlappingThreshold()} and stops flapping only when it drops to {@link
+ * FlapDetectionProperties#getRecoveryThreshold()}.
+ *
+ * <p>When {@link FlapDetectionProperties#getHistoryStableScans()} is greater than zero, history
+ * writes for flapping devices are deferred: {@link MqttService} asks {@link #deferTransition} before
+ * writing a transition and later calls {@link #settle} to find out whether (and with which
+ * timestamp) the settled state has to be written.
+ *
+ * <p>State is kept in memory only; after a restart the windows simply fill up again.
+ */
+@Service
+public class FlapDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlapDetector.class);
+
+    private final FlapDetectionProperties properties;
+    private final Map<Long, FlapState> states = new ConcurrentHashMap<>();
+
+    public FlapDetector(FlapDetectionProperties properties) {
+        this.properties = properties;
+        if (properties.getWindowSize() < 2
+                || properties.getWindowSize() > FlapDetectionProperties.MAX_WINDOW_SIZE) {
+            throw new IllegalArgumentException(
+                    "flap-detection.window-size must be between 2 and "
+                            + FlapDetectionProperties.MAX_WINDOW_SIZE);
+        }
+        if (properties.getRecoveryThreshold() >= properties.getFlappingThreshold()) {
+            throw new IllegalArgumentException(
+                    "flap-detection.recovery-threshold must be lower than flapping-threshold");
+        }
+    }
+
+    /**
+     * Records the presence of a device in the current scan. Must be called once per device per
+     * scan, for present and absent devices alike.
+     *
+     * @param deviceId device ID
+     * @param present whether the device was present in the scan
+     * @param timestamp scan timestamp
+     * @return true if the device is flapping after taking this sample into account
+     */
+    public boolean recordSample(long deviceId, boolean present, LocalDateTime timestamp) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+
+        var state = states.computeIfAbsent(deviceId, id -> new FlapState());
+        synchronized (state) {
+            boolean previous = (state.samples & 1L) != 0;
+            state.samples = (state.samples << 1) | (present ? 1L : 0L);
+            if (state.sampleCount < properties.getWindowSize()) {
+                state.sampleCount++;
+            }
+
+            if (state.sampleCount == 1 || previous != present) {
+                state.stableScans = 1;
+                state.stableSince = timestamp;
+            } else {
+                state.stableScans++;
+            }
+
+            int transitions = countTransitions(state);
+            if (!state.flapping && transitions >= properties.getFlappingThreshold()) {
+                state.flapping = true;
+                state.flappingSince = timestamp;
+                logger.info(
+                        "Device {} is flapping ({} changes in last {} scans)",
+                        deviceId,
+                        transitions,
+                        state.sampleCount);
+            } else if (state.flapping && transitions <= properties.getRecoveryThreshold()) {
+                state.flapping = false;
+                state.flappingSince = null;
+                logger.info(
+                        "Device {} stopped flapping ({} changes in last {} scans)",
+                        deviceId,
+                        transitions,
+                        state.sampleCount);
+            }
+            return state.flapping;
+        }
+    }
+
+    /** Returns true if the device is currently flapping. */
+    public boolean isFlapping(long deviceId) {
+        var state = states.get(deviceId);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            return state.flapping;
+        }
+    }
+
+    /**
+     * Decides whether a state transition should be written to history now or deferred.
+     *
+     * <p>Transitions are deferred while the device is flapping and, once deferral started, until
+     * {@link #settle} reports the device stable again. The first deferred transition remembers
+     * the state that is currently recorded in history.
+     *
+     * @param deviceId device ID
+     * @param recordedOnline the online state before this transition (i.e. the last state that is
+     *     known to be in history, unless a deferral is already in progress)
+     * @return true if the history write should be skipped
+     */
+    public boolean deferTransition(long deviceId, boolean recordedOnline) {
+        if (!properties.isEnabled() || properties.getHistoryStableScans() <= 0) {
+            return false;
+        }
+        var state = states.get(deviceId);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            if (!state.flapping && !state.pendingHistory) {
+                return false;
+            }
+            if (!state.pendingHistory) {
+                state.pendingHistory = true;
+                state.recordedOnline = recordedOnline;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Checks whether a device with deferred history writes has been stable long enough.
+     *
+     * @param deviceId device ID
+     * @param online current online state of the device
+     * @return timestamp for the history row if the settled state differs from what history
+     *     already contains, empty otherwise (nothing pending, not stable yet, or the device ended
+     *     up in the state that was already recorded)
+     */
+    public Optional<LocalDateTime> settle(long deviceId, boolean online) {
+        var state = states.get(deviceId);
+        if (state == null) {
+            return Optional.empty();
+        }
+        synchronized (state) {
+            if (!state.pendingHistory || state.stableScans < properties.getHistoryStableScans()) {
+                return Optional.empty();
+            }
+            state.pendingHistory = false;
+            if (state.recordedOnline == online) {
+                return Optional.empty();
+            }
+            return Optional.of(state.stableSince);
+        }
+    }
+
+    /**
+     * Snapshot of all currently flapping devices.
+     *
+     * @return map of device ID to flapping details
+     */
+    public Map<Long, FlapInfo> getFlappingDevices() {
+        var result = new HashMap<Long, FlapInfo>();
+        states.forEach(
+                (deviceId, state) -> {
+                    synchronized (state) {
+                        if (state.flapping) {
+                            result.put(
+                                    deviceId,
+                                    new FlapInfo(
+                                            countTransitions(state),
+                                            state.sampleCount,
+                                            state.flappingSince));
+                        }
+                    }
+                });
+        return result;
+    }
+
+    /** Forgets everything about a device (e.g. after it was deleted). */
+    public void forget(long deviceId) {
+        states.remove(deviceId);
+    }
+
+    private static int countTransitions(FlapState state) {
+        if (state.sampleCount < 2) {
+            return 0;
+        }
+        // adjacent samples differ where the xor with the shifted window has a bit set; only the
+        // (sampleCount - 1) pairs that are inside the window count
+        long changes = state.samples ^ (state.samples >>> 1);
+        long mask = (1L << (state.sampleCount - 1)) - 1;
+        return Long.bitCount(changes & mask);
+    }
+
+    /**
+     * Flapping details for a single device.
+     *
+     * @param transitions number of state changes within the sample window
+     * @param samples number of samples currently in the window
+     * @param flappingSince when the device started flapping
+     */
+    public record FlapInfo(int transitions, int samples, LocalDateTime flappingSince) {}
+
+    private static final class FlapState {
+        private long samples;
+        private int sampleCount;
+        private int stableScans;
+        private LocalDateTime stableSince;
+        private boolean flapping;
+        private LocalDateTime flappingSince;
+        private boolean pendingHistory;
+        private boolean recordedOnline;
+    }
+}
@@ -0,0 +1,798 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.HistoryProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressed columnar files with archived device status history, one file per month and network.
+ *
+ * <p>Files live in {@code history.archive-directory}, partitioned by month like the history table:
+ *
+ * <pre>
+ * history-archive/
+ *   2024-01/
+ *     network-1.nmh
+ *     network-2.nmh
+ *   2024-02/
+ *     ...
+ * </pre>
+ *
+ * <p>Rows are sorted by device, then timestamp. A file starts with an uncompressed header (magic,
+ * version, row count and the device index: every device ID with its number of rows), followed by
+ * one separately deflated block per column, so readers only inflate the columns they need:
+ *
+ * <ol>
+ *   <li>timestamps - microseconds, each row as the difference to the previous row of the device
+ *       (the first one to the start of the month)
+ *   <li>online - one bit per row
+ *   <li>IDs - difference to the previous row's ID
+ *   <li>IP addresses - a dictionary of distinct addresses, then the dictionary index of every row
+ *   <li>carry - the last row of every device up to the end of the month, including devices that
+ *       didn't change during the month (taken over from the previous archived month), so the state
+ *       of a device at the start of any later window is found in a single file
+ * </ol>
+ *
+ * <p>All numbers are variable-length (7 bits per byte), signed ones zigzag encoded. Files are
+ * written to a temporary file and moved into place, so readers never see a partial file.
+ *
+ * <p>The header and the position of every block are kept in memory once a file has been read, so
+ * later reads only load the blocks they need, and reads of a single device only decode its rows.
+ */
+@Service
+public class HistoryArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryArchive.class);
+
+    private static final int MAGIC = 0x4E4D4841; // "NMHA"
+    private static final int VERSION = 1;
+    private static final String FILE_PREFIX = "network-";
+    private static final String FILE_SUFFIX = ".nmh";
+    private static final Pattern MONTH_DIRECTORY = Pattern.compile("\\d{4}-\\d{2}");
+    private static final Pattern FILE_NAME =
+            Pattern.compile(Pattern.quote(FILE_PREFIX) + "(\\d+)" + Pattern.quote(FILE_SUFFIX));
+
+    // blocks of a file, in file order
+    private static final int TIMESTAMPS = 0;
+    private static final int ONLINE = 1;
+    private static final int IDS = 2;
+    private static final int IPS = 3;
+    private static final int CARRY = 4;
+    private static final int BLOCKS = 5;
+
+    private static final Comparator<ArchivedHistoryRow> ROW_ORDER =
+            Comparator.comparingLong(ArchivedHistoryRow::deviceId)
+                    .thenComparing(ArchivedHistoryRow::timestamp)
+                    .thenComparingLong(ArchivedHistoryRow::id);
+
+    private final Path directory;
+
+    /** Archived months of every network, loaded from the directory on first use. */
+    private volatile Map<Long, NavigableSet<YearMonth>> index;
+
+    /**
+     * Header and block positions of every file that has been read, checked against the file's
+     * size and modification time on every use (files are small, and there is one per month).
+     */
+    private final Map<Path, FileIndex> fileIndexes = new ConcurrentHashMap<>();
+
+    public HistoryArchive(HistoryProperties properties) {
+        this.directory = Path.of(properties.getArchiveDirectory());
+    }
+
+    /** Returns the archived months of a network, oldest first. */
+    public NavigableSet<YearMonth> months(long networkId) {
+        var months = index().get(networkId);
+        return months != null
+                ? Collections.unmodifiableNavigableSet(months)
+                : Collections.emptyNavigableSet();
+    }
+
+    /**
+     * Writes the archive file of a month. If the month already has a file (it was archived before,
+     * but removing the rows from the database failed), the rows are merged with the archived ones;
+     * rows that are in both are written once.
+     *
+     * @param rows rows sorted by device, then timestamp, then ID
+     * @param previousCarry carry of the previous archived month (empty if there is none)
+     * @return number of rows written
+     * @throws IllegalArgumentException if the rows are not sorted or outside the month
+     */
+    public int write(
+            long networkId,
+            YearMonth month,
+            Iterator<ArchivedHistoryRow> rows,
+            List<ArchivedHistoryRow> previousCarry) {
+        var existing = read(networkId, month, true);
+        if (existing != null) {
+            rows = new MergingIterator<>(existing.rows().iterator(), rows, ROW_ORDER, true);
+        }
+        var monthStart = toMicros(month.atDay(1).atStartOfDay());
+        var monthEnd = toMicros(month.plusMonths(1).atDay(1).atStartOfDay());
+
+        var deviceIds = new ArrayList<Long>();
+        var deviceRows = new ArrayList<Integer>();
+        var timestamps = new ByteArrayOutputStream();
+        var online = new ByteArrayOutputStream();
+        var ids = new ByteArrayOutputStream();
+        var ipIndexes = new ByteArrayOutputStream();
+        var ipDictionary = new HashMap<String, Integer>();
+        var ipValues = new ArrayList<String>();
+        var carry = new TreeMap<Long, ArchivedHistoryRow>();
+        for (var row : previousCarry) {
+            carry.put(row.deviceId(), row);
+        }
+
+        int count = 0;
+        int onlineBits = 0;
+        ArchivedHistoryRow previous = null;
+        while (rows.hasNext()) {
+            var row = rows.next();
+            long micros = toMicros(row.timestamp());
+            if (micros < monthStart || micros >= monthEnd) {
+                throw new IllegalArgumentException(
+                        "Row " + row.id() + " is outside of " + month + ": " + row.timestamp());
+            }
+            boolean newDevice = previous == null || previous.deviceId() != row.deviceId();
+            if (previous != null
+                    && (row.deviceId() < previous.deviceId()
+                            || (!newDevice && row.timestamp().isBefore(previous.timestamp())))) {
+                throw new IllegalArgumentException("Rows must be sorted by device and timestamp");
+            }
+
+            if (newDevice) {
+                deviceIds.add(row.deviceId());
+                deviceRows.add(0);
+                writeSigned(timestamps, micros - monthStart);
+            } else {
+                writeSigned(timestamps, micros - toMicros(previous.timestamp()));
+            }
+            deviceRows.set(deviceRows.size() - 1, deviceRows.getLast() + 1);
+
+            if (row.online()) {
+                onlineBits |= 1 << (count % 8);
+            }
+            if (count % 8 == 7) {
+                online.write(onlineBits);
+                onlineBits = 0;
+            }
+
+            writeSigned(ids, row.id() - (previous != null ? previous.id() : 0));
+
+            var ipIndex = ipDictionary.get(row.ipAddress());
+            if (ipIndex == null) {
+                ipIndex = ipValues.size();
+                ipDictionary.put(row.ipAddress(), ipIndex);
+                ipValues.add(row.ipAddress());
+            }
+            writeUnsigned(ipIndexes, ipIndex);
+
+            carry.put(row.deviceId(), row);
+            previous = row;
+            count++;
+        }
+        if (count % 8 != 0) {
+            online.write(onlineBits);
+        }
+
+        var ips = new ByteArrayOutputStream();
+        writeUnsigned(ips, ipValues.size());
+        for (var ip : ipValues) {
+            writeString(ips, ip);
+        }
+        ips.writeBytes(ipIndexes.toByteArray());
+
+        var header = new ByteArrayOutputStream();
+        writeUnsigned(header, count);
+        writeUnsigned(header, deviceIds.size());
+        long previousDeviceId = 0;
+        for (int i = 0; i < deviceIds.size(); i++) {
+            writeUnsigned(header, deviceIds.get(i) - previousDeviceId);
+            writeUnsigned(header, deviceRows.get(i));
+            previousDeviceId = deviceIds.get(i);
+        }
+
+        var file = file(networkId, month);
+        try {
+            writeFile(
+                    file,
+                    header,
+                    List.of(timestamps, online, ids, ips, encodeCarry(carry.values())));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write history archive " + month, e);
+        } finally {
+            fileIndexes.remove(file);
+        }
+        index().computeIfAbsent(networkId, id -> new ConcurrentSkipListSet<>()).add(month);
+        return count;
+    }
+
+    /**
+     * Reads an archived month.
+     *
+     * @param details whether to read IDs and IP addresses as well (uptime only needs timestamps
+     *     and states)
+     * @return the month, or null if it isn't archived
+     */
+    public ArchivedMonth read(long networkId, YearMonth month, boolean details) {
+        var file = file(networkId, month);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var fileIndex = fileIndex(file, channel);
+            var header = fileIndex.header();
+            return decode(fileIndex, channel, month, 0, header.deviceIds.length, details);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history archive " + file, e);
+        }
+    }
+
+    /**
+     * Reads the rows of a single device in an archived month, oldest first. Only the device's rows
+     * are decoded.
+     *
+     * @param details whether to read IDs and IP addresses as well
+     * @return the rows, empty if the month isn't archived or has no rows of the device
+     */
+    public List<ArchivedHistoryRow> readDevice(
+            long networkId, YearMonth month, long deviceId, boolean details) {
+        var file = file(networkId, month);
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var fileIndex = fileIndex(file, channel);
+            int d = Arrays.binarySearch(fileIndex.header().deviceIds, deviceId);
+            if (d < 0) {
+                return List.of();
+            }
+            return decode(fileIndex, channel, month, d, d + 1, details).rows(deviceId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history archive " + file, e);
+        }
+    }
+
+    /**
+     * Returns the last row of every device up to the end of an archived month, sorted by device.
+     *
+     * @return the rows, empty if the month isn't archived
+     */
+    public List<ArchivedHistoryRow> readCarry(long networkId, YearMonth month) {
+        var file = file(networkId, month);
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var carry = fileIndex(file, channel).block(channel, CARRY);
+            var result = new ArrayList<ArchivedHistoryRow>();
+            int size = (int) carry.readUnsigned();
+            long deviceId = 0;
+            for (int i = 0; i < size; i++) {
+                deviceId += carry.readUnsigned();
+                long id = carry.readSigned();
+                var timestamp = fromMicros(carry.readSigned());
+                boolean online = carry.readUnsigned() != 0;
+                var ipAddress = carry.readString();
+                result.add(new ArchivedHistoryRow(id, deviceId, timestamp, online, ipAddress));
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history archive " + file, e);
+        }
+    }
+
+    /** Returns the number of rows of a device in an archived month, reading only the header. */
+    public int countDeviceRows(long networkId, YearMonth month, long deviceId) {
+        var file = file(networkId, month);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = fileIndex(file, channel).header();
+            int d = Arrays.binarySearch(header.deviceIds, deviceId);
+            return d >= 0 ? header.deviceStart[d + 1] - header.deviceStart[d] : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read history archive " + file, e);
+        }
+    }
+
+    /** Deletes the archive file of a month (e.g. when it is past retention). */
+    public void delete(long networkId, YearMonth month) {
+        var file = file(networkId, month);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete history archive " + month, e);
+        } finally {
+            fileIndexes.remove(file);
+        }
+        var months = index().get(networkId);
+        if (months != null) {
+            months.remove(month);
+        }
+    }
+
+    private Path file(long networkId, YearMonth month) {
+        return directory.resolve(month.toString()).resolve(FILE_PREFIX + networkId + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the header and block positions of an open file, reading them from the start of the
+     * file unless they are cached and the file hasn't changed since.
+     */
+    private FileIndex fileIndex(Path file, FileChannel channel) throws IOException {
+        long size = channel.size();
+        var modified = Files.getLastModifiedTime(file);
+        var cached = fileIndexes.get(file);
+        if (cached != null && cached.size() == size && cached.modified().equals(modified)) {
+            return cached;
+        }
+
+        var input = new StreamInput(Channels.newInputStream(channel.position(0)));
+        var header = readHeader(input, file);
+        var blockOffsets = new long[BLOCKS];
+        var blockLengths = new int[BLOCKS];
+        for (int b = 0; b < BLOCKS; b++) {
+            blockLengths[b] = (int) input.readUnsigned();
+            blockOffsets[b] = input.position();
+            if (blockLengths[b] > size - blockOffsets[b]) {
+                throw new IllegalStateException("Truncated history archive");
+            }
+            input.skip(blockLengths[b]);
+        }
+        var result = new FileIndex(size, modified, header, blockOffsets, blockLengths);
+        fileIndexes.put(file, result);
+        return result;
+    }
+
+    /**
+     * Decodes the rows of the devices [firstDevice, endDevice) of a file. Columns are inflated as
+     * a whole, but the rows of other devices are only skipped.
+     */
+    private static ArchivedMonth decode(
+            FileIndex fileIndex,
+            FileChannel channel,
+            YearMonth month,
+            int firstDevice,
+            int endDevice,
+            boolean details)
+            throws IOException {
+        var header = fileIndex.header();
+        int from = header.deviceStart[firstDevice];
+        int to = header.deviceStart[endDevice];
+        var monthStart = toMicros(month.atDay(1).atStartOfDay());
+
+        var timestampColumn = fileIndex.block(channel, TIMESTAMPS);
+        timestampColumn.skipNumbers(from);
+        var timestamps = new long[to - from];
+        for (int d = firstDevice; d < endDevice; d++) {
+            long micros = monthStart;
+            for (int r = header.deviceStart[d]; r < header.deviceStart[d + 1]; r++) {
+                micros += timestampColumn.readSigned();
+                timestamps[r - from] = micros;
+            }
+        }
+
+        var online = fileIndex.block(channel, ONLINE).bits(from, to);
+
+        long[] ids = null;
+        String[] ipDictionary = null;
+        int[] ipIndexes = null;
+        if (details) {
+            // IDs are relative to the previous row of any device, so all earlier ones are summed
+            var idColumn = fileIndex.block(channel, IDS);
+            ids = new long[to - from];
+            long id = 0;
+            for (int r = 0; r < to; r++) {
+                id += idColumn.readSigned();
+                if (r >= from) {
+                    ids[r - from] = id;
+                }
+            }
+            var ipColumn = fileIndex.block(channel, IPS);
+            ipDictionary = new String[(int) ipColumn.readUnsigned()];
+            for (int i = 0; i < ipDictionary.length; i++) {
+                ipDictionary[i] = ipColumn.readString();
+            }
+            ipColumn.skipNumbers(from);
+            ipIndexes = new int[to - from];
+            for (int r = 0; r < ipIndexes.length; r++) {
+                ipIndexes[r] = (int) ipColumn.readUnsigned();
+            }
+        }
+
+        var deviceIds = Arrays.copyOfRange(header.deviceIds, firstDevice, endDevice);
+        var deviceStart = new int[deviceIds.length + 1];
+        for (int d = 0; d < deviceStart.length; d++) {
+            deviceStart[d] = header.deviceStart[firstDevice + d] - from;
+        }
+        return new ArchivedMonth(
+                deviceIds, deviceStart, timestamps, online, ids, ipDictionary, ipIndexes);
+    }
+
+    private Map<Long, NavigableSet<YearMonth>> index() {
+        var result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    result = loadIndex();
+                    index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private Map<Long, NavigableSet<YearMonth>> loadIndex() {
+        var result = new ConcurrentHashMap<Long, NavigableSet<YearMonth>>();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (var monthDirectories = Files.list(directory)) {
+            for (var monthDirectory : monthDirectories.toList()) {
+                var name = monthDirectory.getFileName().toString();
+                if (!MONTH_DIRECTORY.matcher(name).matches()) {
+                    continue;
+                }
+                var month = YearMonth.parse(name);
+                try (var files = Files.list(monthDirectory)) {
+                    for (var file : files.toList()) {
+                        var matcher = FILE_NAME.matcher(file.getFileName().toString());
+                        if (matcher.matches()) {
+                            result.computeIfAbsent(
+                                            Long.parseLong(matcher.group(1)),
+                                            id -> new ConcurrentSkipListSet<>())
+                                    .add(month);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list history archive " + directory, e);
+        }
+        logger.info("History archive {} holds {} networks", directory, result.size());
+        return result;
+    }
+
+    private static void writeFile(
+            Path file, ByteArrayOutputStream header, List<ByteArrayOutputStream> blocks)
+            throws IOException {
+        Files.createDirectories(file.getParent());
+        var out = new ByteArrayOutputStream();
+        out.write(ByteBuffer.allocate(5).putInt(MAGIC).put((byte) VERSION).array());
+        header.writeTo(out);
+        for (var block : blocks) {
+            var compressed = compress(block);
+            writeUnsigned(out, compressed.length);
+            out.write(compressed);
+        }
+
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel =
+                FileChannel.open(
+                        temporary,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+            var buffer = ByteBuffer.wrap(out.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(
+                temporary,
+                file,
+                StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static ByteArrayOutputStream encodeCarry(Iterable<ArchivedHistoryRow> rows) {
+        var out = new ByteArrayOutputStream();
+        var list = new ArrayList<ArchivedHistoryRow>();
+        rows.forEach(list::add);
+        writeUnsigned(out, list.size());
+        long previousDeviceId = 0;
+        for (var row : list) {
+            writeUnsigned(out, row.deviceId() - previousDeviceId);
+            writeSigned(out, row.id());
+            writeSigned(out, toMicros(row.timestamp()));
+            writeUnsigned(out, row.online() ? 1 : 0);
+            writeString(out, row.ipAddress());
+            previousDeviceId = row.deviceId();
+        }
+        return out;
+    }
+
+    private static Header readHeader(Reader input, Path file) throws IOException {
+        if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+            throw new IllegalStateException("Not a history archive file: " + file);
+        }
+        int rowCount = (int) input.readUnsigned();
+        var deviceIds = new long[(int) input.readUnsigned()];
+        var deviceStart = new int[deviceIds.length + 1];
+        long deviceId = 0;
+        for (int d = 0; d < deviceIds.length; d++) {
+            deviceId += input.readUnsigned();
+            deviceIds[d] = deviceId;
+            deviceStart[d + 1] = deviceStart[d] + (int) input.readUnsigned();
+        }
+        return new Header(rowCount, deviceIds, deviceStart);
+    }
+
+    private static byte[] compress(ByteArrayOutputStream raw) throws IOException {
+        var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            var out = new ByteArrayOutputStream(raw.size() / 4 + 16);
+            try (var deflating = new DeflaterOutputStream(out, deflater)) {
+                raw.writeTo(deflating);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static long toMicros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + timestamp.getNano() / 1000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(
+                Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000,
+                ZoneOffset.UTC);
+    }
+
+    private static void writeUnsigned(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeSigned(ByteArrayOutputStream out, long value) {
+        writeUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsigned(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private record Header(int rowCount, long[] deviceIds, int[] deviceStart) {}
+
+    /** Header of a file and the position of every block in it. */
+    private record FileIndex(
+            long size, FileTime modified, Header header, long[] blockOffsets, int[] blockLengths) {
+
+        /** Loads and inflates a block of the file. */
+        private Input block(FileChannel channel, int block) throws IOException {
+            var buffer = ByteBuffer.allocate(blockLengths[block]);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, blockOffsets[block] + buffer.position()) < 0) {
+                    throw new IllegalStateException("Truncated history archive");
+                }
+            }
+            try (var inflating =
+                    new InflaterInputStream(new ByteArrayInputStream(buffer.array()))) {
+                return new Input(inflating.readAllBytes());
+            }
+        }
+    }
+
+    /** Sequential reader of the numbers in a file. */
+    private abstract static class Reader {
+
+        abstract int readByte() throws IOException;
+
+        int readInt() throws IOException {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        long readUnsigned() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed history archive: value too long");
+        }
+
+        long readSigned() throws IOException {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /** Skips {@code count} variable-length numbers. */
+        void skipNumbers(int count) throws IOException {
+            while (count > 0) {
+                if ((readByte() & 0x80) == 0) {
+                    count--;
+                }
+            }
+        }
+    }
+
+    /** Sequential reader over a byte array. */
+    private static final class Input extends Reader {
+        private final byte[] data;
+        private int position;
+
+        private Input(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        int readByte() {
+            if (position >= data.length) {
+                throw new IllegalStateException("Truncated history archive");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        private String readString() throws IOException {
+            int length = (int) readUnsigned();
+            if (length > data.length - position) {
+                throw new IllegalStateException("Truncated history archive");
+            }
+            var value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        /** Returns bits [from, to) of the data, as bits [0, to - from). */
+        private BitSet bits(int from, int to) {
+            int first = Math.min(data.length, position + from / 8);
+            int last = Math.min(data.length, position + (to + 7) / 8);
+            return BitSet.valueOf(ByteBuffer.wrap(data, first, last - first))
+                    .get(from % 8, from % 8 + to - from);
+        }
+    }
+
+    /** Sequential reader over a file, from its start. */
+    private static final class StreamInput extends Reader {
+        private final InputStream in;
+        private long position;
+
+        private StreamInput(InputStream in) {
+            this.in = new BufferedInputStream(in);
+        }
+
+        @Override
+        int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new IllegalStateException("Truncated history archive");
+            }
+            position++;
+            return b;
+        }
+
+        private long position() {
+            return position;
+        }
+
+        private void skip(long length) throws IOException {
+            in.skipNBytes(length);
+            position += length;
+        }
+    }
+
+    /**
+     * The rows of one archived month, column by column. Rows of a device are contiguous and in
+     * timestamp order.
+     */
+    public static final class ArchivedMonth {
+        private final long[] deviceIds;
+        private final int[] deviceStart;
+        private final long[] timestamps;
+        private final BitSet online;
+        private final long[] ids;
+        private final String[] ipDictionary;
+        private final int[] ipIndexes;
+
+        private ArchivedMonth(
+                long[] deviceIds,
+                int[] deviceStart,
+                long[] timestamps,
+                BitSet online,
+                long[] ids,
+                String[] ipDictionary,
+                int[] ipIndexes) {
+            this.deviceIds = deviceIds;
+            this.deviceStart = deviceStart;
+            this.timestamps = timestamps;
+            this.online = online;
+            this.ids = ids;
+            this.ipDictionary = ipDictionary;
+            this.ipIndexes = ipIndexes;
+        }
+
+        /** Returns the device IDs in the month, ascending. */
+        public long[] deviceIds() {
+            return deviceIds.clone();
+        }
+
+        /** Returns all rows, sorted by device, then timestamp. */
+        public List<ArchivedHistoryRow> rows() {
+            var result = new ArrayList<ArchivedHistoryRow>(timestamps.length);
+            for (int d = 0; d < deviceIds.length; d++) {
+                for (int r = deviceStart[d]; r < deviceStart[d + 1]; r++) {
+                    result.add(row(deviceIds[d], r));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the rows of a device, oldest first. IDs and IP addresses are only filled in if
+         * the month was read with details.
+         */
+        public List<ArchivedHistoryRow> rows(long deviceId) {
+            int d = Arrays.binarySearch(deviceIds, deviceId);
+            if (d < 0) {
+                return List.of();
+            }
+            var result = new ArrayList<ArchivedHistoryRow>(deviceStart[d + 1] - deviceStart[d]);
+            for (int r = deviceStart[d]; r < deviceStart[d + 1]; r++) {
+                result.add(row(deviceId, r));
+            }
+            return result;
+        }
+
+        private ArchivedHistoryRow row(long deviceId, int r) {
+            return new ArchivedHistoryRow(
+                    ids != null ? ids[r] : 0,
+                    deviceId,
+                    fromMicros(timestamps[r]),
+                    online.get(r),
+                    ipDictionary != null ? ipDictionary[ipIndexes[r]] : null);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.HistoryProperties;
+import com.matjazt.netmon2.repository.StatusTransition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Moves cold device status history out of the database into the {@link HistoryArchive}, and reads
+ * it back for the history and uptime APIs.
+ *
+ * <p>Once a day (before partition maintenance), every month that is older than {@code
+ * history.archive-after-months} full months is archived network by network: its rows are written
+ * to the month's archive file, and then the network's partition of that month is dropped (or, for
+ * rows in a default partition, deleted). Each month is handled in its own transaction; if the
+ * number of deleted rows doesn't match the archived ones, the transaction is rolled back and the
+ * month is archived again on the next run ({@link HistoryArchive#write} merges the rows with the
+ * existing file, so no row is lost or duplicated). Archive files past the network's retention are
+ * deleted.
+ *
+ * <p>Months are archived oldest first, because every file carries the last state of all devices
+ * forward from the previous archived month.
+ *
+ * <p>Archive files are on local disk; instances that run as a cluster need a shared {@code
+ * history.archive-directory}.
+ */
+@Service
+public class HistoryArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryArchiveService.class);
+
+    private static final String TABLE = "device_status_history";
+    private static final int FETCH_SIZE = 1000;
+
+    private static final Comparator<StatusTransition> TRANSITION_ORDER =
+            Comparator.comparing(StatusTransition::getDeviceId)
+                    .thenComparing(StatusTransition::getTimestamp);
+    private static final RowMapper<ArchivedHistoryRow> ROW_MAPPER =
+            (rs, rowNum) ->
+                    new ArchivedHistoryRow(
+                            rs.getLong("id"),
+                            rs.getLong("device_id"),
+                            rs.getObject("timestamp", LocalDateTime.class),
+                            rs.getBoolean("online"),
+                            rs.getString("ip_address"));
+
+    private final HistoryProperties properties;
+    private final HistoryArchive archive;
+    private final NetworkRegistry networkRegistry;
+    private final ClusterCoordinator clusterCoordinator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public HistoryArchiveService(
+            HistoryProperties properties,
+            HistoryArchive archive,
+            NetworkRegistry networkRegistry,
+            ClusterCoordinator clusterCoordinator,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.archive = archive;
+        this.networkRegistry = networkRegistry;
+        this.clusterCoordinator = clusterCoordinator;
+        // archived months are streamed, not loaded into memory at once
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Archives history older than {@code history.archive-after-months} and applies retention to
+     * the archive. Does nothing if archiving is disabled.
+     *
+     * @see TimingProxy#maintainHistoryPartitions()
+     */
+    public void archive() {
+        if (properties.getArchiveAfterMonths() <= 0) {
+            return;
+        }
+        var currentMonth = YearMonth.now(ZoneOffset.UTC);
+        var cutoff = currentMonth.minusMonths(properties.getArchiveAfterMonths());
+
+        for (var network : networkRegistry.getAll()) {
+            LocalDateTime oldest;
+            try {
+                oldest =
+                        transactionTemplate.execute(
+                                status ->
+                                        jdbcTemplate.queryForObject(
+                                                "SELECT min(\"timestamp\") FROM "
+                                                        + TABLE
+                                                        + " WHERE network_id = ?"
+                                                        + " AND \"timestamp\" < ?",
+                                                LocalDateTime.class,
+                                                network.id(),
+                                                cutoff.atDay(1).atStartOfDay()));
+            } catch (Exception e) {
+                logger.error("Failed to find history to archive for network {}", network.id(), e);
+                continue;
+            }
+            if (oldest != null) {
+                for (var month = YearMonth.from(oldest);
+                        month.isBefore(cutoff);
+                        month = month.plusMonths(1)) {
+                    var archivedMonth = month;
+                    runStep(
+                            "archive history of network " + network.id() + " for " + month,
+                            () -> archiveMonth(network.id(), archivedMonth));
+                }
+            }
+
+            int months = network.configuration().getHistoryRetentionMonths();
+            int retention = months > 0 ? months : properties.getRetentionMonths();
+            for (var month : List.copyOf(archive.months(network.id()))) {
+                if (HistoryPartitionService.isExpired(
+                        month.atDay(1), retention, currentMonth.atDay(1))) {
+                    archive.delete(network.id(), month);
+                    logger.info(
+                            "Deleted archived history of network {} for {}", network.id(), month);
+                }
+            }
+        }
+    }
+
+    /** Returns true if any history of the network is archived. */
+    public boolean hasArchive(long networkId) {
+        return !archive.months(networkId).isEmpty();
+    }
+
+    /**
+     * Returns the archived transitions that are relevant for the window [start, end): the last
+     * archived row of every device before the window, followed by the archived rows inside it.
+     * Rows are ordered by device, then timestamp, like the database streams used for uptime, and
+     * can be combined with them using {@link #merge}.
+     *
+     * @param deviceId a single device, or null for all devices of the network
+     */
+    public List<ArchivedHistoryRow> findTransitions(
+            long networkId, Long deviceId, LocalDateTime start, LocalDateTime end) {
+        var months = archive.months(networkId);
+        if (months.isEmpty()) {
+            return List.of();
+        }
+        var startMonth = YearMonth.from(start);
+        var byDevice = new TreeMap<Long, List<ArchivedHistoryRow>>();
+
+        // the state at the start of the window, as of the end of the previous archived month
+        var previousMonth = months.lower(startMonth);
+        if (previousMonth != null) {
+            for (var row : archive.readCarry(networkId, previousMonth)) {
+                if (deviceId == null || row.deviceId() == deviceId) {
+                    byDevice.computeIfAbsent(row.deviceId(), id -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+
+        for (var month : months.subSet(startMonth, true, YearMonth.from(end), true)) {
+            var rows =
+                    deviceId != null
+                            ? archive.readDevice(networkId, month, deviceId, false)
+                            : archive.read(networkId, month, false).rows();
+            for (var row : rows) {
+                if (row.timestamp().isBefore(end)) {
+                    byDevice.computeIfAbsent(row.deviceId(), id -> new ArrayList<>()).add(row);
+                }
+            }
+        }
+
+        // rows without a device are never part of uptime
+        byDevice.remove(0L);
+        var result = new ArrayList<ArchivedHistoryRow>();
+        byDevice.values().forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Returns archived history of a device that is older than the given key, newest first.
+     *
+     * @param beforeTimestamp timestamp of the key, null to start with the newest archived row
+     * @param beforeId ID of the key
+     * @param limit maximum number of rows
+     */
+    public List<ArchivedHistoryRow> findDeviceHistory(
+            long networkId,
+            long deviceId,
+            LocalDateTime beforeTimestamp,
+            long beforeId,
+            int limit) {
+        var months = archive.months(networkId);
+        if (beforeTimestamp != null) {
+            months = months.headSet(YearMonth.from(beforeTimestamp), true);
+        }
+        var result = new ArrayList<ArchivedHistoryRow>(limit);
+        for (var month : months.descendingSet()) {
+            var rows = archive.readDevice(networkId, month, deviceId, true);
+            for (int i = rows.size() - 1; i >= 0 && result.size() < limit; i--) {
+                var row = rows.get(i);
+                if (beforeTimestamp == null
+                        || row.timestamp().isBefore(beforeTimestamp)
+                        || (row.timestamp().equals(beforeTimestamp) && row.id() < beforeId)) {
+                    result.add(row);
+                }
+            }
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the number of archived history rows of a device. */
+    public long countDeviceHistory(long networkId, long deviceId) {
+        long count = 0;
+        for (var month : archive.months(networkId)) {
+            count += archive.countDeviceRows(networkId, month, deviceId);
+        }
+        return count;
+    }
+
+    /**
+     * Combines archived and live transitions, both ordered by device and then timestamp, into one
+     * stream in the same order.
+     */
+    public static Iterator<StatusTransition> merge(
+            Iterator<? extends StatusTransition> archived,
+            Iterator<? extends StatusTransition> live) {
+        return new MergingIterator<>(archived, live, TRANSITION_ORDER, false);
+    }
+
+    private void archiveMonth(long networkId, YearMonth month) {
+        var start = month.atDay(1).atStartOfDay();
+        var end = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        var previousMonth = archive.months(networkId).lower(month);
+        var previousCarry =
+                previousMonth != null ? archive.readCarry(networkId, previousMonth) : null;
+
+        int[] liveRows = {0};
+        try (var live =
+                jdbcTemplate.queryForStream(
+                        "SELECT id, COALESCE(device_id, 0) AS device_id, \"timestamp\", online,"
+                                + " ip_address FROM "
+                                + TABLE
+                                + " WHERE network_id = ? AND \"timestamp\" >= ?"
+                                + " AND \"timestamp\" < ?"
+                                + " ORDER BY 2, \"timestamp\", id",
+                        ROW_MAPPER,
+                        networkId,
+                        start,
+                        end)) {
+            var rows = live.peek(row -> liveRows[0]++).iterator();
+            if (!rows.hasNext()) {
+                return;
+            }
+            archive.write(
+                    networkId, month, rows, previousCarry != null ? previousCarry : List.of());
+        }
+
+        int deleted = deleteMonth(networkId, month, start, end);
+        if (deleted != liveRows[0]) {
+            throw new IllegalStateException(
+                    "History changed while archiving ("
+                            + liveRows[0]
+                            + " rows archived, "
+                            + deleted
+                            + " deleted), will retry");
+        }
+        logger.info(
+                "Archived {} history rows of network {} for {}", liveRows[0], networkId, month);
+    }
+
+    /**
+     * Removes a month of a network's history from the database: drops its partition if it has
+     * one, deletes the rows otherwise.
+     *
+     * @return number of removed rows
+     */
+    private int deleteMonth(
+            long networkId, YearMonth month, LocalDateTime start, LocalDateTime end) {
+        var partition =
+                String.format(
+                        "%s_y%04dm%02d_n%d",
+                        TABLE, month.getYear(), month.getMonthValue(), networkId);
+        Boolean partitioned =
+                jdbcTemplate.queryForObject(
+                        "SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+        if (Boolean.TRUE.equals(partitioned)) {
+            Integer count =
+                    jdbcTemplate.queryForObject(
+                            "SELECT count(*) FROM " + partition, Integer.class);
+            jdbcTemplate.execute("DROP TABLE " + partition);
+            logger.info("Dropped archived history partition {}", partition);
+            return count != null ? count : 0;
+        }
+        return jdbcTemplate.update(
+                "DELETE FROM "
+                        + TABLE
+                        + " WHERE network_id = ? AND \"timestamp\" >= ? AND \"timestamp\" < ?",
+                networkId,
+                start,
+                end);
+    }
+
+    /**
+     * Runs one archiving step in its own transaction, guarded by the cluster task lock. Failures
+     * are logged and don't stop the remaining steps.
+     */
+    private void runStep(String description, Runnable step) {
+        try {
+            transactionTemplate.executeWithoutResult(
+                    status -> {
+                        if (clusterCoordinator.tryLockTask("history-archive")) {
+                            step.run();
+                        }
+                    });
+        } catch (Exception e) {
+            logger.error("Failed to {}", description, e);
+        }
+    }
+}
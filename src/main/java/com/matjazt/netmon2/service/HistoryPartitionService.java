@@ -0,0 +1,404 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.HistoryProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the partitions of the {@code device_status_history} table.
+ *
+ * <p>The table is partitioned by month on {@code timestamp}, and every month is sub-partitioned by
+ * {@code network_id}:
+ *
+ * <pre>
+ * device_status_history
+ *   device_status_history_y2025m01            (2025-01-01 .. 2025-02-01)
+ *     device_status_history_y2025m01_n1       (network 1)
+ *     device_status_history_y2025m01_n2       (network 2)
+ *     device_status_history_y2025m01_default  (networks without a partition yet)
+ *   ...
+ *   device_status_history_default             (anything outside the monthly partitions)
+ * </pre>
+ *
+ * <p>History queries with a time range only touch the relevant months, and queries for a single
+ * network only touch that network's partitions.
+ *
+ * <p>Once a day (and at startup) this service:
+ *
+ * <ul>
+ *   <li>creates partitions for the current month and {@code history.partition-months-ahead}
+ *       months ahead, with a partition for every network
+ *   <li>drops the partitions of months that are older than the network's retention ({@code
+ *       historyRetentionMonths} in the network configuration, or {@code history.retention-months})
+ *   <li>deletes expired rows from the default partitions, which are the only place where retention
+ *       has to fall back to row-by-row deletes
+ * </ul>
+ *
+ * <p>Partitions are created ahead of time, so rows normally never go to a default partition: the
+ * upcoming months of a new network are created right after the network (its first month goes to
+ * the month's default partition). A partition whose rows are already in a default partition isn't
+ * created, because moving them would mean detaching the default partition, which locks the whole
+ * table while the rows are moved. The rows stay where they are; queries and retention still find
+ * them.
+ *
+ * <p>Each month is handled in its own transaction, so a problem with one partition doesn't block
+ * the others. If the table is not partitioned (an old schema), the service does nothing.
+ */
+@Service
+public class HistoryPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryPartitionService.class);
+
+    private static final String TABLE = "device_status_history";
+    private static final Pattern MONTH_PARTITION =
+            Pattern.compile(TABLE + "_y(\\d{4})m(\\d{2})");
+    private static final Pattern NETWORK_PARTITION =
+            Pattern.compile(TABLE + "_y\\d{4}m\\d{2}_n(\\d+)");
+
+    private final HistoryProperties properties;
+    private final NetworkRegistry networkRegistry;
+    private final ClusterCoordinator clusterCoordinator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private boolean notPartitionedLogged;
+
+    public HistoryPartitionService(
+            HistoryProperties properties,
+            NetworkRegistry networkRegistry,
+            ClusterCoordinator clusterCoordinator,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.networkRegistry = networkRegistry;
+        this.clusterCoordinator = clusterCoordinator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (properties.getPartitionMonthsAhead() < 1) {
+            // next month's partitions must exist before its first row is written
+            throw new IllegalArgumentException("history.partition-months-ahead must be at least 1");
+        }
+    }
+
+    /** Creates missing partitions right away, so a fresh database can store history. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintainPartitions();
+    }
+
+    /**
+     * Creates upcoming partitions and applies retention. Safe to call repeatedly and from several
+     * nodes at once.
+     *
+     * @see TimingProxy#maintainHistoryPartitions()
+     */
+    public void maintainPartitions() {
+        if (!isPartitioned()) {
+            return;
+        }
+
+        var retentionByNetwork = loadRetention();
+        var currentMonth = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+
+        for (int i = 0; i <= properties.getPartitionMonthsAhead(); i++) {
+            var month = currentMonth.plusMonths(i);
+            runStep(
+                    "create partitions for " + month,
+                    () -> createMonth(month, retentionByNetwork.keySet()));
+        }
+
+        var partitions = transactionTemplate.execute(status -> childPartitions(TABLE));
+        for (var partition : partitions) {
+            var matcher = MONTH_PARTITION.matcher(partition);
+            if (matcher.matches()) {
+                var month =
+                        LocalDate.of(
+                                Integer.parseInt(matcher.group(1)),
+                                Integer.parseInt(matcher.group(2)),
+                                1);
+                if (month.isBefore(currentMonth)) {
+                    runStep(
+                            "apply retention to " + partition,
+                            () -> applyRetention(partition, month, currentMonth, retentionByNetwork));
+                }
+            }
+        }
+
+        runStep(
+                "apply retention to " + TABLE + "_default",
+                () -> applyDefaultPartitionRetention(currentMonth, retentionByNetwork));
+    }
+
+    /**
+     * Creates the partitions of the upcoming months for a network once the transaction that
+     * created it has committed, so its rows don't go to a default partition when the next month
+     * starts before the next maintenance run. The upcoming months have no rows yet, so this never
+     * waits for ingestion.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNetworkChanged(NetworkChangedEvent event) {
+        if (!isPartitioned()) {
+            return;
+        }
+        var currentMonth = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        for (int i = 1; i <= properties.getPartitionMonthsAhead(); i++) {
+            var month = currentMonth.plusMonths(i);
+            runStep(
+                    "create partitions of network " + event.networkId() + " for " + month,
+                    () -> createMonth(month, Set.of(event.networkId())));
+        }
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned =
+                transactionTemplate.execute(
+                        status ->
+                                jdbcTemplate.queryForObject(
+                                        "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table"
+                                                + " WHERE partrelid = to_regclass(?))",
+                                        Boolean.class,
+                                        TABLE));
+        if (!Boolean.TRUE.equals(partitioned)) {
+            if (!notPartitionedLogged) {
+                logger.warn(
+                        "Table {} is not partitioned, partition maintenance and retention are"
+                                + " disabled (see database/schema.sql for the upgrade)",
+                        TABLE);
+                notPartitionedLogged = true;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /** Returns the retention in months for every network (0 = keep forever). */
+    private Map<Long, Integer> loadRetention() {
+        var result = new HashMap<Long, Integer>();
+        for (var network : networkRegistry.getAll()) {
+            var months = network.configuration().getHistoryRetentionMonths();
+            result.put(network.id(), months > 0 ? months : properties.getRetentionMonths());
+        }
+        return result;
+    }
+
+    private void createMonth(LocalDate month, Set<Long> networkIds) {
+        var name = monthPartitionName(month);
+        if (!childPartitions(TABLE).contains(name)) {
+            Runnable create =
+                    () -> {
+                        jdbcTemplate.execute(
+                                "CREATE TABLE "
+                                        + name
+                                        + " PARTITION OF "
+                                        + TABLE
+                                        + " FOR VALUES FROM ('"
+                                        + month
+                                        + "') TO ('"
+                                        + month.plusMonths(1)
+                                        + "') PARTITION BY LIST (network_id)");
+                        jdbcTemplate.execute(
+                                "CREATE TABLE "
+                                        + name
+                                        + "_default PARTITION OF "
+                                        + name
+                                        + " DEFAULT");
+                    };
+            var condition =
+                    "\"timestamp\" >= '"
+                            + month
+                            + "' AND \"timestamp\" < '"
+                            + month.plusMonths(1)
+                            + "'";
+            if (!createPartition(TABLE, create, condition)) {
+                // the month stays in the default partition, so it has no network partitions
+                return;
+            }
+            logger.info("Created history partition {}", name);
+        }
+
+        var existing = new HashSet<>(childPartitions(name));
+        for (var networkId : networkIds) {
+            var leaf = name + "_n" + networkId;
+            if (existing.contains(leaf)) {
+                continue;
+            }
+            Runnable create =
+                    () ->
+                            jdbcTemplate.execute(
+                                    "CREATE TABLE "
+                                            + leaf
+                                            + " PARTITION OF "
+                                            + name
+                                            + " FOR VALUES IN ("
+                                            + networkId
+                                            + ")");
+            if (createPartition(name, create, "network_id = " + networkId)) {
+                logger.info("Created history partition {}", leaf);
+            }
+        }
+    }
+
+    /**
+     * Creates a partition of {@code parent}, unless its default partition already holds rows that
+     * belong to it: e.g. rows of a network created during the month, or rows written before the
+     * month's partition existed (an upgrade). Postgres refuses to create the partition then, and
+     * moving the rows would lock the table for as long as the move takes, so the partition is
+     * skipped and the rows stay in the default partition.
+     *
+     * @param create creates the partition (and its sub-partitions)
+     * @param condition selects the rows of the new partition
+     * @return true if the partition was created
+     */
+    private boolean createPartition(String parent, Runnable create, String condition) {
+        var defaultPartition = parent + "_default";
+        Boolean populated =
+                jdbcTemplate.queryForObject(
+                        "SELECT EXISTS (SELECT 1 FROM "
+                                + defaultPartition
+                                + " WHERE "
+                                + condition
+                                + ")",
+                        Boolean.class);
+        if (Boolean.TRUE.equals(populated)) {
+            logger.info(
+                    "Not creating a partition of {} for {}, its rows are already in {}",
+                    parent,
+                    condition,
+                    defaultPartition);
+            return false;
+        }
+        create.run();
+        return true;
+    }
+
+    private void applyRetention(
+            String monthPartition,
+            LocalDate month,
+            LocalDate currentMonth,
+            Map<Long, Integer> retentionByNetwork) {
+        int remaining = 0;
+        for (var leaf : childPartitions(monthPartition)) {
+            var matcher = NETWORK_PARTITION.matcher(leaf);
+            if (!matcher.matches()) {
+                continue;
+            }
+            var networkId = Long.parseLong(matcher.group(1));
+            if (isExpired(month, retentionFor(networkId, retentionByNetwork), currentMonth)) {
+                jdbcTemplate.execute("DROP TABLE " + leaf);
+                logger.info("Dropped history partition {}", leaf);
+            } else {
+                remaining++;
+            }
+        }
+
+        var defaultPartition = monthPartition + "_default";
+        for (var networkId : networkIdsIn(defaultPartition)) {
+            if (isExpired(month, retentionFor(networkId, retentionByNetwork), currentMonth)) {
+                int deleted =
+                        jdbcTemplate.update(
+                                "DELETE FROM " + defaultPartition + " WHERE network_id = ?",
+                                networkId);
+                logger.info(
+                        "Deleted {} expired history rows of network {} from {}",
+                        deleted,
+                        networkId,
+                        defaultPartition);
+            }
+        }
+
+        if (remaining == 0 && networkIdsIn(defaultPartition).isEmpty()) {
+            // nothing left in this month
+            jdbcTemplate.execute("DROP TABLE " + monthPartition);
+            logger.info("Dropped history partition {}", monthPartition);
+        }
+    }
+
+    private void applyDefaultPartitionRetention(
+            LocalDate currentMonth, Map<Long, Integer> retentionByNetwork) {
+        var defaultPartition = TABLE + "_default";
+        for (var networkId : networkIdsIn(defaultPartition)) {
+            int retention = retentionFor(networkId, retentionByNetwork);
+            if (retention <= 0) {
+                continue;
+            }
+            int deleted =
+                    jdbcTemplate.update(
+                            "DELETE FROM "
+                                    + defaultPartition
+                                    + " WHERE network_id = ? AND \"timestamp\" < ?",
+                            networkId,
+                            currentMonth.minusMonths(retention).atStartOfDay());
+            if (deleted > 0) {
+                logger.info(
+                        "Deleted {} expired history rows of network {} from {}",
+                        deleted,
+                        networkId,
+                        defaultPartition);
+            }
+        }
+    }
+
+    /**
+     * A month is expired once all of it is more than {@code retentionMonths} full months in the
+     * past, e.g. with a retention of 12 months, January 2024 is dropped in February 2025.
+     */
+    static boolean isExpired(LocalDate month, int retentionMonths, LocalDate currentMonth) {
+        return retentionMonths > 0 && !month.plusMonths(retentionMonths + 1L).isAfter(currentMonth);
+    }
+
+    private int retentionFor(long networkId, Map<Long, Integer> retentionByNetwork) {
+        // deleted networks use the default retention
+        return retentionByNetwork.getOrDefault(networkId, properties.getRetentionMonths());
+    }
+
+    private List<Long> networkIdsIn(String partition) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT network_id FROM " + partition, Long.class);
+    }
+
+    private List<String> childPartitions(String parent) {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                        + " WHERE i.inhparent = to_regclass(?)",
+                String.class,
+                parent);
+    }
+
+    /**
+     * Runs one maintenance step in its own transaction, guarded by the cluster task lock. Failures
+     * are logged and don't stop the remaining steps.
+     */
+    private void runStep(String description, Runnable step) {
+        try {
+            transactionTemplate.executeWithoutResult(
+                    status -> {
+                        if (clusterCoordinator.tryLockTask("history-partitions")) {
+                            step.run();
+                        }
+                    });
+        } catch (Exception e) {
+            logger.error("Failed to {}", description, e);
+        }
+    }
+
+    private static String monthPartitionName(LocalDate month) {
+        return String.format("%s_y%04dm%02d", TABLE, month.getYear(), month.getMonthValue());
+    }
+}
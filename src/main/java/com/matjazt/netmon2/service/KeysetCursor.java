@@ -0,0 +1,43 @@
+package com.matjazt.netmon2.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination.
+ *
+ * <p>A cursor holds the sort key of the last row of a page: the row's ID and the value of the sort
+ * column, encoded as URL-safe Base64. The next page then starts right after that row (a "seek"), so
+ * every page costs the same regardless of how deep it is.
+ *
+ * @param id ID of the last row, the tie breaker
+ * @param key sort column value of the last row, as a string
+ */
+public record KeysetCursor(long id, String key) {
+
+    public String encode() {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((id + ":" + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses a cursor produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static KeysetCursor decode(String cursor) {
+        try {
+            var text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = text.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new KeysetCursor(
+                    Long.parseLong(text.substring(0, separator)), text.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.matjazt.netmon2.service;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Merges two sorted iterators. With {@code dropDuplicates}, an element of the second iterator that
+ * is equal to one of the first is skipped.
+ */
+final class MergingIterator<T> implements Iterator<T> {
+    private final Iterator<? extends T> first;
+    private final Iterator<? extends T> second;
+    private final Comparator<? super T> order;
+    private final boolean dropDuplicates;
+    private T nextFirst;
+    private T nextSecond;
+
+    MergingIterator(
+            Iterator<? extends T> first,
+            Iterator<? extends T> second,
+            Comparator<? super T> order,
+            boolean dropDuplicates) {
+        this.first = first;
+        this.second = second;
+        this.order = order;
+        this.dropDuplicates = dropDuplicates;
+        this.nextFirst = first.hasNext() ? first.next() : null;
+        this.nextSecond = second.hasNext() ? second.next() : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextFirst != null || nextSecond != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result;
+        if (nextSecond == null
+                || (nextFirst != null && order.compare(nextFirst, nextSecond) <= 0)) {
+            result = nextFirst;
+            nextFirst = first.hasNext() ? first.next() : null;
+            if (dropDuplicates && nextSecond != null && order.compare(result, nextSecond) == 0) {
+                nextSecond = second.hasNext() ? second.next() : null;
+            }
+        } else {
+            result = nextSecond;
+            nextSecond = second.hasNext() ? second.next() : null;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,277 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.MetricsProperties;
+import com.matjazt.netmon2.dto.response.MetricNodeResponseDto;
+import com.matjazt.netmon2.dto.response.MetricSeriesResponseDto;
+import com.matjazt.tools.RingBufferTimeSeries;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Local time series of per-scan metrics, one per network and one per pinged node.
+ *
+ * <p>Every scan adds a sample to its network's series (devices in the scan, payload size,
+ * processing time) and one to the series of every node the scanner pinged (average round-trip time
+ * and packet loss). Each series is a fixed-size, memory-mapped ring buffer ({@link
+ * RingBufferTimeSeries}) under {@code metrics.directory}:
+ *
+ * <pre>
+ * metrics/network-5/scans.ts
+ * metrics/network-5/node-192.168.1.1.ts
+ * </pre>
+ *
+ * <p>Nothing is written to the database, and the files never grow: once full, every sample
+ * replaces the oldest one. Reads are downsampled to evenly sized buckets, so a chart gets a bounded
+ * number of points for any window. Every instance keeps its own files, with the scans it processed
+ * (in a cluster, those of the networks it owns).
+ */
+@Service
+public class MetricsStore implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsStore.class);
+
+    /** Fields of the network series. */
+    public static final List<String> SCAN_FIELDS =
+            List.of("devices", "payloadBytes", "processingMillis");
+
+    /** Fields of the node series. */
+    public static final List<String> NODE_FIELDS = List.of("rttMillis", "loss");
+
+    /** Node addresses end up in file names, so only IPv4 and IPv6 addresses are accepted. */
+    private static final Pattern NODE_ADDRESS = Pattern.compile("[0-9A-Fa-f.:]{2,45}");
+
+    private static final String NODE_PREFIX = "node-";
+    private static final String SUFFIX = ".ts";
+
+    private final MetricsProperties properties;
+    private final Path directory;
+    private final Map<Path, RingBufferTimeSeries> series = new ConcurrentHashMap<>();
+
+    public MetricsStore(MetricsProperties properties) {
+        this.properties = properties;
+        this.directory = Path.of(properties.getDirectory());
+        if (properties.getCapacity() < 1) {
+            throw new IllegalArgumentException("metrics.capacity must be at least 1");
+        }
+        if (properties.getMaxPoints() < 1) {
+            throw new IllegalArgumentException("metrics.max-points must be at least 1");
+        }
+    }
+
+    /**
+     * Adds the samples of a processed scan. Failures are logged, so they never affect ingestion.
+     */
+    public void recordScan(MqttService.ScanSummary scan) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long timestamp = scan.timestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+        try {
+            open(scanFile(scan.networkId()), SCAN_FIELDS.size())
+                    .append(
+                            timestamp,
+                            scan.deviceCount(),
+                            scan.payloadBytes(),
+                            scan.processingMillis());
+
+            for (var node : scan.nodes()) {
+                if (node.getIp() == null || !NODE_ADDRESS.matcher(node.getIp()).matches()) {
+                    logger.warn(
+                            "Ignoring ping result of node with invalid address '{}' on network {}",
+                            node.getIp(),
+                            scan.networkId());
+                    continue;
+                }
+                var nodeSeries =
+                        open(nodeFile(scan.networkId(), node.getIp()), NODE_FIELDS.size());
+                var name = node.getName() != null ? node.getName() : "";
+                if (!name.equals(nodeSeries.getLabel())) {
+                    nodeSeries.setLabel(name);
+                }
+                float rtt =
+                        node.getReceived() > 0 && node.getRttUs() != null
+                                ? node.getRttUs() / 1000f
+                                : Float.NaN;
+                float loss =
+                        node.getSent() > 0
+                                ? Math.max(0f, 1f - (float) node.getReceived() / node.getSent())
+                                : Float.NaN;
+                nodeSeries.append(timestamp, rtt, loss);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to record metrics of network {}", scan.networkId(), e);
+        }
+    }
+
+    /**
+     * Returns the scan metrics of a network within [from, to).
+     *
+     * @param points requested number of points (capped by {@code metrics.max-points})
+     * @return the series, or empty if the network has none
+     */
+    public Optional<MetricSeriesResponseDto> getScanMetrics(
+            long networkId, LocalDateTime from, LocalDateTime to, int points) {
+        return read(scanFile(networkId), SCAN_FIELDS, networkId, null, from, to, points);
+    }
+
+    /**
+     * Returns the metrics of a pinged node within [from, to).
+     *
+     * @param ip IP address of the node
+     * @param points requested number of points (capped by {@code metrics.max-points})
+     * @return the series, or empty if the node has none
+     */
+    public Optional<MetricSeriesResponseDto> getNodeMetrics(
+            long networkId, String ip, LocalDateTime from, LocalDateTime to, int points) {
+        if (!NODE_ADDRESS.matcher(ip).matches()) {
+            return Optional.empty();
+        }
+        return read(nodeFile(networkId, ip), NODE_FIELDS, networkId, ip, from, to, points);
+    }
+
+    /** Returns the pinged nodes of a network that have a series, ordered by IP address. */
+    public List<MetricNodeResponseDto> getNodes(long networkId) {
+        var networkDirectory = scanFile(networkId).getParent();
+        if (!Files.isDirectory(networkDirectory)) {
+            return List.of();
+        }
+        var result = new ArrayList<MetricNodeResponseDto>();
+        try (var files = Files.list(networkDirectory)) {
+            for (var file : files.sorted().toList()) {
+                var fileName = file.getFileName().toString();
+                if (!fileName.startsWith(NODE_PREFIX) || !fileName.endsWith(SUFFIX)) {
+                    continue;
+                }
+                var ip =
+                        fileName.substring(
+                                        NODE_PREFIX.length(), fileName.length() - SUFFIX.length())
+                                .replace('_', ':');
+                var nodeSeries = open(file, NODE_FIELDS.size());
+                result.add(new MetricNodeResponseDto(ip, nodeSeries.getLabel(), nodeSeries.size()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /** Closes all series, which also writes them to disk. */
+    @Override
+    public void destroy() {
+        series.forEach(
+                (file, timeSeries) -> {
+                    try {
+                        timeSeries.close();
+                    } catch (IOException e) {
+                        logger.warn("Failed to close metrics file {}", file, e);
+                    }
+                });
+        series.clear();
+    }
+
+    private Optional<MetricSeriesResponseDto> read(
+            Path file,
+            List<String> fields,
+            long networkId,
+            String node,
+            LocalDateTime from,
+            LocalDateTime to,
+            int points) {
+        if (!series.containsKey(file) && !Files.exists(file)) {
+            return Optional.empty();
+        }
+        RingBufferTimeSeries timeSeries;
+        try {
+            timeSeries = open(file, fields.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long windowSeconds = Math.max(1, Duration.between(from, to).toSeconds());
+        int buckets = Math.max(1, Math.min(points, properties.getMaxPoints()));
+        long bucketSeconds = Math.max(1, (windowSeconds + buckets - 1) / buckets);
+        var result = new ArrayList<MetricSeriesResponseDto.Point>();
+        for (var bucket :
+                timeSeries.read(
+                        from.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                        to.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                        bucketSeconds * 1000)) {
+            var average = new ArrayList<Double>(fields.size());
+            var min = new ArrayList<Double>(fields.size());
+            var max = new ArrayList<Double>(fields.size());
+            for (int f = 0; f < fields.size(); f++) {
+                average.add(valueOrNull(bucket.average()[f]));
+                min.add(valueOrNull(bucket.min()[f]));
+                max.add(valueOrNull(bucket.max()[f]));
+            }
+            result.add(
+                    new MetricSeriesResponseDto.Point(
+                            LocalDateTime.ofInstant(
+                                    Instant.ofEpochMilli(bucket.start()), ZoneOffset.UTC),
+                            bucket.samples(),
+                            average,
+                            min,
+                            max));
+        }
+        return Optional.of(
+                new MetricSeriesResponseDto(
+                        networkId,
+                        node,
+                        node != null ? timeSeries.getLabel() : null,
+                        from,
+                        to,
+                        bucketSeconds,
+                        fields,
+                        result));
+    }
+
+    private RingBufferTimeSeries open(Path file, int fields) throws IOException {
+        try {
+            return series.computeIfAbsent(
+                    file,
+                    f -> {
+                        try {
+                            Files.createDirectories(f.getParent());
+                            return RingBufferTimeSeries.open(f, fields, properties.getCapacity());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path scanFile(long networkId) {
+        return directory.resolve("network-" + networkId).resolve("scans" + SUFFIX);
+    }
+
+    private Path nodeFile(long networkId, String ip) {
+        // ':' isn't allowed in Windows file names
+        return directory
+                .resolve("network-" + networkId)
+                .resolve(NODE_PREFIX + ip.replace(':', '_') + SUFFIX);
+    }
+
+    private static Double valueOrNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+}
@@ -1,28 +1,40 @@
 package com.matjazt.netmon2.service;
 
+import com.matjazt.netmon2.config.MultiPartScanProperties;
 import com.matjazt.netmon2.dto.NetworkStatusMessageDto;
+import com.matjazt.netmon2.dto.NetworkStatusMessageDto.NodeInfo;
 import com.matjazt.netmon2.entity.AlertType;
 import com.matjazt.netmon2.entity.DeviceEntity;
 import com.matjazt.netmon2.entity.DeviceOperationMode;
-import com.matjazt.netmon2.entity.DeviceStatusHistoryEntity;
 import com.matjazt.netmon2.entity.NetworkEntity;
 import com.matjazt.netmon2.repository.AlertRepository;
 import com.matjazt.netmon2.repository.DeviceRepository;
-import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
 import com.matjazt.netmon2.repository.NetworkRepository;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.Message;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import tools.jackson.databind.ObjectMapper;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for processing MQTT messages containing network device scan results.
@@ -54,6 +66,11 @@ import java.util.List;
  * }
  * </pre>
  *
+ * <p>Scanners of large networks may split a scan into several messages, each with the same
+ * {@code scanId}, its {@code part} (starting at 0) and the number of {@code parts}. Devices are
+ * processed part by part, and devices missing from the scan are handled once all parts have arrived
+ * (see {@link #processScanPart}).
+ *
  * <p>Only state changes are stored - if a device was online and is still online, no record is
  * created. This minimizes database writes while preserving complete state history.
  */
@@ -62,22 +79,56 @@ public class MqttService {
 
     private static final Logger logger = LoggerFactory.getLogger(MqttService.class);
 
+    /** ObjectMapper is thread-safe and expensive to create, so share a single instance. */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
     private final DeviceRepository deviceRepository;
     private final NetworkRepository networkRepository;
-    private final DeviceStatusHistoryRepository deviceStatusHistoryRepository;
+    private final StatusHistoryRecorder statusHistoryRecorder;
 
     private final AlerterService alerterService;
+    private final FlapDetector flapDetector;
+    private final NetworkRegistry networkRegistry;
+    private final ScanIntervalTracker scanIntervalTracker;
+    private final ClusterCoordinator clusterCoordinator;
+    private final PresenceBitmapService presenceBitmapService;
+    private final MultiPartScanProperties multiPartScanProperties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Consecutive missed scans per device that is still considered online. Kept in memory only: a
+     * restart merely resets the counters, and nothing is written to the database until a device is
+     * actually declared offline. Updated after commit, so a rolled back scan is never counted.
+     */
+    private final Map<Long, MissedScans> missedScans = new ConcurrentHashMap<>();
+
+    /** Latest multi-part scan of every network, see {@link #processScanPart}. */
+    private final Map<Long, PartialScan> partialScans = new ConcurrentHashMap<>();
 
     public MqttService(
             DeviceRepository deviceRepository,
             NetworkRepository networkRepository,
-            DeviceStatusHistoryRepository deviceStatusHistoryRepository,
+            StatusHistoryRecorder statusHistoryRecorder,
             AlertRepository alertRepository,
-            AlerterService alerterService) {
+            AlerterService alerterService,
+            FlapDetector flapDetector,
+            NetworkRegistry networkRegistry,
+            ScanIntervalTracker scanIntervalTracker,
+            ClusterCoordinator clusterCoordinator,
+            PresenceBitmapService presenceBitmapService,
+            MultiPartScanProperties multiPartScanProperties,
+            ApplicationEventPublisher eventPublisher) {
         this.deviceRepository = deviceRepository;
         this.networkRepository = networkRepository;
-        this.deviceStatusHistoryRepository = deviceStatusHistoryRepository;
+        this.statusHistoryRecorder = statusHistoryRecorder;
         this.alerterService = alerterService;
+        this.flapDetector = flapDetector;
+        this.networkRegistry = networkRegistry;
+        this.scanIntervalTracker = scanIntervalTracker;
+        this.clusterCoordinator = clusterCoordinator;
+        this.presenceBitmapService = presenceBitmapService;
+        this.multiPartScanProperties = multiPartScanProperties;
+        this.eventPublisher = eventPublisher;
         logger.info("initialized");
     }
 
@@ -88,15 +139,19 @@ public class MqttService {
      * {@link TimingProxy#processMqttMessage(Message)}, which serves as the actual
      * {@code @ServiceActivator} and measures execution time outside the transactional boundary.
      *
-     * <p>Processes device scan results: extracts network name from topic, parses JSON payload,
+     * <p>Processes device scan results: resolves the network from the topic, parses JSON payload,
      * updates network last-seen timestamp, records device state changes (online/offline), and
      * triggers alerts for unauthorized devices.
      *
-     * @param mqttMessage Spring Integration message containing MQTT payload and headers
+     * @param mqttMessage Spring Integration message containing the raw MQTT payload and headers
+     * @return summary of the processed scan, or null if the message couldn't be processed or was a
+     *     part that didn't complete its scan
      * @see TimingProxy#processMqttMessage(Message)
      */
     @Transactional
-    public void processMqttMessage(Message<String> mqttMessage) {
+    public ScanSummary processMqttMessage(Message<byte[]> mqttMessage) {
+        long startTime = System.currentTimeMillis();
+        byte[] payload = mqttMessage.getPayload();
         org.springframework.messaging.MessageHeaders headers = mqttMessage.getHeaders();
         String topic =
                 headers.get(
@@ -118,7 +173,7 @@ public class MqttService {
         logger.info(
                 "Received MQTT message: payload='{}', topic='{}', qos={}, retained={},"
                         + " duplicate={}, headers={}",
-                mqttMessage.getPayload(),
+                new String(payload, StandardCharsets.UTF_8),
                 topic,
                 qos,
                 retained,
@@ -131,17 +186,55 @@ public class MqttService {
 
         try {
 
-            // Extract network name from topic
-            // For "network/MaliGrdi" -> "MaliGrdi"
-            String networkName = extractNetworkName(topic);
-
             // Parse JSON payload to Java object
-            NetworkStatusMessageDto message = parseMessage(mqttMessage.getPayload());
+            NetworkStatusMessageDto message = parseMessage(payload);
 
             var messageTimestamp = LocalDateTime.ofInstant(message.getTimestamp(), ZoneOffset.UTC);
 
-            // Get or create network record
-            NetworkEntity network = getOrCreateNetwork(networkName);
+            // Resolve the network: the registry knows the topics of all known networks
+            var networkInfo = networkRegistry.resolveTopic(topic);
+            NetworkEntity network =
+                    networkInfo != null
+                            ? networkRepository.findById(networkInfo.id()).orElse(null)
+                            : null;
+            if (network == null) {
+                // unknown topic (or a stale registry): extract the network name from the topic,
+                // for "network/MaliGrdi/scan" -> "MaliGrdi", and get or create the network
+                network = getOrCreateNetwork(extractNetworkName(topic));
+                eventPublisher.publishEvent(new NetworkChangedEvent(network.getId()));
+            }
+
+            // every node receives all scans, but only the owner of a network processes them, so
+            // devices, history and alerts are written once
+            if (!clusterCoordinator.isOwner(network.getId())) {
+                logger.debug(
+                        "Skipping scan of network {}, owned by another node", network.getName());
+                return null;
+            }
+            if (!clusterCoordinator.tryLockIngestion(network.getId())) {
+                logger.info(
+                        "Skipping scan of network {}, another node is processing it",
+                        network.getName());
+                return null;
+            }
+
+            var configuration =
+                    networkInfo != null
+                            ? networkInfo.configuration()
+                            : NetworkConfiguration.parse(
+                                    network.getName(), network.getConfiguration());
+
+            if (message.getScanId() != null) {
+                return processScanPart(
+                        network,
+                        configuration,
+                        message,
+                        messageTimestamp,
+                        payload.length,
+                        startTime);
+            }
+
+            scanIntervalTracker.recordScan(network, messageTimestamp);
             network.setLastSeen(messageTimestamp);
             // Hibernate will auto-UPDATE at commit: networkRepository.save(network);
 
@@ -160,174 +253,543 @@ public class MqttService {
             // var previouslyOnlineDevices =
             //        deviceStatusHistoryRepository.findCurrentlyOnlineDevices(network.getId());
 
-            List<Long> processedDevices = new ArrayList<>();
+            // devices actually in this scan, new ones included
+            Set<Long> presentDevices = new HashSet<>();
+            processDevices(
+                    network, messageTimestamp, message.getDevices(), knownDevices, presentDevices);
+            presenceBitmapService.recordScan(network.getId(), messageTimestamp, presentDevices);
 
-            // Process each device in the message (all are online)
-            for (var deviceStatus : message.getDevices()) {
+            detectOfflineDevices(
+                    network, configuration, messageTimestamp, knownDevices, presentDevices);
+
+            var nodes = message.getNodes() != null ? message.getNodes() : List.<NodeInfo>of();
+            return new ScanSummary(
+                    network.getId(),
+                    messageTimestamp,
+                    presentDevices.size(),
+                    payload.length,
+                    System.currentTimeMillis() - startTime,
+                    nodes);
+
+        } catch (Exception e) {
+            logger.error("Error processing MQTT message from topic: {}", topic, e);
+            // the message is dropped as a whole: never commit the devices it got to
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            }
+            return null;
+        }
+    }
 
-                // Determine if we need to record a state change
-                boolean shouldRecord = false;
+    /**
+     * Processes one part of a multi-part scan.
+     *
+     * <p>The devices in the part are processed right away, so a large scan never has to be held in
+     * memory as a whole. Devices missing from the scan are only handled once all of its parts have
+     * arrived, or when it is completed by {@link #completeTimedOutScan(long)} or superseded by the
+     * next scan of the network. Until then, only the IDs of the devices seen so far are kept.
+     * Parts of a scan that is already complete or older than the current one are ignored, which
+     * also takes care of messages the broker delivers twice.
+     *
+     * <p>The in-memory state of the scan is only updated once the transaction has committed. A part
+     * whose transaction rolls back is not counted as received, so it is processed again when the
+     * broker redelivers it.
+     *
+     * @param payloadBytes size of the part's payload, added up over all parts of the scan
+     * @param startTime when processing of the part started; processing times are added up as well
+     * @return summary of the scan if this was its last missing part, null otherwise
+     */
+    private ScanSummary processScanPart(
+            NetworkEntity network,
+            NetworkConfiguration configuration,
+            NetworkStatusMessageDto message,
+            LocalDateTime messageTimestamp,
+            int payloadBytes,
+            long startTime) {
+        var scanId = message.getScanId();
+        Integer part = message.getPart();
+        Integer parts = message.getParts();
+        if (part == null
+                || parts == null
+                || parts < 1
+                || parts > multiPartScanProperties.getMaxParts()
+                || part < 0
+                || part >= parts) {
+            throw new IllegalArgumentException(
+                    "Invalid part " + part + " of " + parts + " in scan " + scanId);
+        }
 
-                // possible scenarios:
-                // 1. device is known and was online -> no change
-                // 2. device is known and was offline -> record online, log change if alwaysOn
-                // is true
-                // 3. device is unknown -> record online, add to device repository, log new
-                // device
+        long networkId = network.getId();
+        var scan = partialScans.get(networkId);
+        if (scan != null && scan.scanId.equals(scanId)) {
+            if (scan.isComplete() || scan.receivedParts.get(part)) {
+                logger.info(
+                        "Ignoring duplicate part {} of scan {} on network {}",
+                        part,
+                        scanId,
+                        network.getName());
+                return null;
+            }
+            if (scan.parts != parts) {
+                throw new IllegalArgumentException(
+                        "Scan " + scanId + " has " + scan.parts + " parts, not " + parts);
+            }
+        } else {
+            if (scan != null && !messageTimestamp.isAfter(scan.timestamp)) {
+                logger.warn(
+                        "Ignoring part {} of scan {} on network {}, it is older than scan {}",
+                        part,
+                        scanId,
+                        network.getName(),
+                        scan.scanId);
+                return null;
+            }
+            if (scan != null && !scan.isComplete()) {
+                // the scanner has moved on, so the missing parts aren't coming anymore
+                completeScan(network, configuration, scan, null);
+            }
+            var newScan =
+                    new PartialScan(
+                            scanId,
+                            parts,
+                            messageTimestamp,
+                            System.currentTimeMillis()
+                                    + multiPartScanProperties.getTimeoutSeconds() * 1000L);
+            afterCommit(() -> partialScans.put(networkId, newScan));
+            scan = newScan;
+            scanIntervalTracker.recordScan(network, scan.timestamp);
+        }
+        // all parts count as the scan of the first one
+        network.setLastSeen(scan.timestamp);
+
+        // only load the devices of this part
+        var devices =
+                message.getDevices() != null
+                        ? message.getDevices()
+                        : List.<NetworkStatusMessageDto.DeviceInfo>of();
+        var macs =
+                devices.stream()
+                        .map(NetworkStatusMessageDto.DeviceInfo::getMac)
+                        .filter(mac -> mac != null && !mac.isBlank())
+                        .toList();
+        var knownDevices =
+                macs.isEmpty()
+                        ? List.<DeviceEntity>of()
+                        : deviceRepository.findByNetwork_IdAndMacAddressIn(networkId, macs);
+        Set<Long> partDevices = new HashSet<>();
+        processDevices(network, scan.timestamp, devices, knownDevices, partDevices);
+        var scanPart =
+                new ScanPart(
+                        part,
+                        partDevices,
+                        message.getNodes() != null ? message.getNodes() : List.of(),
+                        payloadBytes,
+                        System.currentTimeMillis() - startTime);
+        int received = scan.receivedParts.cardinality() + 1;
+        logger.info(
+                "Processed part {} of scan {} on network {} ({} of {} parts)",
+                part,
+                scanId,
+                network.getName(),
+                received,
+                parts);
+
+        if (received < parts) {
+            var current = scan;
+            afterCommit(() -> current.add(scanPart));
+            return null;
+        }
+        return completeScan(network, configuration, scan, scanPart);
+    }
 
-                var mac = deviceStatus.getMac();
-                if (mac == null || mac.isBlank()) {
-                    logger.warn(
-                            "Device with missing or empty MAC address reported on network: "
-                                    + network.getName());
-                    continue; // skip devices with missing MAC
+    /**
+     * Returns the networks with a multi-part scan that hasn't been completed within {@code
+     * multi-part-scan.timeout-seconds} of its first part.
+     */
+    public List<Long> getTimedOutScans() {
+        long now = System.currentTimeMillis();
+        return partialScans.entrySet().stream()
+                .filter(entry -> !entry.getValue().isComplete() && entry.getValue().deadline <= now)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Completes the multi-part scan of a network with the parts that have arrived. Devices in the
+     * missing parts count as missing from the scan.
+     *
+     * @param networkId network ID
+     * @return summary of the scan, or null if there is no incomplete scan
+     */
+    @Transactional
+    public ScanSummary completeTimedOutScan(long networkId) {
+        var scan = partialScans.get(networkId);
+        if (scan == null || scan.isComplete()) {
+            return null;
+        }
+        var network = networkRepository.findById(networkId).orElse(null);
+        if (network == null
+                || !clusterCoordinator.isOwner(networkId)
+                || !clusterCoordinator.tryLockIngestion(networkId)) {
+            partialScans.remove(networkId);
+            return null;
+        }
+        var configuration =
+                networkRegistry
+                        .get(networkId)
+                        .map(NetworkRegistry.NetworkInfo::configuration)
+                        .orElseGet(
+                                () ->
+                                        NetworkConfiguration.parse(
+                                                network.getName(), network.getConfiguration()));
+        return completeScan(network, configuration, scan, null);
+    }
+
+    /**
+     * Runs the part of a multi-part scan that needs all of its devices. The scan is marked complete
+     * once the transaction has committed.
+     *
+     * @param lastPart the part that completes the scan, not yet added to it; null if the scan is
+     *     completed with the parts it has
+     */
+    private ScanSummary completeScan(
+            NetworkEntity network,
+            NetworkConfiguration configuration,
+            PartialScan scan,
+            ScanPart lastPart) {
+        long startTime = System.currentTimeMillis();
+        int received = scan.receivedParts.cardinality();
+        var presentDevices = scan.presentDevices;
+        var nodes = scan.nodes;
+        long payloadBytes = scan.payloadBytes;
+        long processingMillis = scan.processingMillis;
+        if (lastPart != null) {
+            received++;
+            presentDevices = new HashSet<>(presentDevices);
+            presentDevices.addAll(lastPart.devices());
+            nodes = new ArrayList<>(nodes);
+            nodes.addAll(lastPart.nodes());
+            payloadBytes += lastPart.payloadBytes();
+            processingMillis += lastPart.processingMillis();
+        }
+        if (received < scan.parts) {
+            logger.warn(
+                    "Completing scan {} on network {} with {} of {} parts",
+                    scan.scanId,
+                    network.getName(),
+                    received,
+                    scan.parts);
+        }
+        presenceBitmapService.recordScan(network.getId(), scan.timestamp, presentDevices);
+        detectOfflineDevices(
+                network,
+                configuration,
+                scan.timestamp,
+                deviceRepository.findByNetwork_Id(network.getId()),
+                presentDevices);
+        afterCommit(scan::complete);
+        return new ScanSummary(
+                network.getId(),
+                scan.timestamp,
+                presentDevices.size(),
+                payloadBytes,
+                processingMillis + System.currentTimeMillis() - startTime,
+                List.copyOf(nodes));
+    }
+
+    /**
+     * Processes the devices of a scan (or a part of it), which are all online: creates new devices,
+     * marks known ones online and records state changes.
+     *
+     * @param knownDevices known devices of the network, at least those in {@code devices}
+     * @param presentDevices receives the IDs of the devices in the scan, new ones included
+     */
+    private void processDevices(
+            NetworkEntity network,
+            LocalDateTime timestamp,
+            List<NetworkStatusMessageDto.DeviceInfo> devices,
+            List<DeviceEntity> knownDevices,
+            Set<Long> presentDevices) {
+        var knownDevicesByMac = new HashMap<String, DeviceEntity>();
+        for (var knownDevice : knownDevices) {
+            knownDevicesByMac.put(knownDevice.getMacAddress(), knownDevice);
+        }
+
+        // Process each device in the message (all are online)
+        for (var deviceStatus : devices) {
+
+            // Determine if we need to record a state change
+            boolean shouldRecord = false;
+
+            // possible scenarios:
+            // 1. device is known and was online -> no change
+            // 2. device is known and was offline -> record online, log change if alwaysOn
+            // is true
+            // 3. device is unknown -> record online, add to device repository, log new
+            // device
+
+            var mac = deviceStatus.getMac();
+            if (mac == null || mac.isBlank()) {
+                logger.warn(
+                        "Device with missing or empty MAC address reported on network: "
+                                + network.getName());
+                continue; // skip devices with missing MAC
+            }
+
+            var ip = deviceStatus.getIp();
+
+            // find the mac in the known devices
+            DeviceEntity device = knownDevicesByMac.get(mac);
+
+            if (device == null) {
+                // new device, add to repository
+                device = new DeviceEntity();
+                device.setNetwork(network);
+                device.setMacAddress(mac);
+                device.setIpAddress(ip);
+                device.setDeviceOperationMode(
+                        DeviceOperationMode.UNAUTHORIZED); // default for new devices
+                device.setOnline(true); // currently online, obviously
+                device.setFirstSeen(timestamp);
+                device.setLastSeen(timestamp);
+                // persist the new device before using it in the alert
+                deviceRepository.save(device);
+                // the same MAC may appear twice in a scan
+                knownDevicesByMac.put(mac, device);
+                flapDetector.recordSample(device.getId(), true, timestamp);
+
+                alerterService.openAlert(
+                        AlertType.DEVICE_UNAUTHORIZED,
+                        network,
+                        device,
+                        "device detected for the first time");
+
+                // also add to device history: the first online period must be in history,
+                // otherwise availability rollups recomputed from history would miss it
+                shouldRecord = true;
+            } else {
+                // known device
+                if (missedScans.containsKey(device.getId())) {
+                    var deviceId = device.getId();
+                    afterCommit(() -> missedScans.remove(deviceId));
                 }
 
-                var ip = deviceStatus.getIp();
-
-                // find the mac in the known devices list
-                var knownDeviceOpt =
-                        knownDevices.stream()
-                                .filter(d -> d.getMacAddress().equals(mac))
-                                .findFirst();
-
-                DeviceEntity device = null;
-
-                if (knownDeviceOpt.isEmpty()) {
-                    // new device, add to repository
-                    device = new DeviceEntity();
-                    device.setNetwork(network);
-                    device.setMacAddress(mac);
-                    device.setIpAddress(ip);
-                    device.setDeviceOperationMode(
-                            DeviceOperationMode.UNAUTHORIZED); // default for new devices
-                    device.setOnline(true); // currently online, obviously
-                    device.setFirstSeen(messageTimestamp);
-                    device.setLastSeen(messageTimestamp);
-                    // persist the new device before using it in the alert
-                    deviceRepository.save(device);
+                boolean wasOnline = device.getOnline();
+                flapDetector.recordSample(device.getId(), true, timestamp);
+
+                // in all cases, update device's current online status and last seen
+                device.setOnline(true);
+                device.setLastSeen(timestamp);
+                device.setIpAddress(ip);
 
+                // see if alert needs to be sent for unauthorized device
+                if (device.getDeviceOperationMode() == DeviceOperationMode.UNAUTHORIZED
+                        && device.getActiveAlertId() == null) {
+                    // device is not allowed and no alert has been sent yet
                     alerterService.openAlert(
                             AlertType.DEVICE_UNAUTHORIZED,
                             network,
                             device,
-                            "device detected for the first time");
+                            "device was seen before");
+                } else {
+                    // openAlert saves the device, so only save if no alert was opened
+                    // Hibernate will auto-UPDATE at commit: deviceRepository.save(device);
+                }
+
+                // check last known status - search in previouslyOnlineDevices
+                // var deviceId = device.getId();
+                // var lastOnlineStatus =
+                //         previouslyOnlineDevices.stream()
+                //                 .filter(d -> d.getDevice().getId() == deviceId)
+                //                 .findFirst();
+
+                // if (lastOnlineStatus.isPresent()) {
+                if (wasOnline) {
+                    // device was already online, no change, don't record
+                    logger.info(
+                            "Device is still online: "
+                                    + device.getBasicInfo()
+                                    + " on "
+                                    + network.getName());
+
+                    // a device that stopped flapping may still owe us a history row
+                    settleDeferredHistory(network, device);
 
-                    // also add to device history
-                    shouldRecord = true;
                 } else {
-                    // known device
-                    device = knownDeviceOpt.get();
-                    processedDevices.add(device.getId());
-
-                    boolean wasOnline = device.getOnline();
-
-                    // in all cases, update device's current online status and last seen
-                    device.setOnline(true);
-                    device.setLastSeen(messageTimestamp);
-                    device.setIpAddress(ip);
-
-                    // see if alert needs to be sent for unauthorized device
-                    if (device.getDeviceOperationMode() == DeviceOperationMode.UNAUTHORIZED
-                            && device.getActiveAlertId() == null) {
-                        // device is not allowed and no alert has been sent yet
-                        alerterService.openAlert(
-                                AlertType.DEVICE_UNAUTHORIZED,
-                                network,
-                                device,
-                                "device was seen before");
+                    // The device was offline, now online
+                    if (flapDetector.deferTransition(device.getId(), wasOnline)) {
+                        logger.info(
+                                "Device is flapping, deferring history write: "
+                                        + device.getBasicInfo());
                     } else {
-                        // openAlert saves the device, so only save if no alert was opened
-                        // Hibernate will auto-UPDATE at commit: deviceRepository.save(device);
+                        shouldRecord = true;
                     }
-
-                    // check last known status - search in previouslyOnlineDevices
-                    // var deviceId = device.getId();
-                    // var lastOnlineStatus =
-                    //         previouslyOnlineDevices.stream()
-                    //                 .filter(d -> d.getDevice().getId() == deviceId)
-                    //                 .findFirst();
-
-                    // if (lastOnlineStatus.isPresent()) {
-                    if (wasOnline) {
-                        // device was already online, no change, don't record
+                    if (device.getDeviceOperationMode() == DeviceOperationMode.UNAUTHORIZED) {
                         logger.info(
-                                "Device is still online: "
+                                "Device "
                                         + device.getBasicInfo()
-                                        + " on "
-                                        + network.getName());
-
+                                        + " is not allowed on network "
+                                        + network.getName()
+                                        + " but is online!");
                     } else {
-                        // The device was offline, now online
-                        shouldRecord = true;
-                        if (device.getDeviceOperationMode() == DeviceOperationMode.UNAUTHORIZED) {
-                            logger.info(
-                                    "Device "
-                                            + device.getBasicInfo()
-                                            + " is not allowed on network "
-                                            + network.getName()
-                                            + " but is online!");
-                        } else {
-                            logger.info(
-                                    String.format(
-                                            "Device came online: "
-                                                    + device.getBasicInfo()
-                                                    + " on "
-                                                    + network.getName()));
-                        }
+                        logger.info(
+                                String.format(
+                                        "Device came online: "
+                                                + device.getBasicInfo()
+                                                + " on "
+                                                + network.getName()));
                     }
                 }
+            }
 
-                if (shouldRecord) {
-                    DeviceStatusHistoryEntity status =
-                            new DeviceStatusHistoryEntity(
-                                    network, device, ip, true, messageTimestamp);
-                    deviceStatusHistoryRepository.save(status);
-                }
+            if (shouldRecord) {
+                recordStatusChange(network, device, true, timestamp);
             }
+            presentDevices.add(device.getId());
+        }
+    }
 
-            // now process known devices that were not in the current message
-            for (var knownDevice : knownDevices) {
-                if (processedDevices.contains(knownDevice.getId())) {
-                    continue; // already processed
-                }
+    /**
+     * Handles the known devices that were not in a scan: counts the missed scan and declares them
+     * offline once they have missed enough consecutive scans.
+     *
+     * @param knownDevices all known devices of the network
+     * @param presentDevices IDs of the devices in the scan
+     */
+    private void detectOfflineDevices(
+            NetworkEntity network,
+            NetworkConfiguration configuration,
+            LocalDateTime timestamp,
+            List<DeviceEntity> knownDevices,
+            Set<Long> presentDevices) {
+        // process known devices that were not in the scan
+        for (var knownDevice : knownDevices) {
+            if (presentDevices.contains(knownDevice.getId())) {
+                continue; // already processed
+            }
 
-                // if the device is online, according to our database, it went offline
-                if (!knownDevice.getOnline()) {
-                    continue; // already offline in the database, no change
-                }
+            // if the device is online, according to our database, it went offline
+            if (!knownDevice.getOnline()) {
+                flapDetector.recordSample(knownDevice.getId(), false, timestamp);
+                // already offline in the database, no change (unless a deferred write is due)
+                settleDeferredHistory(network, knownDevice);
+                continue;
+            }
 
-                knownDevice.setOnline(false);
-                // Hibernate will auto-UPDATE at commit: deviceRepository.save(knownDevice);
+            // a single missing scan is often just an ARP entry that wasn't refreshed in time,
+            // so only declare the device offline after enough consecutive misses
+            var deviceId = knownDevice.getId();
+            var previous = missedScans.get(deviceId);
+            var missed =
+                    previous != null
+                            ? new MissedScans(
+                                    previous.networkId(),
+                                    previous.firstMissed(),
+                                    previous.count() + 1)
+                            : new MissedScans(network.getId(), timestamp, 1);
+            int missedScansBeforeOffline =
+                    configuration.getMissedScansBeforeOffline(knownDevice.getMacAddress());
+            if (missed.count() < missedScansBeforeOffline) {
+                logger.info(
+                        "Device missing from scan ({} of {}), still considered online: {}",
+                        missed.count(),
+                        missedScansBeforeOffline,
+                        knownDevice.getBasicInfo());
+                flapDetector.recordSample(deviceId, true, timestamp);
+                afterCommit(() -> missedScans.put(deviceId, missed));
+                continue;
+            }
+            if (previous != null) {
+                afterCommit(() -> missedScans.remove(deviceId));
+            }
+            // the device has been gone since the first scan it was missing from
+            var offlineTimestamp = missed.firstMissed();
+
+            flapDetector.recordSample(knownDevice.getId(), false, timestamp);
+            knownDevice.setOnline(false);
+            // Hibernate will auto-UPDATE at commit: deviceRepository.save(knownDevice);
+
+            // check if the device was previously online
+            // var lastOnlineStatus =
+            //         previouslyOnlineDevices.stream()
+            //                 .filter(d -> d.getDevice().getId() == knownDevice.getId())
+            //                 .findFirst();
+
+            // if (lastOnlineStatus.isPresent()) {
+            // device went offline
+            logger.info(
+                    "Device went offline: "
+                            + knownDevice.getBasicInfo()
+                            + " on "
+                            + network.getName());
+
+            // Record offline status with last known IP
+            if (flapDetector.deferTransition(knownDevice.getId(), true)) {
+                logger.info(
+                        "Device is flapping, deferring history write: "
+                                + knownDevice.getBasicInfo());
+            } else {
+                recordStatusChange(network, knownDevice, false, offlineTimestamp);
+            }
+            // }
+        }
+    }
 
-                // check if the device was previously online
-                // var lastOnlineStatus =
-                //         previouslyOnlineDevices.stream()
-                //                 .filter(d -> d.getDevice().getId() == knownDevice.getId())
-                //                 .findFirst();
+    /**
+     * Forgets the scan state of networks that moved to another node. The new owner processes their
+     * scans from now on, so the missed scan counters and unfinished multi-part scans kept here
+     * would be stale if the networks ever came back.
+     */
+    @EventListener
+    public void onClusterMembershipChanged(ClusterMembershipChangedEvent event) {
+        missedScans.values().removeIf(missed -> !clusterCoordinator.isOwner(missed.networkId()));
+        partialScans.keySet().removeIf(networkId -> !clusterCoordinator.isOwner(networkId));
+    }
 
-                // if (lastOnlineStatus.isPresent()) {
-                // device went offline
-                logger.info(
-                        "Device went offline: "
-                                + knownDevice.getBasicInfo()
-                                + " on "
-                                + network.getName());
+    /**
+     * Record a device status change in history, see {@link StatusHistoryRecorder}. The device's
+     * current IP address is stored with the history entry.
+     */
+    private void recordStatusChange(
+            NetworkEntity network, DeviceEntity device, boolean online, LocalDateTime timestamp) {
+        statusHistoryRecorder.recordStatusChange(network, device, online, timestamp);
+    }
 
-                // Record offline status with last known IP
-                var offlineStatus =
-                        new DeviceStatusHistoryEntity(
-                                network,
-                                knownDevice,
-                                knownDevice.getIpAddress(),
-                                false,
-                                messageTimestamp);
-                deviceStatusHistoryRepository.save(offlineStatus);
-                // }
-            }
+    /**
+     * Write the history row that was deferred while the device was flapping, once the flap
+     * detector considers the device stable. The row gets the timestamp of the scan in which the
+     * device entered its current state.
+     */
+    private void settleDeferredHistory(NetworkEntity network, DeviceEntity device) {
+        flapDetector
+                .settle(device.getId(), device.getOnline())
+                .ifPresent(
+                        since -> {
+                            logger.info(
+                                    "Device settled after flapping, recording status "
+                                            + (device.getOnline() ? "online" : "offline")
+                                            + ": "
+                                            + device.getBasicInfo());
+                            recordStatusChange(network, device, device.getOnline(), since);
+                        });
+    }
 
-        } catch (Exception e) {
-            logger.error("Error processing MQTT message from topic: {}", topic, e);
+    /**
+     * Runs an update of the in-memory scan state once the current transaction has committed, so a
+     * rollback never leaves state for devices, parts and missed scans that weren't saved. Runs
+     * right away outside a transaction.
+     */
+    private static void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            task.run();
+                        }
+                    });
+        } else {
+            task.run();
         }
     }
 
@@ -357,9 +819,9 @@ public class MqttService {
      * <p>JSON-B (Jakarta JSON Binding) is the standard JSON library in Jakarta EE. Similar to
      * System.Text.Json in .NET.
      */
-    private NetworkStatusMessageDto parseMessage(String payload) {
+    private NetworkStatusMessageDto parseMessage(byte[] payload) {
         try {
-            return new ObjectMapper().readValue(payload, NetworkStatusMessageDto.class);
+            return OBJECT_MAPPER.readValue(payload, NetworkStatusMessageDto.class);
         } catch (Exception e) {
             throw new RuntimeException("Failed to parse JSON message", e);
         }
@@ -368,11 +830,89 @@ public class MqttService {
     /** Get existing network or create a new one. */
     private NetworkEntity getOrCreateNetwork(String networkName) {
         return networkRepository
-                .findByName(networkName)
+                .findByNaturalId(networkName)
                 .orElseGet(
                         () -> {
                             NetworkEntity newNetwork = new NetworkEntity(networkName);
                             return networkRepository.save(newNetwork);
                         });
     }
+
+    /**
+     * Summary of a processed scan.
+     *
+     * @param networkId network ID
+     * @param timestamp scan timestamp (UTC)
+     * @param deviceCount number of devices in the scan
+     * @param payloadBytes size of the MQTT payload, summed over all parts of a multi-part scan
+     * @param processingMillis time it took to process the scan, summed over all parts of a
+     *     multi-part scan
+     * @param nodes ping results of the monitored nodes (empty if the scanner doesn't send them)
+     */
+    public record ScanSummary(
+            long networkId,
+            LocalDateTime timestamp,
+            int deviceCount,
+            long payloadBytes,
+            long processingMillis,
+            List<NodeInfo> nodes) {}
+
+    /**
+     * A multi-part scan: which parts have arrived, the IDs of the devices and the ping results in
+     * them, and the payload size and processing time of all parts so far. Once complete, only its
+     * ID and timestamp are kept, to recognize late parts.
+     */
+    private static final class PartialScan {
+        private final String scanId;
+        private final int parts;
+        private final LocalDateTime timestamp;
+        private final long deadline;
+        private final BitSet receivedParts;
+        private Set<Long> presentDevices = new HashSet<>();
+        private List<NodeInfo> nodes = new ArrayList<>();
+        private long payloadBytes;
+        private long processingMillis;
+
+        private PartialScan(String scanId, int parts, LocalDateTime timestamp, long deadline) {
+            this.scanId = scanId;
+            this.parts = parts;
+            this.timestamp = timestamp;
+            this.deadline = deadline;
+            this.receivedParts = new BitSet(parts);
+        }
+
+        private boolean isComplete() {
+            return presentDevices == null;
+        }
+
+        private void add(ScanPart part) {
+            receivedParts.set(part.index());
+            presentDevices.addAll(part.devices());
+            nodes.addAll(part.nodes());
+            payloadBytes += part.payloadBytes();
+            processingMillis += part.processingMillis();
+        }
+
+        private void complete() {
+            presentDevices = null;
+            nodes = null;
+        }
+    }
+
+    /** A processed part of a multi-part scan, added to its {@link PartialScan} after commit. */
+    private record ScanPart(
+            int index,
+            Set<Long> devices,
+            List<NodeInfo> nodes,
+            long payloadBytes,
+            long processingMillis) {}
+
+    /**
+     * Missed scan counter for a single device.
+     *
+     * @param networkId network of the device
+     * @param firstMissed timestamp of the first scan the device was missing from
+     * @param count number of consecutive scans the device was missing from
+     */
+    private record MissedScans(long networkId, LocalDateTime firstMissed, int count) {}
 }
@@ -0,0 +1,9 @@
+package com.matjazt.netmon2.service;
+
+/**
+ * Published when a network was created or its settings were changed, so that {@link
+ * NetworkRegistry} reloads it once the transaction commits.
+ *
+ * @param networkId ID of the network
+ */
+public record NetworkChangedEvent(long networkId) {}
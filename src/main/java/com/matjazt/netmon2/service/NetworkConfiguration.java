@@ -0,0 +1,199 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.dto.NetworkConfigurationDto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed and validated configuration of a network ({@code network.configuration}).
+ *
+ * <p>Instances are immutable and shared: {@link NetworkRegistry} parses the JSON once whenever it
+ * changes and hands the same object to every reader, so ingestion and alerting never parse JSON.
+ * Invalid JSON or values are logged and replaced by defaults, so a typo in the configuration never
+ * stops message processing. See {@link NetworkConfigurationDto} for the JSON format.
+ */
+public final class NetworkConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkConfiguration.class);
+
+    /** ObjectMapper is thread-safe and expensive to create, so share a single instance. */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final Pattern MAC_ADDRESS = Pattern.compile("([0-9A-F]{2}:){5}[0-9A-F]{2}");
+
+    /** Configuration of a network without any settings. */
+    public static final NetworkConfiguration DEFAULT =
+            new NetworkConfiguration(1, 0, null, Map.of());
+
+    private final int missedScansBeforeOffline;
+    private final int historyRetentionMonths;
+    private final Integer closureDelaySeconds;
+    private final Map<String, DeviceSettings> devices;
+
+    private NetworkConfiguration(
+            int missedScansBeforeOffline,
+            int historyRetentionMonths,
+            Integer closureDelaySeconds,
+            Map<String, DeviceSettings> devices) {
+        this.missedScansBeforeOffline = missedScansBeforeOffline;
+        this.historyRetentionMonths = historyRetentionMonths;
+        this.closureDelaySeconds = closureDelaySeconds;
+        this.devices = devices;
+    }
+
+    /**
+     * Parses and validates a network's configuration JSON. Problems are logged as warnings.
+     *
+     * @param networkName network name, for log messages
+     * @param json content of {@code network.configuration}
+     * @return the configuration, with defaults for everything that is missing or invalid
+     */
+    public static NetworkConfiguration parse(String networkName, String json) {
+        NetworkConfigurationDto dto;
+        try {
+            dto = OBJECT_MAPPER.readValue(json, NetworkConfigurationDto.class);
+        } catch (Exception e) {
+            logger.warn(
+                    "Invalid configuration for network {}, using defaults: {}",
+                    networkName,
+                    e.getMessage());
+            return DEFAULT;
+        }
+        if (dto == null) {
+            // the JSON literal null
+            return DEFAULT;
+        }
+
+        int missedScans = dto.getMissedScansBeforeOffline();
+        if (missedScans < 1) {
+            logger.warn(
+                    "Invalid missedScansBeforeOffline {} for network {}, using 1",
+                    missedScans,
+                    networkName);
+            missedScans = 1;
+        }
+        int retention = dto.getHistoryRetentionMonths();
+        if (retention < 0) {
+            logger.warn(
+                    "Invalid historyRetentionMonths {} for network {}, using default",
+                    retention,
+                    networkName);
+            retention = 0;
+        }
+        var closureDelay = dto.getClosureDelaySeconds();
+        if (closureDelay != null && closureDelay < 0) {
+            logger.warn(
+                    "Invalid closureDelaySeconds {} for network {}, using default",
+                    closureDelay,
+                    networkName);
+            closureDelay = null;
+        }
+
+        var devices = new HashMap<String, DeviceSettings>();
+        if (dto.getDevices() != null) {
+            dto.getDevices()
+                    .forEach(
+                            (key, device) -> {
+                                var mac = normalizeMacAddress(key);
+                                if (!MAC_ADDRESS.matcher(mac).matches() || device == null) {
+                                    logger.warn(
+                                            "Invalid device entry '{}' in configuration of network"
+                                                    + " {}, ignored",
+                                            key,
+                                            networkName);
+                                    return;
+                                }
+                                devices.put(mac, parseDevice(networkName, mac, device));
+                            });
+        }
+
+        return new NetworkConfiguration(missedScans, retention, closureDelay, Map.copyOf(devices));
+    }
+
+    private static DeviceSettings parseDevice(
+            String networkName, String mac, NetworkConfigurationDto.DeviceConfigurationDto dto) {
+        var missedScans = dto.getMissedScansBeforeOffline();
+        if (missedScans != null && missedScans < 1) {
+            logger.warn(
+                    "Invalid missedScansBeforeOffline {} for device {} on network {}, ignored",
+                    missedScans,
+                    mac,
+                    networkName);
+            missedScans = null;
+        }
+        var alertingDelay = dto.getAlertingDelaySeconds();
+        if (alertingDelay != null && alertingDelay < 0) {
+            logger.warn(
+                    "Invalid alertingDelaySeconds {} for device {} on network {}, ignored",
+                    alertingDelay,
+                    mac,
+                    networkName);
+            alertingDelay = null;
+        }
+        return new DeviceSettings(missedScans, alertingDelay);
+    }
+
+    /** Brings a MAC address to the form used as key of the device settings. */
+    private static String normalizeMacAddress(String macAddress) {
+        return macAddress.trim().toUpperCase().replace('-', ':');
+    }
+
+    private DeviceSettings deviceSettings(String macAddress) {
+        return macAddress != null ? devices.get(normalizeMacAddress(macAddress)) : null;
+    }
+
+    /** Returns the network's number of missed scans before a device is declared offline. */
+    public int getMissedScansBeforeOffline() {
+        return missedScansBeforeOffline;
+    }
+
+    /**
+     * Returns the number of missed scans before the given device is declared offline.
+     *
+     * @param macAddress MAC address of the device, in any case, ':' or '-' separated
+     */
+    public int getMissedScansBeforeOffline(String macAddress) {
+        var device = deviceSettings(macAddress);
+        return device != null && device.missedScansBeforeOffline() != null
+                ? device.missedScansBeforeOffline()
+                : missedScansBeforeOffline;
+    }
+
+    /** Returns the months of history to keep, 0 for the application-wide default. */
+    public int getHistoryRetentionMonths() {
+        return historyRetentionMonths;
+    }
+
+    /**
+     * Returns how long the given device has to be offline before an alert is opened.
+     *
+     * @param macAddress MAC address of the device, in any case, ':' or '-' separated
+     * @param networkAlertingDelay the network's alerting delay in seconds
+     */
+    public int getAlertingDelaySeconds(String macAddress, int networkAlertingDelay) {
+        var device = deviceSettings(macAddress);
+        return device != null && device.alertingDelaySeconds() != null
+                ? device.alertingDelaySeconds()
+                : networkAlertingDelay;
+    }
+
+    /**
+     * Returns how long a device has to be back online before its alert is closed.
+     *
+     * @param alertingDelay the alerting delay that applies to the device, in seconds
+     */
+    public int getClosureDelaySeconds(int alertingDelay) {
+        return closureDelaySeconds != null
+                ? closureDelaySeconds
+                : alertingDelay - Math.min(30, alertingDelay / 10);
+    }
+
+    private record DeviceSettings(Integer missedScansBeforeOffline, Integer alertingDelaySeconds) {}
+}
@@ -0,0 +1,177 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.MqttProperties;
+import com.matjazt.netmon2.entity.NetworkEntity;
+import com.matjazt.netmon2.repository.NetworkRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * In-memory registry of all networks and their (rarely changing) settings.
+ *
+ * <p>Ingestion, alerting and the REST API look networks up here instead of querying the {@code
+ * network} table: MQTT topics are resolved to networks with a single hash lookup on the received
+ * topic string (no parsing, no allocation), and the network's JSON configuration is parsed into a
+ * {@link NetworkConfiguration} only when it changes, instead of once per message.
+ *
+ * <p>The registry is an immutable snapshot that is replaced as a whole on every refresh
+ * (copy-on-write), so readers never lock. It is refreshed
+ *
+ * <ul>
+ *   <li>after a transaction that published a {@link NetworkChangedEvent} commits (e.g. a network
+ *       was created from an MQTT message)
+ *   <li>every {@code network-registry.refresh-interval-seconds}, for changes made directly in the
+ *       database or by other instances
+ *   <li>when the entity cache is evicted ({@code DELETE /api/cache})
+ * </ul>
+ *
+ * <p>Only settings live here. Mutable network state (last seen, active alert) is still read from
+ * {@link NetworkEntity}.
+ */
+@Service
+public class NetworkRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkRegistry.class);
+
+    private final NetworkRepository networkRepository;
+    private final MqttProperties mqttProperties;
+
+    private volatile Snapshot snapshot;
+
+    public NetworkRegistry(NetworkRepository networkRepository, MqttProperties mqttProperties) {
+        this.networkRepository = networkRepository;
+        this.mqttProperties = mqttProperties;
+    }
+
+    /** Returns all networks, ordered by ID. */
+    public List<NetworkInfo> getAll() {
+        return snapshot().all();
+    }
+
+    /** Returns the network with the given ID. */
+    public Optional<NetworkInfo> get(long networkId) {
+        return Optional.ofNullable(snapshot().byId().get(networkId));
+    }
+
+    /** Returns the network with the given name. */
+    public Optional<NetworkInfo> getByName(String name) {
+        return Optional.ofNullable(snapshot().byName().get(name));
+    }
+
+    /**
+     * Resolves the topic an MQTT scan was received on to its network. This is called for every
+     * message, so it returns null instead of an {@link Optional}.
+     *
+     * @param topic topic as received
+     * @return the network subscribed with this topic, or null if there is none
+     */
+    public NetworkInfo resolveTopic(String topic) {
+        return snapshot().byTopic().get(topic);
+    }
+
+    /** Reloads all networks from the database. */
+    public synchronized void refresh() {
+        var networks = networkRepository.findAll();
+        var previous = snapshot;
+        var byId = new HashMap<Long, NetworkInfo>();
+        var configurationJson = new HashMap<Long, String>();
+        var byName = new HashMap<String, NetworkInfo>();
+        var byTopic = new HashMap<String, NetworkInfo>();
+        for (var network : networks) {
+            var info =
+                    new NetworkInfo(
+                            network.getId(),
+                            network.getName(),
+                            topicFor(network.getName()),
+                            network.getAlertingDelay(),
+                            network.getEmailAddress(),
+                            configurationFor(network, previous));
+            byId.put(info.id(), info);
+            configurationJson.put(info.id(), network.getConfiguration());
+            byName.put(info.name(), info);
+            byTopic.put(info.topic(), info);
+        }
+        var all = byId.values().stream().sorted(Comparator.comparing(NetworkInfo::id)).toList();
+
+        snapshot =
+                new Snapshot(
+                        all,
+                        Map.copyOf(byId),
+                        Map.copyOf(byName),
+                        Map.copyOf(byTopic),
+                        Map.copyOf(configurationJson));
+        if (previous == null || previous.all().size() != all.size()) {
+            logger.info("Network registry loaded {} networks", all.size());
+        }
+    }
+
+    /** Reloads the registry once the transaction that changed a network has committed. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNetworkChanged(NetworkChangedEvent event) {
+        logger.debug("Network {} changed, refreshing registry", event.networkId());
+        refresh();
+    }
+
+    /** Returns the MQTT topic scans of the given network are published on. */
+    public String topicFor(String networkName) {
+        return mqttProperties.getTopicTemplate().replace("{networkName}", networkName);
+    }
+
+    /** Reuses the parsed configuration unless the JSON changed since the previous refresh. */
+    private static NetworkConfiguration configurationFor(NetworkEntity network, Snapshot previous) {
+        var known = previous != null ? previous.byId().get(network.getId()) : null;
+        if (known != null) {
+            if (Objects.equals(
+                    network.getConfiguration(),
+                    previous.configurationJson().get(network.getId()))) {
+                return known.configuration();
+            }
+            logger.info("Configuration of network {} changed, reloading", network.getName());
+        }
+        return NetworkConfiguration.parse(network.getName(), network.getConfiguration());
+    }
+
+    private Snapshot snapshot() {
+        var current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /**
+     * Settings of a single network.
+     *
+     * @param id network ID
+     * @param name network name
+     * @param topic MQTT topic the network's scans are received on
+     * @param alertingDelay seconds without a scan (or a device) before an alert is opened
+     * @param emailAddress alert recipient, may be null
+     * @param configuration parsed and validated {@code network.configuration}
+     */
+    public record NetworkInfo(
+            long id,
+            String name,
+            String topic,
+            int alertingDelay,
+            String emailAddress,
+            NetworkConfiguration configuration) {}
+
+    private record Snapshot(
+            List<NetworkInfo> all,
+            Map<Long, NetworkInfo> byId,
+            Map<String, NetworkInfo> byName,
+            Map<String, NetworkInfo> byTopic,
+            Map<Long, String> configurationJson) {}
+}
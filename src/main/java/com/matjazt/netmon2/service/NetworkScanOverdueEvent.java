@@ -0,0 +1,9 @@
+package com.matjazt.netmon2.service;
+
+/**
+ * Published by {@link ScanIntervalTracker} when a network's next scan didn't arrive in time, so
+ * that its alerts are evaluated right away instead of with the next periodic sweep.
+ *
+ * @param networkId ID of the network
+ */
+public record NetworkScanOverdueEvent(long networkId) {}
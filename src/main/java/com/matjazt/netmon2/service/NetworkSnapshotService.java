@@ -0,0 +1,183 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.HistoryProperties;
+import com.matjazt.netmon2.dto.response.NetworkSnapshotResponseDto;
+import com.matjazt.netmon2.entity.NetworkStatusCheckpointEntity;
+import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
+import com.matjazt.netmon2.repository.NetworkRepository;
+import com.matjazt.netmon2.repository.NetworkStatusCheckpointRepository;
+import com.matjazt.tools.DeltaVarintCodec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reconstructs the set of online devices of a network at any point in time.
+ *
+ * <p>Every {@code history.checkpoint-interval-minutes}, the online devices of each network are
+ * stored as a compact checkpoint. The state at time T is then the newest checkpoint at or before T,
+ * with the history rows between the checkpoint and T replayed on top of it. The replay covers at
+ * most one checkpoint interval (plus any time the application was down), so the cost of a snapshot
+ * doesn't grow with the amount of history.
+ *
+ * <p>New checkpoints are built the same way from the previous one, so only the very first
+ * checkpoint of a network looks up the state of every device in history.
+ */
+@Service
+public class NetworkSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NetworkSnapshotService.class);
+
+    private final HistoryProperties properties;
+    private final NetworkRepository networkRepository;
+    private final NetworkRegistry networkRegistry;
+    private final NetworkStatusCheckpointRepository checkpointRepository;
+    private final DeviceStatusHistoryRepository deviceStatusHistoryRepository;
+    private final ClusterCoordinator clusterCoordinator;
+    private final TransactionTemplate transactionTemplate;
+
+    public NetworkSnapshotService(
+            HistoryProperties properties,
+            NetworkRepository networkRepository,
+            NetworkRegistry networkRegistry,
+            NetworkStatusCheckpointRepository checkpointRepository,
+            DeviceStatusHistoryRepository deviceStatusHistoryRepository,
+            ClusterCoordinator clusterCoordinator,
+            PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.networkRepository = networkRepository;
+        this.networkRegistry = networkRegistry;
+        this.checkpointRepository = checkpointRepository;
+        this.deviceStatusHistoryRepository = deviceStatusHistoryRepository;
+        this.clusterCoordinator = clusterCoordinator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (properties.getCheckpointIntervalMinutes() < 1) {
+            throw new IllegalArgumentException(
+                    "history.checkpoint-interval-minutes must be at least 1");
+        }
+    }
+
+    /**
+     * Writes the latest due checkpoint of every network owned by this node. Each network is
+     * handled in its own transaction; failures are logged and retried on the next run.
+     *
+     * @see TimingProxy#createNetworkCheckpoints()
+     */
+    public void createCheckpoints() {
+        var target = checkpointTime(LocalDateTime.now(ZoneOffset.UTC));
+        for (var network : networkRegistry.getAll()) {
+            if (!clusterCoordinator.isOwner(network.id())) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(
+                        status -> createCheckpoint(network.id(), target));
+            } catch (Exception e) {
+                logger.error("Failed to checkpoint network {}", network.id(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the devices of a network that were online at the given time (as far as history
+     * knows; history rows that are written late only show up once they are written).
+     */
+    @Transactional(readOnly = true)
+    public NetworkSnapshotResponseDto getSnapshot(long networkId, LocalDateTime at) {
+        var checkpoint =
+                checkpointRepository
+                        .findFirstByNetwork_IdAndTimestampLessThanEqualOrderByTimestampDesc(
+                                networkId, at);
+        if (checkpoint.isEmpty()) {
+            var online = deviceStatusHistoryRepository.findOnlineDeviceIdsAt(networkId, at);
+            return new NetworkSnapshotResponseDto(
+                    networkId, at, null, 0, online.stream().sorted().toList());
+        }
+
+        var online = decode(checkpoint.get());
+        int replayed = replay(networkId, online, checkpoint.get().getTimestamp(), at);
+        return new NetworkSnapshotResponseDto(
+                networkId,
+                at,
+                checkpoint.get().getTimestamp(),
+                replayed,
+                online.stream().sorted().toList());
+    }
+
+    private void createCheckpoint(long networkId, LocalDateTime target) {
+        if (!clusterCoordinator.tryLockTask("network-checkpoint:" + networkId)) {
+            return;
+        }
+        var previous = checkpointRepository.findFirstByNetwork_IdOrderByTimestampDesc(networkId);
+        if (previous.isPresent() && !previous.get().getTimestamp().isBefore(target)) {
+            return;
+        }
+
+        Set<Long> online;
+        if (previous.isPresent()) {
+            online = decode(previous.get());
+            replay(networkId, online, previous.get().getTimestamp(), target);
+        } else {
+            online =
+                    new HashSet<>(
+                            deviceStatusHistoryRepository.findOnlineDeviceIdsAt(networkId, target));
+        }
+
+        var ids = online.stream().mapToLong(Long::longValue).toArray();
+        checkpointRepository.save(
+                new NetworkStatusCheckpointEntity(
+                        networkRepository.getReferenceById(networkId),
+                        target,
+                        ids.length,
+                        DeltaVarintCodec.encode(ids)));
+        logger.debug(
+                "Checkpointed network {} at {} ({} devices online)", networkId, target, ids.length);
+    }
+
+    /** Applies the history rows in (after, upTo] to the set of online devices. */
+    private int replay(long networkId, Set<Long> online, LocalDateTime after, LocalDateTime upTo) {
+        int count = 0;
+        try (var transitions =
+                deviceStatusHistoryRepository.streamNetworkTransitionsBetween(
+                        networkId, after, upTo)) {
+            var iterator = transitions.iterator();
+            while (iterator.hasNext()) {
+                var transition = iterator.next();
+                if (transition.getOnline()) {
+                    online.add(transition.getDeviceId());
+                } else {
+                    online.remove(transition.getDeviceId());
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** The newest checkpoint time that is at least the configured delay in the past. */
+    private LocalDateTime checkpointTime(LocalDateTime now) {
+        var delayed = now.minusMinutes(properties.getCheckpointDelayMinutes());
+        var dayStart = delayed.truncatedTo(ChronoUnit.DAYS);
+        long minutes = ChronoUnit.MINUTES.between(dayStart, delayed);
+        int interval = properties.getCheckpointIntervalMinutes();
+        return dayStart.plusMinutes(minutes - minutes % interval);
+    }
+
+    private static Set<Long> decode(NetworkStatusCheckpointEntity checkpoint) {
+        var ids = DeltaVarintCodec.decode(checkpoint.getOnlineDevices());
+        var result = new HashSet<Long>(ids.length * 2);
+        Arrays.stream(ids).forEach(result::add);
+        return result;
+    }
+}
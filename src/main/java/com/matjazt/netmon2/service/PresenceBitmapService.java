@@ -0,0 +1,512 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.PresenceProperties;
+import com.matjazt.netmon2.dto.response.DevicePresenceResponseDto;
+import com.matjazt.netmon2.dto.response.PresenceOccupancyResponseDto;
+import com.matjazt.tools.RunLengthBitmap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-device presence at scan resolution, stored as one compressed bitmap per device and day.
+ *
+ * <p>{@code device_status_history} only holds transitions, and a device that missed a few scans
+ * (see {@code missedScansBeforeOffline}) never shows up there. Here, every day (UTC) is divided
+ * into slots of {@code presence.slot-seconds}; a network has a bitmap of the slots in which it sent
+ * a scan, and every device a bitmap of the slots in which it was in one. Bitmaps are run-length
+ * encoded ({@link RunLengthBitmap}), so a device that was there all day takes a few bytes.
+ *
+ * <p>Ingestion only sets bits in memory ({@link #recordScan}); {@link #flush()} periodically ORs
+ * them into the stored bitmaps. The network's scan row is locked while its day is written, so
+ * concurrent writers never lose each other's bits. Only the owner of a network processes its scans
+ * and writes its bits (see {@link ClusterCoordinator}). Queries include bits that haven't been
+ * written yet.
+ *
+ * <p>Availability is the share of the network's scans a device was in, first/last seen are the
+ * first and last slot it was in, and hourly occupancy counts devices per scan, all computed with
+ * bitmap operations on the decoded days.
+ */
+@Service
+public class PresenceBitmapService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceBitmapService.class);
+
+    private static final int SECONDS_PER_DAY = 24 * 3600;
+
+    /** Makes sure the row that serializes writers of a network's day exists. */
+    private static final String INSERT_SCANS =
+            "INSERT INTO network_scan_bitmap (network_id, \"day\", slot_seconds, slots)"
+                    + " VALUES (:networkId, :day, :slotSeconds, '')"
+                    + " ON CONFLICT (network_id, \"day\") DO NOTHING";
+
+    private static final String LOCK_SCANS =
+            "SELECT slot_seconds, slots FROM network_scan_bitmap"
+                    + " WHERE network_id = :networkId AND \"day\" = :day FOR UPDATE";
+
+    private static final String UPDATE_SCANS =
+            "UPDATE network_scan_bitmap SET slot_seconds = :slotSeconds, slots = :slots"
+                    + " WHERE network_id = :networkId AND \"day\" = :day";
+
+    private static final String UPSERT_DEVICE =
+            "INSERT INTO device_presence_bitmap (device_id, network_id, \"day\", slot_seconds,"
+                    + " slots) VALUES (:deviceId, :networkId, :day, :slotSeconds, :slots)"
+                    + " ON CONFLICT (device_id, \"day\") DO UPDATE SET"
+                    + " slot_seconds = EXCLUDED.slot_seconds, slots = EXCLUDED.slots";
+
+    private final PresenceProperties properties;
+    private final ClusterCoordinator clusterCoordinator;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int slotsPerDay;
+
+    /** Bits that haven't been written yet, per network and day. */
+    private final Map<BufferKey, DayBuffer> buffers = new ConcurrentHashMap<>();
+
+    public PresenceBitmapService(
+            PresenceProperties properties,
+            ClusterCoordinator clusterCoordinator,
+            NamedParameterJdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.clusterCoordinator = clusterCoordinator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        if (properties.getSlotSeconds() < 1 || 3600 % properties.getSlotSeconds() != 0) {
+            throw new IllegalArgumentException(
+                    "presence.slot-seconds must be a divisor of 3600 (an hour)");
+        }
+        if (properties.getFlushIntervalSeconds() < 1) {
+            throw new IllegalArgumentException(
+                    "presence.flush-interval-seconds must be at least 1");
+        }
+        this.slotsPerDay = SECONDS_PER_DAY / properties.getSlotSeconds();
+    }
+
+    /**
+     * Records a scan: sets the scan's slot in the network's bitmap and in the bitmaps of the
+     * devices that were in it. Within a transaction, the bits are recorded once it commits (so
+     * they never refer to devices that don't exist yet).
+     *
+     * @param networkId network ID
+     * @param timestamp scan timestamp (UTC)
+     * @param deviceIds IDs of the devices in the scan
+     */
+    public void recordScan(long networkId, LocalDateTime timestamp, Collection<Long> deviceIds) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        var ids = List.copyOf(deviceIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            setBits(networkId, timestamp, ids);
+                        }
+                    });
+        } else {
+            setBits(networkId, timestamp, ids);
+        }
+    }
+
+    /**
+     * Writes the bits recorded since the last flush. Each network and day is written in its own
+     * transaction; on failure, the bits of today and yesterday are kept for the next flush.
+     *
+     * @see TimingProxy#flushPresenceBitmaps()
+     */
+    public void flush() {
+        var oldest = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        for (var key : List.copyOf(buffers.keySet())) {
+            var buffer = buffers.remove(key);
+            if (buffer == null || !clusterCoordinator.isOwner(key.networkId())) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(key, buffer));
+            } catch (Exception e) {
+                logger.error(
+                        "Failed to write presence bitmaps of network {} for {}",
+                        key.networkId(),
+                        key.day(),
+                        e);
+                if (!key.day().isBefore(oldest)) {
+                    buffers.merge(key, buffer, DayBuffer::or);
+                }
+            }
+        }
+    }
+
+    /** Writes whatever is still in memory when the application shuts down. */
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    /**
+     * Deletes bitmaps older than {@code presence.retention-days}.
+     *
+     * @see TimingProxy#maintainHistoryPartitions()
+     */
+    public void deleteExpired() {
+        if (properties.getRetentionDays() <= 0) {
+            return;
+        }
+        var before = LocalDate.now(ZoneOffset.UTC).minusDays(properties.getRetentionDays());
+        try {
+            transactionTemplate.executeWithoutResult(
+                    status -> {
+                        if (!clusterCoordinator.tryLockTask("presence-retention")) {
+                            return;
+                        }
+                        var params = new MapSqlParameterSource("before", before);
+                        int devices =
+                                jdbcTemplate.update(
+                                        "DELETE FROM device_presence_bitmap"
+                                                + " WHERE \"day\" < :before",
+                                        params);
+                        jdbcTemplate.update(
+                                "DELETE FROM network_scan_bitmap WHERE \"day\" < :before", params);
+                        logger.info(
+                                "Deleted {} device presence bitmaps before {}", devices, before);
+                    });
+        } catch (Exception e) {
+            logger.error("Failed to delete expired presence bitmaps", e);
+        }
+    }
+
+    /**
+     * Returns the presence of devices within [from, to), at slot resolution.
+     *
+     * @param networkId network ID
+     * @param deviceId a single device, or null for all devices of the network
+     * @param from start of the window (UTC)
+     * @param to end of the window (UTC)
+     * @return presence per device, ordered by device ID; for a whole network, only devices that
+     *     were in at least one scan are returned, a single device is always returned
+     */
+    public List<DevicePresenceResponseDto> getPresence(
+            long networkId, Long deviceId, LocalDateTime from, LocalDateTime to) {
+        var days = load(networkId, deviceId, from, to);
+        var totals = new TreeMap<Long, Totals>();
+        if (deviceId != null) {
+            totals.put(deviceId, new Totals());
+        }
+        int scans = 0;
+        for (var entry : days.entrySet()) {
+            var day = entry.getValue();
+            var dayStart = entry.getKey().atStartOfDay();
+            int lo = windowStart(dayStart, from);
+            int hi = windowEnd(dayStart, to);
+            scans += cardinality(day.scans, lo, hi);
+            for (var device : day.devices.entrySet()) {
+                var present = within(device.getValue(), lo, hi);
+                present.and(day.scans);
+                if (present.isEmpty()) {
+                    continue;
+                }
+                var total = totals.computeIfAbsent(device.getKey(), id -> new Totals());
+                total.scansPresent += present.cardinality();
+                if (total.firstSeen == null) {
+                    total.firstSeen = slotStart(dayStart, present.nextSetBit(0));
+                }
+                total.lastSeen = slotStart(dayStart, present.length() - 1);
+            }
+        }
+
+        var result = new ArrayList<DevicePresenceResponseDto>(totals.size());
+        for (var entry : totals.entrySet()) {
+            var total = entry.getValue();
+            result.add(
+                    new DevicePresenceResponseDto(
+                            entry.getKey(),
+                            from,
+                            to,
+                            scans,
+                            total.scansPresent,
+                            scans > 0 ? (double) total.scansPresent / scans : null,
+                            total.firstSeen,
+                            total.lastSeen));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the hourly occupancy of a network within [from, to): how many devices were in its
+     * scans, on average and at most, and how many different devices were seen.
+     *
+     * @return one entry per hour with at least one scan, ordered by hour
+     */
+    public List<PresenceOccupancyResponseDto> getOccupancy(
+            long networkId, LocalDateTime from, LocalDateTime to) {
+        var days = load(networkId, null, from, to);
+        int slotsPerHour = 3600 / properties.getSlotSeconds();
+        var result = new ArrayList<PresenceOccupancyResponseDto>();
+        for (var entry : days.entrySet()) {
+            var day = entry.getValue();
+            var dayStart = entry.getKey().atStartOfDay();
+            int lo = windowStart(dayStart, from);
+            int hi = windowEnd(dayStart, to);
+
+            // devices present in every scan slot of the day
+            var counts = new int[slotsPerDay];
+            for (var bits : day.devices.values()) {
+                var present = within(bits, lo, hi);
+                present.and(day.scans);
+                present.stream().forEach(slot -> counts[slot]++);
+            }
+
+            for (int hour = lo / slotsPerHour; hour * slotsPerHour < hi; hour++) {
+                int start = Math.max(lo, hour * slotsPerHour);
+                int end = Math.min(hi, (hour + 1) * slotsPerHour);
+                var scanSlots = within(day.scans, start, end);
+                if (scanSlots.isEmpty()) {
+                    continue;
+                }
+                long sum = 0;
+                int max = 0;
+                for (int slot = scanSlots.nextSetBit(0);
+                        slot >= 0;
+                        slot = scanSlots.nextSetBit(slot + 1)) {
+                    sum += counts[slot];
+                    max = Math.max(max, counts[slot]);
+                }
+                int seen = 0;
+                for (var bits : day.devices.values()) {
+                    if (bits.intersects(scanSlots)) {
+                        seen++;
+                    }
+                }
+                int scans = scanSlots.cardinality();
+                result.add(
+                        new PresenceOccupancyResponseDto(
+                                dayStart.plusHours(hour),
+                                scans,
+                                seen,
+                                (double) sum / scans,
+                                max));
+            }
+        }
+        return result;
+    }
+
+    private void setBits(long networkId, LocalDateTime timestamp, List<Long> deviceIds) {
+        var key = new BufferKey(networkId, timestamp.toLocalDate());
+        int slot = timestamp.toLocalTime().toSecondOfDay() / properties.getSlotSeconds();
+        // compute() is atomic per key, so flush() never removes a buffer that is being updated
+        buffers.compute(
+                key,
+                (k, buffer) -> {
+                    var result = buffer != null ? buffer : new DayBuffer();
+                    result.scans.set(slot);
+                    for (var deviceId : deviceIds) {
+                        result.devices.computeIfAbsent(deviceId, id -> new BitSet()).set(slot);
+                    }
+                    return result;
+                });
+    }
+
+    /** ORs a buffer into the stored bitmaps of its network and day. */
+    private void write(BufferKey key, DayBuffer buffer) {
+        var params =
+                new MapSqlParameterSource()
+                        .addValue("networkId", key.networkId())
+                        .addValue("day", key.day())
+                        .addValue("slotSeconds", properties.getSlotSeconds());
+        jdbcTemplate.update(INSERT_SCANS, params);
+        var scans =
+                jdbcTemplate.queryForObject(
+                        LOCK_SCANS,
+                        params,
+                        (rs, rowNum) -> rescale(rs.getInt(1), rs.getBytes(2)));
+        scans.or(buffer.scans);
+        jdbcTemplate.update(
+                UPDATE_SCANS,
+                new MapSqlParameterSource(params.getValues())
+                        .addValue("slots", RunLengthBitmap.encode(scans)));
+
+        var stored = new HashMap<Long, BitSet>();
+        jdbcTemplate.query(
+                "SELECT device_id, slot_seconds, slots FROM device_presence_bitmap"
+                        + " WHERE network_id = :networkId AND \"day\" = :day",
+                params,
+                rs -> {
+                    stored.put(rs.getLong(1), rescale(rs.getInt(2), rs.getBytes(3)));
+                });
+        var rows = new ArrayList<MapSqlParameterSource>(buffer.devices.size());
+        buffer.devices.forEach(
+                (deviceId, bits) -> {
+                    var merged = stored.getOrDefault(deviceId, new BitSet());
+                    merged.or(bits);
+                    rows.add(
+                            new MapSqlParameterSource(params.getValues())
+                                    .addValue("deviceId", deviceId)
+                                    .addValue("slots", RunLengthBitmap.encode(merged)));
+                });
+        jdbcTemplate.batchUpdate(UPSERT_DEVICE, rows.toArray(MapSqlParameterSource[]::new));
+    }
+
+    /**
+     * Loads the bitmaps of the days that overlap [from, to), with the bits that haven't been
+     * written yet, all at the current slot size.
+     */
+    private TreeMap<LocalDate, DayBitmaps> load(
+            long networkId, Long deviceId, LocalDateTime from, LocalDateTime to) {
+        var days = new TreeMap<LocalDate, DayBitmaps>();
+        if (!from.isBefore(to)) {
+            return days;
+        }
+        var firstDay = from.toLocalDate();
+        var lastDay = to.minusNanos(1).toLocalDate();
+        var params =
+                new MapSqlParameterSource()
+                        .addValue("networkId", networkId)
+                        .addValue("deviceId", deviceId)
+                        .addValue("fromDay", firstDay)
+                        .addValue("toDay", lastDay);
+        jdbcTemplate.query(
+                "SELECT \"day\", slot_seconds, slots FROM network_scan_bitmap"
+                        + " WHERE network_id = :networkId"
+                        + " AND \"day\" >= :fromDay AND \"day\" <= :toDay",
+                params,
+                rs -> {
+                    days.computeIfAbsent(rs.getObject(1, LocalDate.class), d -> new DayBitmaps())
+                            .scans
+                            .or(rescale(rs.getInt(2), rs.getBytes(3)));
+                });
+        jdbcTemplate.query(
+                "SELECT \"day\", device_id, slot_seconds, slots FROM device_presence_bitmap"
+                        + " WHERE network_id = :networkId"
+                        + (deviceId != null ? " AND device_id = :deviceId" : "")
+                        + " AND \"day\" >= :fromDay AND \"day\" <= :toDay",
+                params,
+                rs -> {
+                    days.computeIfAbsent(rs.getObject(1, LocalDate.class), d -> new DayBitmaps())
+                            .device(rs.getLong(2))
+                            .or(rescale(rs.getInt(3), rs.getBytes(4)));
+                });
+
+        for (var day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            var target = days.computeIfAbsent(day, d -> new DayBitmaps());
+            buffers.computeIfPresent(
+                    new BufferKey(networkId, day),
+                    (key, buffer) -> {
+                        target.scans.or(buffer.scans);
+                        buffer.devices.forEach(
+                                (id, bits) -> {
+                                    if (deviceId == null || deviceId.equals(id)) {
+                                        target.device(id).or(bits);
+                                    }
+                                });
+                        return buffer;
+                    });
+        }
+        return days;
+    }
+
+    /** Decodes a stored bitmap and converts it to the current slot size. */
+    private BitSet rescale(int slotSeconds, byte[] slots) {
+        var bits = RunLengthBitmap.decode(slots);
+        int current = properties.getSlotSeconds();
+        if (slotSeconds == current) {
+            return bits;
+        }
+        // every old slot sets all new slots it overlaps
+        var result = new BitSet(slotsPerDay);
+        bits.stream()
+                .forEach(
+                        slot -> {
+                            long start = (long) slot * slotSeconds;
+                            long end = start + slotSeconds;
+                            result.set(
+                                    (int) Math.min(slotsPerDay, start / current),
+                                    (int) Math.min(slotsPerDay, (end + current - 1) / current));
+                        });
+        return result;
+    }
+
+    /** First slot of the day that is within a window starting at {@code from}. */
+    private int windowStart(LocalDateTime dayStart, LocalDateTime from) {
+        if (!from.isAfter(dayStart)) {
+            return 0;
+        }
+        return (int) (Duration.between(dayStart, from).toSeconds() / properties.getSlotSeconds());
+    }
+
+    /** End (exclusive) of the slots of the day that are within a window ending at {@code to}. */
+    private int windowEnd(LocalDateTime dayStart, LocalDateTime to) {
+        var nanos = Duration.between(dayStart, to).toNanos();
+        long slotNanos = properties.getSlotSeconds() * 1_000_000_000L;
+        return (int) Math.min(slotsPerDay, (nanos + slotNanos - 1) / slotNanos);
+    }
+
+    private LocalDateTime slotStart(LocalDateTime dayStart, int slot) {
+        return dayStart.plusSeconds((long) slot * properties.getSlotSeconds());
+    }
+
+    /** Returns a copy of the bits in [from, to). */
+    private static BitSet within(BitSet bits, int from, int to) {
+        var result = bits.get(0, to);
+        result.clear(0, from);
+        return result;
+    }
+
+    private static int cardinality(BitSet bits, int from, int to) {
+        return bits.get(from, to).cardinality();
+    }
+
+    /** Network and day of a buffer. */
+    private record BufferKey(long networkId, LocalDate day) {}
+
+    /** Bits of a network and day that haven't been written yet. */
+    private static final class DayBuffer {
+        private final BitSet scans = new BitSet();
+        private final Map<Long, BitSet> devices = new HashMap<>();
+
+        private DayBuffer or(DayBuffer other) {
+            scans.or(other.scans);
+            other.devices.forEach(
+                    (deviceId, bits) ->
+                            devices.computeIfAbsent(deviceId, id -> new BitSet()).or(bits));
+            return this;
+        }
+    }
+
+    /** Decoded bitmaps of a network and day. */
+    private static final class DayBitmaps {
+        private final BitSet scans = new BitSet();
+        private final Map<Long, BitSet> devices = new HashMap<>();
+
+        private BitSet device(long deviceId) {
+            return devices.computeIfAbsent(deviceId, id -> new BitSet());
+        }
+    }
+
+    private static final class Totals {
+        private int scansPresent;
+        private LocalDateTime firstSeen;
+        private LocalDateTime lastSeen;
+    }
+}
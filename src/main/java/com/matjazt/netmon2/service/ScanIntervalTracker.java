@@ -0,0 +1,284 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.config.ScanIntervalProperties;
+import com.matjazt.netmon2.dto.response.ScanIntervalResponseDto;
+import com.matjazt.netmon2.entity.NetworkEntity;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Tracks how regularly every network's scanner reports, and when its next scan is due.
+ *
+ * <p>For each network we keep the exponential moving average and variance of the gaps between
+ * scans, updated in O(1) per scan:
+ *
+ * <pre>
+ * diff      = gap - mean
+ * mean     += smoothing * diff
+ * variance  = (1 - smoothing) * (variance + smoothing * diff * diff)
+ * </pre>
+ *
+ * <p>The rounded average and standard deviation are stored on the network ({@code
+ * reporting_interval_ema}, {@code reporting_interval_jitter}), so a restart continues where it left
+ * off. Gaps longer than the network's alerting delay are outages rather than scan intervals and
+ * are not learned.
+ *
+ * <p>Once enough gaps have been seen, {@link #getAlertingDelay} replaces the static alerting delay
+ * by a few average intervals plus a jitter margin (see {@link ScanIntervalProperties}), and a check
+ * is scheduled for the moment that deadline passes: if no scan arrives by then, a {@link
+ * NetworkScanOverdueEvent} is published and the network's alerts are evaluated right away.
+ *
+ * <p>State is kept in memory. In a cluster, only the owner of a network processes its scans (see
+ * {@link ClusterCoordinator}), which is also the node that evaluates its alerts.
+ */
+@Service
+public class ScanIntervalTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanIntervalTracker.class);
+
+    private final ScanIntervalProperties properties;
+    private final TaskScheduler taskScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Map<Long, IntervalState> states = new ConcurrentHashMap<>();
+
+    public ScanIntervalTracker(
+            ScanIntervalProperties properties,
+            TaskScheduler taskScheduler,
+            ApplicationEventPublisher eventPublisher) {
+        this.properties = properties;
+        this.taskScheduler = taskScheduler;
+        this.eventPublisher = eventPublisher;
+        if (properties.getSmoothing() <= 0 || properties.getSmoothing() > 1) {
+            throw new IllegalArgumentException("scan-interval.smoothing must be in (0, 1]");
+        }
+        if (properties.getMissedScansBeforeDown() < 1) {
+            throw new IllegalArgumentException(
+                    "scan-interval.missed-scans-before-down must be at least 1");
+        }
+    }
+
+    /**
+     * Records a scan of a network. Must be called before the network's {@code lastSeen} is set to
+     * the scan's timestamp; stores the updated interval statistics on the network. The in-memory
+     * statistics and the deadline check are only updated once the current transaction has
+     * committed, so a scan that is rolled back (and redelivered) is never learned twice.
+     *
+     * @param network the network, with {@code lastSeen} still at the previous scan
+     * @param timestamp timestamp of the new scan
+     */
+    public void recordScan(NetworkEntity network, LocalDateTime timestamp) {
+        long networkId = network.getId();
+        int alertingDelay = network.getAlertingDelay();
+        var state = states.computeIfAbsent(networkId, id -> seed(network));
+        IntervalState learned = null;
+        synchronized (state) {
+            // the scan we know about may be newer than lastSeen, e.g. right after startup
+            var previous =
+                    state.lastScan != null && state.lastScan.isAfter(network.getLastSeen())
+                            ? state.lastScan
+                            : network.getLastSeen();
+            double gap = Duration.between(previous, timestamp).toMillis() / 1000.0;
+            if (gap > 0 && gap <= alertingDelay) {
+                learned = state.copy();
+                learn(learned, gap);
+                network.setReportingIntervalEma((int) Math.round(learned.mean));
+                network.setReportingIntervalJitter((int) Math.round(Math.sqrt(learned.variance)));
+            }
+        }
+        var statistics = learned;
+        afterCommit(() -> apply(networkId, state, statistics, timestamp, alertingDelay));
+    }
+
+    /**
+     * Returns how long the network may be silent before it is considered down.
+     *
+     * @param networkId network ID
+     * @param alertingDelay the network's static alerting delay in seconds
+     * @return the adaptive delay in seconds, never more than {@code alertingDelay}
+     */
+    public int getAlertingDelay(long networkId, int alertingDelay) {
+        var state = states.get(networkId);
+        if (state == null) {
+            return alertingDelay;
+        }
+        synchronized (state) {
+            return adaptiveDelay(state, alertingDelay);
+        }
+    }
+
+    /**
+     * Returns the interval statistics of a network.
+     *
+     * @param networkId network ID
+     * @param alertingDelay the network's static alerting delay in seconds
+     */
+    public ScanIntervalResponseDto getStatistics(long networkId, int alertingDelay) {
+        var state = states.get(networkId);
+        if (state == null) {
+            return new ScanIntervalResponseDto(
+                    networkId, 0, null, null, null, null, null, false, false);
+        }
+        synchronized (state) {
+            if (state.samples == 0) {
+                return new ScanIntervalResponseDto(
+                        networkId, 0, null, null, state.lastScan, null, null, false, false);
+            }
+            double jitter = Math.sqrt(state.variance);
+            int delay = adaptiveDelay(state, alertingDelay);
+            var nextScanExpected =
+                    state.lastScan != null ? plusSeconds(state.lastScan, state.mean) : null;
+            var lateAfter =
+                    nextScanExpected != null ? plusSeconds(nextScanExpected, margin(jitter)) : null;
+            return new ScanIntervalResponseDto(
+                    networkId,
+                    state.samples,
+                    state.mean,
+                    jitter,
+                    state.lastScan,
+                    nextScanExpected,
+                    state.lastScan != null ? state.lastScan.plusSeconds(delay) : null,
+                    lateAfter != null && lateAfter.isBefore(LocalDateTime.now(ZoneOffset.UTC)),
+                    delay < alertingDelay);
+        }
+    }
+
+    /** Stores the statistics learned from a committed scan and schedules its deadline check. */
+    private void apply(
+            long networkId,
+            IntervalState state,
+            IntervalState learned,
+            LocalDateTime timestamp,
+            int alertingDelay) {
+        synchronized (state) {
+            if (learned != null) {
+                state.mean = learned.mean;
+                state.variance = learned.variance;
+                state.samples = learned.samples;
+            }
+            if (state.lastScan == null || timestamp.isAfter(state.lastScan)) {
+                state.lastScan = timestamp;
+                scheduleDeadline(networkId, state, alertingDelay);
+            }
+        }
+    }
+
+    private IntervalState seed(NetworkEntity network) {
+        var state = new IntervalState();
+        if (network.getReportingIntervalEma() != null && network.getReportingIntervalEma() > 0) {
+            // statistics from before the restart are trusted right away
+            state.mean = network.getReportingIntervalEma();
+            double jitter =
+                    network.getReportingIntervalJitter() != null
+                            ? network.getReportingIntervalJitter()
+                            : 0;
+            state.variance = jitter * jitter;
+            state.samples = properties.getMinSamples();
+        }
+        return state;
+    }
+
+    private void learn(IntervalState state, double gap) {
+        if (state.samples == 0) {
+            state.mean = gap;
+            state.variance = 0;
+        } else {
+            double alpha = properties.getSmoothing();
+            double diff = gap - state.mean;
+            state.mean += alpha * diff;
+            state.variance = (1 - alpha) * (state.variance + alpha * diff * diff);
+        }
+        state.samples++;
+    }
+
+    private int adaptiveDelay(IntervalState state, int alertingDelay) {
+        if (!properties.isAdaptiveAlerting() || state.samples < properties.getMinSamples()) {
+            return alertingDelay;
+        }
+        double delay =
+                properties.getMissedScansBeforeDown() * state.mean
+                        + margin(Math.sqrt(state.variance));
+        return (int) Math.min(alertingDelay, Math.ceil(delay));
+    }
+
+    private double margin(double jitter) {
+        return Math.max(properties.getJitterFactor() * jitter, properties.getMinMarginSeconds());
+    }
+
+    /** Replaces the network's pending deadline check by one for the new scan. */
+    private void scheduleDeadline(long networkId, IntervalState state, int alertingDelay) {
+        if (state.deadline != null) {
+            state.deadline.cancel(false);
+            state.deadline = null;
+        }
+        int delay = adaptiveDelay(state, alertingDelay);
+        if (delay >= alertingDelay) {
+            // the periodic alert sweep covers the static delay
+            return;
+        }
+        var deadline = state.lastScan.plusSeconds(delay).toInstant(ZoneOffset.UTC);
+        if (deadline.isBefore(Instant.now())) {
+            return;
+        }
+        state.deadline =
+                taskScheduler.schedule(
+                        () -> {
+                            logger.info(
+                                    "Scan of network {} is overdue (expected every {} s)",
+                                    networkId,
+                                    Math.round(state.mean));
+                            eventPublisher.publishEvent(new NetworkScanOverdueEvent(networkId));
+                        },
+                        // give the alert check a second of slack past the deadline
+                        deadline.plusSeconds(1));
+    }
+
+    /** Runs a state update once the current transaction has committed (right away without one). */
+    private static void afterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            task.run();
+                        }
+                    });
+        } else {
+            task.run();
+        }
+    }
+
+    private static LocalDateTime plusSeconds(LocalDateTime time, double seconds) {
+        return time.plusNanos(Math.round(seconds * 1_000_000_000L));
+    }
+
+    private static final class IntervalState {
+        private double mean;
+        private double variance;
+        private long samples;
+        private LocalDateTime lastScan;
+        private ScheduledFuture<?> deadline;
+
+        /** Copy of the statistics, without the scan and its deadline. */
+        private IntervalState copy() {
+            var copy = new IntervalState();
+            copy.mean = mean;
+            copy.variance = variance;
+            copy.samples = samples;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.entity.DeviceEntity;
+import com.matjazt.netmon2.entity.DevicePresenceIntervalEntity;
+import com.matjazt.netmon2.entity.DeviceStatusHistoryEntity;
+import com.matjazt.netmon2.entity.NetworkEntity;
+import com.matjazt.netmon2.repository.DeviceCurrentStatusRepository;
+import com.matjazt.netmon2.repository.DevicePresenceIntervalRepository;
+import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
+
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single place where device status transitions are written.
+ *
+ * <p>Besides the history row, a transition updates the device's last status change timestamp, its
+ * current status row, its presence intervals and the availability rollups, so every code path that
+ * records a transition keeps all of them in sync. Must be called within a transaction.
+ */
+@Service
+public class StatusHistoryRecorder {
+
+    private final DeviceStatusHistoryRepository deviceStatusHistoryRepository;
+    private final DeviceCurrentStatusRepository deviceCurrentStatusRepository;
+    private final DevicePresenceIntervalRepository devicePresenceIntervalRepository;
+    private final AvailabilityRollupService availabilityRollupService;
+
+    public StatusHistoryRecorder(
+            DeviceStatusHistoryRepository deviceStatusHistoryRepository,
+            DeviceCurrentStatusRepository deviceCurrentStatusRepository,
+            DevicePresenceIntervalRepository devicePresenceIntervalRepository,
+            AvailabilityRollupService availabilityRollupService) {
+        this.deviceStatusHistoryRepository = deviceStatusHistoryRepository;
+        this.deviceCurrentStatusRepository = deviceCurrentStatusRepository;
+        this.devicePresenceIntervalRepository = devicePresenceIntervalRepository;
+        this.availabilityRollupService = availabilityRollupService;
+    }
+
+    /**
+     * Records a device status change. The device's current IP address is stored with the history
+     * entry.
+     *
+     * @param network network of the device
+     * @param device the device (must already be persisted)
+     * @param online the new state
+     * @param timestamp when the device entered the new state
+     */
+    public void recordStatusChange(
+            NetworkEntity network, DeviceEntity device, boolean online, LocalDateTime timestamp) {
+        var previousChange = device.getLastStatusChange();
+
+        var history =
+                deviceStatusHistoryRepository.save(
+                        new DeviceStatusHistoryEntity(
+                                network, device, device.getIpAddress(), online, timestamp));
+        device.setLastStatusChange(timestamp);
+        deviceCurrentStatusRepository.upsert(
+                device.getId(), network.getId(), history.getId(), online, timestamp);
+        updatePresence(network, device, online, timestamp);
+
+        availabilityRollupService.recordTransition(
+                network.getId(), device.getId(), online, previousChange, timestamp);
+    }
+
+    /** Opens an online interval or closes the open one. */
+    private void updatePresence(
+            NetworkEntity network, DeviceEntity device, boolean online, LocalDateTime timestamp) {
+        var open = devicePresenceIntervalRepository.findByDevice_IdAndValidToIsNull(device.getId());
+        if (online) {
+            if (open.isEmpty()) {
+                devicePresenceIntervalRepository.save(
+                        new DevicePresenceIntervalEntity(device, network, timestamp));
+            }
+        } else {
+            // Hibernate will auto-UPDATE at commit; a late transition never makes the range negative
+            open.ifPresent(
+                    interval ->
+                            interval.setValidTo(
+                                    timestamp.isBefore(interval.getValidFrom())
+                                            ? interval.getValidFrom()
+                                            : timestamp));
+        }
+    }
+}
@@ -1,16 +1,22 @@
 package com.matjazt.netmon2.service;
 
 import com.matjazt.netmon2.config.AlerterProperties;
-import com.matjazt.netmon2.entity.NetworkEntity;
-import com.matjazt.netmon2.repository.NetworkRepository;
+import com.matjazt.netmon2.config.NetworkRegistryProperties;
+import com.matjazt.netmon2.config.ReplicaDataSource;
+import com.matjazt.netmon2.config.SchedulingConfig;
+import com.matjazt.netmon2.config.Workload;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.messaging.Message;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -35,23 +41,59 @@ import java.util.concurrent.TimeUnit;
  *   <li><b>Separation of Concerns:</b> Timing is a cross-cutting concern that should be separate
  *       from core business logic, following clean architecture principles.
  * </ol>
+ *
+ * <p>Being the entry point of ingestion and alerting, this is also where their {@link Workload} is
+ * set, so their transactions use their own connection pools.
  */
 @Service
 public class TimingProxy {
 
     private static final Logger logger = LoggerFactory.getLogger(TimingProxy.class);
 
-    private final NetworkRepository networkRepository;
+    private final NetworkRegistry networkRegistry;
     private final AlerterService alerterService;
     private final MqttService mqttService;
+    private final AlertEscalationService alertEscalationService;
+    private final ClusterCoordinator clusterCoordinator;
+    private final HistoryPartitionService historyPartitionService;
+    private final HistoryArchiveService historyArchiveService;
+    private final AvailabilityRollupService availabilityRollupService;
+    private final NetworkSnapshotService networkSnapshotService;
+    private final PresenceBitmapService presenceBitmapService;
+    private final MetricsStore metricsStore;
+    private final ObjectProvider<ReplicaDataSource> replicaDataSource;
+
+    /**
+     * Held while processing a message and while completing timed-out multi-part scans, so the
+     * parts of a scan never overlap with its completion.
+     */
+    private final Object ingestionLock = new Object();
 
     public TimingProxy(
-            NetworkRepository networkRepository,
+            NetworkRegistry networkRegistry,
             AlerterService alerterService,
-            MqttService mqttService) {
-        this.networkRepository = networkRepository;
+            MqttService mqttService,
+            AlertEscalationService alertEscalationService,
+            ClusterCoordinator clusterCoordinator,
+            HistoryPartitionService historyPartitionService,
+            HistoryArchiveService historyArchiveService,
+            AvailabilityRollupService availabilityRollupService,
+            NetworkSnapshotService networkSnapshotService,
+            PresenceBitmapService presenceBitmapService,
+            MetricsStore metricsStore,
+            ObjectProvider<ReplicaDataSource> replicaDataSource) {
+        this.networkRegistry = networkRegistry;
         this.alerterService = alerterService;
         this.mqttService = mqttService;
+        this.alertEscalationService = alertEscalationService;
+        this.clusterCoordinator = clusterCoordinator;
+        this.historyPartitionService = historyPartitionService;
+        this.historyArchiveService = historyArchiveService;
+        this.availabilityRollupService = availabilityRollupService;
+        this.networkSnapshotService = networkSnapshotService;
+        this.presenceBitmapService = presenceBitmapService;
+        this.metricsStore = metricsStore;
+        this.replicaDataSource = replicaDataSource;
     }
 
     /**
@@ -63,17 +105,63 @@ public class TimingProxy {
      * without interfering with transaction management.
      *
      * <p>The timing measurement happens outside the transactional boundary, ensuring accurate
-     * performance metrics that reflect only the business logic execution time.
+     * performance metrics that reflect only the business logic execution time. The processing
+     * time, payload size and device count of every scan are kept in {@link MetricsStore} (for a
+     * multi-part scan, added up over its parts).
      *
-     * @param mqttMessage Spring Integration message containing MQTT payload and headers
+     * @param mqttMessage Spring Integration message containing the raw MQTT payload and headers
      * @see MqttService#processMqttMessage(Message)
      */
     @ServiceActivator(inputChannel = "mqttInputChannel")
-    public void processMqttMessage(Message<String> mqttMessage) {
-        long startTime = System.currentTimeMillis();
-        mqttService.processMqttMessage(mqttMessage);
-        long endTime = System.currentTimeMillis();
+    public void processMqttMessage(Message<byte[]> mqttMessage) {
+        long startTime;
+        long endTime;
+        MqttService.ScanSummary scan;
+        synchronized (ingestionLock) {
+            startTime = System.currentTimeMillis();
+            scan =
+                    Workload.call(
+                            Workload.INGESTION, () -> mqttService.processMqttMessage(mqttMessage));
+            endTime = System.currentTimeMillis();
+        }
         logger.info("Processed MQTT message in {} ms", (endTime - startTime));
+        if (scan != null) {
+            metricsStore.recordScan(scan);
+        }
+    }
+
+    /**
+     * Periodically completes multi-part scans whose parts didn't all arrive within {@code
+     * multi-part-scan.timeout-seconds}, each network in its own transaction.
+     *
+     * @see MqttService#completeTimedOutScan(long)
+     */
+    @Scheduled(
+            fixedDelayString = "#{@multiPartScanProperties.checkIntervalSeconds * 1000}",
+            initialDelayString = "#{@multiPartScanProperties.checkIntervalSeconds * 1000}",
+            timeUnit = TimeUnit.MILLISECONDS)
+    public void completeTimedOutScans() {
+        synchronized (ingestionLock) {
+            for (var networkId : mqttService.getTimedOutScans()) {
+                long startTime = System.currentTimeMillis();
+                try {
+                    var scan =
+                            Workload.call(
+                                    Workload.INGESTION,
+                                    () -> mqttService.completeTimedOutScan(networkId));
+                    if (scan != null) {
+                        metricsStore.recordScan(scan);
+                    }
+                } catch (Exception e) {
+                    logger.error("Failed to complete timed-out scan of network {}", networkId, e);
+                }
+                long endTime = System.currentTimeMillis();
+                logger.info(
+                        "Completed timed-out scan of network {} in {} ms",
+                        networkId,
+                        (endTime - startTime));
+            }
+        }
     }
 
     /**
@@ -83,8 +171,14 @@ public class TimingProxy {
      * after an initial delay of {@link AlerterProperties#initialDelaySeconds}. It processes alerts
      * for each network sequentially, measuring execution time per network.
      *
+     * <p>When running as a cluster, only networks owned by this node are processed (see {@link
+     * ClusterCoordinator}), so adding nodes divides the work.
+     *
+     * <p>The networks come from {@link NetworkRegistry}, so a sweep doesn't query the network table
+     * just to find out which networks exist.
+     *
      * <p>The timing is implemented at this proxy level rather than within {@link
-     * AlerterService#processNetworkAlerts(NetworkEntity)} because:
+     * AlerterService#processNetworkAlerts(long)} because:
      *
      * <ul>
      *   <li>The alert processing method is transactional - timing outside the transaction provides
@@ -95,7 +189,7 @@ public class TimingProxy {
      *       logic with proper transaction boundaries
      * </ul>
      *
-     * @see AlerterService#processNetworkAlerts(NetworkEntity)
+     * @see AlerterService#processNetworkAlerts(long)
      */
     @Scheduled(
             fixedRateString = "#{@alerterProperties.intervalSeconds * 1000}",
@@ -104,17 +198,226 @@ public class TimingProxy {
     public void processAlerts() {
 
         // Process networks one by one, each in its own transaction
-        for (NetworkEntity network : networkRepository.findAll()) {
+        for (var network : networkRegistry.getAll()) {
+            if (!clusterCoordinator.isOwner(network.id())) {
+                continue;
+            }
             // Time each network separately to identify performance bottlenecks
             long startTime = System.currentTimeMillis();
-            // we should not pass the entire network entity because it was loaded outside the
-            // (future) transaction
-            alerterService.processNetworkAlerts(network.getId());
+            Workload.run(
+                    Workload.ALERTING, () -> alerterService.processNetworkAlerts(network.id()));
             long endTime = System.currentTimeMillis();
             logger.info(
                     "Processed alerts for network '{}' in {} ms",
-                    network.getName(),
+                    network.name(),
+                    (endTime - startTime));
+        }
+    }
+
+    /**
+     * Evaluates a network's alerts as soon as its scanner is overdue, instead of waiting for the
+     * next periodic sweep.
+     *
+     * @see ScanIntervalTracker
+     */
+    @EventListener
+    public void onNetworkScanOverdue(NetworkScanOverdueEvent event) {
+        if (!clusterCoordinator.isOwner(event.networkId())) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            Workload.run(
+                    Workload.ALERTING,
+                    () -> alerterService.processNetworkAlerts(event.networkId()));
+        } catch (Exception e) {
+            logger.error("Failed to process alerts for network {}", event.networkId(), e);
+        }
+        long endTime = System.currentTimeMillis();
+        logger.info(
+                "Processed alerts for overdue network {} in {} ms",
+                event.networkId(),
+                (endTime - startTime));
+    }
+
+    /**
+     * Periodically sends reminders and escalations for alerts that stay open.
+     *
+     * <p>{@link AlertEscalationService} keeps open alerts in a queue ordered by their next
+     * notification time, so a tick without due notifications doesn't touch the database at all.
+     * Each due notification is sent in its own transaction; a failure is logged and the alert is
+     * retried with its next reminder.
+     *
+     * @see AlerterService#sendReminder(AlertEscalationService.DueNotification)
+     */
+    @Scheduled(
+            fixedDelayString = "#{@alerterProperties.reminderCheckIntervalSeconds * 1000}",
+            initialDelayString = "#{@alerterProperties.initialDelaySeconds * 1000}",
+            timeUnit = TimeUnit.MILLISECONDS)
+    public void processAlertReminders() {
+        for (var due : alertEscalationService.pollDue(LocalDateTime.now(ZoneOffset.UTC))) {
+            if (!clusterCoordinator.isOwner(due.networkId())) {
+                continue;
+            }
+            long startTime = System.currentTimeMillis();
+            try {
+                Workload.run(Workload.ALERTING, () -> alerterService.sendReminder(due));
+            } catch (Exception e) {
+                logger.error("Failed to send reminder for alert {}", due.alertId(), e);
+            }
+            long endTime = System.currentTimeMillis();
+            logger.info(
+                    "Processed {} for alert {} in {} ms",
+                    due.escalation() ? "escalation" : "reminder",
+                    due.alertId(),
                     (endTime - startTime));
         }
     }
+
+    /**
+     * Periodically renews this node's cluster lease and picks up membership changes.
+     *
+     * <p>Runs on its own scheduler thread, so long maintenance jobs on the shared scheduler can't
+     * delay it past the lease timeout. Does nothing unless {@code cluster.enabled} is set.
+     *
+     * @see ClusterCoordinator#heartbeat()
+     * @see SchedulingConfig
+     */
+    @Scheduled(
+            fixedDelayString = "#{@clusterProperties.heartbeatIntervalSeconds * 1000}",
+            timeUnit = TimeUnit.MILLISECONDS,
+            scheduler = SchedulingConfig.CLUSTER_HEARTBEAT_SCHEDULER)
+    public void clusterHeartbeat() {
+        if (!clusterCoordinator.isEnabled()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            Workload.run(Workload.ALERTING, clusterCoordinator::heartbeat);
+        } catch (Exception e) {
+            logger.error("Failed to renew cluster lease", e);
+        }
+        long endTime = System.currentTimeMillis();
+        logger.debug("Renewed cluster lease in {} ms", (endTime - startTime));
+    }
+
+    /**
+     * Daily archiving of cold history, creation of upcoming history partitions, partition-based
+     * retention and retention of presence bitmaps.
+     *
+     * @see HistoryArchiveService#archive()
+     * @see HistoryPartitionService#maintainPartitions()
+     * @see PresenceBitmapService#deleteExpired()
+     */
+    @Scheduled(cron = "#{@historyProperties.maintenanceCron}", zone = "UTC")
+    public void maintainHistoryPartitions() {
+        long startTime = System.currentTimeMillis();
+        historyArchiveService.archive();
+        long archivedTime = System.currentTimeMillis();
+        historyPartitionService.maintainPartitions();
+        long partitionedTime = System.currentTimeMillis();
+        presenceBitmapService.deleteExpired();
+        long endTime = System.currentTimeMillis();
+        logger.info(
+                "Archived history in {} ms, maintained history partitions in {} ms,"
+                        + " expired presence bitmaps in {} ms",
+                (archivedTime - startTime),
+                (partitionedTime - archivedTime),
+                (endTime - partitionedTime));
+    }
+
+    /**
+     * Periodically writes the presence bits collected by ingestion.
+     *
+     * @see PresenceBitmapService#flush()
+     */
+    @Scheduled(
+            fixedDelayString = "#{@presenceProperties.flushIntervalSeconds * 1000}",
+            initialDelayString = "#{@presenceProperties.flushIntervalSeconds * 1000}",
+            timeUnit = TimeUnit.MILLISECONDS)
+    public void flushPresenceBitmaps() {
+        long startTime = System.currentTimeMillis();
+        Workload.run(Workload.INGESTION, presenceBitmapService::flush);
+        long endTime = System.currentTimeMillis();
+        logger.debug("Flushed presence bitmaps in {} ms", (endTime - startTime));
+    }
+
+    /**
+     * Periodically recomputes the most recent availability rollups from history, which fixes
+     * anything the incremental updates missed and closes the buckets of past hours.
+     *
+     * @see AvailabilityRollupService#repair()
+     */
+    @Scheduled(
+            fixedDelayString = "#{@historyProperties.rollupRepairIntervalMinutes * 60000}",
+            initialDelayString = "#{@historyProperties.rollupRepairIntervalMinutes * 60000}",
+            timeUnit = TimeUnit.MILLISECONDS)
+    public void repairAvailabilityRollups() {
+        long startTime = System.currentTimeMillis();
+        availabilityRollupService.repair();
+        long endTime = System.currentTimeMillis();
+        logger.info("Repaired availability rollups in {} ms", (endTime - startTime));
+    }
+
+    /**
+     * Periodically checkpoints the online devices of the networks owned by this node.
+     *
+     * @see NetworkSnapshotService#createCheckpoints()
+     */
+    @Scheduled(
+            fixedDelayString = "#{@historyProperties.checkpointIntervalMinutes * 60000}",
+            timeUnit = TimeUnit.MILLISECONDS)
+    public void createNetworkCheckpoints() {
+        long startTime = System.currentTimeMillis();
+        networkSnapshotService.createCheckpoints();
+        long endTime = System.currentTimeMillis();
+        logger.info("Created network checkpoints in {} ms", (endTime - startTime));
+    }
+
+    /**
+     * Periodically reloads the network registry, which picks up networks that were edited directly
+     * in the database or created by another instance.
+     *
+     * @see NetworkRegistryProperties#getRefreshIntervalSeconds()
+     */
+    @Scheduled(
+            fixedDelayString = "#{@networkRegistryProperties.refreshIntervalSeconds * 1000}",
+            initialDelayString = "#{@networkRegistryProperties.refreshIntervalSeconds * 1000}",
+            timeUnit = TimeUnit.MILLISECONDS)
+    public void refreshNetworkRegistry() {
+        long startTime = System.currentTimeMillis();
+        try {
+            networkRegistry.refresh();
+        } catch (Exception e) {
+            logger.error("Failed to refresh network registry", e);
+        }
+        long endTime = System.currentTimeMillis();
+        logger.debug("Refreshed network registry in {} ms", (endTime - startTime));
+    }
+
+    /**
+     * Periodically measures the replication lag of the read replica, so reads fall back to the
+     * primary while it lags behind.
+     *
+     * <p>Does nothing unless {@code replica.enabled} is set.
+     *
+     * @see ReplicaDataSource#checkLag()
+     */
+    @Scheduled(
+            fixedDelayString = "#{@replicaProperties.lagCheckIntervalSeconds * 1000}",
+            initialDelayString = "#{@replicaProperties.lagCheckIntervalSeconds * 1000}",
+            timeUnit = TimeUnit.MILLISECONDS)
+    public void checkReplicaLag() {
+        var replica = replicaDataSource.getIfAvailable();
+        if (replica == null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        replica.checkLag();
+        long endTime = System.currentTimeMillis();
+        logger.debug(
+                "Checked read replica lag ({} s) in {} ms",
+                replica.getLagSeconds(),
+                (endTime - startTime));
+    }
 }
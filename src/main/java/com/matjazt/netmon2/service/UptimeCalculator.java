@@ -0,0 +1,133 @@
+package com.matjazt.netmon2.service;
+
+import com.matjazt.netmon2.dto.response.UptimeResponseDto;
+import com.matjazt.netmon2.repository.StatusTransition;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Computes uptime statistics from a stream of status transitions in a single pass.
+ *
+ * <p>Transitions must be ordered by device, then timestamp. Each device's state is turned into
+ * intervals (from one transition to the next) that are clipped to the window [from, to):
+ *
+ * <ul>
+ *   <li>a transition before {@code from} only sets the state the device is in when the window
+ *       starts
+ *   <li>the last state stays open until {@code to}
+ *   <li>repeated transitions into the same state are merged
+ * </ul>
+ *
+ * <p>Only the running totals of the current device are kept, so memory use doesn't depend on the
+ * amount of history.
+ */
+public final class UptimeCalculator {
+
+    private UptimeCalculator() {}
+
+    /**
+     * Computes uptime for every device in the stream.
+     *
+     * @param transitions transitions ordered by device, then timestamp
+     * @param from window start (inclusive)
+     * @param to window end (exclusive); should not be in the future
+     * @param sink receives one result per device, in stream order
+     */
+    public static void calculate(
+            Iterator<? extends StatusTransition> transitions,
+            LocalDateTime from,
+            LocalDateTime to,
+            Consumer<UptimeResponseDto> sink) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Window start must be before its end");
+        }
+
+        Accumulator current = null;
+        while (transitions.hasNext()) {
+            var transition = transitions.next();
+            if (current != null && !Objects.equals(current.deviceId, transition.getDeviceId())) {
+                sink.accept(current.finish());
+                current = null;
+            }
+            if (current == null) {
+                current = new Accumulator(transition.getDeviceId(), from, to);
+            }
+            current.add(transition.getOnline(), transition.getTimestamp());
+        }
+        if (current != null) {
+            sink.accept(current.finish());
+        }
+    }
+
+    private static final class Accumulator {
+        private final Long deviceId;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+
+        /** Current state, null until the first transition. */
+        private Boolean online;
+        /** Start of the current interval, clipped to the window. */
+        private LocalDateTime since;
+        /** Whether the current state was entered within the window (not before it). */
+        private boolean enteredInWindow;
+
+        private long onlineSeconds;
+        private long offlineSeconds;
+        private int failures;
+        private int outages;
+
+        private Accumulator(Long deviceId, LocalDateTime from, LocalDateTime to) {
+            this.deviceId = deviceId;
+            this.from = from;
+            this.to = to;
+        }
+
+        private void add(boolean newOnline, LocalDateTime timestamp) {
+            if (!timestamp.isBefore(to) || (online != null && online == newOnline)) {
+                return;
+            }
+            boolean inWindow = !timestamp.isBefore(from);
+            var start = inWindow ? timestamp : from;
+            closeInterval(start);
+            if (inWindow && Boolean.TRUE.equals(online) && !newOnline) {
+                failures++;
+            }
+            online = newOnline;
+            since = start;
+            enteredInWindow = inWindow;
+        }
+
+        private void closeInterval(LocalDateTime end) {
+            if (online == null) {
+                return;
+            }
+            long seconds = Duration.between(since, end).toSeconds();
+            if (online) {
+                onlineSeconds += seconds;
+            } else if (enteredInWindow || end.isAfter(since)) {
+                // an outage that ended before the window started isn't part of it
+                offlineSeconds += seconds;
+                outages++;
+            }
+        }
+
+        private UptimeResponseDto finish() {
+            closeInterval(to);
+            long observed = onlineSeconds + offlineSeconds;
+            return new UptimeResponseDto(
+                    deviceId,
+                    from,
+                    to,
+                    observed,
+                    onlineSeconds,
+                    observed > 0 ? (double) onlineSeconds / observed : null,
+                    failures,
+                    failures > 0 ? onlineSeconds / failures : null,
+                    outages > 0 ? offlineSeconds / outages : null);
+        }
+    }
+}
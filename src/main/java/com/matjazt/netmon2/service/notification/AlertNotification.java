@@ -0,0 +1,34 @@
+package com.matjazt.netmon2.service.notification;
+
+import com.matjazt.netmon2.entity.AlertType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A fully rendered alert notification, independent of the channel that delivers it.
+ *
+ * <p>Built once by {@link com.matjazt.netmon2.service.AlerterService} and handed to every {@link
+ * AlertNotifier}. Holds only plain values (no entities), so it can safely be delivered from other
+ * threads after the alert transaction has finished.
+ *
+ * @param alertId ID of the alert
+ * @param alertType type of the alert
+ * @param kind what the notification is about
+ * @param networkName name of the network the alert belongs to
+ * @param device device description, null for network-level alerts
+ * @param timestamp when the notification was created (UTC)
+ * @param subject short one-line summary
+ * @param body full plain-text message
+ * @param emailRecipients email addresses that should receive this notification
+ */
+public record AlertNotification(
+        Long alertId,
+        AlertType alertType,
+        AlertNotificationKind kind,
+        String networkName,
+        String device,
+        LocalDateTime timestamp,
+        String subject,
+        String body,
+        List<String> emailRecipients) {}
@@ -0,0 +1,68 @@
+package com.matjazt.netmon2.service.notification;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Hands alert notifications to all configured {@link AlertNotifier} channels.
+ *
+ * <p>Synchronous notifiers are called right away, so their failures roll back the alert
+ * transaction. Asynchronous notifiers are called only after the surrounding transaction commits;
+ * this way a webhook or MQTT subscriber never hears about an alert that was rolled back.
+ */
+@Service
+public class AlertNotificationDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertNotificationDispatcher.class);
+
+    private final List<AlertNotifier> notifiers;
+
+    public AlertNotificationDispatcher(List<AlertNotifier> notifiers) {
+        this.notifiers = notifiers;
+        logger.info(
+                "Alert notification channels: {}",
+                notifiers.stream().map(AlertNotifier::getChannel).toList());
+    }
+
+    /**
+     * Delivers a notification to all channels.
+     *
+     * @param notification the notification to deliver
+     * @throws RuntimeException if a synchronous channel fails
+     */
+    public void dispatch(AlertNotification notification) {
+        for (var notifier : notifiers) {
+            if (notifier.isSynchronous()) {
+                notifier.send(notification);
+            } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(
+                        new TransactionSynchronization() {
+                            @Override
+                            public void afterCommit() {
+                                sendAsync(notifier, notification);
+                            }
+                        });
+            } else {
+                sendAsync(notifier, notification);
+            }
+        }
+    }
+
+    private void sendAsync(AlertNotifier notifier, AlertNotification notification) {
+        try {
+            notifier.send(notification);
+        } catch (Exception e) {
+            // asynchronous notifiers shouldn't throw, but never let one break the others
+            logger.error(
+                    "Failed to hand alert {} to {} notifier",
+                    notification.alertId(),
+                    notifier.getChannel(),
+                    e);
+        }
+    }
+}
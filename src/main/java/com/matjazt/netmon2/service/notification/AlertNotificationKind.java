@@ -0,0 +1,16 @@
+package com.matjazt.netmon2.service.notification;
+
+/** What an alert notification is about. Determines its headline and subject. */
+public enum AlertNotificationKind {
+    /** The alert was just opened. */
+    TRIGGERED,
+
+    /** The alert is still open, periodic reminder. */
+    REMINDER,
+
+    /** The alert has been open for too long and is escalated to additional recipients. */
+    ESCALATION,
+
+    /** The alert was closed. */
+    CLOSED;
+}
@@ -0,0 +1,36 @@
+package com.matjazt.netmon2.service.notification;
+
+/**
+ * A channel that delivers alert notifications (email, webhook, MQTT, ...).
+ *
+ * <p>Every Spring bean implementing this interface is picked up by {@link
+ * AlertNotificationDispatcher}. Adding a channel is just a matter of adding another implementation.
+ *
+ * <p>Notifiers come in two flavours:
+ *
+ * <ul>
+ *   <li><b>Synchronous</b> notifiers deliver inside the alert transaction. A failure is thrown to the
+ *       caller, which rolls back the alert so it is retried on the next alert sweep. Email works
+ *       like this.
+ *   <li><b>Asynchronous</b> notifiers are handed the notification after the alert transaction has
+ *       committed and must never block or throw; they queue the notification and deliver it in
+ *       the background.
+ * </ul>
+ */
+public interface AlertNotifier {
+
+    /** Short channel name, used in logs and as the {@code channel} metric tag. */
+    String getChannel();
+
+    /** Returns true if the notifier delivers synchronously within the caller's transaction. */
+    default boolean isSynchronous() {
+        return false;
+    }
+
+    /**
+     * Delivers (or, for asynchronous notifiers, queues) a notification.
+     *
+     * @param notification the notification to deliver
+     */
+    void send(AlertNotification notification);
+}
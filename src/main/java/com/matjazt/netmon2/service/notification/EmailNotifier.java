@@ -0,0 +1,80 @@
+package com.matjazt.netmon2.service.notification;
+
+import com.matjazt.netmon2.config.AlerterProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+/**
+ * Delivers alert notifications by email, using Spring's {@link JavaMailSender}.
+ *
+ * <p>This notifier is synchronous: a failed email is thrown back to {@link
+ * com.matjazt.netmon2.service.AlerterService}, which rolls back the alert so the next alert sweep
+ * tries again. Email is the channel of record, so it must not silently lose notifications.
+ */
+@Service
+public class EmailNotifier implements AlertNotifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailNotifier.class);
+
+    private final AlerterProperties properties;
+    private final JavaMailSender mailSender;
+    private final NotificationMetrics metrics;
+
+    public EmailNotifier(
+            AlerterProperties properties, JavaMailSender mailSender, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.mailSender = mailSender;
+        this.metrics = new NotificationMetrics(meterRegistry, getChannel(), null);
+    }
+
+    @Override
+    public String getChannel() {
+        return "email";
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return true;
+    }
+
+    @Override
+    public void send(AlertNotification notification) {
+        for (var to : notification.emailRecipients()) {
+            try {
+                metrics.latency()
+                        .record(() -> sendEmail(to, notification.subject(), notification.body()));
+                metrics.sent(1);
+                logger.info("Alert email sent to: {}", to);
+            } catch (Exception e) {
+                metrics.failed(1);
+                logger.error("Failed to send alert email", e);
+                throw new RuntimeException("Failed to send alert email to " + to, e);
+            }
+        }
+    }
+
+    /**
+     * Send an email to a specific recipient.
+     *
+     * @param to Recipient email address
+     * @param subject Email subject
+     * @param body Email body
+     */
+    public void sendEmail(String to, String subject, String body) {
+
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom(
+                String.format("\"%s\" <%s>", properties.getFromName(), properties.getFromEmail()));
+        message.setTo(to);
+        message.setSubject(subject);
+        message.setText(body);
+
+        mailSender.send(message);
+    }
+}
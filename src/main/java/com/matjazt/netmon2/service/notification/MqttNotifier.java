@@ -0,0 +1,107 @@
+package com.matjazt.netmon2.service.notification;
+
+import com.matjazt.netmon2.config.NotifierProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes alert notifications to MQTT, e.g. for home automation systems.
+ *
+ * <p>Each notification is published as JSON to the topic built from {@code
+ * notifier.mqtt.topic-template}, using the outbound handler from {@link
+ * com.matjazt.netmon2.config.MqttOutboundConfig}. Publishing happens on a dedicated thread with a
+ * bounded queue, so the caller never waits for the broker; when the queue is full, notifications
+ * are dropped.
+ *
+ * <p>Only active when {@code notifier.mqtt.enabled} is true.
+ */
+@Service
+@ConditionalOnProperty(prefix = "notifier.mqtt", name = "enabled", havingValue = "true")
+public class MqttNotifier implements AlertNotifier, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(MqttNotifier.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final NotifierProperties.Mqtt properties;
+    private final MqttPahoMessageHandler mqttAlertOutbound;
+    private final NotificationMetrics metrics;
+    private final ThreadPoolExecutor executor;
+
+    public MqttNotifier(
+            NotifierProperties properties,
+            MqttPahoMessageHandler mqttAlertOutbound,
+            MeterRegistry meterRegistry) {
+        this.properties = properties.getMqtt();
+        this.mqttAlertOutbound = mqttAlertOutbound;
+        this.metrics = new NotificationMetrics(meterRegistry, getChannel(), null);
+        this.executor =
+                new ThreadPoolExecutor(
+                        1,
+                        1,
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(this.properties.getQueueCapacity()),
+                        runnable -> {
+                            var thread = new Thread(runnable, "mqtt-notifier");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    @Override
+    public String getChannel() {
+        return "mqtt";
+    }
+
+    @Override
+    public void send(AlertNotification notification) {
+        try {
+            executor.execute(() -> publish(notification));
+        } catch (RejectedExecutionException e) {
+            metrics.dropped();
+            logger.warn(
+                    "MQTT notification queue is full, dropping notification for alert {}",
+                    notification.alertId());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private void publish(AlertNotification notification) {
+        var topic = properties.getTopicTemplate().replace("{networkName}", notification.networkName());
+        try {
+            var message =
+                    MessageBuilder.withPayload(
+                                    OBJECT_MAPPER.writeValueAsString(
+                                            NotificationPayload.of(notification)))
+                            .setHeader(MqttHeaders.TOPIC, topic)
+                            .build();
+            metrics.latency().record(() -> mqttAlertOutbound.handleMessage(message));
+            metrics.sent(1);
+            logger.debug("Alert {} published to {}", notification.alertId(), topic);
+        } catch (Exception e) {
+            metrics.failed(1);
+            logger.warn("Failed to publish alert {} to {}", notification.alertId(), topic, e);
+        }
+    }
+}
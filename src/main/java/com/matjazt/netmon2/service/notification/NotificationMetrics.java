@@ -0,0 +1,70 @@
+package com.matjazt.netmon2.service.notification;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer meters for a single notification channel (or a single endpoint of a channel).
+ *
+ * <p>All channels share the same meter names and are told apart by the {@code channel} tag (and,
+ * for webhooks, the {@code endpoint} tag):
+ *
+ * <ul>
+ *   <li>{@code netmon2.notifications.latency} - time to deliver one message (email, HTTP request,
+ *       MQTT publish)
+ *   <li>{@code netmon2.notifications.sent} - notifications delivered
+ *   <li>{@code netmon2.notifications.failures} - notifications that could not be delivered
+ *   <li>{@code netmon2.notifications.dropped} - notifications discarded because a queue was full
+ * </ul>
+ */
+final class NotificationMetrics {
+
+    private final Timer latency;
+    private final Counter sent;
+    private final Counter failures;
+    private final Counter dropped;
+
+    NotificationMetrics(MeterRegistry registry, String channel, String endpoint) {
+        String[] tags =
+                endpoint == null
+                        ? new String[] {"channel", channel}
+                        : new String[] {"channel", channel, "endpoint", endpoint};
+        latency =
+                Timer.builder("netmon2.notifications.latency")
+                        .description("Alert notification delivery latency")
+                        .tags(tags)
+                        .register(registry);
+        sent =
+                Counter.builder("netmon2.notifications.sent")
+                        .description("Alert notifications delivered")
+                        .tags(tags)
+                        .register(registry);
+        failures =
+                Counter.builder("netmon2.notifications.failures")
+                        .description("Alert notifications that failed to deliver")
+                        .tags(tags)
+                        .register(registry);
+        dropped =
+                Counter.builder("netmon2.notifications.dropped")
+                        .description("Alert notifications dropped because the queue was full")
+                        .tags(tags)
+                        .register(registry);
+    }
+
+    Timer latency() {
+        return latency;
+    }
+
+    void sent(int count) {
+        sent.increment(count);
+    }
+
+    void failed(int count) {
+        failures.increment(count);
+    }
+
+    void dropped() {
+        dropped.increment();
+    }
+}
@@ -0,0 +1,29 @@
+package com.matjazt.netmon2.service.notification;
+
+/**
+ * JSON representation of an {@link AlertNotification}, shared by the webhook and MQTT channels.
+ *
+ * <p>Email recipients are deliberately left out, they are of no concern to other channels.
+ */
+record NotificationPayload(
+        Long alertId,
+        String alertType,
+        String kind,
+        String network,
+        String device,
+        String timestamp,
+        String subject,
+        String body) {
+
+    static NotificationPayload of(AlertNotification notification) {
+        return new NotificationPayload(
+                notification.alertId(),
+                notification.alertType().name(),
+                notification.kind().name(),
+                notification.networkName(),
+                notification.device(),
+                notification.timestamp().toString(),
+                notification.subject(),
+                notification.body());
+    }
+}
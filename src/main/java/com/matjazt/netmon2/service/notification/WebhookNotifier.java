@@ -0,0 +1,286 @@
+package com.matjazt.netmon2.service.notification;
+
+import com.matjazt.netmon2.config.NotifierProperties;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts alert notifications as JSON to HTTP webhooks (chat systems, automation tools, ...).
+ *
+ * <p>Delivery never blocks the caller: {@link #send(AlertNotification)} only puts the notification
+ * into a bounded per-endpoint queue. A single scheduler thread drains the queues and posts batches
+ * with the non-blocking {@link HttpClient#sendAsync} API. Per endpoint:
+ *
+ * <ul>
+ *   <li>a batch is posted as soon as {@code batch-size} notifications are queued, or {@code
+ *       linger-millis} after the first notification of a partial batch was queued
+ *   <li>at most {@code max-in-flight} requests are outstanding; further batches wait in the queue
+ *       until a request completes
+ *   <li>when the queue is full, new notifications are dropped
+ * </ul>
+ *
+ * <p>The request body looks like this:
+ *
+ * <pre>
+ * {
+ *   "text": "[HomeNetwork] device alert for printer\n\nALERT TRIGGERED\n...",
+ *   "alerts": [
+ *     { "alertId": 42, "alertType": "DEVICE_DOWN", "kind": "TRIGGERED", ... }
+ *   ]
+ * }
+ * </pre>
+ *
+ * <p>The {@code text} field makes the payload directly usable with Slack compatible incoming
+ * webhooks, the {@code alerts} array is meant for automation. Failed requests are counted and
+ * logged but not retried, email remains the channel of record.
+ */
+@Service
+public class WebhookNotifier implements AlertNotifier, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookNotifier.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final List<EndpointQueue> endpoints = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    public WebhookNotifier(NotifierProperties properties, MeterRegistry meterRegistry) {
+        var webhook = properties.getWebhook();
+        requestTimeout = Duration.ofSeconds(webhook.getRequestTimeoutSeconds());
+        httpClient =
+                HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(requestTimeout)
+                        .build();
+
+        for (var endpoint : webhook.getEndpoints()) {
+            if (endpoint.getUrl() == null || endpoint.getUrl().isBlank()) {
+                throw new IllegalArgumentException("notifier.webhook.endpoints[].url is required");
+            }
+            if (endpoint.getMaxInFlight() < 1
+                    || endpoint.getBatchSize() < 1
+                    || endpoint.getQueueCapacity() < 1) {
+                throw new IllegalArgumentException(
+                        "notifier.webhook.endpoints[].max-in-flight, batch-size and queue-capacity"
+                                + " must be at least 1");
+            }
+            var uri = URI.create(endpoint.getUrl());
+            var tag = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+            endpoints.add(
+                    new EndpointQueue(
+                            uri,
+                            endpoint,
+                            new NotificationMetrics(meterRegistry, getChannel(), tag)));
+            logger.info("Webhook endpoint configured: {}", tag);
+        }
+
+        scheduler =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            var thread = new Thread(runnable, "webhook-notifier");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    @Override
+    public String getChannel() {
+        return "webhook";
+    }
+
+    @Override
+    public void send(AlertNotification notification) {
+        for (var endpoint : endpoints) {
+            if (!endpoint.queue.offer(notification)) {
+                endpoint.metrics.dropped();
+                logger.warn(
+                        "Webhook queue for {} is full, dropping notification for alert {}",
+                        endpoint.uri.getHost(),
+                        notification.alertId());
+                continue;
+            }
+
+            if (endpoint.queue.size() >= endpoint.config.getBatchSize()) {
+                execute(() -> drain(endpoint, false));
+            } else if (!endpoint.lingerScheduled) {
+                // partial batch: post it once the linger time is up
+                synchronized (endpoint) {
+                    if (!endpoint.lingerScheduled) {
+                        endpoint.lingerScheduled = true;
+                        schedule(endpoint);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        for (var endpoint : endpoints) {
+            if (!endpoint.queue.isEmpty()) {
+                logger.warn(
+                        "Discarding {} undelivered webhook notifications for {}",
+                        endpoint.queue.size(),
+                        endpoint.uri.getHost());
+            }
+        }
+    }
+
+    private void schedule(EndpointQueue endpoint) {
+        try {
+            scheduler.schedule(
+                    () -> {
+                        synchronized (endpoint) {
+                            endpoint.lingerScheduled = false;
+                        }
+                        drain(endpoint, true);
+                    },
+                    endpoint.config.getLingerMillis(),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            scheduler.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    /**
+     * Posts queued batches while there is capacity. Always runs on the scheduler thread, so there
+     * is never more than one drain per endpoint at a time.
+     *
+     * @param endpoint endpoint to drain
+     * @param force true to post partial batches (linger expired or a request just completed)
+     */
+    private void drain(EndpointQueue endpoint, boolean force) {
+        int batchSize = endpoint.config.getBatchSize();
+        while (!endpoint.queue.isEmpty()) {
+            if (!force && endpoint.queue.size() < batchSize) {
+                return;
+            }
+            if (!endpoint.inFlight.tryAcquire()) {
+                // a completing request drains again
+                return;
+            }
+            var batch = new ArrayList<AlertNotification>(batchSize);
+            endpoint.queue.drainTo(batch, batchSize);
+            if (batch.isEmpty()) {
+                endpoint.inFlight.release();
+                return;
+            }
+            post(endpoint, batch);
+        }
+    }
+
+    private void post(EndpointQueue endpoint, List<AlertNotification> batch) {
+        HttpRequest request;
+        try {
+            request =
+                    HttpRequest.newBuilder(endpoint.uri)
+                            .timeout(requestTimeout)
+                            .header("Content-Type", "application/json")
+                            .POST(
+                                    HttpRequest.BodyPublishers.ofString(
+                                            OBJECT_MAPPER.writeValueAsString(toPayload(batch))))
+                            .build();
+        } catch (Exception e) {
+            endpoint.inFlight.release();
+            endpoint.metrics.failed(batch.size());
+            logger.error("Failed to build webhook request for {}", endpoint.uri.getHost(), e);
+            return;
+        }
+
+        long start = System.nanoTime();
+        httpClient
+                .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete(
+                        (response, error) -> {
+                            endpoint.metrics
+                                    .latency()
+                                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                            if (error == null
+                                    && response.statusCode() >= 200
+                                    && response.statusCode() < 300) {
+                                endpoint.metrics.sent(batch.size());
+                                logger.debug(
+                                        "Posted {} alert notifications to {}",
+                                        batch.size(),
+                                        endpoint.uri.getHost());
+                            } else {
+                                endpoint.metrics.failed(batch.size());
+                                logger.warn(
+                                        "Failed to post {} alert notifications to {}: {}",
+                                        batch.size(),
+                                        endpoint.uri.getHost(),
+                                        error != null
+                                                ? error.toString()
+                                                : "HTTP " + response.statusCode());
+                            }
+                            endpoint.inFlight.release();
+                            execute(() -> drain(endpoint, true));
+                        });
+    }
+
+    private static WebhookPayload toPayload(List<AlertNotification> batch) {
+        var text = new StringBuilder();
+        var alerts = new ArrayList<NotificationPayload>(batch.size());
+        for (var notification : batch) {
+            if (!text.isEmpty()) {
+                text.append("\n\n");
+            }
+            text.append(notification.subject()).append("\n\n").append(notification.body());
+            alerts.add(NotificationPayload.of(notification));
+        }
+        return new WebhookPayload(text.toString(), alerts);
+    }
+
+    record WebhookPayload(String text, List<NotificationPayload> alerts) {}
+
+    private static final class EndpointQueue {
+        private final URI uri;
+        private final NotifierProperties.Endpoint config;
+        private final NotificationMetrics metrics;
+        private final BlockingQueue<AlertNotification> queue;
+        private final Semaphore inFlight;
+        private volatile boolean lingerScheduled;
+
+        private EndpointQueue(
+                URI uri, NotifierProperties.Endpoint config, NotificationMetrics metrics) {
+            this.uri = uri;
+            this.config = config;
+            this.metrics = metrics;
+            this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+            this.inFlight = new Semaphore(config.getMaxInFlight());
+        }
+    }
+}
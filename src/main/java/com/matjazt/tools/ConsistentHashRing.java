@@ -0,0 +1,75 @@
+package com.matjazt.tools;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring over a set of node names.
+ *
+ * <p>Every node is placed on the ring {@code virtualNodes} times; a key belongs to the first node
+ * at or after the key's hash (wrapping around). When a node joins or leaves, only the keys between
+ * it and its neighbours move, all other keys keep their owner.
+ *
+ * <p>Hashes are derived from MD5, so all JVMs agree on the ring for the same set of nodes.
+ */
+public final class ConsistentHashRing {
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final List<String> nodes;
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1");
+        }
+        this.nodes = nodes.stream().sorted().toList();
+        for (var node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // on the (very unlikely) collision, the lower node name wins on every JVM
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /** Returns the node names on the ring, sorted. */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /** Returns true if there are no nodes on the ring. */
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    /**
+     * Finds the node that owns a key.
+     *
+     * @param key the key
+     * @return owning node, or null if the ring is empty
+     */
+    public String getOwner(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        var entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        try {
+            byte[] digest =
+                    MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                hash = (hash << 8) | (digest[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM is required to support MD5
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.matjazt.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Compact encoding of sets of non-negative IDs.
+ *
+ * <p>IDs are sorted, and every ID is stored as the difference to the previous one in a
+ * variable-length format (7 bits per byte, the high bit marks that more bytes follow). IDs that
+ * are close to each other, like the devices of one network, mostly take a single byte.
+ */
+public final class DeltaVarintCodec {
+
+    private DeltaVarintCodec() {}
+
+    /**
+     * Encodes a set of IDs.
+     *
+     * @param ids IDs in any order; duplicates are removed
+     * @return encoded bytes (empty for an empty set)
+     * @throws IllegalArgumentException if an ID is negative
+     */
+    public static byte[] encode(long[] ids) {
+        var sorted = Arrays.stream(ids).sorted().distinct().toArray();
+        var out = new ByteArrayOutputStream(sorted.length + 8);
+        long previous = 0;
+        for (long id : sorted) {
+            if (id < 0) {
+                throw new IllegalArgumentException("IDs must not be negative: " + id);
+            }
+            long delta = id - previous;
+            while ((delta & ~0x7FL) != 0) {
+                out.write((int) ((delta & 0x7F) | 0x80));
+                delta >>>= 7;
+            }
+            out.write((int) delta);
+            previous = id;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes IDs written by {@link #encode}.
+     *
+     * @return IDs in ascending order
+     * @throws IllegalArgumentException if the data is truncated or wasn't written by {@link
+     *     #encode}
+     */
+    public static long[] decode(byte[] data) {
+        var result = new long[data.length];
+        int count = 0;
+        long previous = 0;
+        long delta = 0;
+        int shift = 0;
+        for (byte b : data) {
+            delta |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                // a non-negative long fits in 9 bytes
+                if (shift > 56) {
+                    throw new IllegalArgumentException("Malformed data: value too long");
+                }
+                continue;
+            }
+            previous += delta;
+            if (previous < 0) {
+                throw new IllegalArgumentException("Malformed data: ID out of range");
+            }
+            result[count++] = previous;
+            delta = 0;
+            shift = 0;
+        }
+        if (shift != 0) {
+            throw new IllegalArgumentException("Malformed data: truncated value");
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
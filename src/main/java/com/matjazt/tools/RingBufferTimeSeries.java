@@ -0,0 +1,283 @@
+package com.matjazt.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-size time series in a memory-mapped file.
+ *
+ * <p>The file holds a header and {@code capacity} samples of a timestamp (epoch milliseconds) and
+ * {@code fields} float values. Samples are written round-robin, so once the file is full, every new
+ * sample replaces the oldest one; the file never grows and appending is a couple of memory writes.
+ * The operating system writes the pages back to disk, so samples survive a restart of the
+ * application (but not necessarily a crash of the machine).
+ *
+ * <p>Samples are stored in the order they are appended and are expected to arrive in time order;
+ * reads find their start with a binary search over the timestamps. {@link #read} downsamples to
+ * fixed-size buckets with the average, minimum and maximum of every field; NaN values (e.g. a
+ * round-trip time without a reply) are left out.
+ *
+ * <p>Header layout: magic, version, fields, capacity (ints), number of samples ever appended
+ * (long), and a UTF-8 label of up to {@value #MAX_LABEL_BYTES} bytes. A file whose header doesn't
+ * match the requested layout (or is damaged) is reinitialized.
+ *
+ * <p>Thread-safe.
+ */
+public final class RingBufferTimeSeries implements AutoCloseable {
+
+    /** Maximum length of the label in bytes. */
+    public static final int MAX_LABEL_BYTES = 96;
+
+    private static final int MAGIC = 0x4E4D5453; // "NMTS"
+    private static final int VERSION = 1;
+    private static final int WRITTEN_OFFSET = 16;
+    private static final int LABEL_OFFSET = 24;
+    private static final int HEADER_SIZE = LABEL_OFFSET + 2 + MAX_LABEL_BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int fields;
+    private final int capacity;
+    private final int sampleSize;
+    private long written;
+    private String label;
+
+    private RingBufferTimeSeries(FileChannel channel, int fields, int capacity) throws IOException {
+        this.channel = channel;
+        this.fields = fields;
+        this.capacity = capacity;
+        this.sampleSize = Long.BYTES + fields * Float.BYTES;
+        long size = HEADER_SIZE + (long) capacity * sampleSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Time series too large: " + size + " bytes");
+        }
+
+        boolean valid =
+                channel.size() == size
+                        && readHeader(channel, 0) == MAGIC
+                        && readHeader(channel, 4) == VERSION
+                        && readHeader(channel, 8) == fields
+                        && readHeader(channel, 12) == capacity;
+        if (!valid) {
+            channel.truncate(0);
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        // a damaged sample count or label would break every read
+        valid =
+                valid
+                        && buffer.getLong(WRITTEN_OFFSET) >= 0
+                        && buffer.getShort(LABEL_OFFSET) >= 0
+                        && buffer.getShort(LABEL_OFFSET) <= MAX_LABEL_BYTES;
+        if (!valid) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, fields);
+            buffer.putInt(12, capacity);
+            buffer.putLong(WRITTEN_OFFSET, 0);
+            buffer.putShort(LABEL_OFFSET, (short) 0);
+        }
+        this.written = buffer.getLong(WRITTEN_OFFSET);
+        var labelBytes = new byte[buffer.getShort(LABEL_OFFSET)];
+        buffer.get(LABEL_OFFSET + 2, labelBytes);
+        this.label = new String(labelBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a time series file, creating (or reinitializing) it if needed.
+     *
+     * @param file the file
+     * @param fields number of values per sample
+     * @param capacity number of samples kept
+     */
+    public static RingBufferTimeSeries open(Path file, int fields, int capacity)
+            throws IOException {
+        if (fields < 1 || capacity < 1) {
+            throw new IllegalArgumentException("fields and capacity must be at least 1");
+        }
+        var channel =
+                FileChannel.open(
+                        file,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+        try {
+            return new RingBufferTimeSeries(channel, fields, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a sample, replacing the oldest one if the series is full.
+     *
+     * @param timestamp epoch milliseconds
+     * @param values one value per field
+     */
+    public synchronized void append(long timestamp, float... values) {
+        if (values.length != fields) {
+            throw new IllegalArgumentException(
+                    "Expected " + fields + " values, got " + values.length);
+        }
+        int offset = offset(written);
+        buffer.putLong(offset, timestamp);
+        for (int i = 0; i < fields; i++) {
+            buffer.putFloat(offset + Long.BYTES + i * Float.BYTES, values[i]);
+        }
+        // the sample is complete before it is counted
+        written++;
+        buffer.putLong(WRITTEN_OFFSET, written);
+    }
+
+    /** Returns the label stored in the header (empty if none was set). */
+    public synchronized String getLabel() {
+        return label;
+    }
+
+    /** Stores a label in the header; longer labels are truncated. */
+    public synchronized void setLabel(String label) {
+        var bytes = label.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_LABEL_BYTES);
+        buffer.putShort(LABEL_OFFSET, (short) length);
+        buffer.put(LABEL_OFFSET + 2, bytes, 0, length);
+        this.label = new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the number of samples currently stored. */
+    public synchronized int size() {
+        return (int) Math.min(written, capacity);
+    }
+
+    /**
+     * Reads the samples within [from, to), downsampled to buckets of {@code bucketMillis}.
+     *
+     * @return buckets with at least one sample, in time order
+     */
+    public synchronized List<Bucket> read(long from, long to, long bucketMillis) {
+        if (bucketMillis < 1) {
+            throw new IllegalArgumentException("bucketMillis must be at least 1");
+        }
+        var result = new ArrayList<Bucket>();
+        if (from >= to) {
+            return result;
+        }
+
+        Accumulator current = null;
+        for (long i = firstAtOrAfter(from); i < written; i++) {
+            int offset = offset(i);
+            long timestamp = buffer.getLong(offset);
+            if (timestamp >= to) {
+                break;
+            }
+            if (timestamp < from) {
+                // appended out of order
+                continue;
+            }
+            long start = from + (timestamp - from) / bucketMillis * bucketMillis;
+            if (current == null || current.start != start) {
+                if (current != null) {
+                    result.add(current.toBucket());
+                }
+                current = new Accumulator(start, fields);
+            }
+            current.samples++;
+            for (int f = 0; f < fields; f++) {
+                current.add(f, buffer.getFloat(offset + Long.BYTES + f * Float.BYTES));
+            }
+        }
+        if (current != null) {
+            result.add(current.toBucket());
+        }
+        return result;
+    }
+
+    /** Writes the mapped pages to disk and closes the file. */
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /** Logical index of the first stored sample with a timestamp at or after {@code from}. */
+    private long firstAtOrAfter(long from) {
+        long lo = written - size();
+        long hi = written;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (buffer.getLong(offset(mid)) < from) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int offset(long index) {
+        return HEADER_SIZE + (int) (index % capacity) * sampleSize;
+    }
+
+    private static int readHeader(FileChannel channel, long position) throws IOException {
+        var bytes = ByteBuffer.allocate(Integer.BYTES);
+        if (channel.read(bytes, position) != Integer.BYTES) {
+            return -1;
+        }
+        return bytes.flip().getInt();
+    }
+
+    /**
+     * One downsampled bucket.
+     *
+     * @param start start of the bucket (epoch milliseconds)
+     * @param samples number of samples in the bucket
+     * @param average average of every field (NaN if the field had no values)
+     * @param min minimum of every field (NaN if the field had no values)
+     * @param max maximum of every field (NaN if the field had no values)
+     */
+    public record Bucket(long start, int samples, double[] average, float[] min, float[] max) {}
+
+    private static final class Accumulator {
+        private final long start;
+        private final double[] sum;
+        private final int[] counts;
+        private final float[] min;
+        private final float[] max;
+        private int samples;
+
+        private Accumulator(long start, int fields) {
+            this.start = start;
+            this.sum = new double[fields];
+            this.counts = new int[fields];
+            this.min = new float[fields];
+            this.max = new float[fields];
+            Arrays.fill(min, Float.NaN);
+            Arrays.fill(max, Float.NaN);
+        }
+
+        private void add(int field, float value) {
+            if (Float.isNaN(value)) {
+                return;
+            }
+            sum[field] += value;
+            min[field] = counts[field] == 0 ? value : Math.min(min[field], value);
+            max[field] = counts[field] == 0 ? value : Math.max(max[field], value);
+            counts[field]++;
+        }
+
+        private Bucket toBucket() {
+            var average = new double[sum.length];
+            for (int f = 0; f < sum.length; f++) {
+                average[f] = counts[f] > 0 ? sum[f] / counts[f] : Double.NaN;
+            }
+            return new Bucket(start, samples, average, min, max);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.matjazt.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
+
+/**
+ * Run-length encoding of bitmaps.
+ *
+ * <p>The bitmap is stored as the lengths of its alternating runs of clear and set bits, starting
+ * with a (possibly empty) run of clear bits; trailing clear bits are not stored. Every length is a
+ * varint (7 bits per byte, the high bit marks that more bytes follow). Presence bitmaps, where a
+ * device is usually there or not for hours at a time, shrink to a few bytes.
+ */
+public final class RunLengthBitmap {
+
+    private RunLengthBitmap() {}
+
+    /**
+     * Encodes a bitmap.
+     *
+     * @return encoded bytes (empty for a bitmap without set bits)
+     */
+    public static byte[] encode(BitSet bits) {
+        var out = new ByteArrayOutputStream(16);
+        int position = 0;
+        int start = bits.nextSetBit(0);
+        while (start >= 0) {
+            int end = bits.nextClearBit(start);
+            writeVarint(out, start - position);
+            writeVarint(out, end - start);
+            position = end;
+            start = bits.nextSetBit(end);
+        }
+        return out.toByteArray();
+    }
+
+    /** Decodes a bitmap written by {@link #encode}. */
+    public static BitSet decode(byte[] data) {
+        var bits = new BitSet();
+        int position = 0;
+        boolean set = false;
+        long run = 0;
+        int shift = 0;
+        for (byte b : data) {
+            run |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) != 0) {
+                shift += 7;
+                if (shift > 28) {
+                    throw new IllegalArgumentException("Malformed data: run too long");
+                }
+                continue;
+            }
+            if (position + run > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Malformed data: bitmap too long");
+            }
+            if (set) {
+                bits.set(position, position + (int) run);
+            }
+            position += (int) run;
+            set = !set;
+            run = 0;
+            shift = 0;
+        }
+        if (shift != 0 || set) {
+            throw new IllegalArgumentException("Malformed data: truncated run");
+        }
+        return bits;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
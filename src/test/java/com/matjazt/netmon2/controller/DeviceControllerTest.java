@@ -0,0 +1,73 @@
+package com.matjazt.netmon2.controller;
+
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.matjazt.netmon2.mapper.DeviceApiMapper;
+import com.matjazt.netmon2.mapper.DeviceMapperImpl;
+import com.matjazt.netmon2.repository.DevicePresenceIntervalRepository;
+import com.matjazt.netmon2.repository.DeviceRepository;
+import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
+import com.matjazt.netmon2.repository.NetworkRepository;
+import com.matjazt.netmon2.service.AvailabilityRollupService;
+import com.matjazt.netmon2.service.DeviceImportService;
+import com.matjazt.netmon2.service.DeviceService;
+import com.matjazt.netmon2.service.FlapDetector;
+import com.matjazt.netmon2.service.HistoryArchiveService;
+import com.matjazt.netmon2.service.KeysetCursor;
+import com.matjazt.netmon2.service.NetworkSnapshotService;
+import com.matjazt.netmon2.service.PresenceBitmapService;
+import com.matjazt.netmon2.service.StatusHistoryRecorder;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+/** Tests that {@link DeviceController} reports tampered or garbage cursors as 400 Bad Request. */
+class DeviceControllerTest {
+
+    private final MockMvc mockMvc =
+            MockMvcBuilders.standaloneSetup(
+                            new DeviceController(
+                                    deviceService(),
+                                    mock(DeviceApiMapper.class),
+                                    mock(DeviceImportService.class)))
+                    .build();
+
+    @Test
+    void malformedCursorsAreBadRequests() throws Exception {
+        String[][] cases = {
+            // endpoint, cursor
+            {"/api/devices/paginated", "not base64!"},
+            {"/api/devices/paginated", "Zm9v"},
+            // a tampered cursor
+            {"/api/devices/paginated", new KeysetCursor(1, "router").encode().substring(1)},
+            {"/api/devices/5/history", "%%%"},
+            // a valid cursor with a key that isn't a timestamp
+            {"/api/devices/5/history", new KeysetCursor(1, "router").encode()},
+        };
+
+        for (var c : cases) {
+            mockMvc.perform(get(c[0]).param("cursor", c[1]))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(content().string("Invalid cursor"));
+        }
+    }
+
+    private static DeviceService deviceService() {
+        return new DeviceService(
+                mock(DeviceRepository.class),
+                mock(NetworkRepository.class),
+                mock(DeviceStatusHistoryRepository.class),
+                mock(DevicePresenceIntervalRepository.class),
+                new DeviceMapperImpl(),
+                mock(FlapDetector.class),
+                mock(StatusHistoryRecorder.class),
+                mock(AvailabilityRollupService.class),
+                mock(NetworkSnapshotService.class),
+                mock(HistoryArchiveService.class),
+                mock(PresenceBitmapService.class));
+    }
+}
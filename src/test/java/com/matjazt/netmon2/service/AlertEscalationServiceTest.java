@@ -0,0 +1,170 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.matjazt.netmon2.config.AlerterProperties;
+import com.matjazt.netmon2.entity.AlertEntity;
+import com.matjazt.netmon2.entity.AlertType;
+import com.matjazt.netmon2.entity.NetworkEntity;
+import com.matjazt.netmon2.repository.AlertRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Tests {@link AlertEscalationService} with reminders every 60 minutes and the escalation after
+ * 90 minutes.
+ */
+class AlertEscalationServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 10, 12, 0);
+
+    private final AlerterProperties properties = new AlerterProperties();
+    private final AlertRepository alertRepository = mock(AlertRepository.class);
+    private final NetworkEntity network = new NetworkEntity("home");
+
+    private AlertEscalationService service;
+
+    @BeforeEach
+    void createService() {
+        properties.setReminderIntervalMinutes(60);
+        properties.setEscalationAfterMinutes(90);
+        properties.setEscalationEmailAddress("oncall@example.com");
+        network.setId(1L);
+        service = new AlertEscalationService(properties, alertRepository);
+    }
+
+    @Test
+    void notificationsAreDueInOrder() {
+        service.alertOpened(alert(1, START.plusMinutes(20)));
+        service.alertOpened(alert(2, START));
+        service.alertOpened(alert(3, START.plusMinutes(10)));
+
+        assertEquals(List.of(), service.pollDue(START.plusMinutes(59)));
+        var due = service.pollDue(START.plusMinutes(80));
+        assertEquals(List.of(2L, 3L, 1L), due.stream().map(d -> d.alertId()).toList());
+        assertEquals(START.plusMinutes(60), due.get(0).scheduledFor());
+        assertFalse(due.get(0).escalation());
+
+        // alert 2 escalates at 90 minutes, before its next reminder at 120
+        due = service.pollDue(START.plusMinutes(95));
+        assertEquals(List.of(due(2, true, START.plusMinutes(90))), due);
+        // the others escalate in turn, alert 2 is only reminded from then on
+        due = service.pollDue(START.plusMinutes(160));
+        assertEquals(
+                List.of(
+                        due(3, true, START.plusMinutes(100)),
+                        due(1, true, START.plusMinutes(110)),
+                        due(2, false, START.plusMinutes(155))),
+                due);
+    }
+
+    @Test
+    void closedAlertsAreDroppedLazily() {
+        service.alertOpened(alert(1, START));
+        service.alertOpened(alert(2, START));
+        assertEquals(2, service.size());
+
+        service.alertClosed(1);
+        // closing twice, or an alert that isn't tracked, is harmless
+        service.alertClosed(1);
+        service.alertClosed(99);
+
+        assertEquals(1, service.size());
+        var due = service.pollDue(START.plusMinutes(60));
+        assertEquals(List.of(2L), due.stream().map(d -> d.alertId()).toList());
+    }
+
+    @Test
+    void skippedNotificationIsRetried() {
+        var alert = alert(1, START.minusMinutes(100));
+        alert.setLastNotificationTimestamp(START.minusMinutes(30));
+        service.alertOpened(alert);
+
+        var due = service.pollDue(START);
+        assertEquals(List.of(due(1, true, START.minusMinutes(10))), due);
+
+        // another node was processing the network: the escalation is due again
+        service.notificationSkipped(due.get(0));
+        assertEquals(due, service.pollDue(START));
+        assertEquals(List.of(), service.pollDue(START));
+
+        // a skipped notification of an alert closed in the meantime is dropped
+        service.alertClosed(1);
+        service.notificationSkipped(due.get(0));
+        assertEquals(0, service.size());
+        assertEquals(List.of(), service.pollDue(START.plusDays(1)));
+    }
+
+    @Test
+    void openAlertsAreReloadedWhenMembershipChanges() {
+        service.alertOpened(alert(1, START));
+        service.alertOpened(alert(2, START));
+
+        // alert 2 moved to another node (or was closed there), alert 3 was opened there
+        when(alertRepository.findByClosureTimestampIsNull())
+                .thenReturn(List.of(alert(1, START), alert(3, START.plusMinutes(5))));
+        service.onClusterMembershipChanged(new ClusterMembershipChangedEvent(List.of("a")));
+
+        assertEquals(2, service.size());
+        var due = service.pollDue(START.plusMinutes(65));
+        assertEquals(List.of(1L, 3L), due.stream().map(d -> d.alertId()).toList());
+    }
+
+    @Test
+    void escalationIsSentOnlyOnce() {
+        // the last notification after the escalation time was the escalation
+        var escalated = alert(1, START);
+        escalated.setLastNotificationTimestamp(START.plusMinutes(90));
+        service.alertOpened(escalated);
+
+        var due = service.pollDue(START.plusMinutes(150));
+        assertEquals(List.of(due(1, false, START.plusMinutes(150))), due);
+    }
+
+    @Test
+    void escalationIsOnlySentWhenItWasNotified() {
+        var alert = alert(1, START);
+        // closed after the escalation time, but before the escalation went out
+        alert.setClosureTimestamp(START.plusMinutes(100));
+        assertFalse(service.isEscalationSent(alert));
+
+        alert.setLastNotificationTimestamp(START.plusMinutes(60));
+        assertFalse(service.isEscalationSent(alert));
+
+        alert.setLastNotificationTimestamp(START.plusMinutes(90));
+        assertTrue(service.isEscalationSent(alert));
+
+        properties.setEscalationEmailAddress(null);
+        assertFalse(service.isEscalationSent(alert));
+    }
+
+    @Test
+    void nothingIsTrackedWithoutRemindersAndEscalation() {
+        properties.setReminderIntervalMinutes(0);
+        properties.setEscalationEmailAddress(" ");
+
+        service.alertOpened(alert(1, START));
+
+        assertEquals(0, service.size());
+        assertEquals(List.of(), service.pollDue(START.plusDays(1)));
+    }
+
+    private AlertEntity alert(long id, LocalDateTime timestamp) {
+        var alert = new AlertEntity(timestamp, network, null, AlertType.NETWORK_DOWN, "down");
+        alert.setId(id);
+        return alert;
+    }
+
+    private static AlertEscalationService.DueNotification due(
+            long alertId, boolean escalation, LocalDateTime scheduledFor) {
+        return new AlertEscalationService.DueNotification(alertId, 1, escalation, scheduledFor);
+    }
+}
@@ -0,0 +1,116 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.matjazt.netmon2.config.ClusterProperties;
+import com.matjazt.netmon2.repository.ClusterNodeRepository;
+import com.matjazt.tools.ConsistentHashRing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Tests {@link ClusterCoordinator} with a mocked {@code cluster_node} table. */
+class ClusterCoordinatorTest {
+
+    private final ClusterProperties properties = new ClusterProperties();
+    private final ClusterNodeRepository repository = mock(ClusterNodeRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    @Test
+    void everythingIsAllowedWhenDisabled() {
+        var coordinator = coordinator();
+        coordinator.heartbeat();
+
+        assertTrue(coordinator.isOwner(1));
+        assertTrue(coordinator.hasValidLease());
+        assertTrue(coordinator.tryLockNetwork(1));
+        assertTrue(coordinator.tryLockIngestion(1));
+        assertTrue(coordinator.tryLockTask("archive"));
+        coordinator.destroy();
+        verifyNoInteractions(repository, eventPublisher);
+    }
+
+    @Test
+    void networksAreOwnedAccordingToTheRing() {
+        properties.setEnabled(true);
+        when(repository.findLiveNodeIds(anyLong())).thenReturn(List.of("a", "b"));
+        var coordinator = coordinator();
+
+        // nothing is owned before the first renewal
+        assertFalse(coordinator.isOwner(1));
+
+        coordinator.heartbeat();
+        var ring = new ConsistentHashRing(List.of("a", "b"), properties.getVirtualNodes());
+        int owned = 0;
+        for (long networkId = 1; networkId <= 100; networkId++) {
+            boolean owner = ring.getOwner("network:" + networkId).equals("a");
+            assertEquals(owner, coordinator.isOwner(networkId), "network " + networkId);
+            owned += owner ? 1 : 0;
+        }
+        assertTrue(owned > 0 && owned < 100);
+
+        // the event is only published when the membership changes
+        coordinator.heartbeat();
+        verify(eventPublisher, times(1)).publishEvent(any(ClusterMembershipChangedEvent.class));
+    }
+
+    @Test
+    void failedRenewalDoesNotGrantALease() {
+        properties.setEnabled(true);
+        when(repository.findLiveNodeIds(anyLong())).thenThrow(new IllegalStateException("down"));
+        var coordinator = coordinator();
+
+        assertThrows(IllegalStateException.class, coordinator::heartbeat);
+        assertFalse(coordinator.hasValidLease());
+        assertFalse(coordinator.isOwner(1));
+    }
+
+    @Test
+    void leaseExpiresAfterTheTimeout() {
+        long renewal = 1_000_000_000L;
+        long timeout = TimeUnit.SECONDS.toNanos(30);
+
+        assertTrue(ClusterCoordinator.isLeaseValid(renewal, renewal, 30));
+        assertTrue(ClusterCoordinator.isLeaseValid(renewal, renewal + timeout - 1, 30));
+        assertFalse(ClusterCoordinator.isLeaseValid(renewal, renewal + timeout, 30));
+        // System.nanoTime() may wrap around
+        assertTrue(ClusterCoordinator.isLeaseValid(Long.MAX_VALUE, Long.MIN_VALUE + 10, 30));
+    }
+
+    @Test
+    void locksAreTakenInTheDatabaseWhenEnabled() {
+        properties.setEnabled(true);
+        when(repository.tryAdvisoryXactLock(anyInt(), anyInt())).thenReturn(false);
+        var coordinator = coordinator();
+
+        assertFalse(coordinator.tryLockNetwork(1));
+        assertFalse(coordinator.tryLockIngestion(1));
+        assertFalse(coordinator.tryLockTask("archive"));
+    }
+
+    @Test
+    void leaseTimeoutMustExceedTheHeartbeatInterval() {
+        properties.setEnabled(true);
+        properties.setLeaseTimeoutSeconds(properties.getHeartbeatIntervalSeconds());
+        assertThrows(IllegalArgumentException.class, this::coordinator);
+    }
+
+    private ClusterCoordinator coordinator() {
+        properties.setNodeId("a");
+        return new ClusterCoordinator(properties, repository, eventPublisher);
+    }
+}
@@ -0,0 +1,214 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.matjazt.netmon2.dto.DeviceDto;
+import com.matjazt.netmon2.entity.DeviceEntity;
+import com.matjazt.netmon2.entity.DeviceStatusHistoryEntity;
+import com.matjazt.netmon2.entity.NetworkEntity;
+import com.matjazt.netmon2.mapper.DeviceMapperImpl;
+import com.matjazt.netmon2.repository.DevicePresenceIntervalRepository;
+import com.matjazt.netmon2.repository.DeviceRepository;
+import com.matjazt.netmon2.repository.DeviceStatusHistoryRepository;
+import com.matjazt.netmon2.repository.NetworkRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Tests keyset pagination in {@link DeviceService} against repositories that apply the same
+ * ordering and row value comparisons as the queries, in memory.
+ */
+class DeviceServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 10, 12, 0);
+
+    private final DeviceRepository deviceRepository = mock(DeviceRepository.class);
+    private final DeviceStatusHistoryRepository historyRepository =
+            mock(DeviceStatusHistoryRepository.class);
+    private final HistoryArchiveService historyArchiveService = mock(HistoryArchiveService.class);
+
+    private final NetworkEntity network = new NetworkEntity("home");
+    private final List<DeviceEntity> devices = new ArrayList<>();
+    private final List<DeviceStatusHistoryEntity> history = new ArrayList<>();
+
+    private DeviceService service;
+
+    @BeforeEach
+    void createService() {
+        network.setId(1L);
+
+        // ORDER BY COALESCE(d.name, ''), d.id
+        Comparator<DeviceEntity> byNameAndId =
+                Comparator.comparing((DeviceEntity d) -> nameOf(d))
+                        .thenComparing(DeviceEntity::getId);
+        when(deviceRepository.findSliceWithNetwork(any()))
+                .thenAnswer(
+                        invocation ->
+                                slice(devices, byNameAndId, d -> true, invocation.getArgument(0)));
+        when(deviceRepository.findSliceWithNetworkAfter(anyString(), anyLong(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            String name = invocation.getArgument(0);
+                            long id = invocation.getArgument(1);
+                            // (COALESCE(d.name, ''), d.id) > (:name, :id)
+                            Predicate<DeviceEntity> after =
+                                    d -> {
+                                        int order = nameOf(d).compareTo(name);
+                                        return order > 0 || order == 0 && d.getId() > id;
+                                    };
+                            return slice(devices, byNameAndId, after, invocation.getArgument(2));
+                        });
+
+        // ORDER BY h.timestamp DESC, h.id DESC
+        Comparator<DeviceStatusHistoryEntity> newestFirst =
+                Comparator.comparing(DeviceStatusHistoryEntity::getTimestamp)
+                        .thenComparing(DeviceStatusHistoryEntity::getId)
+                        .reversed();
+        when(historyRepository.findSliceByDevice(anyLong(), any()))
+                .thenAnswer(
+                        invocation ->
+                                slice(history, newestFirst, h -> true, invocation.getArgument(1)));
+        when(historyRepository.findSliceByDeviceBefore(anyLong(), any(), anyLong(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            LocalDateTime timestamp = invocation.getArgument(1);
+                            long id = invocation.getArgument(2);
+                            // (h.timestamp, h.id) < (:timestamp, :id)
+                            Predicate<DeviceStatusHistoryEntity> before =
+                                    h -> {
+                                        int order = h.getTimestamp().compareTo(timestamp);
+                                        return order < 0 || order == 0 && h.getId() < id;
+                                    };
+                            return slice(history, newestFirst, before, invocation.getArgument(3));
+                        });
+
+        service =
+                new DeviceService(
+                        deviceRepository,
+                        mock(NetworkRepository.class),
+                        historyRepository,
+                        mock(DevicePresenceIntervalRepository.class),
+                        new DeviceMapperImpl(),
+                        mock(FlapDetector.class),
+                        mock(StatusHistoryRecorder.class),
+                        mock(AvailabilityRollupService.class),
+                        mock(NetworkSnapshotService.class),
+                        historyArchiveService,
+                        mock(PresenceBitmapService.class));
+    }
+
+    @Test
+    void devicesWithEqualNamesArePagedById() {
+        // inserted out of order; unnamed devices sort first
+        device(5, "router");
+        device(2, "printer");
+        device(9, "router");
+        device(4, null);
+        device(7, "router");
+        device(1, null);
+        device(3, "router");
+
+        var ids = new ArrayList<Long>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var page = service.getDeviceSummariesPage(null, 2, cursor, false);
+            page.content().stream().map(DeviceDto::id).forEach(ids::add);
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // a page boundary falls between the routers 3 and 5, and between 7 and 9
+        assertEquals(List.of(1L, 4L, 2L, 3L, 5L, 7L, 9L), ids);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void historyWithEqualTimestampsIsPagedById() {
+        history(10, 0);
+        history(14, 5);
+        history(11, 5);
+        history(13, 5);
+        history(12, 5);
+        history(15, 9);
+
+        var ids = new ArrayList<Long>();
+        String cursor = null;
+        do {
+            var page = service.getDeviceHistory(3L, 2, cursor, false);
+            page.content().stream().map(DeviceStatusHistoryEntity::getId).forEach(ids::add);
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of(15L, 14L, 13L, 12L, 11L, 10L), ids);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        device(1, "router");
+
+        var page = service.getDeviceSummariesPage(null, 2, null, true);
+
+        assertFalse(page.hasNext());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void historyCursorWithAnInvalidTimestampIsRejected() {
+        var cursor = new KeysetCursor(1, "yesterday").encode();
+
+        var e =
+                assertThrows(
+                        IllegalArgumentException.class,
+                        () -> service.getDeviceHistory(3L, 2, cursor, false));
+        assertEquals("Invalid cursor", e.getMessage());
+    }
+
+    private void device(long id, String name) {
+        var device = new DeviceEntity(network, "00:00:00:00:00:0" + id, null, true);
+        device.setId(id);
+        device.setName(name);
+        devices.add(device);
+    }
+
+    private void history(long id, int minutes) {
+        var entry =
+                new DeviceStatusHistoryEntity(
+                        network, null, null, true, START.plusMinutes(minutes));
+        entry.setId(id);
+        history.add(entry);
+    }
+
+    private static String nameOf(DeviceEntity device) {
+        return device.getName() != null ? device.getName() : "";
+    }
+
+    /** Returns the first page of the matching rows in the given order, like a LIMIT query. */
+    private static <T> Slice<T> slice(
+            List<T> rows, Comparator<T> order, Predicate<T> filter, Pageable pageable) {
+        var matching = rows.stream().filter(filter).sorted(order).toList();
+        int size = pageable.getPageSize();
+        return new SliceImpl<>(
+                matching.subList(0, Math.min(size, matching.size())),
+                pageable,
+                matching.size() > size);
+    }
+}
@@ -0,0 +1,173 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.matjazt.netmon2.config.FlapDetectionProperties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Tests {@link FlapDetector} with a window of 8 scans, flapping at 4 changes and recovering at 1.
+ */
+class FlapDetectorTest {
+
+    private static final long DEVICE_ID = 9;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 10, 12, 0);
+
+    private final FlapDetectionProperties properties = new FlapDetectionProperties();
+
+    /** Number of samples recorded so far; sample n is taken at START + n minutes. */
+    private int scans;
+
+    @BeforeEach
+    void configure() {
+        properties.setWindowSize(8);
+        properties.setFlappingThreshold(4);
+        properties.setRecoveryThreshold(1);
+        properties.setHistoryStableScans(3);
+    }
+
+    @Test
+    void stableDeviceNeverFlaps() {
+        var detector = new FlapDetector(properties);
+
+        for (int i = 0; i < 20; i++) {
+            assertFalse(sample(detector, true));
+        }
+        // a single outage is two changes
+        assertFalse(sample(detector, false));
+        assertFalse(sample(detector, false));
+        assertFalse(sample(detector, true));
+
+        assertFalse(detector.isFlapping(DEVICE_ID));
+        assertEquals(Map.of(), detector.getFlappingDevices());
+        assertFalse(detector.deferTransition(DEVICE_ID, true));
+    }
+
+    @Test
+    void deviceFlapsAtTheThresholdAndRecoversWithHysteresis() {
+        var detector = new FlapDetector(properties);
+        boolean[] present = {true, false, true, false, true, true, true, true, true, true, true};
+        // 4 changes start flapping; it only stops once a single change is left in the window
+        boolean[] flapping = {
+            false, false, false, false, true, true, true, true, true, true, false
+        };
+
+        for (int i = 0; i < present.length; i++) {
+            assertEquals(flapping[i], sample(detector, present[i]), "sample " + i);
+            if (i == 4) {
+                assertEquals(
+                        Map.of(DEVICE_ID, new FlapDetector.FlapInfo(4, 5, time(4))),
+                        detector.getFlappingDevices());
+            }
+        }
+        assertFalse(detector.isFlapping(DEVICE_ID));
+    }
+
+    @Test
+    void deferredTransitionSettlesWithItsOriginalTimestamp() {
+        var detector = flappingDetector();
+
+        // the device goes offline while flapping: the history still says online
+        sample(detector, false);
+        var wentOffline = time(scans - 1);
+        assertTrue(detector.deferTransition(DEVICE_ID, true));
+
+        // not stable long enough yet
+        sample(detector, false);
+        assertEquals(Optional.empty(), detector.settle(DEVICE_ID, false));
+
+        // stable for historyStableScans scans: the row gets the time it went offline
+        sample(detector, false);
+        assertEquals(Optional.of(wentOffline), detector.settle(DEVICE_ID, false));
+        // nothing is pending anymore
+        sample(detector, false);
+        assertEquals(Optional.empty(), detector.settle(DEVICE_ID, false));
+    }
+
+    @Test
+    void deviceThatSettlesInTheRecordedStateNeedsNoHistoryRow() {
+        var detector = flappingDetector();
+
+        sample(detector, false);
+        assertTrue(detector.deferTransition(DEVICE_ID, true));
+        // back online before it was stable offline; the deferral keeps the first recorded state
+        sample(detector, true);
+        assertTrue(detector.deferTransition(DEVICE_ID, false));
+        sample(detector, true);
+        sample(detector, true);
+
+        assertEquals(Optional.empty(), detector.settle(DEVICE_ID, true));
+        // and the deferral is over
+        for (int i = 0; i < 8; i++) {
+            sample(detector, true);
+        }
+        assertFalse(detector.deferTransition(DEVICE_ID, true));
+    }
+
+    @Test
+    void transitionsAreNotDeferredWithoutHistoryStableScans() {
+        properties.setHistoryStableScans(0);
+        var detector = flappingDetector();
+
+        assertTrue(detector.isFlapping(DEVICE_ID));
+        assertFalse(detector.deferTransition(DEVICE_ID, true));
+    }
+
+    @Test
+    void nothingIsDetectedWhenDisabled() {
+        properties.setEnabled(false);
+        var detector = new FlapDetector(properties);
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(sample(detector, i % 2 == 0));
+        }
+        assertFalse(detector.deferTransition(DEVICE_ID, true));
+        assertEquals(Map.of(), detector.getFlappingDevices());
+    }
+
+    @Test
+    void forgottenDevicesStartOver() {
+        var detector = flappingDetector();
+
+        detector.forget(DEVICE_ID);
+
+        assertFalse(detector.isFlapping(DEVICE_ID));
+        assertFalse(sample(detector, false));
+    }
+
+    @Test
+    void invalidPropertiesAreRejected() {
+        properties.setWindowSize(FlapDetectionProperties.MAX_WINDOW_SIZE + 1);
+        assertThrows(IllegalArgumentException.class, () -> new FlapDetector(properties));
+        properties.setWindowSize(8);
+        properties.setRecoveryThreshold(4);
+        assertThrows(IllegalArgumentException.class, () -> new FlapDetector(properties));
+    }
+
+    /** Returns a detector with a device that has just started flapping while online. */
+    private FlapDetector flappingDetector() {
+        var detector = new FlapDetector(properties);
+        for (boolean present : new boolean[] {true, false, true, false, true}) {
+            sample(detector, present);
+        }
+        assertTrue(detector.isFlapping(DEVICE_ID));
+        return detector;
+    }
+
+    private boolean sample(FlapDetector detector, boolean present) {
+        return detector.recordSample(DEVICE_ID, present, time(scans++));
+    }
+
+    private static LocalDateTime time(int scan) {
+        return START.plusMinutes(scan);
+    }
+}
@@ -0,0 +1,216 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.matjazt.netmon2.config.HistoryProperties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests the file format of {@link HistoryArchive} against a temporary directory. */
+class HistoryArchiveTest {
+
+    private static final long NETWORK_ID = 7;
+    private static final YearMonth JANUARY = YearMonth.of(2024, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2024, 2);
+
+    @TempDir Path directory;
+
+    private HistoryArchive archive;
+
+    @BeforeEach
+    void createArchive() {
+        archive = new HistoryArchive(properties());
+    }
+
+    @Test
+    void writtenRowsAreReadBack() {
+        var rows =
+                List.of(
+                        row(10, 0, at(1, 0, 0, 0), false, "10.0.0.9"),
+                        row(3, 5, at(1, 8, 0, 0), true, "10.0.0.5"),
+                        row(12, 5, at(1, 8, 0, 0), false, "10.0.0.5"),
+                        row(40, 5, at(20, 23, 59, 999_999_000), true, "10.0.0.6"),
+                        row(41, 300, at(2, 12, 30, 500_000_000), true, "10.0.0.5"),
+                        row(20, 70_000, at(31, 23, 59, 0), true, "fe80::1"));
+        assertEquals(rows.size(), archive.write(NETWORK_ID, JANUARY, rows.iterator(), List.of()));
+
+        var month = archive.read(NETWORK_ID, JANUARY, true);
+        assertEquals(rows, month.rows());
+        assertEquals(List.of(0L, 5L, 300L, 70_000L), boxed(month.deviceIds()));
+        assertEquals(rows.subList(1, 4), month.rows(5));
+        assertEquals(List.of(), month.rows(6));
+
+        // single devices are decoded on their own, with and without details
+        assertEquals(rows.subList(4, 5), archive.readDevice(NETWORK_ID, JANUARY, 300, true));
+        assertEquals(rows.subList(5, 6), archive.readDevice(NETWORK_ID, JANUARY, 70_000, true));
+        var withoutDetails = archive.readDevice(NETWORK_ID, JANUARY, 5, false);
+        assertEquals(3, withoutDetails.size());
+        for (int i = 0; i < 3; i++) {
+            var expected = rows.get(i + 1);
+            var actual = withoutDetails.get(i);
+            assertEquals(expected.timestamp(), actual.timestamp());
+            assertEquals(expected.online(), actual.online());
+            assertEquals(0, actual.id());
+            assertNull(actual.ipAddress());
+        }
+        assertEquals(List.of(), archive.readDevice(NETWORK_ID, JANUARY, 6, true));
+
+        assertEquals(3, archive.countDeviceRows(NETWORK_ID, JANUARY, 5));
+        assertEquals(0, archive.countDeviceRows(NETWORK_ID, JANUARY, 6));
+        assertEquals(0, archive.countDeviceRows(NETWORK_ID, FEBRUARY, 5));
+        assertNull(archive.read(NETWORK_ID, FEBRUARY, true));
+    }
+
+    @Test
+    void archivedMonthsAreFoundAfterRestart() {
+        write(NETWORK_ID, JANUARY, row(1, 5, at(3, 0, 0, 0)));
+        write(NETWORK_ID, FEBRUARY, row(2, 5, inFebruary(1, 0)));
+        write(8, FEBRUARY, row(3, 5, inFebruary(1, 0)));
+
+        var reopened = new HistoryArchive(properties());
+        assertEquals(List.of(JANUARY, FEBRUARY), List.copyOf(reopened.months(NETWORK_ID)));
+        assertEquals(List.of(FEBRUARY), List.copyOf(reopened.months(8)));
+        assertEquals(
+                List.of(row(1, 5, at(3, 0, 0, 0))),
+                reopened.readDevice(NETWORK_ID, JANUARY, 5, true));
+
+        reopened.delete(NETWORK_ID, JANUARY);
+        assertEquals(List.of(FEBRUARY), List.copyOf(reopened.months(NETWORK_ID)));
+        assertNull(reopened.read(NETWORK_ID, JANUARY, false));
+    }
+
+    @Test
+    void rowsAreMergedWithAnExistingFile() {
+        // the first run archived part of the month, but deleting the rows failed
+        var first =
+                List.of(row(1, 5, at(2, 0, 0, 0)), row(4, 5, at(9, 0, 0, 0), false, "10.0.0.5"));
+        archive.write(NETWORK_ID, JANUARY, first.iterator(), List.of());
+
+        // the retry sees those rows again, next to rows that were written late
+        var second =
+                List.of(
+                        row(1, 5, at(2, 0, 0, 0)),
+                        row(3, 5, at(5, 0, 0, 0)),
+                        row(4, 5, at(9, 0, 0, 0), false, "10.0.0.5"),
+                        row(2, 6, at(3, 0, 0, 0)));
+        archive.write(NETWORK_ID, JANUARY, second.iterator(), List.of());
+
+        assertEquals(
+                List.of(
+                        row(1, 5, at(2, 0, 0, 0)),
+                        row(3, 5, at(5, 0, 0, 0)),
+                        row(4, 5, at(9, 0, 0, 0), false, "10.0.0.5"),
+                        row(2, 6, at(3, 0, 0, 0))),
+                archive.read(NETWORK_ID, JANUARY, true).rows());
+        assertEquals(3, archive.countDeviceRows(NETWORK_ID, JANUARY, 5));
+    }
+
+    @Test
+    void carryHoldsTheLastRowOfEveryDevice() {
+        archive.write(
+                NETWORK_ID,
+                JANUARY,
+                List.of(
+                                row(1, 5, at(2, 0, 0, 0)),
+                                row(2, 5, at(4, 0, 0, 0), false, "10.0.0.5"),
+                                row(3, 6, at(3, 0, 0, 0)))
+                        .iterator(),
+                List.of());
+        assertEquals(
+                List.of(row(2, 5, at(4, 0, 0, 0), false, "10.0.0.5"), row(3, 6, at(3, 0, 0, 0))),
+                archive.readCarry(NETWORK_ID, JANUARY));
+
+        // device 6 didn't change in February, so its January row is carried forward
+        archive.write(
+                NETWORK_ID,
+                FEBRUARY,
+                List.of(row(4, 5, inFebruary(1, 0)), row(5, 9, inFebruary(10, 0))).iterator(),
+                archive.readCarry(NETWORK_ID, JANUARY));
+        assertEquals(
+                List.of(
+                        row(4, 5, inFebruary(1, 0)),
+                        row(3, 6, at(3, 0, 0, 0)),
+                        row(5, 9, inFebruary(10, 0))),
+                archive.readCarry(NETWORK_ID, FEBRUARY));
+        assertEquals(List.of(), archive.readCarry(NETWORK_ID, YearMonth.of(2024, 3)));
+    }
+
+    @Test
+    void invalidRowsAreRejected() {
+        var outsideMonth = List.of(row(1, 5, inFebruary(1, 0)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> archive.write(NETWORK_ID, JANUARY, outsideMonth.iterator(), List.of()));
+
+        var unsorted = List.of(row(1, 6, at(2, 0, 0, 0)), row(2, 5, at(3, 0, 0, 0)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> archive.write(NETWORK_ID, JANUARY, unsorted.iterator(), List.of()));
+        assertTrue(archive.months(NETWORK_ID).isEmpty());
+    }
+
+    @Test
+    void damagedFilesAreRejected() throws Exception {
+        write(NETWORK_ID, JANUARY, row(1, 5, at(2, 0, 0, 0)));
+        var file = directory.resolve("2024-01").resolve("network-7.nmh");
+        var bytes = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(
+                IllegalStateException.class, () -> archive.read(NETWORK_ID, JANUARY, true));
+
+        bytes[0] = 'X';
+        Files.write(file, bytes);
+        assertThrows(
+                IllegalStateException.class, () -> archive.countDeviceRows(NETWORK_ID, JANUARY, 5));
+    }
+
+    private void write(long networkId, YearMonth month, ArchivedHistoryRow... rows) {
+        archive.write(networkId, month, List.of(rows).iterator(), List.of());
+    }
+
+    private HistoryProperties properties() {
+        var properties = new HistoryProperties();
+        properties.setArchiveDirectory(directory.toString());
+        return properties;
+    }
+
+    /** A time in January 2024. */
+    private static LocalDateTime at(int day, int hour, int minute, int nanos) {
+        return LocalDateTime.of(2024, 1, day, hour, minute, 0, nanos);
+    }
+
+    private static LocalDateTime inFebruary(int day, int hour) {
+        return LocalDateTime.of(2024, 2, day, hour, 0);
+    }
+
+    private static ArchivedHistoryRow row(long id, long deviceId, LocalDateTime timestamp) {
+        return row(id, deviceId, timestamp, true, "10.0.0." + deviceId);
+    }
+
+    private static ArchivedHistoryRow row(
+            long id, long deviceId, LocalDateTime timestamp, boolean online, String ipAddress) {
+        return new ArchivedHistoryRow(id, deviceId, timestamp, online, ipAddress);
+    }
+
+    private static List<Long> boxed(long[] values) {
+        var result = new ArrayList<Long>();
+        for (long value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,194 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.matjazt.netmon2.config.HistoryProperties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Tests {@link HistoryPartitionService} against a mocked database that keeps track of the
+ * partitions it creates.
+ */
+class HistoryPartitionServiceTest {
+
+    private static final String TABLE = "device_status_history";
+    private static final Pattern CREATE =
+            Pattern.compile("CREATE TABLE (\\w+) PARTITION OF (\\w+) .*");
+
+    private final HistoryProperties properties = new HistoryProperties();
+    private final NetworkRegistry networkRegistry = mock(NetworkRegistry.class);
+    private final ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    /** Child partitions by parent. */
+    private final Map<String, Set<String>> partitions = new HashMap<>();
+
+    /** Default partitions that hold rows, with the condition that selects them. */
+    private final Set<String> populated = new HashSet<>();
+
+    private final List<String> statements = new ArrayList<>();
+    private final LocalDate currentMonth = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+
+    @BeforeEach
+    void mockDatabase() {
+        when(networkRegistry.getAll()).thenReturn(List.of(network(1), network(2)));
+        when(clusterCoordinator.tryLockTask(anyString())).thenReturn(true);
+        when(jdbcTemplate.queryForObject(
+                        contains("pg_partitioned_table"), eq(Boolean.class), eq(TABLE)))
+                .thenReturn(true);
+        when(jdbcTemplate.queryForList(contains("pg_inherits"), eq(String.class), anyString()))
+                .thenAnswer(
+                        invocation ->
+                                List.copyOf(
+                                        partitions.getOrDefault(
+                                                invocation.<String>getArgument(2), Set.of())));
+        when(jdbcTemplate.queryForObject(contains("_default WHERE"), eq(Boolean.class)))
+                .thenAnswer(
+                        invocation -> {
+                            String sql = invocation.getArgument(0);
+                            return populated.stream().anyMatch(sql::contains);
+                        });
+        doAnswer(
+                        invocation -> {
+                            String sql = invocation.getArgument(0);
+                            statements.add(sql);
+                            var matcher = CREATE.matcher(sql);
+                            if (matcher.matches()) {
+                                partitions
+                                        .computeIfAbsent(matcher.group(2), p -> new HashSet<>())
+                                        .add(matcher.group(1));
+                            }
+                            return null;
+                        })
+                .when(jdbcTemplate)
+                .execute(anyString());
+    }
+
+    @Test
+    void partitionsAreCreatedAhead() {
+        service().maintainPartitions();
+
+        for (int i = 0; i <= 2; i++) {
+            var month = month(i);
+            assertTrue(partitions.get(TABLE).contains(month), month);
+            assertEquals(
+                    Set.of(month + "_default", month + "_n1", month + "_n2"),
+                    partitions.get(month));
+        }
+        assertEquals(3, partitions.get(TABLE).size());
+
+        // a second run has nothing to do
+        statements.clear();
+        service().maintainPartitions();
+        assertEquals(List.of(), statements);
+    }
+
+    @Test
+    void rowsInADefaultPartitionAreLeftThere() {
+        // network 2 was created this month, so its rows went to the month's default partition
+        partitions.put(TABLE, new HashSet<>(Set.of(month(0))));
+        partitions.put(month(0), new HashSet<>(Set.of(month(0) + "_default", month(0) + "_n1")));
+        populated.add(month(0) + "_default WHERE network_id = 2");
+        // rows of the last upcoming month that came before its partition (a clock ahead of time)
+        populated.add(TABLE + "_default WHERE \"timestamp\" >= '" + currentMonth.plusMonths(2));
+
+        service().maintainPartitions();
+
+        assertEquals(Set.of(month(0) + "_default", month(0) + "_n1"), partitions.get(month(0)));
+        assertEquals(
+                Set.of(month(1) + "_default", month(1) + "_n1", month(1) + "_n2"),
+                partitions.get(month(1)));
+        assertEquals(Set.of(month(0), month(1)), partitions.get(TABLE));
+        // the hot table is never locked to move rows around
+        for (var statement : statements) {
+            assertFalse(statement.contains("DETACH"), statement);
+            assertFalse(statement.contains("ATTACH"), statement);
+        }
+    }
+
+    @Test
+    void newNetworksGetTheirUpcomingPartitions() {
+        service().maintainPartitions();
+        statements.clear();
+
+        service().onNetworkChanged(new NetworkChangedEvent(3));
+
+        // the current month already has the network's first scan in its default partition
+        assertFalse(partitions.get(month(0)).contains(month(0) + "_n3"));
+        assertTrue(partitions.get(month(1)).contains(month(1) + "_n3"));
+        assertTrue(partitions.get(month(2)).contains(month(2) + "_n3"));
+        assertEquals(2, statements.size());
+    }
+
+    @Test
+    void monthsExpireAfterTheirRetention() {
+        var january = LocalDate.of(2024, 1, 1);
+        Object[][] cases = {
+            // retention, current month, expired
+            {0, LocalDate.of(2030, 1, 1), false},
+            {12, LocalDate.of(2025, 1, 1), false},
+            {12, LocalDate.of(2025, 2, 1), true},
+            {1, LocalDate.of(2024, 2, 1), false},
+            {1, LocalDate.of(2024, 3, 1), true},
+        };
+        for (var c : cases) {
+            assertEquals(
+                    c[2],
+                    HistoryPartitionService.isExpired(january, (Integer) c[0], (LocalDate) c[1]),
+                    c[0] + " months in " + c[1]);
+        }
+    }
+
+    @Test
+    void partitionsMustBeCreatedAtLeastAMonthAhead() {
+        properties.setPartitionMonthsAhead(0);
+        assertThrows(IllegalArgumentException.class, this::service);
+    }
+
+    private HistoryPartitionService service() {
+        return new HistoryPartitionService(
+                properties,
+                networkRegistry,
+                clusterCoordinator,
+                jdbcTemplate,
+                mock(PlatformTransactionManager.class));
+    }
+
+    private String month(int monthsAhead) {
+        var month = currentMonth.plusMonths(monthsAhead);
+        return String.format("%s_y%04dm%02d", TABLE, month.getYear(), month.getMonthValue());
+    }
+
+    private static NetworkRegistry.NetworkInfo network(long id) {
+        return new NetworkRegistry.NetworkInfo(
+                id,
+                "net" + id,
+                "network/net" + id + "/scan",
+                600,
+                null,
+                NetworkConfiguration.DEFAULT);
+    }
+}
@@ -0,0 +1,58 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/** Tests encoding and decoding of {@link KeysetCursor} tokens. */
+class KeysetCursorTest {
+
+    @Test
+    void cursorsSurviveTheRoundTrip() {
+        Object[][] cases = {
+            // id, key
+            {1L, "router"},
+            {42L, ""},
+            {Long.MAX_VALUE, "2026-03-10T12:00:00.123456"},
+            {7L, "name:with:colons"},
+            {8L, "ščž 日本 🙂"},
+            {9L, " leading and trailing spaces "},
+        };
+
+        for (var c : cases) {
+            var cursor = new KeysetCursor((Long) c[0], (String) c[1]);
+            var token = cursor.encode();
+
+            assertTrue(token.matches("[A-Za-z0-9_-]*"), "URL safe: " + token);
+            assertEquals(cursor, KeysetCursor.decode(token), token);
+        }
+    }
+
+    @Test
+    void malformedCursorsAreRejected() {
+        String[] cases = {
+            "",
+            "not base64!",
+            "a/b+c==",
+            encode("no separator"),
+            encode(":router"),
+            encode("abc:router"),
+            encode("1.5:router"),
+            encode("99999999999999999999:router"),
+        };
+
+        for (var token : cases) {
+            var e = assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(token));
+            assertEquals("Invalid cursor", e.getMessage(), token);
+        }
+    }
+
+    private static String encode(String text) {
+        return Base64.getUrlEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,172 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.matjazt.netmon2.config.MetricsProperties;
+import com.matjazt.netmon2.dto.NetworkStatusMessageDto.NodeInfo;
+import com.matjazt.netmon2.dto.response.MetricNodeResponseDto;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests {@link MetricsStore} against a temporary directory. */
+class MetricsStoreTest {
+
+    private static final long NETWORK_ID = 4;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 10, 12, 0);
+
+    @TempDir Path directory;
+
+    private final MetricsProperties properties = new MetricsProperties();
+    private MetricsStore store;
+
+    @BeforeEach
+    void createStore() {
+        properties.setDirectory(directory.toString());
+        properties.setCapacity(3);
+        store = new MetricsStore(properties);
+    }
+
+    @AfterEach
+    void closeStore() {
+        store.destroy();
+    }
+
+    @Test
+    void scansAreReadBackInBuckets() {
+        for (int i = 0; i < 4; i++) {
+            store.recordScan(scan(START.plusMinutes(i), 10 + i, List.of()));
+        }
+
+        // the oldest scan was replaced; one bucket per two minutes
+        var series = store.getScanMetrics(NETWORK_ID, START, START.plusMinutes(4), 2).get();
+        assertEquals(MetricsStore.SCAN_FIELDS, series.fields());
+        assertEquals(120, series.bucketSeconds());
+        assertNull(series.name());
+        var points = series.points();
+        assertEquals(2, points.size());
+        assertEquals(START, points.get(0).timestamp());
+        assertEquals(1, points.get(0).samples());
+        assertEquals(List.of(11.0, 1000.0, 20.0), points.get(0).average());
+        assertEquals(START.plusMinutes(2), points.get(1).timestamp());
+        assertEquals(List.of(12.5, 1000.0, 20.0), points.get(1).average());
+        assertEquals(List.of(13.0, 1000.0, 20.0), points.get(1).max());
+
+        assertTrue(store.getScanMetrics(NETWORK_ID + 1, START, START.plusMinutes(4), 2).isEmpty());
+    }
+
+    @Test
+    void nodesGetTheirOwnSeries() {
+        store.recordScan(
+                scan(
+                        START,
+                        1,
+                        List.of(
+                                node("10.0.0.1", "router", 4, 4, 1500L),
+                                node("fe80::1", null, 4, 0, null))));
+        store.recordScan(
+                scan(START.plusMinutes(1), 1, List.of(node("10.0.0.1", "gw", 4, 2, 500L))));
+
+        var router = store.getNodeMetrics(NETWORK_ID, "10.0.0.1", START, START.plusHours(1), 1);
+        assertEquals("gw", router.get().name());
+        var point = router.get().points().get(0);
+        assertEquals(2, point.samples());
+        assertEquals(List.of(1.0, 0.25), point.average());
+        assertEquals(List.of(0.5, 0.0), point.min());
+
+        // a node without replies has no round-trip time, but full loss
+        var silent = store.getNodeMetrics(NETWORK_ID, "fe80::1", START, START.plusHours(1), 1);
+        assertEquals(Arrays.asList(null, 1.0), silent.get().points().get(0).average());
+
+        assertEquals(
+                List.of(
+                        new MetricNodeResponseDto("10.0.0.1", "gw", 2),
+                        new MetricNodeResponseDto("fe80::1", "", 1)),
+                store.getNodes(NETWORK_ID));
+        assertTrue(
+                store.getNodeMetrics(NETWORK_ID, "10.0.0.2", START, START.plusHours(1), 1)
+                        .isEmpty());
+    }
+
+    @Test
+    void nodesWithInvalidAddressesAreIgnored() throws Exception {
+        store.recordScan(
+                scan(
+                        START,
+                        1,
+                        List.of(
+                                node("../../etc", "bad", 1, 1, 100L),
+                                node(null, "none", 1, 1, 100L),
+                                node("10.0.0.1", "router", 1, 1, 100L))));
+
+        // the scan and the valid node are still recorded
+        assertEquals(
+                List.of(new MetricNodeResponseDto("10.0.0.1", "router", 1)),
+                store.getNodes(NETWORK_ID));
+        assertEquals(
+                1,
+                store.getScanMetrics(NETWORK_ID, START, START.plusMinutes(1), 1)
+                        .get()
+                        .points()
+                        .size());
+        assertTrue(
+                store.getNodeMetrics(NETWORK_ID, "../../etc", START, START.plusHours(1), 1)
+                        .isEmpty());
+        try (var files = Files.list(directory.resolve("network-" + NETWORK_ID))) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void seriesSurviveRestart() {
+        store.recordScan(scan(START, 5, List.of(node("10.0.0.1", "router", 2, 2, 2000L))));
+        store.destroy();
+
+        store = new MetricsStore(properties);
+        assertEquals(
+                List.of(new MetricNodeResponseDto("10.0.0.1", "router", 1)),
+                store.getNodes(NETWORK_ID));
+        store.recordScan(scan(START.plusMinutes(1), 7, List.of()));
+        var points =
+                store.getScanMetrics(NETWORK_ID, START, START.plusMinutes(2), 2).get().points();
+        assertEquals(2, points.size());
+        assertEquals(5.0, points.get(0).average().get(0));
+        assertEquals(7.0, points.get(1).average().get(0));
+    }
+
+    @Test
+    void nothingIsRecordedWhenDisabled() {
+        properties.setEnabled(false);
+        store.recordScan(scan(START, 5, List.of(node("10.0.0.1", "router", 2, 2, 2000L))));
+
+        assertTrue(store.getScanMetrics(NETWORK_ID, START, START.plusMinutes(1), 1).isEmpty());
+        assertEquals(List.of(), store.getNodes(NETWORK_ID));
+        assertFalse(Files.exists(directory.resolve("network-" + NETWORK_ID)));
+    }
+
+    private static MqttService.ScanSummary scan(
+            LocalDateTime timestamp, int deviceCount, List<NodeInfo> nodes) {
+        return new MqttService.ScanSummary(NETWORK_ID, timestamp, deviceCount, 1000, 20, nodes);
+    }
+
+    private static NodeInfo node(String ip, String name, int sent, int received, Long rttUs) {
+        var node = new NodeInfo();
+        node.setIp(ip);
+        node.setName(name);
+        node.setSent(sent);
+        node.setReceived(received);
+        node.setRttUs(rttUs);
+        return node;
+    }
+}
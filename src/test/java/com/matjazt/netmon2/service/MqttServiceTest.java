@@ -0,0 +1,405 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.matjazt.netmon2.config.MultiPartScanProperties;
+import com.matjazt.netmon2.entity.DeviceEntity;
+import com.matjazt.netmon2.entity.DeviceOperationMode;
+import com.matjazt.netmon2.entity.NetworkEntity;
+import com.matjazt.netmon2.repository.AlertRepository;
+import com.matjazt.netmon2.repository.DeviceRepository;
+import com.matjazt.netmon2.repository.NetworkRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the scan processing of {@link MqttService} with mocked repositories: reassembly of
+ * multi-part scans, missed scans before a device goes offline, and the in-memory state that is
+ * only kept for committed transactions.
+ */
+class MqttServiceTest {
+
+    private static final long NETWORK_ID = 1;
+    private static final String TOPIC = "network/home/scan";
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 10, 12, 0);
+
+    private final DeviceRepository deviceRepository = mock(DeviceRepository.class);
+    private final NetworkRepository networkRepository = mock(NetworkRepository.class);
+    private final StatusHistoryRecorder statusHistoryRecorder = mock(StatusHistoryRecorder.class);
+    private final NetworkRegistry networkRegistry = mock(NetworkRegistry.class);
+    private final ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+    private final PresenceBitmapService presenceBitmapService = mock(PresenceBitmapService.class);
+    private final MultiPartScanProperties multiPartScanProperties = new MultiPartScanProperties();
+
+    private final NetworkEntity network = new NetworkEntity("home");
+
+    /** Devices of the network in the mocked database. */
+    private final List<DeviceEntity> devices = new ArrayList<>();
+
+    private MqttService service;
+
+    @BeforeEach
+    void createService() {
+        network.setId(NETWORK_ID);
+        network.setLastSeen(START.minusMinutes(1));
+        when(networkRegistry.resolveTopic(TOPIC))
+                .thenReturn(
+                        new NetworkRegistry.NetworkInfo(
+                                NETWORK_ID,
+                                "home",
+                                TOPIC,
+                                600,
+                                null,
+                                NetworkConfiguration.DEFAULT));
+        when(networkRegistry.get(NETWORK_ID)).thenReturn(Optional.empty());
+        when(networkRepository.findById(NETWORK_ID)).thenReturn(Optional.of(network));
+        when(clusterCoordinator.isOwner(anyLong())).thenReturn(true);
+        when(clusterCoordinator.tryLockIngestion(anyLong())).thenReturn(true);
+        when(deviceRepository.findByNetwork_Id(NETWORK_ID))
+                .thenAnswer(invocation -> List.copyOf(devices));
+        when(deviceRepository.findByNetwork_IdAndMacAddressIn(eq(NETWORK_ID), anyCollection()))
+                .thenAnswer(
+                        invocation -> {
+                            Collection<String> macs = invocation.getArgument(1);
+                            return devices.stream()
+                                    .filter(device -> macs.contains(device.getMacAddress()))
+                                    .toList();
+                        });
+        when(deviceRepository.save(any(DeviceEntity.class)))
+                .thenAnswer(
+                        invocation -> {
+                            DeviceEntity device = invocation.getArgument(0);
+                            if (device.getId() == null) {
+                                device.setId(devices.size() + 1L);
+                                devices.add(device);
+                            }
+                            return device;
+                        });
+
+        service =
+                new MqttService(
+                        deviceRepository,
+                        networkRepository,
+                        statusHistoryRecorder,
+                        mock(AlertRepository.class),
+                        mock(AlerterService.class),
+                        mock(FlapDetector.class),
+                        networkRegistry,
+                        mock(ScanIntervalTracker.class),
+                        clusterCoordinator,
+                        presenceBitmapService,
+                        multiPartScanProperties,
+                        mock(ApplicationEventPublisher.class));
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void partsAreReassembledInAnyOrder() {
+        var a = device(1);
+        var b = device(2);
+        var gone = device(3);
+
+        assertNull(process(part("s1", START, 2, 3, a)));
+        assertNull(process(part("s1", START, 0, 3, b)));
+        var summary = process(part("s1", START, 1, 3));
+
+        assertNotNull(summary);
+        assertEquals(START, summary.timestamp());
+        assertEquals(2, summary.deviceCount());
+        verify(presenceBitmapService).recordScan(NETWORK_ID, START, Set.of(1L, 2L));
+        // only the device that wasn't in any of the parts went offline
+        verify(statusHistoryRecorder).recordStatusChange(network, gone, false, START);
+        verify(statusHistoryRecorder, times(1))
+                .recordStatusChange(any(), any(), eq(false), any());
+        assertEquals(START, network.getLastSeen());
+    }
+
+    @Test
+    void payloadSizesAreAddedUpOverTheParts() {
+        var first = part("s1", START, 0, 2, device(1));
+        var second = part("s1", START, 1, 2);
+
+        process(first);
+        var summary = process(second);
+
+        assertEquals(
+                first.getPayload().length + second.getPayload().length, summary.payloadBytes());
+    }
+
+    @Test
+    void duplicatePartsAreIgnored() {
+        var a = device(1);
+
+        assertNull(process(part("s1", START, 0, 2, a)));
+        assertNull(process(part("s1", START, 0, 2, a)));
+        verify(deviceRepository, times(1))
+                .findByNetwork_IdAndMacAddressIn(eq(NETWORK_ID), anyCollection());
+
+        assertNotNull(process(part("s1", START, 1, 2)));
+        // a part delivered again after the scan was completed
+        assertNull(process(part("s1", START, 1, 2)));
+        verify(presenceBitmapService, times(1)).recordScan(anyLong(), any(), any());
+    }
+
+    @Test
+    void partsWithAnotherPartCountAreRejected() {
+        var a = device(1);
+
+        assertNull(process(part("s1", START, 0, 2, a)));
+        assertNull(process(part("s1", START, 1, 3)));
+        verify(presenceBitmapService, never()).recordScan(anyLong(), any(), any());
+
+        // the part with the right count still completes the scan
+        assertNotNull(process(part("s1", START, 1, 2)));
+    }
+
+    @Test
+    void newerScanCompletesTheIncompleteOne() {
+        var a = device(1);
+        var b = device(2);
+        var next = START.plusMinutes(5);
+
+        assertNull(process(part("s1", START, 0, 2, a)));
+        var summary = process(part("s2", next, 0, 1, a, b));
+
+        // the missing part of s1 isn't coming anymore, so s1 was completed with what it had
+        verify(presenceBitmapService).recordScan(NETWORK_ID, START, Set.of(1L));
+        verify(statusHistoryRecorder).recordStatusChange(network, b, false, START);
+        assertEquals(next, summary.timestamp());
+        assertEquals(2, summary.deviceCount());
+
+        // late parts of the superseded scan are ignored
+        assertNull(process(part("s1", START, 1, 2, b)));
+        verify(presenceBitmapService, times(2)).recordScan(anyLong(), any(), any());
+    }
+
+    @Test
+    void timedOutScansAreCompletedWithTheirParts() {
+        var a = device(1);
+        var gone = device(2);
+        multiPartScanProperties.setTimeoutSeconds(0);
+
+        assertNull(process(part("s1", START, 1, 3, a)));
+        assertEquals(List.of(NETWORK_ID), service.getTimedOutScans());
+
+        var summary = service.completeTimedOutScan(NETWORK_ID);
+        assertEquals(1, summary.deviceCount());
+        verify(statusHistoryRecorder).recordStatusChange(network, gone, false, START);
+        assertEquals(List.of(), service.getTimedOutScans());
+        assertNull(service.completeTimedOutScan(NETWORK_ID));
+
+        // the missing parts arrive too late
+        assertNull(process(part("s1", START, 0, 3, gone)));
+        verify(presenceBitmapService, times(1)).recordScan(anyLong(), any(), any());
+    }
+
+    @Test
+    void partOfARolledBackTransactionIsProcessedAgain() {
+        var a = device(1);
+        var b = device(2);
+        multiPartScanProperties.setTimeoutSeconds(0);
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertNull(process(part("s1", START, 0, 2, a)));
+        // rollback: the synchronizations are dropped without afterCommit
+        TransactionSynchronizationManager.clearSynchronization();
+        assertEquals(List.of(), service.getTimedOutScans());
+
+        // the broker redelivers the part
+        assertNull(process(part("s1", START, 0, 2, a)));
+        verify(deviceRepository, times(2))
+                .findByNetwork_IdAndMacAddressIn(eq(NETWORK_ID), anyCollection());
+        var summary = process(part("s1", START, 1, 2, b));
+        assertEquals(2, summary.deviceCount());
+    }
+
+    @Test
+    void partsOfCommittedTransactionsAreKept() {
+        var a = device(1);
+
+        assertNull(inTransaction(part("s1", START, 0, 2, a)));
+        assertNotNull(inTransaction(part("s1", START, 1, 2)));
+
+        assertNull(process(part("s1", START, 1, 2)));
+        verify(presenceBitmapService, times(1)).recordScan(anyLong(), any(), any());
+    }
+
+    @Test
+    void devicesGoOfflineAfterEnoughMissedScans() {
+        missedScansBeforeOffline(3);
+        var a = device(1);
+        var b = device(2);
+
+        // two misses are tolerated
+        process(scan(START, a));
+        process(scan(START.plusMinutes(1), a));
+        assertTrue(b.getOnline());
+        verify(statusHistoryRecorder, never()).recordStatusChange(any(), any(), eq(false), any());
+
+        // the third one writes the offline row, timestamped at the first miss
+        process(scan(START.plusMinutes(2), a));
+        assertFalse(b.getOnline());
+        verify(statusHistoryRecorder).recordStatusChange(network, b, false, START);
+    }
+
+    @Test
+    void missedScansAreResetWhenTheDeviceIsBack() {
+        missedScansBeforeOffline(3);
+        var a = device(1);
+        var b = device(2);
+
+        process(scan(START, a));
+        process(scan(START.plusMinutes(1), a));
+        process(scan(START.plusMinutes(2), a, b));
+        process(scan(START.plusMinutes(3), a));
+        process(scan(START.plusMinutes(4), a));
+        assertTrue(b.getOnline());
+
+        process(scan(START.plusMinutes(5), a));
+        verify(statusHistoryRecorder).recordStatusChange(network, b, false, START.plusMinutes(3));
+    }
+
+    @Test
+    void rolledBackScansAreNotCounted() {
+        missedScansBeforeOffline(2);
+        var a = device(1);
+        var b = device(2);
+
+        TransactionSynchronizationManager.initSynchronization();
+        process(scan(START, a));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        inTransaction(scan(START.plusMinutes(1), a));
+        assertTrue(b.getOnline());
+        inTransaction(scan(START.plusMinutes(2), a));
+        verify(statusHistoryRecorder).recordStatusChange(network, b, false, START.plusMinutes(1));
+    }
+
+    private void missedScansBeforeOffline(int missedScans) {
+        when(networkRegistry.resolveTopic(TOPIC))
+                .thenReturn(
+                        new NetworkRegistry.NetworkInfo(
+                                NETWORK_ID,
+                                "home",
+                                TOPIC,
+                                600,
+                                null,
+                                NetworkConfiguration.parse(
+                                        "home",
+                                        "{\"missedScansBeforeOffline\": " + missedScans + "}")));
+    }
+
+    private MqttService.ScanSummary process(Message<byte[]> message) {
+        return service.processMqttMessage(message);
+    }
+
+    /** Processes a message in a transaction that commits. */
+    private MqttService.ScanSummary inTransaction(Message<byte[]> message) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            var summary = process(message);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(TransactionSynchronization::afterCommit);
+            return summary;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /** Adds an online, authorized device to the mocked database. */
+    private DeviceEntity device(long id) {
+        var existing = devices.stream().filter(d -> d.getId() == id).findFirst();
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        var device = new DeviceEntity();
+        device.setId(id);
+        device.setNetwork(network);
+        device.setMacAddress(mac(id));
+        device.setDeviceOperationMode(DeviceOperationMode.AUTHORIZED);
+        device.setOnline(true);
+        device.setFirstSeen(START.minusDays(1));
+        device.setLastSeen(START.minusMinutes(1));
+        devices.add(device);
+        return device;
+    }
+
+    private static Message<byte[]> scan(LocalDateTime timestamp, DeviceEntity... devices) {
+        return message(
+                String.format(
+                        "{\"hostname\":\"scanner\",\"timestamp\":\"%s\",\"devices\":[%s]}",
+                        timestamp.toInstant(ZoneOffset.UTC), json(devices)));
+    }
+
+    private static Message<byte[]> part(
+            String scanId, LocalDateTime timestamp, int part, int parts, DeviceEntity... devices) {
+        return message(
+                String.format(
+                        "{\"hostname\":\"scanner\",\"timestamp\":\"%s\",\"scanId\":\"%s\","
+                                + "\"part\":%d,\"parts\":%d,\"devices\":[%s]}",
+                        timestamp.toInstant(ZoneOffset.UTC),
+                        scanId,
+                        part,
+                        parts,
+                        json(devices)));
+    }
+
+    private static Message<byte[]> message(String json) {
+        return MessageBuilder.withPayload(json.getBytes(StandardCharsets.UTF_8))
+                .setHeader(MqttHeaders.RECEIVED_TOPIC, TOPIC)
+                .build();
+    }
+
+    private static String json(DeviceEntity... devices) {
+        return List.of(devices).stream()
+                .map(
+                        device ->
+                                "{\"ip\":\"10.0.0."
+                                        + device.getId()
+                                        + "\",\"mac\":\""
+                                        + device.getMacAddress()
+                                        + "\"}")
+                .collect(Collectors.joining(","));
+    }
+
+    private static String mac(long id) {
+        return String.format("AA:00:00:00:00:%02X", id);
+    }
+}
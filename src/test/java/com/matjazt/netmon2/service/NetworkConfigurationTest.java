@@ -0,0 +1,164 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/** Table-driven tests of parsing and validating {@link NetworkConfiguration}. */
+class NetworkConfigurationTest {
+
+    private static final String MAC = "AA:BB:CC:DD:EE:01";
+    private static final String OTHER_MAC = "AA:BB:CC:DD:EE:02";
+
+    @Test
+    void invalidJsonGivesTheDefaults() {
+        String[] cases = {
+            null,
+            "",
+            "null",
+            "{",
+            "[]",
+            "\"text\"",
+            "{\"missedScansBeforeOffline\": \"three\"}",
+            "{\"devices\": [\"AA:BB:CC:DD:EE:01\"]}",
+        };
+
+        for (var json : cases) {
+            assertSame(NetworkConfiguration.DEFAULT, parse(json), json);
+        }
+    }
+
+    @Test
+    void networkSettings() {
+        Object[][] cases = {
+            // json, missed scans, retention months, closure delay for an alerting delay of 300 s
+            {"{}", 1, 0, 270},
+            {"{\"unknown\": 5}", 1, 0, 270},
+            {
+                "{\"missedScansBeforeOffline\": 3, \"historyRetentionMonths\": 6,"
+                        + " \"closureDelaySeconds\": 60}",
+                3,
+                6,
+                60
+            },
+            {"{\"closureDelaySeconds\": 0}", 1, 0, 0},
+            // zero and negative values are replaced by the defaults
+            {"{\"missedScansBeforeOffline\": 0}", 1, 0, 270},
+            {"{\"missedScansBeforeOffline\": -2}", 1, 0, 270},
+            {"{\"historyRetentionMonths\": -1}", 1, 0, 270},
+            {"{\"closureDelaySeconds\": -60}", 1, 0, 270},
+        };
+
+        for (var c : cases) {
+            var configuration = parse((String) c[0]);
+            assertEquals(c[1], configuration.getMissedScansBeforeOffline(), (String) c[0]);
+            assertEquals(c[2], configuration.getHistoryRetentionMonths(), (String) c[0]);
+            assertEquals(c[3], configuration.getClosureDelaySeconds(300), (String) c[0]);
+        }
+    }
+
+    @Test
+    void defaultClosureDelayIsShorterThanTheAlertingDelay() {
+        int[][] cases = {
+            // alerting delay, closure delay
+            {0, 0}, {5, 5}, {100, 90}, {300, 270}, {600, 570},
+        };
+
+        for (var c : cases) {
+            assertEquals(c[1], NetworkConfiguration.DEFAULT.getClosureDelaySeconds(c[0]));
+        }
+    }
+
+    @Test
+    void deviceSettingsOverrideTheNetworkDefaults() {
+        var configuration =
+                parse(
+                        "{\"missedScansBeforeOffline\": 2, \"devices\": {"
+                                + "\"AA:BB:CC:DD:EE:01\": {\"missedScansBeforeOffline\": 5,"
+                                + " \"alertingDelaySeconds\": 0},"
+                                + "\"AA:BB:CC:DD:EE:02\": {}}}");
+
+        Object[][] cases = {
+            // MAC address, missed scans, alerting delay for a network delay of 300 s
+            {MAC, 5, 0},
+            // an entry without settings uses the network's
+            {OTHER_MAC, 2, 300},
+            // a device without an entry too
+            {"AA:BB:CC:DD:EE:03", 2, 300},
+            {null, 2, 300},
+        };
+
+        for (var c : cases) {
+            var mac = (String) c[0];
+            assertEquals(c[1], configuration.getMissedScansBeforeOffline(mac), mac);
+            assertEquals(c[2], configuration.getAlertingDelaySeconds(mac, 300), mac);
+        }
+    }
+
+    @Test
+    void invalidDeviceSettingsAreIgnored() {
+        var configuration =
+                parse(
+                        "{\"missedScansBeforeOffline\": 2, \"devices\": {"
+                                + "\"AA:BB:CC:DD:EE:01\": {\"missedScansBeforeOffline\": 0,"
+                                + " \"alertingDelaySeconds\": -1},"
+                                + "\"AA:BB:CC:DD:EE:02\": {\"missedScansBeforeOffline\": -3,"
+                                + " \"alertingDelaySeconds\": 60}}}");
+
+        assertEquals(2, configuration.getMissedScansBeforeOffline(MAC));
+        assertEquals(300, configuration.getAlertingDelaySeconds(MAC, 300));
+        assertEquals(2, configuration.getMissedScansBeforeOffline(OTHER_MAC));
+        assertEquals(60, configuration.getAlertingDelaySeconds(OTHER_MAC, 300));
+    }
+
+    @Test
+    void invalidMacAddressKeysAreIgnored() {
+        String[] cases = {
+            "",
+            "router",
+            "AA:BB:CC:DD:EE",
+            "AA:BB:CC:DD:EE:01:02",
+            "AA:BB:CC:DD:EE:0G",
+            "AABBCCDDEE01",
+            "AA.BB.CC.DD.EE.01",
+        };
+
+        for (var key : cases) {
+            var configuration =
+                    parse(
+                            "{\"devices\": {\""
+                                    + key
+                                    + "\": {\"missedScansBeforeOffline\": 4},"
+                                    + " \"AA:BB:CC:DD:EE:02\":"
+                                    + " {\"missedScansBeforeOffline\": 3}}}");
+
+            // the invalid entry is dropped, the rest of the configuration is kept
+            assertEquals(1, configuration.getMissedScansBeforeOffline(key), key);
+            assertEquals(1, configuration.getMissedScansBeforeOffline(MAC), key);
+            assertEquals(3, configuration.getMissedScansBeforeOffline(OTHER_MAC), key);
+        }
+
+        var configuration = parse("{\"devices\": {\"" + MAC + "\": null}}");
+        assertEquals(1, configuration.getMissedScansBeforeOffline(MAC));
+    }
+
+    @Test
+    void macAddressesAreNormalized() {
+        String[] keys = {
+            "AA:BB:CC:DD:EE:01", "aa:bb:cc:dd:ee:01", "AA-bb-CC-dd-EE-01", " aa-BB-cc-DD-ee-01 ",
+        };
+
+        for (var key : keys) {
+            var configuration =
+                    parse("{\"devices\": {\"" + key + "\": {\"missedScansBeforeOffline\": 4}}}");
+            for (var mac : keys) {
+                assertEquals(4, configuration.getMissedScansBeforeOffline(mac), key + " " + mac);
+            }
+        }
+    }
+
+    private static NetworkConfiguration parse(String json) {
+        return NetworkConfiguration.parse("home", json);
+    }
+}
@@ -0,0 +1,250 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.matjazt.netmon2.config.PresenceProperties;
+import com.matjazt.tools.RunLengthBitmap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests {@link PresenceBitmapService} with a mocked database: bits recorded in memory, merging them
+ * into stored bitmaps on flush, and windows that span midnight.
+ */
+class PresenceBitmapServiceTest {
+
+    private static final long NETWORK_ID = 3;
+
+    private final PresenceProperties properties = new PresenceProperties();
+    private final ClusterCoordinator clusterCoordinator = mock(ClusterCoordinator.class);
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private PresenceBitmapService service;
+
+    @BeforeEach
+    void createService() {
+        // one-minute slots
+        properties.setSlotSeconds(60);
+        when(clusterCoordinator.isOwner(NETWORK_ID)).thenReturn(true);
+        service =
+                new PresenceBitmapService(
+                        properties,
+                        clusterCoordinator,
+                        jdbcTemplate,
+                        mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void recordedScansAreCountedBeforeTheyAreWritten() {
+        var day = LocalDate.of(2024, 3, 10);
+        service.recordScan(NETWORK_ID, day.atTime(10, 0, 5), List.of(1L, 2L));
+        service.recordScan(NETWORK_ID, day.atTime(10, 1), List.of(1L));
+        // same slot as the first scan
+        service.recordScan(NETWORK_ID, day.atTime(10, 0, 50), List.of(2L));
+        service.recordScan(NETWORK_ID, day.atTime(10, 5), List.of());
+
+        var presence = service.getPresence(NETWORK_ID, null, day.atTime(10, 0), day.atTime(11, 0));
+        assertEquals(2, presence.size());
+        var first = presence.get(0);
+        assertEquals(1L, first.deviceId());
+        assertEquals(3, first.scans());
+        assertEquals(2, first.scansPresent());
+        assertEquals(day.atTime(10, 0), first.firstSeen());
+        assertEquals(day.atTime(10, 1), first.lastSeen());
+        assertEquals(1, presence.get(1).scansPresent());
+
+        // a window that ends before the last scans
+        presence = service.getPresence(NETWORK_ID, 1L, day.atTime(10, 0), day.atTime(10, 1));
+        assertEquals(1, presence.get(0).scans());
+        assertEquals(1.0, presence.get(0).availability());
+    }
+
+    @Test
+    void windowsSpanningMidnightCombineBothDays() {
+        var day = LocalDate.of(2024, 3, 10);
+        service.recordScan(NETWORK_ID, day.atTime(23, 58), List.of(1L));
+        service.recordScan(NETWORK_ID, day.atTime(23, 59, 59), List.of(1L));
+        service.recordScan(NETWORK_ID, day.plusDays(1).atStartOfDay(), List.of());
+        service.recordScan(NETWORK_ID, day.plusDays(1).atTime(0, 1), List.of(1L));
+
+        var presence =
+                service.getPresence(
+                        NETWORK_ID, 1L, day.atTime(23, 0), day.plusDays(1).atTime(1, 0));
+        var device = presence.get(0);
+        assertEquals(4, device.scans());
+        assertEquals(3, device.scansPresent());
+        assertEquals(day.atTime(23, 58), device.firstSeen());
+        assertEquals(day.plusDays(1).atTime(0, 1), device.lastSeen());
+
+        // the last slot of a day belongs to that day only
+        presence =
+                service.getPresence(
+                        NETWORK_ID, 1L, day.atTime(23, 59), day.plusDays(1).atStartOfDay());
+        assertEquals(1, presence.get(0).scans());
+        assertEquals(day.atTime(23, 59), presence.get(0).lastSeen());
+
+        var occupancy =
+                service.getOccupancy(NETWORK_ID, day.atTime(23, 0), day.plusDays(1).atTime(1, 0));
+        assertEquals(2, occupancy.size());
+        assertEquals(day.atTime(23, 0), occupancy.get(0).hourStart());
+        assertEquals(day.plusDays(1).atStartOfDay(), occupancy.get(1).hourStart());
+    }
+
+    @Test
+    void flushMergesBitsIntoStoredBitmaps() throws Exception {
+        var today = LocalDate.now(ZoneOffset.UTC);
+        // stored: scans in slots 0 and 1, device 1 in slot 0, device 2 in slot 1
+        when(jdbcTemplate.queryForObject(
+                        contains("FOR UPDATE"),
+                        any(SqlParameterSource.class),
+                        any(RowMapper.class)))
+                .thenAnswer(
+                        invocation ->
+                                invocation
+                                        .<RowMapper<BitSet>>getArgument(2)
+                                        .mapRow(row(60, encode(0, 1)), 0));
+        doAnswer(
+                        invocation -> {
+                            RowCallbackHandler handler = invocation.getArgument(2);
+                            handler.processRow(deviceRow(1, 60, encode(0)));
+                            handler.processRow(deviceRow(2, 60, encode(1)));
+                            return null;
+                        })
+                .when(jdbcTemplate)
+                .query(
+                        contains("FROM device_presence_bitmap"),
+                        any(SqlParameterSource.class),
+                        any(RowCallbackHandler.class));
+
+        service.recordScan(NETWORK_ID, today.atTime(0, 2), List.of(1L, 3L));
+        service.flush();
+
+        var scans = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(jdbcTemplate).update(contains("UPDATE network_scan_bitmap"), scans.capture());
+        assertEquals(bits(0, 1, 2), decode(scans.getValue()));
+
+        var devices = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(contains("device_presence_bitmap"), devices.capture());
+        // device 2 wasn't in the scan, so its row is left alone
+        assertEquals(Set.of(1L, 3L), Set.of(deviceIds(devices.getValue())));
+        for (var device : devices.getValue()) {
+            long deviceId = (Long) device.getValue("deviceId");
+            var expected = deviceId == 1 ? bits(0, 2) : bits(2);
+            assertEquals(expected, decode(device), "device " + deviceId);
+        }
+
+        // written bits are no longer in memory
+        reset(jdbcTemplate);
+        var presence =
+                service.getPresence(NETWORK_ID, 3L, today.atStartOfDay(), today.atTime(1, 0));
+        assertEquals(0, presence.get(0).scans());
+    }
+
+    @Test
+    void bitsOfAFailedFlushAreKept() {
+        var today = LocalDate.now(ZoneOffset.UTC);
+        when(jdbcTemplate.update(anyString(), any(SqlParameterSource.class)))
+                .thenThrow(new IllegalStateException("database is down"));
+
+        service.recordScan(NETWORK_ID, today.atTime(0, 2), List.of(1L));
+        service.flush();
+        service.recordScan(NETWORK_ID, today.atTime(0, 3), List.of(1L));
+
+        var presence =
+                service.getPresence(NETWORK_ID, 1L, today.atStartOfDay(), today.atTime(1, 0));
+        assertEquals(2, presence.get(0).scans());
+        assertEquals(2, presence.get(0).scansPresent());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    @Test
+    void storedBitmapsWithAnotherSlotSizeAreRescaled() throws Exception {
+        var day = LocalDate.of(2024, 3, 10);
+        // stored with 5-minute slots: a scan in the slot from 00:05 and one from 00:15
+        doAnswer(
+                        invocation -> {
+                            RowCallbackHandler handler = invocation.getArgument(2);
+                            var rs = mock(ResultSet.class);
+                            when(rs.getObject(1, LocalDate.class)).thenReturn(day);
+                            when(rs.getInt(2)).thenReturn(300);
+                            when(rs.getBytes(3)).thenReturn(encode(1, 3));
+                            handler.processRow(rs);
+                            return null;
+                        })
+                .when(jdbcTemplate)
+                .query(
+                        contains("FROM network_scan_bitmap"),
+                        any(SqlParameterSource.class),
+                        any(RowCallbackHandler.class));
+
+        // the bits of 5-minute slots cover five 1-minute slots each
+        var presence =
+                service.getPresence(NETWORK_ID, 1L, day.atStartOfDay(), day.atTime(1, 0));
+        assertEquals(10, presence.get(0).scans());
+        presence = service.getPresence(NETWORK_ID, 1L, day.atTime(0, 7), day.atTime(0, 16));
+        assertEquals(4, presence.get(0).scans());
+    }
+
+    private static ResultSet row(int slotSeconds, byte[] slots) throws Exception {
+        var rs = mock(ResultSet.class);
+        when(rs.getInt(1)).thenReturn(slotSeconds);
+        when(rs.getBytes(2)).thenReturn(slots);
+        return rs;
+    }
+
+    private static ResultSet deviceRow(long deviceId, int slotSeconds, byte[] slots)
+            throws Exception {
+        var rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(deviceId);
+        when(rs.getInt(2)).thenReturn(slotSeconds);
+        when(rs.getBytes(3)).thenReturn(slots);
+        return rs;
+    }
+
+    private static Long[] deviceIds(SqlParameterSource[] rows) {
+        var result = new Long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            result[i] = (Long) rows[i].getValue("deviceId");
+        }
+        return result;
+    }
+
+    private static BitSet decode(SqlParameterSource params) {
+        return RunLengthBitmap.decode((byte[]) ((MapSqlParameterSource) params).getValue("slots"));
+    }
+
+    private static byte[] encode(int... slots) {
+        return RunLengthBitmap.encode(bits(slots));
+    }
+
+    private static BitSet bits(int... slots) {
+        var bits = new BitSet();
+        for (int slot : slots) {
+            bits.set(slot);
+        }
+        return bits;
+    }
+}
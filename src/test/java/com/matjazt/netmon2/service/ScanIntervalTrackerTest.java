@@ -0,0 +1,216 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.matjazt.netmon2.config.ScanIntervalProperties;
+import com.matjazt.netmon2.entity.NetworkEntity;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Tests {@link ScanIntervalTracker} with a fake scheduler that keeps the scheduled deadline checks
+ * instead of running them.
+ */
+class ScanIntervalTrackerTest {
+
+    private static final long NETWORK_ID = 5;
+
+    private final ScanIntervalProperties properties = new ScanIntervalProperties();
+    private final TaskScheduler taskScheduler = mock(TaskScheduler.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    /** Deadline checks handed to the scheduler, in order. */
+    private final List<Deadline> deadlines = new ArrayList<>();
+
+    /** Scans are in the near future, so their deadlines are never in the past. */
+    private final LocalDateTime start =
+            LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS).plusMinutes(1);
+
+    private final NetworkEntity network = new NetworkEntity("home");
+
+    @BeforeEach
+    void fakeScheduler() {
+        when(taskScheduler.schedule(any(Runnable.class), any(Instant.class)))
+                .thenAnswer(
+                        invocation -> {
+                            var deadline =
+                                    new Deadline(
+                                            invocation.getArgument(0),
+                                            invocation.getArgument(1),
+                                            mock(ScheduledFuture.class));
+                            deadlines.add(deadline);
+                            return deadline.future();
+                        });
+        network.setId(NETWORK_ID);
+        network.setAlertingDelay(600);
+        network.setLastSeen(start);
+    }
+
+    @AfterEach
+    void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void averageAndVarianceFollowTheGaps() {
+        var tracker = tracker();
+
+        scan(tracker, 60);
+        scan(tracker, 120);
+        scan(tracker, 150);
+
+        // gaps of 60, 60 and 30 s with a smoothing of 1/8
+        var statistics = tracker.getStatistics(NETWORK_ID, 600);
+        assertEquals(3, statistics.samples());
+        assertEquals(56.25, statistics.expectedIntervalSeconds(), 1e-9);
+        assertEquals(Math.sqrt(0.875 * 0.125 * 30 * 30), statistics.jitterSeconds(), 1e-9);
+        assertEquals(start.plusSeconds(150), statistics.lastScan());
+        // the rounded statistics are stored on the network
+        assertEquals(56, network.getReportingIntervalEma());
+        assertEquals(10, network.getReportingIntervalJitter());
+    }
+
+    @Test
+    void outagesAreNotLearned() {
+        var tracker = tracker();
+
+        scan(tracker, 60);
+        scan(tracker, 60 + 601);
+        // a scan that isn't newer than the previous one
+        scan(tracker, 60 + 601);
+
+        var statistics = tracker.getStatistics(NETWORK_ID, 600);
+        assertEquals(1, statistics.samples());
+        assertEquals(60.0, statistics.expectedIntervalSeconds());
+        assertEquals(start.plusSeconds(661), statistics.lastScan());
+    }
+
+    @Test
+    void staticDelayIsUsedUntilEnoughGapsAreSeen() {
+        var tracker = tracker();
+
+        for (int i = 1; i < properties.getMinSamples(); i++) {
+            scan(tracker, i * 60);
+        }
+        assertEquals(600, tracker.getAlertingDelay(NETWORK_ID, 600));
+        assertFalse(tracker.getStatistics(NETWORK_ID, 600).adaptive());
+        assertTrue(deadlines.isEmpty());
+
+        scan(tracker, properties.getMinSamples() * 60);
+        // two intervals plus the minimum margin
+        assertEquals(130, tracker.getAlertingDelay(NETWORK_ID, 600));
+        assertEquals(1, deadlines.size());
+    }
+
+    @Test
+    void statisticsAreRestoredFromTheNetwork() {
+        network.setReportingIntervalEma(60);
+        network.setReportingIntervalJitter(5);
+        var tracker = tracker();
+
+        assertEquals(600, tracker.getAlertingDelay(NETWORK_ID, 600));
+        scan(tracker, 60);
+
+        var statistics = tracker.getStatistics(NETWORK_ID, 600);
+        assertEquals(properties.getMinSamples() + 1, statistics.samples());
+        assertEquals(60.0, statistics.expectedIntervalSeconds());
+        // 2 * 60 s plus 4 standard deviations of sqrt(0.875 * 25) s
+        assertEquals(139, tracker.getAlertingDelay(NETWORK_ID, 600));
+        assertTrue(statistics.adaptive());
+    }
+
+    @Test
+    void delayIsCappedAtTheStaticDelay() {
+        network.setReportingIntervalEma(60);
+        network.setAlertingDelay(100);
+        var tracker = tracker();
+
+        scan(tracker, 60);
+
+        assertEquals(100, tracker.getAlertingDelay(NETWORK_ID, 100));
+        // the periodic alert sweep covers the static delay, so no deadline check is needed
+        assertTrue(deadlines.isEmpty());
+
+        properties.setAdaptiveAlerting(false);
+        assertEquals(600, tracker.getAlertingDelay(NETWORK_ID, 600));
+    }
+
+    @Test
+    void overdueScanIsReportedAtTheDeadline() {
+        network.setReportingIntervalEma(60);
+        var tracker = tracker();
+
+        scan(tracker, 60);
+        var first = deadlines.get(0);
+        // the adaptive delay of 130 s, plus a second of slack
+        assertEquals(start.plusSeconds(60 + 131).toInstant(ZoneOffset.UTC), first.time());
+
+        scan(tracker, 120);
+        verify(first.future()).cancel(false);
+        assertEquals(2, deadlines.size());
+
+        deadlines.get(1).task().run();
+        verify(eventPublisher).publishEvent(eq(new NetworkScanOverdueEvent(NETWORK_ID)));
+    }
+
+    @Test
+    void rolledBackScansAreNotLearned() {
+        network.setReportingIntervalEma(60);
+        var tracker = tracker();
+
+        TransactionSynchronizationManager.initSynchronization();
+        tracker.recordScan(network, start.plusSeconds(60));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        var statistics = tracker.getStatistics(NETWORK_ID, 600);
+        assertEquals(properties.getMinSamples(), statistics.samples());
+        assertNull(statistics.lastScan());
+        assertTrue(deadlines.isEmpty());
+    }
+
+    @Test
+    void invalidPropertiesAreRejected() {
+        properties.setSmoothing(0);
+        assertThrows(IllegalArgumentException.class, this::tracker);
+        properties.setSmoothing(0.5);
+        properties.setMissedScansBeforeDown(0);
+        assertThrows(IllegalArgumentException.class, this::tracker);
+    }
+
+    private ScanIntervalTracker tracker() {
+        return new ScanIntervalTracker(properties, taskScheduler, eventPublisher);
+    }
+
+    /** Records a scan the given number of seconds after the start, as {@link MqttService} does. */
+    private void scan(ScanIntervalTracker tracker, long seconds) {
+        var timestamp = start.plusSeconds(seconds);
+        tracker.recordScan(network, timestamp);
+        network.setLastSeen(timestamp);
+    }
+
+    private record Deadline(Runnable task, Instant time, ScheduledFuture<?> future) {}
+}
@@ -0,0 +1,148 @@
+package com.matjazt.netmon2.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.matjazt.netmon2.dto.response.UptimeResponseDto;
+import com.matjazt.netmon2.repository.StatusTransition;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Table-driven tests of {@link UptimeCalculator} over a ten-hour window. */
+class UptimeCalculatorTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2026, 3, 10, 0, 0);
+    private static final LocalDateTime TO = FROM.plusHours(10);
+    private static final long HOUR = 3600;
+
+    @Test
+    void uptimeOfASingleDevice() {
+        Object[][] cases = {
+            // description, transitions (online, minutes after FROM), expected result
+            {
+                "online for the whole window",
+                new Object[] {true, -60},
+                new Expected(10 * HOUR, 10 * HOUR, 1.0, 0, null, null)
+            },
+            {
+                "offline for the whole window",
+                new Object[] {false, -60},
+                new Expected(10 * HOUR, 0, 0.0, 0, null, 10 * HOUR)
+            },
+            {
+                "offline when the window starts",
+                new Object[] {false, -60, true, 120},
+                new Expected(10 * HOUR, 8 * HOUR, 0.8, 0, null, 2 * HOUR)
+            },
+            {
+                "went offline exactly at the window start",
+                new Object[] {true, -60, false, 0, true, 60},
+                new Expected(10 * HOUR, 9 * HOUR, 0.9, 1, 9 * HOUR, HOUR)
+            },
+            {
+                "went offline exactly at the window end",
+                new Object[] {true, 0, false, 600},
+                new Expected(10 * HOUR, 10 * HOUR, 1.0, 0, null, null)
+            },
+            {
+                "outage that ended before the window",
+                new Object[] {false, -120, true, -60},
+                new Expected(10 * HOUR, 10 * HOUR, 1.0, 0, null, null)
+            },
+            {
+                "discovered within the window",
+                new Object[] {true, 300},
+                new Expected(5 * HOUR, 5 * HOUR, 1.0, 0, null, null)
+            },
+            {
+                "repeated states are merged",
+                new Object[] {true, 0, true, 60, false, 300, false, 400},
+                new Expected(10 * HOUR, 5 * HOUR, 0.5, 1, 5 * HOUR, 5 * HOUR)
+            },
+            {
+                "two failures",
+                new Object[] {true, 0, false, 120, true, 180, false, 420, true, 480},
+                new Expected(10 * HOUR, 8 * HOUR, 0.8, 2, 4 * HOUR, HOUR)
+            },
+            {
+                "transitions after the window are ignored",
+                new Object[] {true, 0, false, 700},
+                new Expected(10 * HOUR, 10 * HOUR, 1.0, 0, null, null)
+            },
+        };
+
+        for (var c : cases) {
+            var results = calculate(transitions(7, (Object[]) c[1]));
+            assertEquals(1, results.size(), (String) c[0]);
+            var result = results.get(0);
+            var expected = (Expected) c[2];
+            assertEquals(7L, result.deviceId(), (String) c[0]);
+            assertEquals(FROM, result.from(), (String) c[0]);
+            assertEquals(TO, result.to(), (String) c[0]);
+            assertEquals(expected.observed(), result.observedSeconds(), (String) c[0]);
+            assertEquals(expected.online(), result.onlineSeconds(), (String) c[0]);
+            assertEquals(expected.availability(), result.availability(), (String) c[0]);
+            assertEquals(expected.failures(), result.failures(), (String) c[0]);
+            assertEquals(expected.mtbf(), result.mtbfSeconds(), (String) c[0]);
+            assertEquals(expected.mttr(), result.mttrSeconds(), (String) c[0]);
+        }
+    }
+
+    @Test
+    void devicesAreReportedInStreamOrder() {
+        var transitions = new ArrayList<StatusTransition>();
+        transitions.addAll(transitions(2, true, -60));
+        transitions.addAll(transitions(1, true, 0, false, 300));
+        transitions.addAll(transitions(3, false, -60));
+
+        var results = calculate(transitions);
+
+        assertEquals(
+                List.of(2L, 1L, 3L), results.stream().map(UptimeResponseDto::deviceId).toList());
+        assertEquals(1, results.get(1).failures());
+        assertEquals(0, results.get(2).onlineSeconds());
+    }
+
+    @Test
+    void noTransitionsGiveNoResults() {
+        assertEquals(List.of(), calculate(List.of()));
+    }
+
+    @Test
+    void windowMustNotBeEmpty() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        UptimeCalculator.calculate(
+                                List.<StatusTransition>of().iterator(), TO, TO, result -> {}));
+    }
+
+    private static List<UptimeResponseDto> calculate(List<StatusTransition> transitions) {
+        var results = new ArrayList<UptimeResponseDto>();
+        UptimeCalculator.calculate(transitions.iterator(), FROM, TO, results::add);
+        return results;
+    }
+
+    /** Builds transitions from pairs of state and minutes after {@link #FROM}. */
+    private static List<StatusTransition> transitions(long deviceId, Object... pairs) {
+        var transitions = new ArrayList<StatusTransition>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            transitions.add(
+                    new Transition(
+                            deviceId,
+                            (Boolean) pairs[i],
+                            FROM.plusMinutes((Integer) pairs[i + 1])));
+        }
+        return transitions;
+    }
+
+    private record Transition(Long getDeviceId, Boolean getOnline, LocalDateTime getTimestamp)
+            implements StatusTransition {}
+
+    private record Expected(
+            long observed, long online, Double availability, int failures, Long mtbf, Long mttr) {}
+}
@@ -0,0 +1,176 @@
+package com.matjazt.netmon2.service.notification;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.matjazt.netmon2.config.NotifierProperties;
+import com.matjazt.netmon2.entity.AlertType;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import tools.jackson.databind.ObjectMapper;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/** Tests {@link WebhookNotifier} against a local stub HTTP server. */
+class WebhookNotifierTest {
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile int responseStatus = 200;
+    private volatile long responseDelayMillis = 0;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WebhookNotifier notifier;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(
+                "/hook",
+                exchange -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        requests.add(
+                                new String(
+                                        exchange.getRequestBody().readAllBytes(),
+                                        StandardCharsets.UTF_8));
+                        Thread.sleep(responseDelayMillis);
+                        exchange.sendResponseHeaders(responseStatus, -1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        inFlight.decrementAndGet();
+                        exchange.close();
+                    }
+                });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (notifier != null) {
+            notifier.destroy();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void fullBatchIsPostedAsSingleRequest() throws Exception {
+        notifier = createNotifier(1, 3, 60_000);
+
+        for (int i = 1; i <= 3; i++) {
+            notifier.send(notification(i));
+        }
+
+        awaitTrue(() -> requests.size() == 1);
+        var payload = new ObjectMapper().readTree(requests.get(0));
+        assertEquals(3, payload.get("alerts").size());
+        assertEquals(1, payload.get("alerts").get(0).get("alertId").asInt());
+        assertEquals("DEVICE_DOWN", payload.get("alerts").get(0).get("alertType").asString());
+        assertTrue(payload.get("text").asString().contains("subject 3"));
+        awaitTrue(() -> counter("netmon2.notifications.sent") == 3);
+        assertEquals(1, meterRegistry.get("netmon2.notifications.latency").timer().count());
+    }
+
+    @Test
+    void partialBatchIsPostedAfterLinger() {
+        notifier = createNotifier(1, 10, 50);
+
+        notifier.send(notification(1));
+        notifier.send(notification(2));
+
+        awaitTrue(() -> counter("netmon2.notifications.sent") == 2);
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void inFlightRequestsAreLimited() {
+        responseDelayMillis = 100;
+        notifier = createNotifier(2, 1, 0);
+
+        for (int i = 1; i <= 6; i++) {
+            notifier.send(notification(i));
+        }
+
+        awaitTrue(() -> counter("netmon2.notifications.sent") == 6);
+        assertEquals(6, requests.size());
+        assertTrue(maxInFlight.get() <= 2, "max in flight was " + maxInFlight.get());
+    }
+
+    @Test
+    void failedRequestsAreCounted() {
+        responseStatus = 500;
+        notifier = createNotifier(1, 2, 60_000);
+
+        notifier.send(notification(1));
+        notifier.send(notification(2));
+
+        awaitTrue(() -> counter("netmon2.notifications.failures") == 2);
+        assertEquals(0, counter("netmon2.notifications.sent"));
+    }
+
+    private WebhookNotifier createNotifier(int maxInFlight, int batchSize, long lingerMillis) {
+        var endpoint = new NotifierProperties.Endpoint();
+        endpoint.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/hook");
+        endpoint.setMaxInFlight(maxInFlight);
+        endpoint.setBatchSize(batchSize);
+        endpoint.setLingerMillis(lingerMillis);
+        var properties = new NotifierProperties();
+        properties.getWebhook().setRequestTimeoutSeconds(5);
+        properties.getWebhook().getEndpoints().add(endpoint);
+        return new WebhookNotifier(properties, meterRegistry);
+    }
+
+    private double counter(String name) {
+        var counter = meterRegistry.find(name).tag("channel", "webhook").counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private static AlertNotification notification(long alertId) {
+        return new AlertNotification(
+                alertId,
+                AlertType.DEVICE_DOWN,
+                AlertNotificationKind.TRIGGERED,
+                "TestNetwork",
+                "device " + alertId,
+                LocalDateTime.of(2025, 1, 1, 12, 0),
+                "subject " + alertId,
+                "body " + alertId,
+                List.of());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met within 5 seconds");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.matjazt.tools;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Tests {@link ConsistentHashRing}: ownership, spread, and the keys that move on changes. */
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+    private static final List<String> NODES = List.of("node-a", "node-b", "node-c", "node-d");
+
+    @Test
+    void ownershipIsDeterministic() {
+        var ring = new ConsistentHashRing(NODES, 64);
+        var shuffled =
+                new ConsistentHashRing(List.of("node-c", "node-a", "node-d", "node-b"), 64);
+
+        assertEquals(NODES, shuffled.getNodes());
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring.getOwner(key(i)), shuffled.getOwner(key(i)), key(i));
+        }
+    }
+
+    @Test
+    void keysAreSpreadEvenly() {
+        var counts = owners(new ConsistentHashRing(NODES, 64)).values();
+
+        assertEquals(NODES.size(), counts.size());
+        int expected = KEYS / NODES.size();
+        for (int count : counts) {
+            assertTrue(count > expected * 0.7 && count < expected * 1.3, counts.toString());
+        }
+    }
+
+    @Test
+    void onlyTheKeysOfAJoiningNodeMove() {
+        var before = new ConsistentHashRing(NODES, 64);
+        var after =
+                new ConsistentHashRing(
+                        List.of("node-a", "node-b", "node-c", "node-d", "node-e"), 64);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            var owner = after.getOwner(key(i));
+            if (!owner.equals(before.getOwner(key(i)))) {
+                // keys only move to the new node, never between the old ones
+                assertEquals("node-e", owner, key(i));
+                moved++;
+            }
+        }
+        // about 1/5 of the keys
+        assertTrue(moved > KEYS * 0.12 && moved < KEYS * 0.28, "moved " + moved);
+    }
+
+    @Test
+    void onlyTheKeysOfALeavingNodeMove() {
+        var before = new ConsistentHashRing(NODES, 64);
+        var after = new ConsistentHashRing(List.of("node-a", "node-b", "node-d"), 64);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            var owner = before.getOwner(key(i));
+            if (owner.equals("node-c")) {
+                moved++;
+            } else {
+                assertEquals(owner, after.getOwner(key(i)), key(i));
+            }
+        }
+        // about 1/4 of the keys
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.35, "moved " + moved);
+    }
+
+    @Test
+    void emptyRingHasNoOwners() {
+        var ring = new ConsistentHashRing(List.of(), 64);
+
+        assertTrue(ring.isEmpty());
+        assertEquals(List.of(), ring.getNodes());
+        assertNull(ring.getOwner("network:1"));
+    }
+
+    @Test
+    void singleNodeOwnsEverything() {
+        var ring = new ConsistentHashRing(List.of("node-a"), 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("node-a", ring.getOwner(key(i)));
+        }
+    }
+
+    @Test
+    void virtualNodesMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(NODES, 0));
+    }
+
+    private static Map<String, Integer> owners(ConsistentHashRing ring) {
+        var counts = new HashMap<String, Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.getOwner(key(i)), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static String key(int i) {
+        return "network:" + i;
+    }
+}
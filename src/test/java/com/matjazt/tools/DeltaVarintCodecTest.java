@@ -0,0 +1,93 @@
+package com.matjazt.tools;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** Tests {@link DeltaVarintCodec}: round trips, the encoded size and malformed input. */
+class DeltaVarintCodecTest {
+
+    @Test
+    void emptyAndSingleIdsRoundTrip() {
+        assertEquals(0, DeltaVarintCodec.encode(new long[0]).length);
+        assertArrayEquals(new long[0], DeltaVarintCodec.decode(new byte[0]));
+
+        assertRoundTrip(new long[] {0});
+        assertRoundTrip(new long[] {5});
+        assertEquals(1, DeltaVarintCodec.encode(new long[] {5}).length);
+    }
+
+    @Test
+    void largeGapsTakeSeveralBytes() {
+        assertEquals(1, DeltaVarintCodec.encode(new long[] {127}).length);
+        assertEquals(2, DeltaVarintCodec.encode(new long[] {128}).length);
+        assertEquals(3, DeltaVarintCodec.encode(new long[] {1 << 14}).length);
+        assertEquals(9, DeltaVarintCodec.encode(new long[] {Long.MAX_VALUE}).length);
+        // close IDs after a large gap are a byte each again
+        assertEquals(4, DeltaVarintCodec.encode(new long[] {1000, 1001, 1002}).length);
+
+        assertRoundTrip(new long[] {1, 128, 16_512, 1L << 35, Long.MAX_VALUE - 1, Long.MAX_VALUE});
+    }
+
+    @Test
+    void idsAreSortedAndDeduplicated() {
+        var encoded = DeltaVarintCodec.encode(new long[] {5, 3, 5, 1, 3});
+
+        assertArrayEquals(new long[] {1, 3, 5}, DeltaVarintCodec.decode(encoded));
+        assertArrayEquals(DeltaVarintCodec.encode(new long[] {1, 3, 5}), encoded);
+    }
+
+    @Test
+    void negativeIdsAreRejected() {
+        assertThrows(
+                IllegalArgumentException.class, () -> DeltaVarintCodec.encode(new long[] {3, -1}));
+    }
+
+    @Test
+    void malformedDataIsRejected() {
+        var encoded = DeltaVarintCodec.encode(new long[] {1, 300});
+        // the last byte of 300 is missing
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> DeltaVarintCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+
+        // more than 9 bytes for one value
+        var tooLong = new byte[10];
+        Arrays.fill(tooLong, (byte) 0x81);
+        assertThrows(IllegalArgumentException.class, () -> DeltaVarintCodec.decode(tooLong));
+
+        // two maximal deltas add up past Long.MAX_VALUE
+        var max = DeltaVarintCodec.encode(new long[] {Long.MAX_VALUE});
+        var overflow = new byte[max.length * 2];
+        System.arraycopy(max, 0, overflow, 0, max.length);
+        System.arraycopy(max, 0, overflow, max.length, max.length);
+        assertThrows(IllegalArgumentException.class, () -> DeltaVarintCodec.decode(overflow));
+    }
+
+    @Test
+    void randomSetsRoundTrip() {
+        var random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            var ids = new long[random.nextInt(100)];
+            for (int j = 0; j < ids.length; j++) {
+                // mostly close IDs, with the occasional large one
+                ids[j] =
+                        random.nextInt(4) == 0
+                                ? random.nextLong(Long.MAX_VALUE)
+                                : random.nextInt(500);
+            }
+            assertArrayEquals(
+                    Arrays.stream(ids).sorted().distinct().toArray(),
+                    DeltaVarintCodec.decode(DeltaVarintCodec.encode(ids)));
+        }
+    }
+
+    private static void assertRoundTrip(long[] ids) {
+        assertArrayEquals(ids, DeltaVarintCodec.decode(DeltaVarintCodec.encode(ids)));
+    }
+}
@@ -0,0 +1,206 @@
+package com.matjazt.tools;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/** Tests {@link RingBufferTimeSeries} against files in a temporary directory. */
+class RingBufferTimeSeriesTest {
+
+    @TempDir Path directory;
+
+    @Test
+    void samplesAreDownsampledIntoBuckets() throws IOException {
+        try (var series = RingBufferTimeSeries.open(file(), 2, 100)) {
+            series.append(1000, 1f, 10f);
+            series.append(1500, 3f, Float.NaN);
+            series.append(2500, 5f, 20f);
+            series.append(4000, Float.NaN, Float.NaN);
+
+            var buckets = series.read(1000, 5000, 1000);
+            assertEquals(List.of(1000L, 2000L, 4000L), starts(buckets));
+
+            var first = buckets.get(0);
+            assertEquals(2, first.samples());
+            // NaN values are left out of the statistics, not the sample count
+            assertArrayEquals(new double[] {2, 10}, first.average());
+            assertArrayEquals(new float[] {1, 10}, first.min());
+            assertArrayEquals(new float[] {3, 10}, first.max());
+            assertEquals(1, buckets.get(1).samples());
+            assertArrayEquals(new double[] {Double.NaN, Double.NaN}, buckets.get(2).average());
+
+            // the window is half-open and bucket starts are aligned to its start
+            assertEquals(List.of(1500L), starts(series.read(1500, 2500, 10_000)));
+            assertEquals(List.of(), series.read(5000, 6000, 1000));
+            assertEquals(List.of(), series.read(2000, 2000, 1000));
+        }
+    }
+
+    @Test
+    void oldestSamplesAreReplacedWhenFull() throws IOException {
+        try (var series = RingBufferTimeSeries.open(file(), 1, 5)) {
+            for (int i = 0; i < 12; i++) {
+                series.append(i * 1000L, i);
+            }
+            assertEquals(5, series.size());
+            // samples 7..11, with the newest ones written over the start of the file
+            assertEquals(List.of(7000L, 8000L, 9000L, 10_000L, 11_000L), starts(readAll(series)));
+
+            // windows that start on either side of the wrap (buckets are aligned to the start)
+            assertEquals(List.of(8500L, 9500L), starts(series.read(8500, 11_000, 1000)));
+            assertEquals(List.of(7000L, 8000L), starts(series.read(0, 9000, 1000)));
+            assertEquals(List.of(11_000L), starts(series.read(11_000, 20_000, 1000)));
+
+            var single = series.read(0, 20_000, 20_000);
+            assertEquals(1, single.size());
+            assertEquals(5, single.get(0).samples());
+            assertArrayEquals(new double[] {9}, single.get(0).average());
+        }
+    }
+
+    @Test
+    void samplesAndLabelSurviveReopening() throws IOException {
+        var file = file();
+        try (var series = RingBufferTimeSeries.open(file, 2, 4)) {
+            series.setLabel("router");
+            for (int i = 0; i < 6; i++) {
+                series.append(i * 1000L, i, -i);
+            }
+        }
+
+        try (var series = RingBufferTimeSeries.open(file, 2, 4)) {
+            assertEquals("router", series.getLabel());
+            assertEquals(4, series.size());
+            assertEquals(List.of(2000L, 3000L, 4000L, 5000L), starts(readAll(series)));
+
+            // appending continues where the previous run stopped
+            series.append(6000, 6, -6);
+            assertEquals(List.of(3000L, 4000L, 5000L, 6000L), starts(readAll(series)));
+            assertArrayEquals(new float[] {6, -6}, readAll(series).get(3).max());
+        }
+    }
+
+    @Test
+    void longLabelsAreTruncated() throws IOException {
+        var file = file();
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            series.setLabel("x".repeat(RingBufferTimeSeries.MAX_LABEL_BYTES + 10));
+            assertEquals(RingBufferTimeSeries.MAX_LABEL_BYTES, series.getLabel().length());
+            series.setLabel("a");
+        }
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            assertEquals("a", series.getLabel());
+        }
+    }
+
+    @Test
+    void fileWithAnotherLayoutIsReinitialized() throws IOException {
+        var file = file();
+        try (var series = RingBufferTimeSeries.open(file, 2, 4)) {
+            series.setLabel("router");
+            series.append(1000, 1, 2);
+        }
+
+        try (var series = RingBufferTimeSeries.open(file, 3, 4)) {
+            assertEquals(0, series.size());
+            assertEquals("", series.getLabel());
+            series.append(2000, 1, 2, 3);
+        }
+        try (var series = RingBufferTimeSeries.open(file, 3, 8)) {
+            assertEquals(0, series.size());
+        }
+    }
+
+    @Test
+    void damagedHeadersAreReinitialized() throws IOException {
+        // a file that isn't a time series
+        assertReinitialized(bytes -> damage(bytes, buffer -> buffer.put(0, (byte) 'X')));
+        // the header is intact, but the samples are cut off
+        assertReinitialized(bytes -> Arrays.copyOf(bytes, bytes.length - 3));
+        // a negative number of samples
+        assertReinitialized(bytes -> damage(bytes, buffer -> buffer.putLong(16, -3)));
+        // a label longer than the space reserved for it, or negative
+        assertReinitialized(bytes -> damage(bytes, buffer -> buffer.putShort(24, (short) 500)));
+        assertReinitialized(bytes -> damage(bytes, buffer -> buffer.putShort(24, (short) -1)));
+    }
+
+    @Test
+    void emptyAndShortFilesAreInitialized() throws IOException {
+        var file = file();
+        Files.createFile(file);
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            assertEquals(0, series.size());
+        }
+
+        Files.write(file, new byte[] {0x4E, 0x4D});
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            assertEquals(0, series.size());
+            series.append(1000, 1);
+        }
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            assertEquals(1, series.size());
+        }
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> RingBufferTimeSeries.open(file(), 0, 4));
+        assertThrows(IllegalArgumentException.class, () -> RingBufferTimeSeries.open(file(), 1, 0));
+        try (var series = RingBufferTimeSeries.open(file(), 2, 4)) {
+            assertThrows(IllegalArgumentException.class, () -> series.append(1000, 1));
+            assertThrows(IllegalArgumentException.class, () -> series.read(0, 1000, 0));
+            assertEquals(0, series.size());
+        }
+    }
+
+    /** Writes a valid series, damages its bytes, and checks that reopening starts over. */
+    private void assertReinitialized(UnaryOperator<byte[]> damage) throws IOException {
+        var file = file();
+        Files.deleteIfExists(file);
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            series.setLabel("router");
+            series.append(1000, 1);
+            series.append(2000, 2);
+        }
+        Files.write(file, damage.apply(Files.readAllBytes(file)));
+
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            assertEquals(0, series.size());
+            assertEquals("", series.getLabel());
+            assertEquals(List.of(), readAll(series));
+            series.append(3000, 3);
+        }
+        try (var series = RingBufferTimeSeries.open(file, 1, 4)) {
+            assertEquals(List.of(3000L), starts(readAll(series)));
+        }
+    }
+
+    private Path file() {
+        return directory.resolve("series.ts");
+    }
+
+    private static List<RingBufferTimeSeries.Bucket> readAll(RingBufferTimeSeries series) {
+        return series.read(0, Long.MAX_VALUE, 1000);
+    }
+
+    private static List<Long> starts(List<RingBufferTimeSeries.Bucket> buckets) {
+        return buckets.stream().map(RingBufferTimeSeries.Bucket::start).toList();
+    }
+
+    private static byte[] damage(byte[] bytes, Consumer<ByteBuffer> change) {
+        change.accept(ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+}
@@ -0,0 +1,116 @@
+package com.matjazt.tools;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/** Tests the encoding of {@link RunLengthBitmap}. */
+class RunLengthBitmapTest {
+
+    @Test
+    void runsAreStoredAsAlternatingLengths() {
+        // clear run of 0, set run of 3, clear run of 2, set run of 1
+        assertArrayEquals(new byte[] {0, 3, 2, 1}, RunLengthBitmap.encode(bits(0, 1, 2, 5)));
+        // trailing clear bits are not stored
+        assertArrayEquals(new byte[] {4, 1}, RunLengthBitmap.encode(bits(4)));
+        assertArrayEquals(new byte[0], RunLengthBitmap.encode(new BitSet()));
+        assertEquals(new BitSet(), RunLengthBitmap.decode(new byte[0]));
+    }
+
+    @Test
+    void runLengthsUseVarints() {
+        var bits = new BitSet();
+        bits.set(127, 127 + 128);
+        // 127 fits into one byte, 128 needs two
+        assertArrayEquals(new byte[] {127, (byte) 0x80, 0x01}, RunLengthBitmap.encode(bits));
+        assertEquals(bits, RunLengthBitmap.decode(RunLengthBitmap.encode(bits)));
+    }
+
+    @Test
+    void runBoundariesSurviveRoundTrip() {
+        // a day of one-second slots
+        int slots = 24 * 3600;
+        var cases =
+                new BitSet[] {
+                    bits(0),
+                    bits(slots - 1),
+                    bits(0, slots - 1),
+                    range(0, slots),
+                    range(1, slots - 1),
+                    range(0, 128),
+                    range(128, 16_384),
+                    range(16_383, 16_385),
+                };
+        for (var bits : cases) {
+            assertEquals(bits, RunLengthBitmap.decode(RunLengthBitmap.encode(bits)));
+        }
+        // a device that was there all day takes a few bytes
+        assertEquals(4, RunLengthBitmap.encode(range(0, slots)).length);
+    }
+
+    @Test
+    void randomBitmapsSurviveRoundTrip() {
+        var random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            var bits = new BitSet();
+            int position = random.nextInt(300);
+            while (position < 1440) {
+                int run = 1 + random.nextInt(random.nextBoolean() ? 3 : 200);
+                bits.set(position, Math.min(1440, position + run));
+                position += run + 1 + random.nextInt(100);
+            }
+            assertEquals(bits, RunLengthBitmap.decode(RunLengthBitmap.encode(bits)));
+        }
+    }
+
+    @Test
+    void mergedBitmapsHoldTheBitsOfBoth() {
+        var stored = RunLengthBitmap.encode(range(10, 20));
+        var merged = RunLengthBitmap.decode(stored);
+        // overlapping, adjacent and separate runs
+        merged.or(bits(5, 15, 20, 21, 40));
+
+        var expected = range(10, 22);
+        expected.set(5);
+        expected.set(40);
+        assertEquals(expected, RunLengthBitmap.decode(RunLengthBitmap.encode(merged)));
+        assertArrayEquals(new byte[] {5, 1, 4, 12, 18, 1}, RunLengthBitmap.encode(merged));
+    }
+
+    @Test
+    void malformedDataIsRejected() {
+        // a set run without its length
+        assertThrows(IllegalArgumentException.class, () -> RunLengthBitmap.decode(new byte[] {3}));
+        // a varint whose last byte is missing
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> RunLengthBitmap.decode(new byte[] {0, (byte) 0x80}));
+        // a run longer than any bitmap
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        RunLengthBitmap.decode(
+                                new byte[] {
+                                    (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F, 1
+                                }));
+    }
+
+    private static BitSet bits(int... indexes) {
+        var bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    private static BitSet range(int from, int to) {
+        var bits = new BitSet();
+        bits.set(from, to);
+        return bits;
+    }
+}